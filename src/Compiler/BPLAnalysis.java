@@ -0,0 +1,174 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLAnalysis {
+	private final BPLControlFlowGraph cfg;
+	private final BPLDominators dominators;
+	private final BPLLiveness liveness;
+	private final BPLReachingDefinitions reachingDefinitions;
+	private final BPLSSAForm ssa;
+	private final BPLConstantPropagation constantPropagation;
+	private final BPLValueNumbering valueNumbering;
+	private final BPLRangeAnalysis rangeAnalysis;
+	private final BPLLoopInvariants loopInvariants;
+
+	/**
+	* builds the control flow graph of a type checked FUN_DEC and runs every analysis on it
+	*/
+	public BPLAnalysis(BPLNode funDec) {
+		this(funDec, false);
+	}
+
+	/**
+	* @param boundsChecks whether array accesses will be bounds checked,
+	* so loop invariant code motion must not move a check that could fail
+	*/
+	public BPLAnalysis(BPLNode funDec, boolean boundsChecks) {
+		this.cfg = new BPLControlFlowGraph(funDec);
+		this.dominators = new BPLDominators(this.cfg);
+		this.liveness = new BPLLiveness(this.cfg);
+		this.reachingDefinitions = new BPLReachingDefinitions(this.cfg);
+		this.ssa = new BPLSSAForm(this.cfg, this.dominators, this.liveness);
+		this.constantPropagation = new BPLConstantPropagation(this.ssa);
+		this.valueNumbering = new BPLValueNumbering(this.ssa, this.constantPropagation);
+		this.rangeAnalysis = new BPLRangeAnalysis(this.ssa, this.constantPropagation);
+		this.loopInvariants = new BPLLoopInvariants(this.ssa, this.constantPropagation, boundsChecks ? this.rangeAnalysis : null, this.valueNumbering.getTempCount());
+	}
+
+	public BPLControlFlowGraph getControlFlowGraph() {
+		return this.cfg;
+	}
+
+	public BPLDominators getDominators() {
+		return this.dominators;
+	}
+
+	public BPLLiveness getLiveness() {
+		return this.liveness;
+	}
+
+	public BPLReachingDefinitions getReachingDefinitions() {
+		return this.reachingDefinitions;
+	}
+
+	public BPLSSAForm getSSAForm() {
+		return this.ssa;
+	}
+
+	public BPLConstantPropagation getConstantPropagation() {
+		return this.constantPropagation;
+	}
+
+	public BPLValueNumbering getValueNumbering() {
+		return this.valueNumbering;
+	}
+
+	public BPLRangeAnalysis getRangeAnalysis() {
+		return this.rangeAnalysis;
+	}
+
+	/**
+	* its temps come after the ones value numbering uses
+	*/
+	public BPLLoopInvariants getLoopInvariants() {
+		return this.loopInvariants;
+	}
+
+	/**
+	* @return the FUN_DEC nodes of a program in order
+	*/
+	public static ArrayList<BPLNode> getFunDecs(BPLNode programNode) {
+		ArrayList<BPLNode> funDecs = new ArrayList<BPLNode>();
+		if (programNode.getChildrenSize() == 0) {
+			return funDecs;
+		}
+		BPLNode decList = programNode.getChild(0);
+		while (true) {
+			BPLNode dec = decList.getChild(0).getChild(0);
+			if (dec.isType("FUN_DEC")) {
+				funDecs.add(dec);
+			}
+			if (decList.getChildrenSize() < 2) {
+				break;
+			}
+			decList = decList.getChild(1);
+		}
+		return funDecs;
+	}
+
+	/**
+	* timing of each analysis, and the blocks if verbose
+	*/
+	public String getReport(boolean verbose) {
+		String id = ((BPLVarNode) this.cfg.getFunDec().getChild(1)).getID();
+		String rtn = "function " + id + ": " + this.cfg.getBlocks().size() + " blocks, " + this.cfg.getVars().size() + " vars, " + this.cfg.getDefinitions().size() + " defs\n";
+		rtn += this.formatTime("control flow graph", this.cfg.getBuildNanos(), "");
+		rtn += this.formatTime("dominators", this.dominators.getNanos(), "");
+		rtn += this.formatTime("liveness", this.liveness.getNanos(), " (" + this.liveness.getVisits() + " block visits)");
+		rtn += this.formatTime("reaching definitions", this.reachingDefinitions.getNanos(), " (" + this.reachingDefinitions.getVisits() + " block visits)");
+		rtn += this.formatTime("ssa form", this.ssa.getNanos(), " (" + this.ssa.getValues().size() + " values)");
+		rtn += this.formatTime("constant propagation", this.constantPropagation.getNanos(), " (" + this.constantPropagation.getNodeConstants().size() + " constant nodes)");
+		rtn += this.formatTime("value numbering", this.valueNumbering.getNanos(), " (" + this.valueNumbering.getRedundantCount() + " redundant, " + this.valueNumbering.getTempCount() + " temps)");
+		int removed = this.rangeAnalysis.getInBoundsCount();
+		rtn += this.formatTime("range analysis", this.rangeAnalysis.getNanos(), " (" + removed + " of " + this.rangeAnalysis.getAccessCount() + " bounds checks removed)");
+		rtn += this.formatTime("loop invariants", this.loopInvariants.getNanos(), " (" + this.loopInvariants.getTempCount() + " hoisted from " + this.loopInvariants.getLoopCount() + " loops)");
+		if (!verbose) {
+			return rtn;
+		}
+
+		for (BPLBasicBlock block : this.cfg.getBlocks()) {
+			rtn += "   " + block;
+			BPLBasicBlock idom = this.dominators.getImmediateDominator(block);
+			rtn += (idom == null) ? ", unreachable" : ", idom B" + idom.getID();
+			if (idom != null && !this.constantPropagation.isExecutable(block)) {
+				rtn += ", never runs";
+			}
+			rtn += ", live in " + this.getVarNames(this.liveness.getIn(block));
+			rtn += ", live out " + this.getVarNames(this.liveness.getOut(block)) + "\n";
+			for (BPLNode instruction : block.getInstructions()) {
+				rtn += "      line " + instruction.getLineNumber() + " " + instruction.getType() + "\n";
+			}
+			for (BPLSSAValue phi : this.ssa.getPhis(block)) {
+				rtn += "      " + phi + "\n";
+			}
+			for (BPLSSAValue value : this.ssa.getBlockValues(block)) {
+				rtn += "      " + value + "\n";
+			}
+		}
+		return rtn;
+	}
+
+	private String formatTime(String name, long nanos, String extra) {
+		return String.format("   %-22s %9.3f ms%s\n", name, nanos / 1e6, extra);
+	}
+
+	private String getVarNames(BitSet vars) {
+		ArrayList<String> names = new ArrayList<String>();
+		for (int var = vars.nextSetBit(0); var >= 0; var = vars.nextSetBit(var + 1)) {
+			names.add(this.cfg.getVars().get(var).getName());
+		}
+		return names.toString();
+	}
+
+	public static void main(String[] args) throws BPLException {
+		boolean verbose = false;
+		String fileName = null;
+		for (String arg : args) {
+			if (arg.equals("-v")) {
+				verbose = true;
+			} else {
+				fileName = arg;
+			}
+		}
+		if (fileName == null) {
+			System.err.println("File to analyze needed!");
+			System.exit(1);
+		}
+
+		BPLTypeChecker typeChecker = new BPLTypeChecker("../" + fileName);
+		for (BPLNode funDec : getFunDecs(typeChecker.getParseTreeHead())) {
+			System.out.print(new BPLAnalysis(funDec).getReport(verbose));
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLBasicBlock {
+	private final int id;
+
+	private ArrayList<BPLNode> instructions;
+	private ArrayList<BPLBasicBlock> successors;
+	private ArrayList<BPLBasicBlock> predecessors;
+	private BPLNode condition;
+	private BPLNode loop;
+
+	public BPLBasicBlock(int id) {
+		this.id = id;
+		this.instructions = new ArrayList<BPLNode>();
+		this.successors = new ArrayList<BPLBasicBlock>();
+		this.predecessors = new ArrayList<BPLBasicBlock>();
+		this.condition = null;
+		this.loop = null;
+	}
+
+	public int getID() {
+		return this.id;
+	}
+
+	/**
+	* instructions are EXPRESSION_STMT, WRITE_STMT and RETURN_STMT nodes,
+	* plus the condition EXPRESSION of a branch as the last instruction
+	*/
+	public ArrayList<BPLNode> getInstructions() {
+		return this.instructions;
+	}
+
+	public void addInstruction(BPLNode instruction) {
+		this.instructions.add(instruction);
+	}
+
+	public ArrayList<BPLBasicBlock> getSuccessors() {
+		return this.successors;
+	}
+
+	public ArrayList<BPLBasicBlock> getPredecessors() {
+		return this.predecessors;
+	}
+
+	public void addSuccessor(BPLBasicBlock block) {
+		this.successors.add(block);
+		block.predecessors.add(this);
+	}
+
+	/**
+	* a branching block ends with its condition and has the true successor first
+	*/
+	public void setCondition(BPLNode condition) {
+		this.condition = condition;
+		this.instructions.add(condition);
+	}
+
+	public BPLNode getCondition() {
+		return this.condition;
+	}
+
+	public boolean isBranch() {
+		return this.condition != null;
+	}
+
+	public BPLBasicBlock getTrueSuccessor() {
+		return this.successors.get(0);
+	}
+
+	public BPLBasicBlock getFalseSuccessor() {
+		return this.successors.get(1);
+	}
+
+	/**
+	* the WHILE_STMT this block is the header of, if any
+	*/
+	public void setLoop(BPLNode whileNode) {
+		this.loop = whileNode;
+	}
+
+	public BPLNode getLoop() {
+		return this.loop;
+	}
+
+	public String toString() {
+		String rtn = "B" + this.id + " ->";
+		for (BPLBasicBlock successor : this.successors) {
+			rtn += " B" + successor.getID();
+		}
+		return rtn;
+	}
+}
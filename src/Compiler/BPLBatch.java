@@ -0,0 +1,269 @@
+package Compiler;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class BPLBatch {
+	private final BPLOptions options;
+	private final int jobs;
+	private final BPLBuildCache cache;
+	private final boolean trees;
+	private final BPLIncremental incremental;
+	private final BPLCompiler compiler;
+
+	/**
+	* compiles many files in one JVM, jobs at a time. every compile has its
+	* own scanner, parser, type checker and code generator, and writes its
+	* own <file>.s, so they share nothing but the options and the cache
+	* @param cache where files that were compiled before are looked up, or null
+	* @param trees whether parse trees are kept in <file>.tree and loaded
+	* from there when the file hasn't changed, see BPLTreeWriter
+	* @param incremental what recompiles only the changed functions of each
+	* file, keeping them in <file>.incr, or null
+	*/
+	public BPLBatch(BPLOptions options, int jobs, BPLBuildCache cache, boolean trees, BPLIncremental incremental) {
+		this.options = options;
+		this.jobs = jobs;
+		this.cache = cache;
+		this.trees = trees;
+		this.incremental = incremental;
+		this.compiler = new BPLCompiler(options);
+	}
+
+	/**
+	* @return the result of each file, in the same order
+	*/
+	public ArrayList<BPLBatchResult> compile(List<String> fileNames) throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(this.jobs);
+		ArrayList<Future<BPLBatchResult>> futures = new ArrayList<Future<BPLBatchResult>>();
+		for (final String fileName : fileNames) {
+			futures.add(executor.submit(new Callable<BPLBatchResult>() {
+				public BPLBatchResult call() {
+					return compile(fileName);
+				}
+			}));
+		}
+		executor.shutdown();
+
+		ArrayList<BPLBatchResult> results = new ArrayList<BPLBatchResult>();
+		for (Future<BPLBatchResult> future : futures) {
+			try {
+				results.add(future.get());
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return results;
+	}
+
+	/**
+	* compiles one file to <file>.s. the .s is removed if the file doesn't compile
+	*/
+	private BPLBatchResult compile(String fileName) {
+		long start = System.nanoTime();
+		File assembly = new File(fileName + ".s");
+		if (this.cache != null || this.incremental != null) {
+			return this.compileInMemory(fileName, start, assembly);
+		}
+		String error = null;
+		try {
+			PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(assembly), 1 << 16), false);
+			try {
+				BPLTypeChecker typeChecker = this.trees ? new BPLTypeChecker(BPLTreeReader.readOrParse(fileName)) : new BPLTypeChecker(fileName);
+				new BPLCodeGenerator(typeChecker, this.options, out);
+			} finally {
+				out.close();
+			}
+			if (out.checkError()) {
+				error = "Can't write " + assembly;
+			}
+		} catch (BPLException e) {
+			error = e.getMessage();
+		} catch (IOException e) {
+			error = "Can't write " + assembly + ": " + e.getMessage();
+		} catch (RuntimeException e) {
+			error = "Compiler error: " + e;
+		}
+		if (error != null) {
+			assembly.delete();
+		}
+		return new BPLBatchResult(fileName, System.nanoTime() - start, error);
+	}
+
+	/**
+	* compiles with the cache or incrementally, which both give the assembly as a string
+	*/
+	private BPLBatchResult compileInMemory(String fileName, long start, File assembly) {
+		String error = null;
+		try {
+			byte[] source = BPLBuildCache.readFile(new File(fileName));
+			BPLCompilation compilation;
+			if (this.cache != null) {
+				compilation = this.cache.compile(this.compiler, source);
+			} else {
+				compilation = this.incremental.compile(source, new File(fileName + ".incr"));
+			}
+			if (compilation.succeeded()) {
+				FileOutputStream out = new FileOutputStream(assembly);
+				try {
+					out.write(compilation.getAssembly().getBytes("UTF-8"));
+				} finally {
+					out.close();
+				}
+			} else {
+				error = String.join(" ", compilation.getDiagnostics());
+			}
+		} catch (FileNotFoundException e) {
+			error = "Can't open " + fileName + ".";
+		} catch (IOException e) {
+			error = "Can't write " + assembly + ": " + e.getMessage();
+		}
+		if (error != null) {
+			assembly.delete();
+		}
+		return new BPLBatchResult(fileName, System.nanoTime() - start, error);
+	}
+
+	/**
+	* @param names files, directories, which are searched for .bpl files,
+	* and @lists, which are files with a name on each line
+	*/
+	public static ArrayList<String> findFiles(List<String> names) throws BPLException {
+		ArrayList<String> fileNames = new ArrayList<String>();
+		for (String name : names) {
+			if (name.startsWith("@")) {
+				try {
+					BufferedReader list = new BufferedReader(new FileReader(name.substring(1)));
+					try {
+						for (String line = list.readLine(); line != null; line = list.readLine()) {
+							if (!line.trim().isEmpty()) {
+								fileNames.add(line.trim());
+							}
+						}
+					} finally {
+						list.close();
+					}
+				} catch (IOException e) {
+					throw new BPLException("Can't read the file list " + name.substring(1));
+				}
+			} else if (new File(name).isDirectory()) {
+				findBPLFiles(new File(name), fileNames);
+			} else {
+				fileNames.add(name);
+			}
+		}
+		return fileNames;
+	}
+
+	private static void findBPLFiles(File directory, ArrayList<String> fileNames) {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		Arrays.sort(files);
+		for (File file : files) {
+			if (file.isDirectory()) {
+				findBPLFiles(file, fileNames);
+			} else if (file.getName().endsWith(".bpl")) {
+				fileNames.add(file.getPath());
+			}
+		}
+	}
+
+	/**
+	* prints how long each file took, the failures, and the totals
+	*/
+	public static void printSummary(ArrayList<BPLBatchResult> results, long wallNanos, int jobs, PrintStream out) {
+		long totalNanos = 0;
+		int failures = 0;
+		for (BPLBatchResult result : results) {
+			out.printf("%10.2f ms  %s%s%n", result.getNanos() / 1e6, result.getFileName(), result.failed() ? "  FAILED" : "");
+			totalNanos += result.getNanos();
+			if (result.failed()) {
+				failures++;
+			}
+		}
+		if (failures > 0) {
+			out.println();
+			out.println("Failures:");
+			for (BPLBatchResult result : results) {
+				if (result.failed()) {
+					out.println(result.getFileName() + ": " + result.getError());
+				}
+			}
+		}
+		out.println();
+		out.printf("%d files, %d failed, -j%d: %.2f s, %.2f s of compiling, %.1f files/s%n", results.size(), failures, jobs, wallNanos / 1e9, totalNanos / 1e9, results.size() / (wallNanos / 1e9));
+	}
+
+	/**
+	* compiles files to <file>.s, like BPLCodeGenerator does one. -j<n> sets
+	* how many at a time, by default one per core. --cache=<dir> keeps the
+	* output there and reuses it, up to --cache-size=<MB>. without --cache,
+	* --incremental only recompiles the functions that changed since the
+	* last time, keeping them in <file>.incr, and otherwise --trees keeps
+	* each file's parse tree in <file>.tree for next time. the other options
+	* are passed to the code generator. exits with 1 if any file failed
+	*/
+	public static void main(String[] args) throws BPLException, InterruptedException, IOException {
+		int jobs = Runtime.getRuntime().availableProcessors();
+		String cacheDirectory = null;
+		boolean trees = false;
+		boolean incremental = false;
+		long cacheBytes = BPLBuildCache.DEFAULT_MAX_BYTES;
+		ArrayList<String> flags = new ArrayList<String>();
+		ArrayList<String> names = new ArrayList<String>();
+		for (String arg : args) {
+			if (arg.startsWith("-j")) {
+				try {
+					jobs = Integer.parseInt(arg.substring(2));
+				} catch (NumberFormatException e) {
+					throw new BPLException("Bad number of jobs in " + arg);
+				}
+				if (jobs < 1) {
+					throw new BPLException("Bad number of jobs in " + arg);
+				}
+			} else if (arg.startsWith("--cache=")) {
+				cacheDirectory = arg.substring("--cache=".length());
+			} else if (arg.startsWith("--cache-size=")) {
+				try {
+					cacheBytes = Long.parseLong(arg.substring("--cache-size=".length())) << 20;
+				} catch (NumberFormatException e) {
+					throw new BPLException("Bad cache size in " + arg);
+				}
+			} else if (arg.equals("--trees")) {
+				trees = true;
+			} else if (arg.equals("--incremental")) {
+				incremental = true;
+			} else if (arg.startsWith("-")) {
+				flags.add(arg);
+			} else {
+				names.add(arg);
+			}
+		}
+		if (names.isEmpty()) {
+			System.err.println("Files or directories to compile needed!");
+			System.exit(1);
+		}
+
+		BPLOptions options = BPLOptions.parse(flags.toArray(new String[0]));
+		ArrayList<String> fileNames = findFiles(names);
+		long start = System.nanoTime();
+		BPLBuildCache cache = (cacheDirectory != null) ? new BPLBuildCache(new File(cacheDirectory), cacheBytes) : null;
+		BPLIncremental incrementalCompiler = (incremental && cache == null) ? new BPLIncremental(options) : null;
+		ArrayList<BPLBatchResult> results = new BPLBatch(options, jobs, cache, trees, incrementalCompiler).compile(fileNames);
+		printSummary(results, System.nanoTime() - start, jobs, System.out);
+		if (cache != null) {
+			System.out.println(cache);
+		}
+		if (incrementalCompiler != null) {
+			System.out.println(incrementalCompiler);
+		}
+		for (BPLBatchResult result : results) {
+			if (result.failed()) {
+				System.exit(1);
+			}
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package Compiler;
+
+public class BPLBatchResult {
+	private final String fileName;
+	private final long nanos;
+	private final String error;
+
+	/**
+	* how compiling one file in a BPLBatch went
+	* @param error what went wrong, or null if it compiled
+	*/
+	public BPLBatchResult(String fileName, long nanos, String error) {
+		this.fileName = fileName;
+		this.nanos = nanos;
+		this.error = error;
+	}
+
+	public String getFileName() {
+		return this.fileName;
+	}
+
+	public long getNanos() {
+		return this.nanos;
+	}
+
+	public String getError() {
+		return this.error;
+	}
+
+	public boolean failed() {
+		return this.error != null;
+	}
+}
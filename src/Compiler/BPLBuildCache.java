@@ -0,0 +1,268 @@
+package Compiler;
+
+import java.io.*;
+import java.net.*;
+import java.security.*;
+import java.util.*;
+
+public class BPLBuildCache {
+	public static final long DEFAULT_MAX_BYTES = 256L << 20;
+	/**
+	* how old a temporary file has to be before it's taken to be left by a
+	* compile that didn't finish, rather than one another process is writing
+	*/
+	public static final long STALE_TEMP_MILLIS = 60 * 60 * 1000L;
+
+	private final File directory;
+	private final long maxBytes;
+	private final String compilerVersion;
+	/**
+	* the size of each entry, least recently used first
+	*/
+	private final LinkedHashMap<String, Long> entries;
+	private long size;
+	private int hits;
+	private int misses;
+	private int evictions;
+
+	/**
+	* compiled output kept on disk, one file per entry, named by a hash of
+	* the source, the compiler's class files and the options. failed
+	* compiles are kept too, with their errors. the least recently used
+	* entries are removed when the entries add up to more than maxBytes.
+	* use is recorded in the files' modification times, so the order
+	* carries over to the next BPLBuildCache on the same directory. other
+	* processes can use the directory at the same time, so only temporary
+	* files older than STALE_TEMP_MILLIS are removed
+	*/
+	public BPLBuildCache(File directory, long maxBytes) throws IOException {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		this.compilerVersion = findCompilerVersion();
+		this.entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+		this.size = 0;
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Can't make the cache directory " + directory);
+		}
+
+		File[] files = directory.listFiles();
+		Arrays.sort(files, new Comparator<File>() {
+			public int compare(File a, File b) {
+				return Long.compare(a.lastModified(), b.lastModified());
+			}
+		});
+		long stale = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+		for (File file : files) {
+			if (file.getName().endsWith(".tmp")) {
+				if (file.lastModified() < stale) {
+					file.delete();
+				}
+			} else if (file.isFile()) {
+				this.entries.put(file.getName(), file.length());
+				this.size += file.length();
+			}
+		}
+		this.evict();
+	}
+
+	/**
+	* @return the cached result for source, or what compiler makes of it, which is then cached
+	*/
+	public BPLCompilation compile(BPLCompiler compiler, byte[] source) throws IOException {
+		String key = this.getKey(source, compiler.getOptions());
+		BPLCompilation compilation = this.get(key);
+		if (compilation == null) {
+			compilation = compiler.compile(new String(source, "UTF-8"));
+			this.put(key, compilation);
+		}
+		return compilation;
+	}
+
+	public String getKey(byte[] source, BPLOptions options) {
+		MessageDigest digest = newDigest();
+		update(digest, this.compilerVersion);
+		update(digest, options.toString());
+		digest.update(source);
+		return toHex(digest.digest());
+	}
+
+	/**
+	* @return the entry, or null if there isn't one. one another process
+	* added since the directory was listed is found on disk
+	*/
+	public synchronized BPLCompilation get(String key) throws IOException {
+		File file = new File(this.directory, key);
+		if (!this.entries.containsKey(key)) {
+			if (!file.isFile()) {
+				this.misses++;
+				return null;
+			}
+			this.entries.put(key, file.length());
+			this.size += file.length();
+		}
+		byte[] bytes;
+		try {
+			bytes = readFile(file);
+		} catch (FileNotFoundException e) { // removed by another process
+			this.size -= this.entries.remove(key);
+			this.misses++;
+			return null;
+		}
+		file.setLastModified(System.currentTimeMillis());
+		this.hits++;
+		this.evict();
+
+		String entry = new String(bytes, "UTF-8");
+		int newline = entry.indexOf('\n');
+		String body = entry.substring(newline + 1);
+		if (entry.startsWith("ok")) {
+			return new BPLCompilation(body, new ArrayList<String>());
+		}
+		ArrayList<String> diagnostics = new ArrayList<String>();
+		for (String line : body.split("\n")) {
+			if (!line.isEmpty()) {
+				diagnostics.add(line);
+			}
+		}
+		return new BPLCompilation(null, diagnostics);
+	}
+
+	/**
+	* writes the entry to a temporary file and renames it, so other
+	* processes never see half of it
+	*/
+	public synchronized void put(String key, BPLCompilation compilation) throws IOException {
+		StringBuilder entry = new StringBuilder();
+		if (compilation.succeeded()) {
+			entry.append("ok\n").append(compilation.getAssembly());
+		} else {
+			entry.append("failed\n");
+			for (String diagnostic : compilation.getDiagnostics()) {
+				entry.append(diagnostic).append("\n");
+			}
+		}
+		byte[] bytes = entry.toString().getBytes("UTF-8");
+		File temporary = File.createTempFile(key, ".tmp", this.directory);
+		FileOutputStream out = new FileOutputStream(temporary);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+		if (!temporary.renameTo(new File(this.directory, key))) {
+			temporary.delete();
+			throw new IOException("Can't add " + key + " to the cache");
+		}
+
+		Long replaced = this.entries.put(key, (long) bytes.length);
+		this.size += bytes.length - ((replaced != null) ? replaced : 0);
+		this.evict();
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<String, Long>> oldest = this.entries.entrySet().iterator();
+		while (this.size > this.maxBytes && oldest.hasNext()) {
+			Map.Entry<String, Long> entry = oldest.next();
+			new File(this.directory, entry.getKey()).delete();
+			this.size -= entry.getValue();
+			oldest.remove();
+			this.evictions++;
+		}
+	}
+
+	public synchronized int getHits() {
+		return this.hits;
+	}
+
+	public synchronized int getMisses() {
+		return this.misses;
+	}
+
+	public synchronized int getEvictions() {
+		return this.evictions;
+	}
+
+	/**
+	* @return how many bytes the entries take
+	*/
+	public synchronized long getSize() {
+		return this.size;
+	}
+
+	public synchronized String toString() {
+		int lookups = this.hits + this.misses;
+		return String.format("cache: %d hits, %d misses (%.1f%% hit), %d evicted, %d entries, %.1f of %.1f MB", this.hits, this.misses, (lookups == 0) ? 0.0 : 100.0 * this.hits / lookups, this.evictions, this.entries.size(), this.size / 1048576.0, this.maxBytes / 1048576.0);
+	}
+
+	/**
+	* @return a hash of the compiler's class files, or of its jar, so a
+	* changed compiler doesn't get the last one's output
+	*/
+	static String findCompilerVersion() throws IOException {
+		MessageDigest digest = newDigest();
+		File root;
+		try {
+			root = new File(BPLBuildCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		} catch (URISyntaxException e) {
+			throw new IOException("Can't find the compiler's classes: " + e.getMessage());
+		}
+		if (root.isDirectory()) {
+			File[] classes = new File(root, "Compiler").listFiles();
+			Arrays.sort(classes);
+			for (File file : classes) {
+				if (file.getName().endsWith(".class")) {
+					update(digest, file.getName());
+					digest.update(readFile(file));
+				}
+			}
+		} else {
+			digest.update(readFile(root));
+		}
+		return toHex(digest.digest());
+	}
+
+	static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // every JVM has SHA-256
+		}
+	}
+
+	/**
+	* adds s and a separator, so different splits of the same text hash differently
+	*/
+	static void update(MessageDigest digest, String s) {
+		try {
+			digest.update(s.getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		digest.update((byte) 0);
+	}
+
+	static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder();
+		for (byte b : bytes) {
+			hex.append(String.format("%02x", b & 0xFF));
+		}
+		return hex.toString();
+	}
+
+	public static byte[] readFile(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) Math.max(16, file.length()));
+			byte[] buffer = new byte[1 << 16];
+			for (int n = in.read(buffer); n > 0; n = in.read(buffer)) {
+				bytes.write(buffer, 0, n);
+			}
+			return bytes.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+}
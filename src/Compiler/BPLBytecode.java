@@ -0,0 +1,281 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLBytecode {
+	public static final int ACONST_NULL = 0x01;
+	public static final int ICONST_0 = 0x03;
+	public static final int BIPUSH = 0x10;
+	public static final int SIPUSH = 0x11;
+	public static final int LDC = 0x12;
+	public static final int LDC_W = 0x13;
+	public static final int ILOAD = 0x15;
+	public static final int ALOAD = 0x19;
+	public static final int IALOAD = 0x2E;
+	public static final int AALOAD = 0x32;
+	public static final int ISTORE = 0x36;
+	public static final int ASTORE = 0x3A;
+	public static final int IASTORE = 0x4F;
+	public static final int AASTORE = 0x53;
+	public static final int POP = 0x57;
+	public static final int POP2 = 0x58;
+	public static final int DUP = 0x59;
+	public static final int DUP_X1 = 0x5A;
+	public static final int DUP_X2 = 0x5B;
+	public static final int DUP2_X1 = 0x5D;
+	public static final int SWAP = 0x5F;
+	public static final int IADD = 0x60;
+	public static final int ISUB = 0x64;
+	public static final int IMUL = 0x68;
+	public static final int IDIV = 0x6C;
+	public static final int IREM = 0x70;
+	public static final int INEG = 0x74;
+	public static final int IFEQ = 0x99;
+	public static final int IFNE = 0x9A;
+	public static final int IFLT = 0x9B;
+	public static final int IFGE = 0x9C;
+	public static final int IFGT = 0x9D;
+	public static final int IFLE = 0x9E;
+	public static final int IF_ICMPEQ = 0x9F;
+	public static final int IF_ICMPNE = 0xA0;
+	public static final int IF_ICMPLT = 0xA1;
+	public static final int IF_ICMPGE = 0xA2;
+	public static final int IF_ICMPGT = 0xA3;
+	public static final int IF_ICMPLE = 0xA4;
+	public static final int GOTO = 0xA7;
+	public static final int IRETURN = 0xAC;
+	public static final int ARETURN = 0xB0;
+	public static final int RETURN = 0xB1;
+	public static final int GETSTATIC = 0xB2;
+	public static final int PUTSTATIC = 0xB3;
+	public static final int INVOKEVIRTUAL = 0xB6;
+	public static final int INVOKESPECIAL = 0xB7;
+	public static final int INVOKESTATIC = 0xB8;
+	public static final int NEW = 0xBB;
+	public static final int NEWARRAY = 0xBC;
+	public static final int ANEWARRAY = 0xBD;
+
+	public static final int T_INT = 10;
+
+	private final BPLClassWriter writer;
+
+	private byte[] code;
+	private int length;
+	private int depth;
+	private int maxStack;
+	private int maxLocals;
+	private ArrayList<Integer> labelOffsets;
+	private ArrayList<Integer> labelDepths;
+	private ArrayList<int[]> jumps;
+	private ArrayList<int[]> lines;
+
+	/**
+	* the instructions of one method. the stack depth is followed as they
+	* are added, for max_stack. after a goto or return nothing is on the
+	* stack until a label some jump went to
+	* @param argSlots the locals the args take up
+	*/
+	public BPLBytecode(BPLClassWriter writer, int argSlots) {
+		this.writer = writer;
+		this.code = new byte[256];
+		this.length = 0;
+		this.depth = 0;
+		this.maxStack = 0;
+		this.maxLocals = argSlots;
+		this.labelOffsets = new ArrayList<Integer>();
+		this.labelDepths = new ArrayList<Integer>();
+		this.jumps = new ArrayList<int[]>();
+		this.lines = new ArrayList<int[]>();
+	}
+
+	/**
+	* @param stackChange how many values the instruction pushes minus how many it pops
+	*/
+	public void op(int opcode, int stackChange) {
+		this.u1(opcode);
+		this.adjust(stackChange);
+	}
+
+	public void op1(int opcode, int operand, int stackChange) {
+		this.u1(opcode);
+		this.u1(operand);
+		this.adjust(stackChange);
+	}
+
+	public void op2(int opcode, int operand, int stackChange) {
+		this.u1(opcode);
+		this.u2(operand);
+		this.adjust(stackChange);
+	}
+
+	public void pushInt(int value) {
+		if (value >= -1 && value <= 5) {
+			this.op(ICONST_0 + value, 1);
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			this.op1(BIPUSH, value & 0xFF, 1);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			this.op2(SIPUSH, value & 0xFFFF, 1);
+		} else {
+			this.ldc(this.writer.integer(value));
+		}
+	}
+
+	public void pushString(String s) {
+		this.ldc(this.writer.string(s));
+	}
+
+	private void ldc(int index) {
+		if (index <= 0xFF) {
+			this.op1(LDC, index, 1);
+		} else {
+			this.op2(LDC_W, index, 1);
+		}
+	}
+
+	/**
+	* @param opcode ILOAD, ALOAD, ISTORE or ASTORE
+	*/
+	public void local(int opcode, int slot) {
+		int stackChange = (opcode == ILOAD || opcode == ALOAD) ? 1 : -1;
+		if (slot <= 3) {
+			int shortForm = (opcode == ILOAD) ? 0x1A : (opcode == ALOAD) ? 0x2A : (opcode == ISTORE) ? 0x3B : 0x4B; // iload_0 ...
+			this.op(shortForm + slot, stackChange);
+		} else if (slot <= 0xFF) {
+			this.op1(opcode, slot, stackChange);
+		} else {
+			this.u1(0xC4); // wide
+			this.op2(opcode, slot, stackChange);
+		}
+		this.maxLocals = Math.max(this.maxLocals, slot + 1);
+	}
+
+	/**
+	* @param opcode GETSTATIC or PUTSTATIC
+	*/
+	public void field(int opcode, String owner, String name, String descriptor) {
+		this.op2(opcode, this.writer.fieldRef(owner, name, descriptor), (opcode == GETSTATIC) ? 1 : -1);
+	}
+
+	public void invoke(int opcode, String owner, String name, String descriptor) {
+		int stackChange = descriptor.endsWith(")V") ? 0 : 1;
+		stackChange -= countArgs(descriptor) + ((opcode == INVOKESTATIC) ? 0 : 1);
+		this.op2(opcode, this.writer.methodRef(owner, name, descriptor), stackChange);
+	}
+
+	/**
+	* @param opcode NEW or ANEWARRAY
+	*/
+	public void type(int opcode, String name) {
+		this.op2(opcode, this.writer.classRef(name), (opcode == NEW) ? 1 : 0);
+	}
+
+	public int newLabel() {
+		this.labelOffsets.add(-1);
+		this.labelDepths.add(-1);
+		return this.labelOffsets.size() - 1;
+	}
+
+	public void placeLabel(int label) {
+		this.labelOffsets.set(label, this.length);
+		if (this.labelDepths.get(label) >= 0) {
+			this.depth = this.labelDepths.get(label);
+		}
+	}
+
+	/**
+	* @param opcode GOTO or a conditional branch, which pops one or two values
+	*/
+	public void jump(int opcode, int label) {
+		if (opcode >= IF_ICMPEQ && opcode <= IF_ICMPLE) {
+			this.adjust(-2);
+		} else if (opcode != GOTO) {
+			this.adjust(-1);
+		}
+		this.labelDepths.set(label, this.depth);
+		this.jumps.add(new int[] {this.length, label});
+		this.u1(opcode);
+		this.u2(0);
+		if (opcode == GOTO) {
+			this.depth = 0;
+		}
+	}
+
+	/**
+	* @param opcode IRETURN, ARETURN or RETURN
+	*/
+	public void ret(int opcode) {
+		this.op(opcode, 0);
+		this.depth = 0;
+	}
+
+	/**
+	* the instructions added after this came from line
+	*/
+	public void line(int line) {
+		if (!this.lines.isEmpty() && this.lines.get(this.lines.size() - 1)[0] == this.length) {
+			this.lines.remove(this.lines.size() - 1);
+		}
+		this.lines.add(new int[] {this.length, line});
+	}
+
+	public ArrayList<int[]> getLineNumbers() {
+		return this.lines;
+	}
+
+	public int getMaxStack() {
+		return this.maxStack;
+	}
+
+	public int getMaxLocals() {
+		return this.maxLocals;
+	}
+
+	/**
+	* fills in the jump offsets, which have to fit in 16 bits
+	*/
+	public byte[] toByteArray() throws BPLException {
+		for (int[] jump : this.jumps) {
+			int offset = this.labelOffsets.get(jump[1]) - jump[0];
+			if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+				throw new BPLException("Function too big for a class file method");
+			}
+			this.code[jump[0] + 1] = (byte) (offset >> 8);
+			this.code[jump[0] + 2] = (byte) offset;
+		}
+		if (this.length > 0xFFFF) {
+			throw new BPLException("Function too big for a class file method");
+		}
+		return Arrays.copyOf(this.code, this.length);
+	}
+
+	private static int countArgs(String descriptor) {
+		int count = 0;
+		for (int i = 1; descriptor.charAt(i) != ')'; i++) {
+			while (descriptor.charAt(i) == '[') {
+				i++;
+			}
+			if (descriptor.charAt(i) == 'L') {
+				i = descriptor.indexOf(';', i);
+			}
+			count++;
+		}
+		return count;
+	}
+
+	private void adjust(int stackChange) {
+		this.depth += stackChange;
+		this.maxStack = Math.max(this.maxStack, this.depth);
+	}
+
+	private void u1(int value) {
+		if (this.length == this.code.length) {
+			this.code = Arrays.copyOf(this.code, 2 * this.code.length);
+		}
+		this.code[this.length++] = (byte) value;
+	}
+
+	private void u2(int value) {
+		this.u1(value >> 8);
+		this.u1(value);
+	}
+}
@@ -0,0 +1,521 @@
+package Compiler;
+
+import java.util.*;
+import java.io.*;
+
+public class BPLCGenerator {
+	private static final String FUN_PREFIX = "f_";
+	private static final String VAR_PREFIX = "v_";
+	private static final String TEMP_PREFIX = "t_";
+
+	private BPLNode parseTreeHead;
+	private BPLOptions options;
+	private int indent;
+	private BPLNode mainFunDec;
+	private ArrayList<String> temps;
+	private ArrayList<String> body;
+
+	/**
+	* prints the program as C instead of assembly, for gcc to optimize.
+	* ints are C ints, strings are char pointers, and arrays, pointers and
+	* & work the same way they do in C. write and read call the runtime at
+	* the top of the file, which buffers stdin and stdout like the assembly
+	* runtime. user names get a prefix so they can't clash with C keywords,
+	* libc or the runtime. the output has to be compiled with -fwrapv, since
+	* BPL ints wrap around when they overflow. C doesn't say which operand
+	* or arg is evaluated first, so where that shows, values go through
+	* temps in the order the assembly evaluates them
+	*/
+	public BPLCGenerator(String fileName, BPLOptions options) throws BPLException {
+		BPLTypeChecker typeChecker = new BPLTypeChecker(fileName);
+		this.parseTreeHead = typeChecker.getParseTreeHead();
+		this.options = options;
+		this.indent = 0;
+		this.mainFunDec = null;
+		this.temps = null;
+		this.body = null;
+
+		this.genRuntime();
+		if (this.parseTreeHead.getChildrenSize() != 0) {
+			ArrayList<BPLNode> decs = new ArrayList<BPLNode>();
+			for (BPLNode decList = this.parseTreeHead.getChild(0); decList != null; decList = (decList.getChildrenSize() > 1) ? decList.getChild(1) : null) {
+				decs.add(decList.getChild(0).getChild(0));
+			}
+			for (BPLNode dec : decs) {
+				if (dec.isType("VAR_DEC")) {
+					this.print("static " + this.genDeclarator(dec) + ";");
+				} else {
+					this.print(this.genFunHeader(dec) + ";");
+				}
+			}
+			for (BPLNode dec : decs) {
+				if (dec.isType("FUN_DEC")) {
+					this.genFunDec(dec);
+				}
+			}
+		}
+		this.genMain();
+	}
+
+	/**
+	* the same routines as BPLRuntime, in C. bounds checks print the same
+	* error as the assembly ones
+	*/
+	private void genRuntime() {
+		this.print("#include <stdio.h>");
+		this.print("#include <stdlib.h>");
+		this.print("#include <string.h>");
+		this.print("#include <errno.h>");
+		this.print("#include <unistd.h>");
+		this.print("");
+		this.print("static char BPLWriteBuffer[" + BPLRuntime.WRITE_BUFFER_SIZE + "];");
+		this.print("static size_t BPLWritePos;");
+		this.print("static char BPLReadBuffer[" + BPLRuntime.READ_BUFFER_SIZE + "];");
+		this.print("static size_t BPLReadPos;");
+		this.print("static size_t BPLReadEnd;");
+		this.print("");
+		this.print("static void BPLWriteFlush(void) {");
+		this.print("\tsize_t done = 0;");
+		this.print("\twhile (done < BPLWritePos) {");
+		this.print("\t\tssize_t n = write(1, BPLWriteBuffer + done, BPLWritePos - done);");
+		this.print("\t\tif (n < 0 && errno == EINTR) {");
+		this.print("\t\t\tcontinue;");
+		this.print("\t\t} else if (n <= 0) {");
+		this.print("\t\t\tbreak;");
+		this.print("\t\t}");
+		this.print("\t\tdone += n;");
+		this.print("\t}");
+		this.print("\tBPLWritePos = 0;");
+		this.print("}");
+		this.print("");
+		this.print("static void BPLWriteInt(int n) {");
+		this.print("\tchar digits[12];");
+		this.print("\tint i = sizeof(digits);");
+		this.print("\tunsigned int u = (n < 0) ? 0u - (unsigned int) n : (unsigned int) n;");
+		this.print("\tif (BPLWritePos > sizeof(BPLWriteBuffer) - sizeof(digits)) {");
+		this.print("\t\tBPLWriteFlush();");
+		this.print("\t}");
+		this.print("\tdo {");
+		this.print("\t\tdigits[--i] = '0' + u % 10;");
+		this.print("\t\tu /= 10;");
+		this.print("\t} while (u != 0);");
+		this.print("\tif (n < 0) {");
+		this.print("\t\tdigits[--i] = '-';");
+		this.print("\t}");
+		this.print("\tmemcpy(BPLWriteBuffer + BPLWritePos, digits + i, sizeof(digits) - i);");
+		this.print("\tBPLWritePos += sizeof(digits) - i;");
+		this.print("}");
+		this.print("");
+		this.print("static void BPLWriteString(const char *s) {");
+		this.print("\tif (s == NULL) { /* a string var never assigned */");
+		this.print("\t\ts = \"(null)\";");
+		this.print("\t}");
+		this.print("\tfor (; *s != '\\0'; s++) {");
+		this.print("\t\tif (BPLWritePos == sizeof(BPLWriteBuffer)) {");
+		this.print("\t\t\tBPLWriteFlush();");
+		this.print("\t\t}");
+		this.print("\t\tBPLWriteBuffer[BPLWritePos++] = *s;");
+		this.print("\t}");
+		this.print("}");
+		this.print("");
+		this.print("static void BPLWriteNewline(void) {");
+		this.print("\tBPLWriteString(\"\\n\");");
+		this.print("}");
+		this.print("");
+		this.print("static int BPLReadFill(void) {");
+		this.print("\tssize_t n;");
+		this.print("\tBPLWriteFlush();");
+		this.print("\tdo {");
+		this.print("\t\tn = read(0, BPLReadBuffer, sizeof(BPLReadBuffer));");
+		this.print("\t} while (n < 0 && errno == EINTR);");
+		this.print("\tBPLReadPos = 0;");
+		this.print("\tBPLReadEnd = (n > 0) ? n : 0;");
+		this.print("\treturn n > 0;");
+		this.print("}");
+		this.print("");
+		this.print("static int BPLReadInt(void) {");
+		this.print("\tunsigned int n = 0;");
+		this.print("\tint negative = 0;");
+		this.print("\tint c;");
+		this.print("\tdo {");
+		this.print("\t\tif (BPLReadPos == BPLReadEnd && !BPLReadFill()) {");
+		this.print("\t\t\treturn 0;");
+		this.print("\t\t}");
+		this.print("\t\tc = (unsigned char) BPLReadBuffer[BPLReadPos++];");
+		this.print("\t} while (c != '-' && (c < '0' || c > '9'));");
+		this.print("\tif (c == '-') {");
+		this.print("\t\tnegative = 1;");
+		this.print("\t} else {");
+		this.print("\t\tn = c - '0';");
+		this.print("\t}");
+		this.print("\twhile (BPLReadPos < BPLReadEnd || BPLReadFill()) {");
+		this.print("\t\tc = (unsigned char) BPLReadBuffer[BPLReadPos];");
+		this.print("\t\tif (c < '0' || c > '9') {");
+		this.print("\t\t\tbreak;");
+		this.print("\t\t}");
+		this.print("\t\tn = n * 10 + (c - '0');");
+		this.print("\t\tBPLReadPos++;");
+		this.print("\t}");
+		this.print("\treturn (int) (negative ? 0u - n : n);");
+		this.print("}");
+		if (this.options.boundsCheck()) {
+			this.print("");
+			this.print("static int BPLCheck(int index, int size, int line) {");
+			this.print("\tif ((unsigned int) index >= (unsigned int) size) {");
+			this.print("\t\tfprintf(stderr, \"line %d: array index %d out of bounds\\n\", line, index);");
+			this.print("\t\texit(1);");
+			this.print("\t}");
+			this.print("\treturn index;");
+			this.print("}");
+		}
+		this.print("");
+	}
+
+	/**
+	* C's main flushes the output at exit and returns what an int main returns
+	*/
+	private void genMain() {
+		this.print("");
+		this.print("int main(void) {");
+		this.print("\tatexit(BPLWriteFlush);");
+		if (this.mainFunDec == null) {
+			this.print("\treturn 0;");
+		} else if (this.mainFunDec.getChild(0).isType("int")) {
+			this.print("\treturn " + FUN_PREFIX + "main();");
+		} else {
+			this.print("\t" + FUN_PREFIX + "main();");
+			this.print("\treturn 0;");
+		}
+		this.print("}");
+	}
+
+	/**
+	* the body is held back until the temps it needs are declared
+	*/
+	private void genFunDec(BPLNode funDec) {
+		if (((BPLVarNode) funDec.getChild(1)).getID().equals("main")) {
+			this.mainFunDec = funDec;
+		}
+		this.print("");
+		this.print(this.genFunHeader(funDec) + " {");
+		this.temps = new ArrayList<String>();
+		this.body = new ArrayList<String>();
+		this.genCompoundStmt(funDec.getChild(3));
+		ArrayList<String> body = this.body;
+		this.body = null;
+		this.indent++;
+		for (String temp : this.temps) {
+			this.print(temp + ";");
+		}
+		this.indent--;
+		for (String line : body) {
+			System.out.println(line);
+		}
+		this.print("}");
+	}
+
+	private String genFunHeader(BPLNode funDec) {
+		String id = ((BPLVarNode) funDec.getChild(1)).getID();
+		BPLNode params = funDec.getChild(2).getChild(0);
+		StringBuilder header = new StringBuilder("static " + this.genType(funDec.getChild(0)) + " " + FUN_PREFIX + id + "(");
+		if (params.isType("void")) {
+			header.append("void");
+		}
+		for (BPLNode paramList = params; paramList.isType("PARAM_LIST"); paramList = paramList.getChild(1)) {
+			header.append(this.genDeclarator(paramList.getChild(0)));
+			if (paramList.getChildrenSize() == 1) {
+				break;
+			}
+			header.append(", ");
+		}
+		return header.append(")").toString();
+	}
+
+	private String genType(BPLNode typeSpecifier) {
+		if (typeSpecifier.isType("string")) {
+			return "char *";
+		}
+		return typeSpecifier.getType();
+	}
+
+	private static String genPointerType(String type) {
+		return type.endsWith("*") ? type + "*" : type + " *";
+	}
+
+	/**
+	* @return the C type of the value of an EXPRESSION, COMP_EXP, E, T, F or FACTOR
+	*/
+	private String genValueType(BPLNode node) {
+		if (node.isType("EXPRESSION") && node.getChildrenSize() == 3) {
+			BPLNode var = node.getChild(0);
+			if (var.getChildrenSize() > 1) { // *p or a[i]
+				return this.genType(var.getDeclaration().getChild(0));
+			}
+			return this.genVarType(var.getDeclaration());
+		} else if (node.isType("F")) {
+			BPLNode child = node.getChild(0);
+			if (child.isType("FACTOR")) {
+				return this.genValueType(child);
+			} else if (child.isType("*")) {
+				String type = this.genValueType(node.getChild(1));
+				return type.substring(0, type.length() - 1).trim();
+			} else if (child.isType("&")) {
+				return genPointerType(this.genValueType(node.getChild(1)));
+			}
+			return "int";
+		} else if (!node.isType("FACTOR")) {
+			return (node.getChildrenSize() == 1) ? this.genValueType(node.getChild(0)) : "int";
+		}
+		BPLNode child = node.getChild(0);
+		if (child.isType("EXPRESSION")) {
+			return this.genValueType(child);
+		} else if (child.isType("FUN_CALL")) {
+			return this.genType(child.getChild(0).getDeclaration().getChild(0));
+		} else if (child.isType("STRING")) {
+			return "char *";
+		} else if (child.isType("READ") || child.isType("INTEGER")) {
+			return "int";
+		} else if (node.getChildrenSize() == 4) {
+			return this.genType(child.getDeclaration().getChild(0));
+		}
+		return this.genVarType(child.getDeclaration());
+	}
+
+	/**
+	* @return the C type of a VAR_DEC or PARAM's value, where arrays are a pointer to the first element
+	*/
+	private String genVarType(BPLNode dec) {
+		String type = this.genType(dec.getChild(0));
+		if (dec.getChild(1).isType("*") || dec.getChildrenSize() > 3) {
+			return genPointerType(type);
+		}
+		return type;
+	}
+
+	/**
+	* @return the name of a new temp of the function being generated
+	*/
+	private String newTemp(String type) {
+		String name = TEMP_PREFIX + (this.temps.size() + 1);
+		this.temps.add(type.endsWith("*") ? type + name : type + " " + name);
+		return name;
+	}
+
+	/**
+	* @return the C declaration of a VAR_DEC or PARAM, like int *v_p or char *v_a[10]
+	*/
+	private String genDeclarator(BPLNode dec) {
+		String type = this.genType(dec.getChild(0));
+		if (!type.endsWith("*")) {
+			type += " ";
+		}
+		if (dec.getChild(1).isType("*")) {
+			return type + "*" + VAR_PREFIX + ((BPLVarNode) dec.getChild(2)).getID();
+		}
+		String declarator = type + VAR_PREFIX + ((BPLVarNode) dec.getChild(1)).getID();
+		if (dec.isType("VAR_DEC") && dec.getChildrenSize() == 5) {
+			return declarator + "[" + BPLRangeAnalysis.getArraySize(dec) + "]";
+		} else if (dec.getChildrenSize() > 3) {
+			return declarator + "[]";
+		}
+		return declarator;
+	}
+
+	private void genCompoundStmt(BPLNode compoundStmt) {
+		this.indent++;
+		for (BPLNode localDecs = compoundStmt.getChild(0); localDecs.isType("LOCAL_DECS"); localDecs = localDecs.getChild(1)) {
+			this.print(this.genDeclarator(localDecs.getChild(0)) + ";");
+		}
+		for (BPLNode statementList = compoundStmt.getChild(1); statementList.isType("STATEMENT_LIST"); statementList = statementList.getChild(1)) {
+			this.genStatement(statementList.getChild(0).getChild(0));
+		}
+		this.indent--;
+	}
+
+	private void genStatement(BPLNode statement) {
+		if (statement.isType("COMPOUND_STMT")) {
+			this.print("{");
+			this.genCompoundStmt(statement);
+			this.print("}");
+		} else if (statement.isType("IF_STMT")) {
+			this.print("if (" + this.genExpression(statement.getChild(0)) + ") {");
+			this.genBody(statement.getChild(1));
+			if (statement.getChildrenSize() > 2) {
+				this.print("} else {");
+				this.genBody(statement.getChild(2));
+			}
+			this.print("}");
+		} else if (statement.isType("WHILE_STMT")) {
+			this.print("while (" + this.genExpression(statement.getChild(0)) + ") {");
+			this.genBody(statement.getChild(1));
+			this.print("}");
+		} else if (statement.isType("RETURN_STMT")) {
+			if (statement.getChildrenSize() > 0) {
+				this.print("return " + this.genExpression(statement.getChild(0)) + ";");
+			} else {
+				this.print("return;");
+			}
+		} else if (statement.isType("WRITE_STMT")) {
+			if (statement.getChildrenSize() == 0) {
+				this.print("BPLWriteNewline();");
+			} else if (statement.getChild(0).getEvalType().equals(BPLTypeChecker.TYPE_STRING)) {
+				this.print("BPLWriteString(" + this.genExpression(statement.getChild(0)) + ");");
+			} else {
+				this.print("BPLWriteInt(" + this.genExpression(statement.getChild(0)) + ");");
+			}
+		} else if (statement.getChildrenSize() > 0) {
+			this.print(this.genExpression(statement.getChild(0)) + ";");
+		} else {
+			this.print(";");
+		}
+	}
+
+	/**
+	* the body of an if or while always gets braces, so a nested if can't take the wrong else
+	*/
+	private void genBody(BPLNode statement) {
+		BPLNode child = statement.getChild(0);
+		if (child.isType("COMPOUND_STMT")) {
+			this.genCompoundStmt(child);
+			return;
+		}
+		this.indent++;
+		this.genStatement(child);
+		this.indent--;
+	}
+
+	/**
+	* BPL's precedence and associativity are the same as C's, so only the
+	* parentheses from the source are needed, and the ones around the
+	* comma expressions that set temps. the value assigned to an array
+	* element or through a pointer is found before the element or pointer
+	*/
+	private String genExpression(BPLNode expression) {
+		if (expression.getChildrenSize() == 3) {
+			BPLNode var = expression.getChild(0);
+			BPLNode value = expression.getChild(2);
+			if (var.getChildrenSize() == 1 || !(BPLInliner.hasSideEffects(var) || BPLInliner.hasSideEffects(value))) {
+				return this.genVar(var) + " = " + this.genExpression(value);
+			}
+			String temp = this.newTemp(this.genValueType(expression));
+			return "(" + temp + " = " + this.genExpression(value) + ", " + this.genVar(var) + " = " + temp + ")";
+		}
+		return this.genOperation(expression.getChild(0));
+	}
+
+	/**
+	* the left side of a comparison is found first, and the right side of
+	* the other operations
+	* @param node a COMP_EXP, E, T or F
+	*/
+	private String genOperation(BPLNode node) {
+		if (node.isType("F")) {
+			return this.genF(node);
+		} else if (node.getChildrenSize() == 1) {
+			return this.genOperation(node.getChild(0));
+		}
+		String op = node.getChild(1).getChild(0).getType();
+		if (!BPLInliner.hasSideEffects(node)) {
+			return this.genOperation(node.getChild(0)) + " " + op + " " + this.genOperation(node.getChild(2));
+		} else if (node.isType("COMP_EXP")) {
+			String temp = this.newTemp(this.genValueType(node.getChild(0)));
+			return "(" + temp + " = " + this.genOperation(node.getChild(0)) + ", " + temp + " " + op + " " + this.genOperation(node.getChild(2)) + ")";
+		}
+		String temp = this.newTemp("int");
+		return "(" + temp + " = " + this.genOperation(node.getChild(2)) + ", " + this.genOperation(node.getChild(0)) + " " + op + " " + temp + ")";
+	}
+
+	private String genF(BPLNode f) {
+		BPLNode child = f.getChild(0);
+		if (child.isType("FACTOR")) {
+			return this.genFactor(child);
+		} else if (child.isType("-")) {
+			String operand = this.genF(f.getChild(1));
+			return operand.startsWith("-") ? "-(" + operand + ")" : "-" + operand;
+		}
+		return child.getType() + this.genFactor(f.getChild(1));
+	}
+
+	private String genFactor(BPLNode factor) {
+		BPLNode child = factor.getChild(0);
+		if (child.isType("EXPRESSION")) {
+			return "(" + this.genExpression(child) + ")";
+		} else if (child.isType("FUN_CALL")) {
+			return this.genFunCall(child);
+		} else if (child.isType("READ")) {
+			return "BPLReadInt()";
+		} else if (child.isType("INTEGER")) {
+			return Integer.toString(((BPLIntegerNode) child).getInteger());
+		} else if (child.isType("STRING")) {
+			return child.getChild(0).getType();
+		} else if (factor.getChildrenSize() == 4) {
+			return this.genElement(child, child.getDeclaration(), factor.getChild(2));
+		}
+		return VAR_PREFIX + ((BPLVarNode) child).getID();
+	}
+
+	private String genVar(BPLNode var) {
+		if (var.getChild(0).isType("*")) {
+			return "*" + VAR_PREFIX + ((BPLVarNode) var.getChild(1)).getID();
+		} else if (var.getChildrenSize() == 4) {
+			return this.genElement(var.getChild(0), var.getDeclaration(), var.getChild(2));
+		}
+		return VAR_PREFIX + ((BPLVarNode) var.getChild(0)).getID();
+	}
+
+	/**
+	* with -fbounds-check, indexes into arrays with a declared size go
+	* through BPLCheck. gcc drops the checks it can prove never fail
+	*/
+	private String genElement(BPLNode id, BPLNode varDec, BPLNode index) {
+		String name = VAR_PREFIX + ((BPLVarNode) id).getID();
+		int size = BPLRangeAnalysis.getArraySize(varDec);
+		if (this.options.boundsCheck() && size >= 0) {
+			return name + "[BPLCheck(" + this.genExpression(index) + ", " + size + ", " + id.getLineNumber() + ")]";
+		}
+		return name + "[" + this.genExpression(index) + "]";
+	}
+
+	/**
+	* args are found last to first, so all but the first go through temps
+	* when that shows
+	*/
+	private String genFunCall(BPLNode funCall) {
+		ArrayList<BPLNode> args = BPLInliner.getArgs(funCall);
+		boolean ordered = args.size() > 1 && BPLInliner.hasSideEffects(funCall.getChild(1));
+		StringBuilder temps = new StringBuilder();
+		String[] values = new String[args.size()];
+		for (int i = args.size() - 1; i >= 0; i--) {
+			values[i] = this.genExpression(args.get(i));
+			if (ordered && i > 0) {
+				String temp = this.newTemp(this.genValueType(args.get(i)));
+				temps.append(temp + " = " + values[i] + ", ");
+				values[i] = temp;
+			}
+		}
+		String call = FUN_PREFIX + ((BPLVarNode) funCall.getChild(0)).getID() + "(" + String.join(", ", values) + ")";
+		return ordered ? "(" + temps + call + ")" : call;
+	}
+
+	private void print(String line) {
+		StringBuilder indented = new StringBuilder();
+		for (int i = 0; i < this.indent && !line.isEmpty(); i++) {
+			indented.append("\t");
+		}
+		if (this.body != null) {
+			this.body.add(indented.append(line).toString());
+			return;
+		}
+		System.out.println(indented.append(line));
+	}
+
+	public static void main(String[] args) throws FileNotFoundException, UnsupportedEncodingException, BPLException {
+		BPLOptions options = BPLOptions.parse(args);
+		if (options.getFileName() == null) {
+			System.err.println("File to translate needed!");
+			System.exit(1);
+		}
+
+		BPLCGenerator generator = new BPLCGenerator("../" + options.getFileName(), options);
+	}
+}
@@ -0,0 +1,104 @@
+package Compiler;
+
+import java.io.*;
+import java.util.*;
+
+public class BPLCachedFunction {
+	private final String key;
+	private final BPLEmittedFunction emitted;
+	private final ArrayList<String> strings;
+	private final ArrayList<String> refs;
+	private final String code;
+
+	/**
+	* a function's assembly as BPLIncremental keeps it, numbered so it can
+	* go anywhere in a program: its .Meow labels count from 0, and each
+	* .Potato is an index into refs, the string literals the code uses
+	* @param key the hash of the function and everything its code depends on
+	* @param strings its own string literals, in the order the type checker added them
+	*/
+	public BPLCachedFunction(String key, BPLEmittedFunction emitted, ArrayList<String> strings, ArrayList<String> refs, String code) {
+		this.key = key;
+		this.emitted = emitted;
+		this.strings = strings;
+		this.refs = refs;
+		this.code = code;
+	}
+
+	public String getKey() {
+		return this.key;
+	}
+
+	public BPLEmittedFunction getEmitted() {
+		return this.emitted;
+	}
+
+	public ArrayList<String> getStrings() {
+		return this.strings;
+	}
+
+	public ArrayList<String> getRefs() {
+		return this.refs;
+	}
+
+	public String getCode() {
+		return this.code;
+	}
+
+	/**
+	* writes it as a line of counts followed by the strings, the refs and
+	* the code, a line each. string literals never span lines, and the
+	* code ends with a newline
+	*/
+	public void write(PrintWriter out) {
+		String[] code = this.code.substring(0, this.code.length() - 1).split("\n", -1);
+		out.println(this.key + " " + this.emitted.getName() + " " + this.emitted.getLabels() + " " + this.emitted.getBoundsChecks() + " " + this.emitted.getBoundsChecksRemoved() + " " + this.strings.size() + " " + this.refs.size() + " " + code.length);
+		for (String s : this.strings) {
+			out.println(s);
+		}
+		for (String s : this.refs) {
+			out.println(s);
+		}
+		for (String line : code) {
+			out.println(line);
+		}
+	}
+
+	/**
+	* @return what write wrote, or null at the end
+	*/
+	public static BPLCachedFunction read(BufferedReader in) throws IOException {
+		String line = in.readLine();
+		if (line == null) {
+			return null;
+		}
+		String[] counts = line.split(" ");
+		if (counts.length != 8) {
+			throw new IOException("Bad function entry " + line);
+		}
+		try {
+			BPLEmittedFunction emitted = new BPLEmittedFunction(counts[1], 0, Integer.parseInt(counts[2]), Integer.parseInt(counts[3]), Integer.parseInt(counts[4]));
+			ArrayList<String> strings = readLines(in, Integer.parseInt(counts[5]));
+			ArrayList<String> refs = readLines(in, Integer.parseInt(counts[6]));
+			StringBuilder code = new StringBuilder();
+			for (String codeLine : readLines(in, Integer.parseInt(counts[7]))) {
+				code.append(codeLine).append("\n");
+			}
+			return new BPLCachedFunction(counts[0], emitted, strings, refs, code.toString());
+		} catch (NumberFormatException e) {
+			throw new IOException("Bad function entry " + line);
+		}
+	}
+
+	private static ArrayList<String> readLines(BufferedReader in, int n) throws IOException {
+		ArrayList<String> lines = new ArrayList<String>();
+		for (int i = 0; i < n; i++) {
+			String line = in.readLine();
+			if (line == null) {
+				throw new IOException("Function entry cut short");
+			}
+			lines.add(line);
+		}
+		return lines;
+	}
+}
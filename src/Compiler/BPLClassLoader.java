@@ -0,0 +1,15 @@
+package Compiler;
+
+public class BPLClassLoader extends ClassLoader {
+	/**
+	* loads compiled BPL programs. each one gets its own loader, so they
+	* can all be named BPLProgram and are unloaded with it
+	*/
+	public BPLClassLoader() {
+		super(BPLClassLoader.class.getClassLoader());
+	}
+
+	public Class<?> defineProgram(String name, byte[] classFile) {
+		return this.defineClass(name, classFile, 0, classFile.length);
+	}
+}
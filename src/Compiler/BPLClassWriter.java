@@ -0,0 +1,217 @@
+package Compiler;
+
+import java.io.*;
+import java.util.*;
+
+public class BPLClassWriter {
+	public static final int ACC_PUBLIC = 0x0001;
+	public static final int ACC_STATIC = 0x0008;
+	public static final int ACC_FINAL = 0x0010;
+	public static final int ACC_SUPER = 0x0020;
+
+	/**
+	* the last version verified by type inference, so methods don't need stack map frames
+	*/
+	private static final int MAJOR_VERSION = 49;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_STRING = 8;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	private ByteArrayOutputStream pool;
+	private int poolCount;
+	private HashMap<String, Integer> poolIndexes;
+	private ByteArrayOutputStream fields;
+	private int fieldCount;
+	private ByteArrayOutputStream methods;
+	private int methodCount;
+	private int thisClass;
+	private int superClass;
+	private int sourceFile;
+	private int sourceFileAttribute;
+
+	/**
+	* builds a public class extending Object. constants are added to the pool
+	* the first time they are asked for, and the same index is handed out after
+	*/
+	public BPLClassWriter(String className, String sourceFile) {
+		this.pool = new ByteArrayOutputStream();
+		this.poolCount = 1;
+		this.poolIndexes = new HashMap<String, Integer>();
+		this.fields = new ByteArrayOutputStream();
+		this.fieldCount = 0;
+		this.methods = new ByteArrayOutputStream();
+		this.methodCount = 0;
+		this.thisClass = this.classRef(className);
+		this.superClass = this.classRef("java/lang/Object");
+		this.sourceFile = this.utf8(sourceFile);
+		this.sourceFileAttribute = this.utf8("SourceFile");
+	}
+
+	public int utf8(String s) {
+		String key = CONSTANT_UTF8 + ":" + s;
+		if (!this.poolIndexes.containsKey(key)) {
+			byte[] bytes = encode(s);
+			u1(this.pool, CONSTANT_UTF8);
+			u2(this.pool, bytes.length);
+			this.pool.write(bytes, 0, bytes.length);
+			this.poolIndexes.put(key, this.poolCount++);
+		}
+		return this.poolIndexes.get(key);
+	}
+
+	public int integer(int value) {
+		String key = CONSTANT_INTEGER + ":" + value;
+		if (!this.poolIndexes.containsKey(key)) {
+			u1(this.pool, CONSTANT_INTEGER);
+			u4(this.pool, value);
+			this.poolIndexes.put(key, this.poolCount++);
+		}
+		return this.poolIndexes.get(key);
+	}
+
+	/**
+	* @param name an internal name like java/lang/String, or an array descriptor
+	*/
+	public int classRef(String name) {
+		return this.reference(CONSTANT_CLASS, this.utf8(name), -1);
+	}
+
+	public int string(String s) {
+		return this.reference(CONSTANT_STRING, this.utf8(s), -1);
+	}
+
+	public int fieldRef(String owner, String name, String descriptor) {
+		return this.reference(CONSTANT_FIELDREF, this.classRef(owner), this.nameAndType(name, descriptor));
+	}
+
+	public int methodRef(String owner, String name, String descriptor) {
+		return this.reference(CONSTANT_METHODREF, this.classRef(owner), this.nameAndType(name, descriptor));
+	}
+
+	private int nameAndType(String name, String descriptor) {
+		return this.reference(CONSTANT_NAME_AND_TYPE, this.utf8(name), this.utf8(descriptor));
+	}
+
+	/**
+	* @param second -1 for constants that only refer to one other entry
+	*/
+	private int reference(int tag, int first, int second) {
+		String key = tag + ":" + first + ":" + second;
+		if (!this.poolIndexes.containsKey(key)) {
+			u1(this.pool, tag);
+			u2(this.pool, first);
+			if (second >= 0) {
+				u2(this.pool, second);
+			}
+			this.poolIndexes.put(key, this.poolCount++);
+		}
+		return this.poolIndexes.get(key);
+	}
+
+	public void addField(int access, String name, String descriptor) {
+		u2(this.fields, access);
+		u2(this.fields, this.utf8(name));
+		u2(this.fields, this.utf8(descriptor));
+		u2(this.fields, 0);
+		this.fieldCount++;
+	}
+
+	/**
+	* adds a method with code's instructions and line numbers
+	*/
+	public void addMethod(int access, String name, String descriptor, BPLBytecode code) throws BPLException {
+		byte[] instructions = code.toByteArray();
+		ArrayList<int[]> lines = code.getLineNumbers();
+		u2(this.methods, access);
+		u2(this.methods, this.utf8(name));
+		u2(this.methods, this.utf8(descriptor));
+		u2(this.methods, 1);
+
+		u2(this.methods, this.utf8("Code"));
+		u4(this.methods, 12 + instructions.length + 8 + 4 * lines.size());
+		u2(this.methods, code.getMaxStack());
+		u2(this.methods, code.getMaxLocals());
+		u4(this.methods, instructions.length);
+		this.methods.write(instructions, 0, instructions.length);
+		u2(this.methods, 0); // no exception handlers
+		u2(this.methods, 1);
+		u2(this.methods, this.utf8("LineNumberTable"));
+		u4(this.methods, 2 + 4 * lines.size());
+		u2(this.methods, lines.size());
+		for (int[] line : lines) {
+			u2(this.methods, line[0]);
+			u2(this.methods, line[1]);
+		}
+		this.methodCount++;
+	}
+
+	public byte[] toByteArray() throws BPLException {
+		if (this.poolCount > 0xFFFF) {
+			throw new BPLException("Too many constants for one class file");
+		}
+		ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+		u4(classFile, 0xCAFEBABE);
+		u2(classFile, 0);
+		u2(classFile, MAJOR_VERSION);
+		u2(classFile, this.poolCount);
+		write(classFile, this.pool);
+		u2(classFile, ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+		u2(classFile, this.thisClass);
+		u2(classFile, this.superClass);
+		u2(classFile, 0); // no interfaces
+		u2(classFile, this.fieldCount);
+		write(classFile, this.fields);
+		u2(classFile, this.methodCount);
+		write(classFile, this.methods);
+		u2(classFile, 1);
+		u2(classFile, this.sourceFileAttribute);
+		u4(classFile, 2);
+		u2(classFile, this.sourceFile);
+		return classFile.toByteArray();
+	}
+
+	/**
+	* the modified UTF-8 class files use, where \0 takes two bytes
+	*/
+	private static byte[] encode(String s) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c >= 0x01 && c <= 0x7F) {
+				u1(bytes, c);
+			} else if (c <= 0x7FF) {
+				u1(bytes, 0xC0 | (c >> 6));
+				u1(bytes, 0x80 | (c & 0x3F));
+			} else {
+				u1(bytes, 0xE0 | (c >> 12));
+				u1(bytes, 0x80 | ((c >> 6) & 0x3F));
+				u1(bytes, 0x80 | (c & 0x3F));
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	private static void write(ByteArrayOutputStream out, ByteArrayOutputStream bytes) {
+		byte[] array = bytes.toByteArray();
+		out.write(array, 0, array.length);
+	}
+
+	private static void u1(ByteArrayOutputStream out, int value) {
+		out.write(value);
+	}
+
+	private static void u2(ByteArrayOutputStream out, int value) {
+		out.write(value >> 8);
+		out.write(value);
+	}
+
+	private static void u4(ByteArrayOutputStream out, int value) {
+		u2(out, value >>> 16);
+		u2(out, value);
+	}
+}
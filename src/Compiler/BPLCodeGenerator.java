@@ -4,18 +4,145 @@ import java.util.*;
 import java.io.*;
 
 public class BPLCodeGenerator {
+	private static final String FRAME_POINTER = "%rbx";
+	private static final String LEAF_FRAME_POINTER = "%r12";
+
 	private BPLNode parseTreeHead;
 	private BPLTypeChecker typeChecker;
+	private BPLOptions options;
+	private PrintStream out;
+	private Set<String> functions;
 	private HashMap<String, String> stringMap;
+	private HashMap<BPLNode, Boolean> leafFunctions;
+	private HashMap<BPLNode, Boolean> frameEscapes;
+	private BPLInliner inliner;
+	private BPLConstantFolder folder;
+	private HashMap<BPLNode, BPLAnalysis> analyses;
+	private HashMap<BPLNode, String> registers;
+	private HashMap<BPLNode, ArrayList<String>> savedRegisters;
 	private int labelNum;
 
+	private BPLNode currFunDec;
+	private String framePointer;
+	private int paramOffset;
+	private boolean hasLocals;
+	private int bodyLabel;
+	private int saveBase;
+	private BPLAnalysis analysis;
+	private int tempBase;
+	private HashSet<Integer> storedTemps;
+	private ArrayList<String> boundsErrors;
+	private int boundsChecks;
+	private int boundsChecksRemoved;
+	private ArrayList<BPLEmittedFunction> emittedFunctions;
+
+	private HashMap<BPLNode, Integer> inlineSlots;
+	private int inlineBase;
+	private int inlineReturnLabel;
+
 	public BPLCodeGenerator(String fileName) throws FileNotFoundException, UnsupportedEncodingException, BPLException {
-		this.typeChecker = new BPLTypeChecker(fileName);
+		this(fileName, new BPLOptions());
+	}
+
+	public BPLCodeGenerator(String fileName, BPLOptions options) throws FileNotFoundException, UnsupportedEncodingException, BPLException {
+		this(fileName, options, System.out);
+	}
+
+	/**
+	* @param out where the assembly goes, so generators on other threads can write somewhere else
+	*/
+	public BPLCodeGenerator(String fileName, BPLOptions options, PrintStream out) throws FileNotFoundException, UnsupportedEncodingException, BPLException {
+		this(new BPLTypeChecker(fileName), options, out);
+	}
+
+	/**
+	* generates the code for a program that has been type checked
+	*/
+	public BPLCodeGenerator(BPLTypeChecker typeChecker, BPLOptions options, PrintStream out) throws BPLException {
+		this(typeChecker, options, out, null);
+	}
+
+	/**
+	* generates the header and only the functions named in functions, or
+	* all of them if it is null. the others are still analyzed if they can
+	* be inlined, so the functions generated are the same as in a full compile
+	*/
+	public BPLCodeGenerator(BPLTypeChecker typeChecker, BPLOptions options, PrintStream out, Set<String> functions) throws BPLException {
+		this.typeChecker = typeChecker;
 		this.parseTreeHead = this.typeChecker.getParseTreeHead();
+		this.options = options;
+		this.out = out;
+		this.functions = functions;
 		this.stringMap = new HashMap<String,String>();
+		this.leafFunctions = new HashMap<BPLNode, Boolean>();
+		this.frameEscapes = new HashMap<BPLNode, Boolean>();
+		this.inliner = new BPLInliner(options.inlineLimit());
+		this.folder = new BPLConstantFolder();
+		this.analyses = new HashMap<BPLNode, BPLAnalysis>();
+		this.registers = new HashMap<BPLNode, String>();
+		this.savedRegisters = new HashMap<BPLNode, ArrayList<String>>();
 		this.labelNum = 0;
+		this.currFunDec = null;
+		this.framePointer = FRAME_POINTER;
+		this.paramOffset = 16;
+		this.hasLocals = false;
+		this.bodyLabel = -1;
+		this.saveBase = 0;
+		this.analysis = null;
+		this.tempBase = 0;
+		this.storedTemps = new HashSet<Integer>();
+		this.boundsErrors = new ArrayList<String>();
+		this.boundsChecks = 0;
+		this.boundsChecksRemoved = 0;
+		this.emittedFunctions = new ArrayList<BPLEmittedFunction>();
+		this.inlineSlots = new HashMap<BPLNode, Integer>();
+		this.inlineBase = 0;
+		this.inlineReturnLabel = -1;
+		this.analyzeFunctions();
 		this.getDepthsAndHeader();
 		this.generateCode();
+		if (this.options.boundsCheck()) {
+			this.out.println("# bounds checks: " + this.boundsChecks + " emitted, " + this.boundsChecksRemoved + " removed");
+		}
+	}
+
+	/**
+	* @return the functions in the order they were emitted
+	*/
+	public ArrayList<BPLEmittedFunction> getEmittedFunctions() {
+		return this.emittedFunctions;
+	}
+
+	/**
+	* runs the dataflow analyses before the frames are laid out, so vars
+	* that live in registers don't get a slot and temps do
+	*/
+	private void analyzeFunctions() {
+		if (!this.options.registerVars() && !this.options.constantPropagation() && !this.options.valueNumbering() && !this.options.moveLoopInvariants() && !this.options.boundsCheck()) {
+			return;
+		}
+		for (BPLNode funDec : BPLAnalysis.getFunDecs(this.parseTreeHead)) {
+			if (!this.isGenerated(funDec) && !this.inliner.isInlinable(funDec)) {
+				continue;
+			}
+			BPLAnalysis analysis = new BPLAnalysis(funDec, this.options.boundsCheck());
+			this.analyses.put(funDec, analysis);
+			if (this.options.registerVars()) {
+				boolean makesCalls = this.containsFunCall(funDec.getChild(3), funDec, true);
+				BPLRegisterAllocator allocator = new BPLRegisterAllocator(analysis.getControlFlowGraph(), analysis.getLiveness(), makesCalls);
+				this.registers.putAll(allocator.getRegisters());
+				this.savedRegisters.put(funDec, allocator.getSavedRegisters());
+			}
+			if (this.options.constantPropagation()) {
+				this.folder.addConstants(analysis.getConstantPropagation().getNodeConstants());
+			}
+			if (this.options.moveLoopInvariants()) {
+				BPLLoopInvariants invariants = analysis.getLoopInvariants();
+				this.inliner.setTempSlots(funDec, invariants.getFirstTemp() + invariants.getTempCount());
+			} else if (this.options.valueNumbering()) {
+				this.inliner.setTempSlots(funDec, analysis.getValueNumbering().getTempCount());
+			}
+		}
 	}
 
 	private void getDepthsAndHeader() {
@@ -81,6 +208,10 @@ public class BPLCodeGenerator {
 		BPLNode varDec = localDecNode.getChild(0);
 
 		varDec.assignDepth(level);
+		if (this.registers.containsKey(varDec)) { // needs no slot
+			varDec.assignPosition(-1); // BPLIncremental reuses trees, which can have one from before
+			return this.handleLocalDecDepths(localDecNode.getChild(1), level, count);
+		}
 		int arraySize = this.getPosition(localDecNode.getChild(0));
 		count += arraySize;
 		varDec.assignPosition(count);	
@@ -134,15 +265,40 @@ public class BPLCodeGenerator {
 
 	private void handleGlobals(BPLNode decList) {
 		this.initializeGlobalVars(decList);
-		System.out.println(".section .rodata\n" + 
+		this.out.println(".section .rodata\n" + 
 			".WriteIntString: .string \"%d\"\n" + 
 			".WriteStringString: .string \"%s\"\n" + 
 			".WritelnString: .string \"\\n\"");
+		if (this.options.boundsCheck()) {
+			this.out.println(".BoundsString: .string \"line %d: array index %d out of bounds\\n\"");
+		}
 
 		this.initializeStringConstants();
 
-		System.out.println(".text \n" + 
+		this.out.println(".text \n" + 
 			".globl main\n");
+		if (this.options.boundsCheck()) {
+			this.genBoundsError();
+		}
+		BPLRuntime runtime = new BPLRuntime(this.out);
+		if (this.options.bufferedWrite()) {
+			runtime.genWriteRuntime();
+		}
+		runtime.genReadRuntime(this.options.bufferedWrite());
+	}
+
+	/**
+	* failed bounds checks jump here with the line in %edx and the index in %ecx
+	*/
+	private void genBoundsError() {
+		this.out.println(".BoundsError:");
+		this.print("andq $-16, %rsp", "align stack for call");
+		this.print("movq stderr, %rdi", "fprintf file = arg1");
+		this.print("movq $.BoundsString, %rsi", "fprintf string = arg2");
+		this.print("movl $0, %eax");
+		this.print("call fprintf");
+		this.print("movl $1, %edi", "exit status");
+		this.print("call exit");
 	}	
 
 	private void initializeGlobalVars(BPLNode decList) {
@@ -162,14 +318,14 @@ public class BPLCodeGenerator {
 			BPLIntegerNode intNode = (BPLIntegerNode) node.getChild(3);
 			spaceAl *= intNode.getInteger();
 		}
-		System.out.println(".comm " + name + ", " + spaceAl + ", 32");
+		this.out.println(".comm " + name + ", " + spaceAl + ", 32");
 	}
 
 	private void initializeStringConstants() {
 		ArrayList<String> strings = this.typeChecker.getStrings();
 		for (int i = 0; i < strings.size(); i++) {
 			String s = strings.get(i);
-			System.out.println(".Potato" + i + ": .string "  + s);
+			this.out.println(".Potato" + i + ": .string "  + s);
 			stringMap.put(s, ".Potato" + i);
 		}
 	}
@@ -182,7 +338,7 @@ public class BPLCodeGenerator {
 
 	private void genCodeDecList(BPLNode decListNode) {
 		BPLNode decNode = decListNode.getChild(0);
-		if (decNode.getChild(0).isType("FUN_DEC")) {
+		if (decNode.getChild(0).isType("FUN_DEC") && this.isGenerated(decNode.getChild(0))) {
 			this.genCodeFunDec(decNode.getChild(0));
 		}
 		if (decListNode.getChildrenSize() > 1) {
@@ -190,49 +346,245 @@ public class BPLCodeGenerator {
 		}
 	}
 
+	private boolean isGenerated(BPLNode funDecNode) {
+		return this.functions == null || this.functions.contains(((BPLVarNode) funDecNode.getChild(1)).getID());
+	}
+
+	/**
+	* the locals of every nested block are allocated once in the prologue,
+	* so blocks inside loops don't adjust %rsp on each iteration.
+	* leaf functions use %r12 as their frame pointer, so callers don't have
+	* to save %rbx and the arguments start right above the return address.
+	* callee saved registers holding vars are saved below the locals, then
+	* come the temps for reused results. params that live in registers are
+	* loaded before the body label.
+	*/
 	private void genCodeFunDec(BPLNode funDecNode) {
 		BPLVarNode idNode = (BPLVarNode) funDecNode.getChild(1);
-		System.out.println(idNode.getID() + ":");
-		this.print("movq %rsp, %rbx", "setup fp");
+		this.out.println(idNode.getID() + ":");
+		this.currFunDec = funDecNode;
+		int firstLabel = this.labelNum;
+		int boundsChecks = this.boundsChecks;
+		int boundsChecksRemoved = this.boundsChecksRemoved;
+
+		if (this.isLeaf(funDecNode)) {
+			this.framePointer = LEAF_FRAME_POINTER;
+			this.paramOffset = 8;
+		} else {
+			this.framePointer = FRAME_POINTER;
+			this.paramOffset = 16;
+		}
+
+		// inlined calls keep their params and locals below this function's
+		// locals and saved registers
+		ArrayList<String> saved = this.getSavedRegisters();
+		this.saveBase = this.getFrameSize(funDecNode.getChild(3)) / 8;
+		this.tempBase = this.saveBase + saved.size();
+		this.inlineBase = this.tempBase + this.inliner.getTempSlots(funDecNode);
+		this.analysis = this.analyses.get(funDecNode);
+		this.storedTemps = new HashSet<Integer>();
+		int space = 8 * (this.inlineBase + this.inliner.getInlineSlots(funDecNode.getChild(3)));
+		boolean hasParams = !funDecNode.getChild(2).getChild(0).isType("void");
+		this.hasLocals = space > 0;
+		if (hasParams || this.hasLocals) {
+			this.print("movq %rsp, " + this.framePointer, "setup fp");
+		}
+		if (this.hasLocals) {
+			this.print("subq $" + space + ", %rsp", "allocate local variables");
+		}
+		for (int i = 0; i < saved.size(); i++) {
+			this.print("movq " + saved.get(i) + ", " + this.getSlotAddress(this.saveBase + i), "save register");
+		}
+		for (BPLNode param : BPLInliner.getParams(funDecNode)) {
+			String register = this.registers.get(param);
+			if (register != null) {
+				int offset = this.paramOffset + 8 * param.getPosition();
+				this.print("movq " + offset + "(" + this.framePointer + "), " + register, "param to register");
+			}
+		}
+
+		// self tail calls jump back here after overwriting the params
+		this.bodyLabel = this.labelNum;
+		this.labelNum++;
+		this.out.println(".Meow" + this.bodyLabel + ":");
+
+		this.genCodeCompStatement(funDecNode.getChild(3));
+		if (!this.alwaysReturns(funDecNode.getChild(3))) {
+			this.genCodeEpilogue();
+		}
 
-		int space = this.genCodeCompStatement(funDecNode.getChild(3));
+		// failed bounds checks are out of the way of the code that runs
+		for (String boundsError : this.boundsErrors) {
+			this.out.println(boundsError);
+		}
+		this.boundsErrors.clear();
+		this.emittedFunctions.add(new BPLEmittedFunction(idNode.getID(), firstLabel, this.labelNum - firstLabel, this.boundsChecks - boundsChecks, this.boundsChecksRemoved - boundsChecksRemoved));
+	}
+
+	private void genCodeEpilogue() {
+		ArrayList<String> saved = this.getSavedRegisters();
+		for (int i = 0; i < saved.size(); i++) {
+			this.print("movq " + this.getSlotAddress(this.saveBase + i) + ", " + saved.get(i), "restore register");
+		}
+		if (this.hasLocals) {
+			this.print("movq " + this.framePointer + ", %rsp", "deallocate local variables");
+		}
 		this.print("ret");
 	}
 
-	private int genCodeCompStatement(BPLNode compStmtNode) {
-		int space = this.genCodeLocalDecs(compStmtNode.getChild(0));
+	private ArrayList<String> getSavedRegisters() {
+		ArrayList<String> saved = this.savedRegisters.get(this.currFunDec);
+		return (saved == null) ? new ArrayList<String>() : saved;
+	}
+
+	private void genCodeCompStatement(BPLNode compStmtNode) {
 		this.genCodeStatementList(compStmtNode.getChild(1));
-		this.print("addq $" + space + ", %rsp", "deallocate local variables");
-		return space;
 	}
 
-	private int genCodeLocalDecs(BPLNode localDecsNode) {
+	/**
+	* space needed for the deepest set of nested local declarations
+	*/
+	private int getFrameSize(BPLNode node) {
 		int space = 0;
-		if (!localDecsNode.isType("<empty>")) {
-			space = this.getSpaceLocalDecs(localDecsNode);
-			this.print("subq $" + space + ", %rsp", "allocate local variables");
+		if (node.isType("VAR_DEC")) {
+			space = 8 + 8 * node.getPosition();
+		}
+		for (BPLNode child : node.getChildren()) {
+			space = Math.max(space, this.getFrameSize(child));
 		}
 		return space;
 	}
 
-	private int getSpaceLocalDecs(BPLNode localDecsNode) {
-		if (localDecsNode.getType().equals("<empty>")) {
-			return 0;
+	/**
+	* a leaf function makes no calls, so it can't clobber its caller's %rbx.
+	* main is called from the C runtime and keeps the normal convention.
+	*/
+	private boolean isLeaf(BPLNode funDecNode) {
+		if (!this.options.leafFunctions()) {
+			return false;
+		}
+		if (!this.leafFunctions.containsKey(funDecNode)) {
+			String id = ((BPLVarNode) funDecNode.getChild(1)).getID();
+			boolean leaf = !id.equals("main") && !this.containsFunCall(funDecNode.getChild(3), funDecNode, false);
+			this.leafFunctions.put(funDecNode, leaf);
 		}
+		return this.leafFunctions.get(funDecNode);
+	}
 
-		BPLNode varDecNode = localDecsNode.getChild(0);
+	/**
+	* @param runtimeCalls whether write and read count, since they call into the runtime
+	*/
+	private boolean containsFunCall(BPLNode node, BPLNode funDecNode, boolean runtimeCalls) {
+		if (runtimeCalls && (node.isType("WRITE_STMT") || node.isType("READ"))) {
+			return true;
+		}
+		if (node.isType("FUN_CALL")) {
+			BPLNode callee = node.getChild(0).getDeclaration();
+			if (!this.inliner.isInlinable(callee)) {
+				return true;
+			}
+			return this.containsFunCall(node.getChild(1), funDecNode, runtimeCalls) || this.containsFunCall(callee.getChild(3), callee, runtimeCalls);
+		}
+		if (node.isType("RETURN_STMT")) {
+			BPLNode tailCall = this.getTailCall(node, funDecNode);
+			if (tailCall != null) { // becomes a jump, only the args can make calls
+				return this.containsFunCall(tailCall.getChild(1), funDecNode, runtimeCalls);
+			}
+		}
+		for (BPLNode child : node.getChildren()) {
+			if (this.containsFunCall(child, funDecNode, runtimeCalls)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	* @return the FUN_CALL node if the return statement is just a call to funDecNode itself
+	* @return null otherwise
+	*/
+	private BPLNode getTailCall(BPLNode returnNode, BPLNode funDecNode) {
+		if (!this.options.tailCalls() || returnNode.getChildrenSize() == 0 || this.inlineReturnLabel >= 0) {
+			return null;
+		}
+		BPLNode node = returnNode.getChild(0);
+		if (!node.getChild(0).isType("COMP_EXP") || !node.getChild(0).isChildrenSize(1)) {
+			return null;
+		}
+		node = node.getChild(0).getChild(0); // E
+		while (!node.isType("F")) { // E and T with a single child
+			if (!node.isChildrenSize(1)) {
+				return null;
+			}
+			node = node.getChild(0);
+		}
+		if (!node.getChild(0).isType("FACTOR") || !node.getChild(0).getChild(0).isType("FUN_CALL")) {
+			return null;
+		}
+		BPLNode funCall = node.getChild(0).getChild(0);
+		if (funCall.getChild(0).getDeclaration() != funDecNode || this.frameEscapes(funDecNode)) {
+			return null;
+		}
+		return funCall;
+	}
+
+	/**
+	* a tail call reuses the frame, so it can't be a jump if a pointer into
+	* the frame may still be used: one made with & of a param or local, or
+	* a local array, which is passed as a pointer to it
+	*/
+	private boolean frameEscapes(BPLNode funDecNode) {
+		if (!this.frameEscapes.containsKey(funDecNode)) {
+			HashSet<BPLNode> frameVars = new HashSet<BPLNode>(BPLInliner.getParams(funDecNode));
+			this.frameEscapes.put(funDecNode, this.containsFrameAddress(funDecNode.getChild(3), frameVars));
+		}
+		return this.frameEscapes.get(funDecNode);
+	}
+
+	/**
+	* @param frameVars the params, with each local added as it's found,
+	* since a local is declared before it can be used
+	*/
+	private boolean containsFrameAddress(BPLNode node, HashSet<BPLNode> frameVars) {
+		if (node.isType("VAR_DEC")) {
+			if (node.getChildrenSize() == 5) { // local array
+				return true;
+			}
+			frameVars.add(node);
+		} else if (node.isType("F") && node.getChild(0).isType("&") && frameVars.contains(node.getChild(1).getChild(0).getDeclaration())) {
+			return true;
+		}
+		for (BPLNode child : node.getChildren()) {
+			if (this.containsFrameAddress(child, frameVars)) {
+				return true;
+			}
+		}
+		return false;
+	}
 
-		int rtn;
-		if (varDecNode.getChildrenSize() == 2) { // int or string
-			rtn = 8;
-		} else if (varDecNode.getChildrenSize() == 3) { // pointer
-			rtn = 8;
-		} else { // array
-			int size = ((BPLIntegerNode) varDecNode.getChild(3)).getInteger();
-			rtn = (8 * size);
+	/**
+	* address of a param or local var relative to the frame pointer,
+	* or the register it lives in
+	*/
+	private String getVarAddress(BPLNode varDecNode) {
+		int offset;
+		if (this.inlineSlots.containsKey(varDecNode)) {
+			return this.getSlotAddress(this.inlineSlots.get(varDecNode));
+		} else if (this.registers.containsKey(varDecNode)) {
+			return this.registers.get(varDecNode);
+		} else if (varDecNode.getDepth() == 1) {
+			offset = this.paramOffset + 8 * varDecNode.getPosition();
+		} else {
+			offset = -8 - 8 * varDecNode.getPosition();
 		}
+		return offset + "(" + this.framePointer + ")";
+	}
 
-		return this.getSpaceLocalDecs(localDecsNode.getChild(1)) + rtn;
+	/**
+	* address of the nth 8 byte slot below the frame pointer
+	*/
+	private String getSlotAddress(int slot) {
+		return (-8 - 8 * slot) + "(" + this.framePointer + ")";
 	}
 
 	private void genCodeStatementList(BPLNode stmtListNode) {
@@ -246,6 +598,9 @@ public class BPLCodeGenerator {
 
 	private void genCodeStatement(BPLNode statementNode) {
 		BPLNode statementChildNode = statementNode.getChild(0);
+		if (this.isDead(statementChildNode)) {
+			return;
+		}
 
 		if (statementChildNode.isType("WRITE_STMT")) {
 			this.genCodeWrite(statementChildNode);
@@ -262,7 +617,64 @@ public class BPLCodeGenerator {
 		}
 	}
 
+	/**
+	* @return true if constant propagation found the statement never runs
+	*/
+	private boolean isDead(BPLNode statementChildNode) {
+		if (this.analysis == null || !this.options.constantPropagation()) {
+			return false;
+		}
+		BPLNode instruction = statementChildNode;
+		if (statementChildNode.isType("IF_STMT") || statementChildNode.isType("WHILE_STMT")) {
+			instruction = statementChildNode.getChild(0);
+		}
+		return this.analysis.getConstantPropagation().isDead(instruction);
+	}
+
+	/**
+	* @return true if the code for a statement, or the statement in a
+	* STATEMENT node, never falls through to what comes after it, since
+	* every way through it ends in a return
+	*/
+	private boolean alwaysReturns(BPLNode node) {
+		if (node.isType("STATEMENT")) {
+			node = node.getChild(0);
+			if (this.isDead(node)) {
+				return false;
+			}
+		}
+		if (node.isType("RETURN_STMT")) {
+			return true;
+		} else if (node.isType("COMPOUND_STMT")) {
+			for (BPLNode list = node.getChild(1); !list.isType("<empty>"); list = list.getChild(1)) {
+				if (this.alwaysReturns(list.getChild(0))) {
+					return true;
+				}
+			}
+		} else if (node.isType("IF_STMT")) {
+			boolean hasElse = node.getChildrenSize() > 2;
+			Integer condition = this.folder.getConstant(node.getChild(0));
+			if (condition != null && condition != 0) { // only the branch that runs
+				return this.alwaysReturns(node.getChild(1));
+			} else if (condition != null) {
+				return hasElse && this.alwaysReturns(node.getChild(2));
+			}
+			return hasElse && this.alwaysReturns(node.getChild(1)) && this.alwaysReturns(node.getChild(2));
+		}
+		return false;
+	}
+
 	private void genCodeIfStatement(BPLNode ifNode) {
+		Integer condition = this.folder.getConstant(ifNode.getChild(0));
+		if (condition != null) { // only the branch that runs
+			if (condition != 0) {
+				this.genCodeStatement(ifNode.getChild(1));
+			} else if (ifNode.getChildrenSize() > 2) {
+				this.genCodeStatement(ifNode.getChild(2));
+			}
+			return;
+		}
+
 		this.genCodeExpression(ifNode.getChild(0));
 		this.print("cmpl $0, %eax", "if statement");
 		int label1 = this.labelNum;
@@ -271,37 +683,132 @@ public class BPLCodeGenerator {
 		this.labelNum++;
 		this.print("je .Meow" + label1);
 		this.genCodeStatement(ifNode.getChild(1));
-		this.print("jmp .Meow" + label2);
-		System.out.println(".Meow" + label1 + ":");
+		if (!this.alwaysReturns(ifNode.getChild(1))) {
+			this.print("jmp .Meow" + label2);
+		}
+		this.out.println(".Meow" + label1 + ":");
 
 		if (ifNode.getChildrenSize() > 2) {
 			this.genCodeStatement(ifNode.getChild(2));
 		}
 
-		System.out.println(".Meow" + label2 + ":");
+		this.out.println(".Meow" + label2 + ":");
 	}
 
+	/**
+	* loop invariants are computed before the loop. the ones that could fault
+	* are only computed once the condition is true, so then the condition is
+	* tested once before them and the loop is entered past its own test
+	*/
 	private void genCodeWhileStatement(BPLNode whileNode) {
+		Integer condition = this.folder.getConstant(whileNode.getChild(0));
+		if (condition != null && condition == 0) {
+			return;
+		}
+
 		int label1 = this.labelNum;
 		this.labelNum++;
 		int label2 = this.labelNum;
 		this.labelNum++;		
-		System.out.println(".Meow" + label1 + ":");
-		this.genCodeExpression(whileNode.getChild(0));
-		this.print("cmpl $0, %eax", "while statement");
-		this.print("je .Meow" + label2);
+		ArrayList<BPLNode> guarded = new ArrayList<BPLNode>();
+		if (this.analysis != null && this.options.moveLoopInvariants()) {
+			this.genCodeHoisted(this.analysis.getLoopInvariants().getHoisted(whileNode, false));
+			guarded = this.analysis.getLoopInvariants().getHoisted(whileNode, true);
+		}
+		int label3 = -1;
+		if (condition != null) {
+			this.genCodeHoisted(guarded);
+		} else if (!guarded.isEmpty()) {
+			label3 = this.labelNum;
+			this.labelNum++;
+			this.genCodeExpression(whileNode.getChild(0));
+			this.print("cmpl $0, %eax", "while statement");
+			this.print("je .Meow" + label2);
+			this.genCodeHoisted(guarded);
+			this.print("jmp .Meow" + label3);
+		}
+		this.out.println(".Meow" + label1 + ":");
+		if (condition == null) {
+			this.genCodeExpression(whileNode.getChild(0));
+			this.print("cmpl $0, %eax", "while statement");
+			this.print("je .Meow" + label2);
+		}
+		if (label3 >= 0) {
+			this.out.println(".Meow" + label3 + ":");
+		}
 		this.genCodeStatement(whileNode.getChild(1));
 		this.print("jmp .Meow" + label1);
-		System.out.println(".Meow" + label2 + ":");
+		this.out.println(".Meow" + label2 + ":");
+	}
+
+	/**
+	* computes loop invariants into their temps
+	*/
+	private void genCodeHoisted(ArrayList<BPLNode> hoisted) {
+		BPLLoopInvariants invariants = this.analysis.getLoopInvariants();
+		for (BPLNode node : hoisted) {
+			boolean address = invariants.getTemp(node, true) >= 0;
+			if (address) {
+				BPLNode idNode = node.getChild(0);
+				BPLNode varDec = node.isType("VAR") ? node.getDeclaration() : idNode.getDeclaration();
+				this.genCodeElementAddress(node, varDec, ((BPLVarNode) idNode).getID());
+			} else if (this.folder.getConstant(node) != null) {
+				continue; // folded where it is used
+			} else if (node.isType("COMP_EXP")) {
+				this.genCodeCompExp(node);
+			} else if (node.isType("E")) {
+				this.genCodeENode(node);
+			} else if (node.isType("T")) {
+				this.genCodeTNode(node);
+			} else if (node.isType("F")) {
+				this.genCodeFNode(node);
+			} else {
+				this.genCodeFactorNode(node);
+			}
+			int temp = invariants.getTemp(node, address);
+			this.print("movq %rax, " + this.getSlotAddress(this.tempBase + temp), "loop invariant");
+			this.storedTemps.add(temp);
+		}
 	}
 
 	private void genCodeReturnStatement(BPLNode returnNode) {
-		this.print("movq %rbx, %rsp", "return");
+		BPLNode tailCall = this.getTailCall(returnNode, this.currFunDec);
+		if (tailCall != null) {
+			this.genCodeTailCall(tailCall);
+			return;
+		}
+
+		// the value is computed before the locals are deallocated,
+		// otherwise the pushes made while evaluating it overwrite them
 		if (returnNode.getChildrenSize() > 0) {
 			this.genCodeExpression(returnNode.getChild(0));
 		}
+		if (this.inlineReturnLabel >= 0) {
+			this.print("jmp .Meow" + this.inlineReturnLabel, "return from inlined call");
+			return;
+		}
+		this.genCodeEpilogue();
+	}
 
-		this.print("ret");
+	/**
+	* all the args are pushed before any param is overwritten,
+	* since they can still read the old param values
+	*/
+	private void genCodeTailCall(BPLNode funCallNode) {
+		BPLNode args = funCallNode.getChild(1);
+		if (args.getChild(0).isType("ARG_LIST")) {
+			this.genCodeFunCallArgs(args.getChild(0));
+			BPLNode paramList = this.currFunDec.getChild(2).getChild(0);
+			while (true) {
+				this.print("pop %rax", "tail call argument");
+				this.print("movq %rax, " + this.getVarAddress(paramList.getChild(0)));
+				if (paramList.getChildrenSize() < 2) {
+					break;
+				}
+				paramList = paramList.getChild(1);
+			}
+		}
+		this.print("jmp .Meow" + this.bodyLabel, "tail call");
 	}
 
 	private void genCodeWrite(BPLNode writeNode) {
@@ -311,12 +818,27 @@ public class BPLCodeGenerator {
 			return;
 		}
 
+		if (this.options.bufferedWrite()) {
+			this.print("call .WriteNewline", "writeln");
+			return;
+		}
 		this.print("movq " + print + ", %rdi", "printf string = arg1");
 		this.print("movl $0, %eax", "clear return value");
-		System.out.println("\tcall printf \t\t# call printf");
+		this.out.println("\tcall printf \t\t# call printf");
 	}
 
 	private void genCodeWriteHelper(BPLNode writeExpNode) {
+		if (this.options.bufferedWrite()) {
+			this.genCodeExpression(writeExpNode);
+			if (writeExpNode.getEvalType().equals(BPLTypeChecker.TYPE_STRING)) {
+				this.print("movq %rax, %rdi", "string to write");
+				this.print("call .WriteString");
+			} else {
+				this.print("movl %eax, %edi", "int to write");
+				this.print("call .WriteInt");
+			}
+			return;
+		}
 		if (writeExpNode.getEvalType().equals(BPLTypeChecker.TYPE_STRING)) {
 			this.genCodeExpression(writeExpNode);
 			this.print("movq %rax, %rsi", "putting string to print to arg2");
@@ -337,6 +859,9 @@ public class BPLCodeGenerator {
 	}
 
 	private void genCodeExpression(BPLNode expNode) {
+		if (this.genCodeConstant(expNode)) {
+			return;
+		}
 		if (expNode.getChild(0).isType("COMP_EXP")) {
 			this.genCodeCompExp(expNode.getChild(0));
 		} else {
@@ -344,12 +869,68 @@ public class BPLCodeGenerator {
 		}
 	}
 
+	/**
+	* puts the value of node in the ac if it is known at compile time
+	* @return true if it was
+	*/
+	private boolean genCodeConstant(BPLNode node) {
+		Integer value = this.folder.getConstant(node);
+		if (value == null) {
+			return false;
+		}
+		this.print("movq $" + value + ", %rax", "constant");
+		return true;
+	}
+
+	/**
+	* puts the result of an earlier identical computation in the ac, either
+	* a loop invariant or one found by value numbering
+	* @param address whether node's element address is wanted rather than its value
+	* @return true if one has been saved
+	*/
+	private boolean genCodeReuse(BPLNode node, boolean address) {
+		if (this.analysis == null) {
+			return false;
+		}
+		int temp = -1;
+		if (this.options.moveLoopInvariants()) {
+			temp = this.analysis.getLoopInvariants().getTemp(node, address);
+		}
+		if ((temp < 0 || !this.storedTemps.contains(temp)) && this.options.valueNumbering()) { // not computed yet if it is being hoisted
+			temp = this.analysis.getValueNumbering().getLoadTemp(node, address);
+		}
+		if (temp < 0 || !this.storedTemps.contains(temp)) { // folded away where it was first computed
+			return false;
+		}
+		this.print("movq " + this.getSlotAddress(this.tempBase + temp) + ", %rax", "reuse earlier result");
+		return true;
+	}
+
+	/**
+	* saves the ac if a later identical computation reuses it
+	*/
+	private void genCodeSaveForReuse(BPLNode node, boolean address) {
+		if (this.analysis == null || !this.options.valueNumbering()) {
+			return;
+		}
+		int temp = this.analysis.getValueNumbering().getStoreTemp(node, address);
+		if (temp >= 0) {
+			this.print("movq %rax, " + this.getSlotAddress(this.tempBase + temp), "save for reuse");
+			this.storedTemps.add(temp);
+		}
+	}
+
 	private void genCodeCompExp(BPLNode compExpNode) {	
-		this.genCodeENode(compExpNode.getChild(0));
 		if (compExpNode.getChildrenSize() == 1) {
+			this.genCodeENode(compExpNode.getChild(0));
+			return;
+		}
+		if (this.genCodeReuse(compExpNode, false)) {
 			return;
 		}
 
+		this.genCodeENode(compExpNode.getChild(0));
+
 		this.print("push %rax", "comparison");
 		this.genCodeENode(compExpNode.getChild(2));
 		BPLNode relop = compExpNode.getChild(1);
@@ -373,10 +954,11 @@ public class BPLCodeGenerator {
 		this.labelNum++;
 		this.print("movl $0, %eax");
 		this.print("jmp .Meow" + label2);
-		System.out.println(".Meow" + label1 + ":");
+		this.out.println(".Meow" + label1 + ":");
 		this.print("movl $1, %eax");
-		System.out.println(".Meow" + label2 + ":");
+		this.out.println(".Meow" + label2 + ":");
 		this.print("addq $8, %rsp", "restore stack");
+		this.genCodeSaveForReuse(compExpNode, false);
 	}
 
 	private void genCodeAssignment(BPLNode expNode) {
@@ -403,9 +985,7 @@ public class BPLCodeGenerator {
 	private void genCodeAssignmentGlobals(BPLNode varNode, BPLNode varDecNode, String id) {
 		if (varDecNode.getChildrenSize() == 5) { // array
 			this.print("push %rax");
-			this.genCodeExpression(varNode.getChild(2));
-			this.print("imul $8, %eax");
-			this.print("addq $" + id + ", %rax");
+			this.genCodeElementAddress(varNode, varDecNode, id);
 			this.print("movq %rax, %rdx");
 			this.print("pop %rax");
 			this.print("movq %rax, 0(%rdx)", "assignment val to global array " + id);
@@ -418,50 +998,48 @@ public class BPLCodeGenerator {
 	}
 
 	private void genCodeAssignmentParams(BPLNode varNode, BPLNode varDecNode, String id) {
-		int position = 16 + 8 * varDecNode.getPosition();
+		String address = this.getVarAddress(varDecNode);
 		if (varDecNode.getChildrenSize() > 3) { // array
 			this.print("push %rax");
-			this.print("movq " + position + "(%rbx), %rdi");
-			this.print("push %rdi");
-			this.genCodeExpression(varNode.getChild(2));
-			this.print("imul $8, %rax");
-			this.print("pop %rdi");
-			this.print("addq %rdi, %rax");
-			this.print("pop %rdi");
-			this.print("movq %rdi, 0(%rax)", "assign val to param array " + id);
+			this.genCodeElementAddress(varNode, varDecNode, id);
+			this.print("movq %rax, %rdx");
+			this.print("pop %rax");
+			this.print("movq %rax, 0(%rdx)", "assign val to param array " + id);
 		} else if (varDecNode.getChildrenSize() > 2 && varNode.getChildrenSize() > 1) { // pointer
-			this.print("movq " + position + "(%rbx), %rdx", "assigning value to pointer " + id);
+			this.print("movq " + address + ", %rdx", "assigning value to pointer " + id);
             this.print("movq %rax, 0(%rdx)");
 		} else {
-			this.print("movq %rax, " + position + "(%rbx)", "assignment to param " + id);
+			this.print("movq %rax, " + address, "assignment to param " + id);
 		}
 	}
 
 	private void genCodeAssignmentLocals(BPLNode varNode, BPLNode varDecNode, String id) {
-		int position = -8 - 8 * varDecNode.getPosition();
+		String address = this.getVarAddress(varDecNode);
 		if (varDecNode.getChildrenSize() == 5) { // array
 			this.print("push %rax");
-			this.print("leaq " + position + "(%rbx), %rdi");
-			this.print("push %rdi");
-			this.genCodeExpression(varNode.getChild(2));
-			this.print("imul $8, %rax");
-			this.print("pop %rdi");
-			this.print("addq %rdi, %rax");
-			this.print("pop %rdi");
-			this.print("movq %rdi, 0(%rax)", "assign val to local array " + id);
+			this.genCodeElementAddress(varNode, varDecNode, id);
+			this.print("movq %rax, %rdx");
+			this.print("pop %rax");
+			this.print("movq %rax, 0(%rdx)", "assign val to local array " + id);
 		} else if (varDecNode.getChildrenSize() > 2 && varNode.getChildrenSize() > 1) { // pointer
-			this.print("movq " + position + "(%rbx), %rdx", "assigning value to local pointer " + id);
+			this.print("movq " + address + ", %rdx", "assigning value to local pointer " + id);
             this.print("movq %rax, 0(%rdx)");
 		} else {
-			this.print("movq %rax, " + position + "(%rbx)", "assignment to local var " + id);
+			this.print("movq %rax, " + address, "assignment to local var " + id);
 		}
 	}
 
 	private void genCodeENode(BPLNode eNode) {
+		if (this.genCodeConstant(eNode)) {
+			return;
+		}
 		if (eNode.getChildrenSize() == 1) {
 			this.genCodeTNode(eNode.getChild(0));
 			return;
 		}
+		if (this.genCodeReuse(eNode, false)) {
+			return;
+		}
 		this.genCodeTNode(eNode.getChild(2));
 		this.print("push %rax", "addop");
 		this.genCodeENode(eNode.getChild(0));
@@ -474,13 +1052,20 @@ public class BPLCodeGenerator {
 		}
 
 		this.print("addq $8, %rsp", "pop off stack");
+		this.genCodeSaveForReuse(eNode, false);
 	}	
 
 	private void genCodeTNode(BPLNode tNode) {
+		if (this.genCodeConstant(tNode)) {
+			return;
+		}
 		if (tNode.getChildrenSize() == 1) {
 			this.genCodeFNode(tNode.getChild(0));
 			return;
 		}
+		if (this.genCodeReuse(tNode, false)) {
+			return;
+		}
 
 		this.genCodeFNode(tNode.getChild(2));
 		BPLNode mulop = tNode.getChild(1);
@@ -490,8 +1075,9 @@ public class BPLCodeGenerator {
 			this.print("imul 0(%rsp), %eax", "multiplication with top of stack");
 			this.print("addq $8, %rsp", "pop off stack");
 		} else {
-			this.print("movl %eax, %ebp", "divisor to ebp");
+			this.print("push %rax", "divisor");
 			this.genCodeTNode(tNode.getChild(0));
+			this.print("pop %rbp", "divisor to ebp, after the left side, which can divide too");
 			this.print("cltq");
 			this.print("cqto");
 			this.print("idivl %ebp");
@@ -499,9 +1085,13 @@ public class BPLCodeGenerator {
 				this.print("movl %edx, %eax", "remainder to eax");
 			}
 		} 
+		this.genCodeSaveForReuse(tNode, false);
 	}
 
 	private void genCodeFNode(BPLNode fNode) {
+		if (this.genCodeConstant(fNode)) { // also reads of params bound by genCodeInlineCall
+			return;
+		}
 		BPLNode fChild = fNode.getChild(0);
 		if (fChild.isType("FACTOR")) {
 			this.genCodeFactorNode(fNode.getChild(0));
@@ -509,59 +1099,111 @@ public class BPLCodeGenerator {
 			this.genCodeFNode(fNode.getChild(1));
 			this.print("neg %eax");
 		} else if (fChild.isType("*")) {
+			if (this.genCodeReuse(fNode, false)) {
+				return;
+			}
 			this.genCodeFactorNode(fNode.getChild(1));
 			this.print("movq 0(%rax), %rax", "dereference pointer");
+			this.genCodeSaveForReuse(fNode, false);
 		} else {
 			this.genCodeAmpersand(fNode.getChild(1));
 		}
 	}
 
 	private void genCodeAmpersand(BPLNode factorNode) {
-		BPLNode idNode = factorNode.getChild(0);
-		if (!idNode.isType("ID")) {
-			System.err.println("You can only dereference a var or array entry!");
-			System.exit(1);
-		}
-
+		BPLNode idNode = factorNode.getChild(0); // the type checker only allows & of a var or array entry
 		String id = ((BPLVarNode) idNode).getID();
 		BPLNode varDecNode = idNode.getDeclaration();
 
+		if (factorNode.getChildrenSize() > 1) { // ampersand of array entry
+			this.genCodeElementAddress(factorNode, varDecNode, id);
+		} else if (varDecNode.getDepth() == 0) {
+			this.print("leaq " + id + ", %rax", "getting address of var " + id);
+		} else {
+			String address = this.getVarAddress(varDecNode);
+			this.print("leaq " + address + ", %rax", "getting address of var " + id);
+		}
+	}
+
+	/**
+	* puts the address of the array element node indexes in the ac.
+	* node is an indexed VAR or FACTOR
+	*/
+	private void genCodeElementAddress(BPLNode node, BPLNode varDecNode, String id) {
+		if (this.genCodeReuse(node, true)) {
+			return;
+		}
 		if (varDecNode.getDepth() == 0) {
-			if (varDecNode.getChildrenSize() > 3) {
-				this.genCodeExpression(factorNode.getChild(2));
-				this.print("imul $8, %eax");
-				this.print("addq $" + id + ", %rax");
-			} else {
-				this.print("leaq " + id + ", %rax", "getting address of var " + id);
-			}
+			this.genCodeExpression(node.getChild(2));
+			this.genCodeBoundsCheck(node, varDecNode, id);
+			this.print("imul $8, %eax");
+			this.print("addq $" + id + ", %rax");
 		} else {
-			int position = varDecNode.getPosition();
-			if (varDecNode.getDepth() == 1) {
-				position = 16 + 8 * position;
+			String address = this.getVarAddress(varDecNode);
+			if (varDecNode.getDepth() == 1) { // array params hold a pointer
+				this.print("movq " + address + ", %rdi");
 			} else {
-				position = -8 - 8 * position;
+				this.print("leaq " + address + ", %rdi");
 			}
-			if (varDecNode.getChildrenSize() > 3) { // ampersand of array entry
-				this.print("leaq " + position + "(%rbx), %rdi");
-				this.print("push %rdi");
-				this.genCodeExpression(factorNode.getChild(2));
-				this.print("imul $8, %rax");
-				this.print("pop %rdi");
-				this.print("addq %rdi, %rax");
-			} else { 
-				this.print("leaq " + position + "(%rbx), %rax", "getting address of var " + id);
+			this.print("push %rdi");
+			this.genCodeExpression(node.getChild(2));
+			if (this.folder.getConstant(node.getChild(2)) == null) {
+				// 64 bit adds can leave the high half of rax set, and the address uses all of it
+				this.print("cltq", "sign extend the index");
 			}
+			this.genCodeBoundsCheck(node, varDecNode, id);
+			this.print("imul $8, %rax");
+			this.print("pop %rdi");
+			this.print("addq %rdi, %rax");
+		}
+		this.genCodeSaveForReuse(node, true);
+	}
+
+	/**
+	* checks the index in the ac against the declared size of the array.
+	* an unsigned compare catches negative indexes too
+	*/
+	private void genCodeBoundsCheck(BPLNode node, BPLNode varDecNode, String id) {
+		int size = BPLRangeAnalysis.getArraySize(varDecNode);
+		if (!this.options.boundsCheck() || size < 0) {
+			return;
+		}
+		Integer index = this.folder.getConstant(node.getChild(2));
+		if ((index != null && index >= 0 && index < size) || (this.analysis != null && this.analysis.getRangeAnalysis().isInBounds(node))) {
+			this.boundsChecksRemoved++;
+			return;
 		}
+		int label = this.labelNum;
+		this.labelNum++;
+		this.print("cmpl $" + size + ", %eax", "bounds check " + id);
+		this.print("jae .Meow" + label);
+		this.boundsChecks++;
+		this.boundsErrors.add(".Meow" + label + ":\n\tmovl %eax, %ecx\n\tmovl $" + node.getLineNumber() + ", %edx\n\tjmp .BoundsError");
+	}
+
+	/**
+	* loads the array element factorNode indexes into the ac
+	*/
+	private void genCodeElement(BPLNode factorNode, BPLNode varDecNode, String id) {
+		if (this.genCodeReuse(factorNode, false)) {
+			return;
+		}
+		this.genCodeElementAddress(factorNode, varDecNode, id);
+		this.print("movq 0(%rax), %rax", "array " + id + " entry to ac");
+		this.genCodeSaveForReuse(factorNode, false);
 	}
 
 	private void genCodeFactorNode(BPLNode factorNode) {
+		if (this.genCodeConstant(factorNode)) {
+			return;
+		}
 		BPLNode factorChild = factorNode.getChild(0);
 		if (factorChild.isType("EXPRESSION")) {
 			this.genCodeExpression(factorChild);
 		} else if (factorChild.isType("FUN_CALL")) {
 			this.genCodeFunCall(factorChild);
 		} else if (factorChild.isType("READ")) {
-
+			this.print("call .ReadInt", "read an int into ac");
 		} else if (factorChild.isType("INTEGER")) {
 			int val = ((BPLIntegerNode) factorChild).getInteger();
 			this.print("movq $" + val + ", %rax", "putting value into ac");
@@ -587,10 +1229,7 @@ public class BPLCodeGenerator {
 
 	private void genCodeFactorGlobals(BPLNode factorNode, BPLNode varDecNode, String id) {
 		if (varDecNode.getChildrenSize() == 5 && factorNode.getChildrenSize() >= 2) {
-			this.genCodeExpression(factorNode.getChild(2));
-			this.print("imul $8, %eax");
-			this.print("addq $" + id + ", %rax");
-			this.print("movq 0(%rax), %rax", "assign element in " + id + " to ac");
+			this.genCodeElement(factorNode, varDecNode, id);
 		} else if (varDecNode.getChildrenSize() == 5) {
 			this.print("leaq " + id + ", %rax", "global " + id + " to ac");
 		} else {
@@ -599,36 +1238,24 @@ public class BPLCodeGenerator {
 	}
 
 	private void genCodeFactorParams(BPLNode factorNode, BPLNode varDecNode, String id) {
-		int position = 16 + 8 * varDecNode.getPosition();
+		String address = this.getVarAddress(varDecNode);
 
 		if (varDecNode.getChildrenSize() > 3 && factorNode.getChildrenSize() >= 2) { // array
-			this.print("movq " + position + "(%rbx), %rdi");
-			this.print("push %rdi");
-			this.genCodeExpression(factorNode.getChild(2));
-			this.print("imul $8, %rax");
-			this.print("pop %rdi");
-			this.print("addq %rdi, %rax");
-			this.print("movq 0(%rax), %rax", "local array " + id + " entry to ac");
+			this.genCodeElement(factorNode, varDecNode, id);
 		} else {
-			this.print("movq " + position + "(%rbx), %rax", "param " + id + " to ac");
+			this.print("movq " + address + ", %rax", "param " + id + " to ac");
 		}
 	}
 
 	private void genCodeFactorLocal(BPLNode factorNode, BPLNode varDecNode, String id) {
-		int position = -8 - 8 * varDecNode.getPosition();
+		String address = this.getVarAddress(varDecNode);
 
 		if (varDecNode.getChildrenSize() == 5 && factorNode.getChildrenSize() >= 2) { // array
-			this.print("leaq " + position + "(%rbx), %rdi");
-			this.print("push %rdi");
-			this.genCodeExpression(factorNode.getChild(2));
-			this.print("imul $8, %rax");
-			this.print("pop %rdi");
-			this.print("addq %rdi, %rax");
-			this.print("movq 0(%rax), %rax", "local array " + id + " entry to ac");
+			this.genCodeElement(factorNode, varDecNode, id);
 		} else if (varDecNode.getChildrenSize() == 5) { // pointer
-			this.print("leaq " + position + "(%rbx), %rax");
+			this.print("leaq " + address + ", %rax");
 		} else {
-			this.print("movq " + position + "(%rbx), %rax", "local " + id + " to ac");
+			this.print("movq " + address + ", %rax", "local " + id + " to ac");
 		}
 	}
 
@@ -638,14 +1265,127 @@ public class BPLCodeGenerator {
 		BPLNode funDec = idNode.getDeclaration(); 
 		BPLNode args = funCallNode.getChild(1);
 
+		if (this.inliner.isInlinable(funDec)) {
+			this.genCodeInlineCall(funCallNode, funDec);
+			return;
+		}
+
 		int space = 0;
 		if (args.getChild(0).isType("ARG_LIST")) {
 			space = this.genCodeFunCallArgs(args.getChild(0));
 		}
-		this.print("push %rbx", "push frame pointer");
-		this.print("call " + id);
-		this.print("pop %rbx");
-		this.print("addq $" + space + ", %rsp", "removing args from the stack");
+		if (this.isLeaf(funDec)) {
+			this.print("call " + id, "leaf call");
+		} else {
+			this.print("push %rbx", "push frame pointer");
+			this.print("call " + id);
+			this.print("pop %rbx");
+		}
+		if (space > 0) {
+			this.print("addq $" + space + ", %rsp", "removing args from the stack");
+		}
+	}
+
+	/**
+	* copies the body of funDec in place of the call. its params and locals
+	* get slots in this function's frame starting at inlineBase, followed by
+	* the temps of its body. params that are never written and get a
+	* constant argument are folded instead
+	*/
+	private void genCodeInlineCall(BPLNode funCallNode, BPLNode funDec) {
+		String id = ((BPLVarNode) funDec.getChild(1)).getID();
+		ArrayList<BPLNode> params = BPLInliner.getParams(funDec);
+		ArrayList<BPLNode> args = BPLInliner.getArgs(funCallNode);
+
+		Integer[] constants = new Integer[args.size()];
+		int lastEvaluated = args.size();
+		for (int i = 0; i < args.size(); i++) {
+			if (this.inliner.isReadOnly(funDec, params.get(i))) {
+				constants[i] = this.folder.getConstant(args.get(i));
+			}
+			if (constants[i] == null && lastEvaluated == args.size()) {
+				lastEvaluated = i;
+			}
+		}
+
+		// arguments are evaluated last to first like a real call. calls inlined
+		// while evaluating them reuse the slots from base on, so only the last
+		// one can go straight to its slot
+		int base = this.inlineBase;
+		for (int i = args.size() - 1; i >= 0; i--) {
+			if (constants[i] == null) {
+				this.genCodeExpression(args.get(i));
+				if (i == lastEvaluated) {
+					this.print("movq %rax, " + this.getSlotAddress(base + i), "inlined param");
+				} else {
+					this.print("push %rax", "push argument of inlined " + id);
+				}
+			}
+		}
+		for (int i = lastEvaluated + 1; i < args.size(); i++) {
+			if (constants[i] == null) {
+				this.print("pop %rax");
+				this.print("movq %rax, " + this.getSlotAddress(base + i), "inlined param");
+			}
+		}
+
+		for (int i = 0; i < params.size(); i++) {
+			this.inlineSlots.put(params.get(i), base + i);
+		}
+		int temps = this.assignInlineSlots(funDec.getChild(3), base + params.size());
+		for (int i = 0; i < args.size(); i++) {
+			if (constants[i] != null) {
+				this.folder.bind(params.get(i), constants[i]);
+			}
+		}
+
+		int savedReturnLabel = this.inlineReturnLabel;
+		this.inlineReturnLabel = this.labelNum;
+		this.labelNum++;
+		this.inlineBase = base + this.inliner.getSlots(funDec);
+		BPLAnalysis savedAnalysis = this.analysis;
+		int savedTempBase = this.tempBase;
+		HashSet<Integer> savedStoredTemps = this.storedTemps;
+		this.analysis = this.analyses.get(funDec);
+		this.tempBase = temps;
+		this.storedTemps = new HashSet<Integer>();
+
+		this.genCodeCompStatement(funDec.getChild(3));
+		this.out.println(".Meow" + this.inlineReturnLabel + ":");
+
+		this.analysis = savedAnalysis;
+		this.tempBase = savedTempBase;
+		this.storedTemps = savedStoredTemps;
+		this.inlineBase = base;
+		this.inlineReturnLabel = savedReturnLabel;
+		for (BPLNode param : params) {
+			this.inlineSlots.remove(param);
+			this.folder.unbind(param);
+		}
+		this.removeInlineSlots(funDec.getChild(3));
+	}
+
+	/**
+	* @return the first slot after the ones given to the locals in node
+	*/
+	private int assignInlineSlots(BPLNode node, int next) {
+		if (node.isType("VAR_DEC")) { // an array's base is its highest slot
+			next += BPLInliner.getVarSlots(node);
+			this.inlineSlots.put(node, next - 1);
+		}
+		for (BPLNode child : node.getChildren()) {
+			next = this.assignInlineSlots(child, next);
+		}
+		return next;
+	}
+
+	private void removeInlineSlots(BPLNode node) {
+		if (node.isType("VAR_DEC")) {
+			this.inlineSlots.remove(node);
+		}
+		for (BPLNode child : node.getChildren()) {
+			this.removeInlineSlots(child);
+		}
 	}
 
 	private int genCodeFunCallArgs(BPLNode argList) {
@@ -663,19 +1403,53 @@ public class BPLCodeGenerator {
 	}
 
 	private void print(String code) {
-		System.out.println("\t" + code);
+		this.out.println("\t" + code);
 	}
 
 	private void print(String code, String comment) {
-		System.out.println("\t" + code + "\t\t# " + comment);
+		this.out.println("\t" + code + "\t\t# " + comment);
 	}
 
-	public static void main(String[] args) throws FileNotFoundException, UnsupportedEncodingException, BPLException {
-		if (args.length != 1) {
+	/**
+	* with --stats the time and sizes of each phase are printed to stderr after the assembly
+	*/
+	public static void main(String[] args) throws IOException, BPLException {
+		BPLOptions options = BPLOptions.parse(args);
+		if (options.getFileName() == null) {
 			System.err.println("File to type check needed!");
 			System.exit(1);
 		}
+		if (options.stats() == null && options.pipeline()) {
+			BPLTokenPipeline tokens = new BPLTokenPipeline(new BPLScanner("../" + options.getFileName()));
+			try {
+				new BPLCodeGenerator(new BPLTypeChecker(new BPLParser(tokens)), options, System.out);
+			} finally {
+				tokens.close();
+			}
+			return;
+		} else if (options.stats() == null) {
+			BPLCodeGenerator generator = new BPLCodeGenerator("../" + options.getFileName(), options);
+			return;
+		}
 
-		BPLCodeGenerator generator = new BPLCodeGenerator("../" + args[0]);
+		byte[] source;
+		try {
+			source = BPLBuildCache.readFile(new File("../" + options.getFileName()));
+		} catch (FileNotFoundException e) {
+			throw new BPLScannerException("Can't open ../" + options.getFileName());
+		}
+		BPLStats stats = new BPLStats(options.getFileName());
+		BPLCompilation compilation = new BPLCompiler(options).compile(new String(source, "UTF-8"), stats);
+		if (compilation.succeeded()) {
+			System.out.print(compilation.getAssembly());
+			System.out.flush();
+		}
+		System.err.println(options.stats().equals("json") ? stats.toJSON() : stats.toString());
+		if (!compilation.succeeded()) {
+			for (String diagnostic : compilation.getDiagnostics()) {
+				System.err.println(diagnostic);
+			}
+			System.exit(1);
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLCompilation {
+	private final String assembly;
+	private final List<String> diagnostics;
+
+	/**
+	* what BPLCompiler made of one source
+	* @param assembly the assembly, or null if it didn't compile
+	* @param diagnostics the errors, in the same form the run scripts print them
+	*/
+	public BPLCompilation(String assembly, List<String> diagnostics) {
+		this.assembly = assembly;
+		this.diagnostics = Collections.unmodifiableList(new ArrayList<String>(diagnostics));
+	}
+
+	public boolean succeeded() {
+		return this.assembly != null;
+	}
+
+	/**
+	* @return the assembly, or null if it didn't compile
+	*/
+	public String getAssembly() {
+		return this.assembly;
+	}
+
+	public List<String> getDiagnostics() {
+		return this.diagnostics;
+	}
+}
@@ -0,0 +1,32 @@
+package Compiler;
+
+import jdk.jfr.*;
+
+@Name("bpl.Compile")
+@Label("BPL Compile")
+@Category("BPL")
+@Description("A whole compile of a BPL program, with the sizes of what each phase made")
+@StackTrace(false)
+public class BPLCompileEvent extends Event {
+	@Label("Source")
+	public String source;
+
+	@Label("Succeeded")
+	public boolean succeeded;
+
+	@Label("Tokens")
+	public long tokens;
+
+	@Label("Nodes")
+	public long nodes;
+
+	@Label("Symbols")
+	public long symbols;
+
+	@Label("Instructions")
+	public long instructions;
+
+	@Label("Allocated")
+	@DataAmount
+	public long allocated;
+}
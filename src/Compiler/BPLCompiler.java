@@ -0,0 +1,115 @@
+package Compiler;
+
+import java.io.*;
+import java.nio.CharBuffer;
+import java.util.*;
+
+public class BPLCompiler {
+	private final BPLOptions options;
+
+	public BPLCompiler() {
+		this(new BPLOptions());
+	}
+
+	/**
+	* compiles sources in memory. a compile keeps everything it makes to
+	* itself, so one BPLCompiler can be used from many threads at once
+	*/
+	public BPLCompiler(BPLOptions options) {
+		this.options = options;
+	}
+
+	public BPLOptions getOptions() {
+		return this.options;
+	}
+
+	/**
+	* @return the assembly BPLCodeGenerator would print for source, or the
+	* errors that stopped it
+	*/
+	public BPLCompilation compile(CharSequence source) {
+		return this.compile(source, null);
+	}
+
+	/**
+	* @param stats where the time, allocation and sizes of each phase go, or
+	* null. the source is scanned before it is parsed when they are measured
+	*/
+	public BPLCompilation compile(CharSequence source, BPLStats stats) {
+		ByteArrayOutputStream assembly = new ByteArrayOutputStream();
+		ArrayList<String> diagnostics = new ArrayList<String>();
+		try {
+			PrintStream out = new PrintStream(assembly, false, "UTF-8");
+			if (stats == null) {
+				BPLTypeChecker typeChecker = new BPLTypeChecker(this.parse(new BPLScanner(CharBuffer.wrap(source))));
+				new BPLCodeGenerator(typeChecker, this.options, out);
+			} else {
+				this.compile(source, stats, out);
+			}
+			out.flush();
+			String code = assembly.toString("UTF-8");
+			if (stats != null) {
+				stats.countInstructions(code);
+				stats.finish(true);
+			}
+			return new BPLCompilation(code, diagnostics);
+		} catch (BPLException e) {
+			diagnostics.add(e.getMessage());
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		} catch (RuntimeException e) {
+			diagnostics.add("Compiler error: " + e);
+		}
+		if (stats != null) {
+			stats.finish(false);
+		}
+		return new BPLCompilation(null, diagnostics);
+	}
+
+	/**
+	* parses what scanner scans, on another thread with --pipeline
+	*/
+	private BPLParser parse(BPLScanner scanner) throws BPLException {
+		if (!this.options.pipeline()) {
+			return new BPLParser(scanner);
+		}
+		BPLTokenPipeline tokens = new BPLTokenPipeline(scanner);
+		try {
+			return new BPLParser(tokens);
+		} finally {
+			tokens.close();
+		}
+	}
+
+	/**
+	* with --pipeline, scanning can't be timed apart from parsing, so the
+	* two are one phase, and its CPU time leaves out the scanner thread's
+	*/
+	private void compile(CharSequence source, BPLStats stats, PrintStream out) throws BPLException {
+		BPLParser parser;
+		if (this.options.pipeline()) {
+			stats.start("scan+parse");
+			BPLTokenPipeline tokens = new BPLTokenPipeline(new BPLScanner(CharBuffer.wrap(source)));
+			try {
+				parser = new BPLParser(tokens);
+			} finally {
+				tokens.close();
+				stats.setTokens(tokens.size());
+			}
+		} else {
+			stats.start("scan");
+			BPLTokenList tokens = new BPLTokenList(new BPLScanner(CharBuffer.wrap(source)));
+			stats.setTokens(tokens.size());
+			stats.start("parse");
+			parser = new BPLParser(tokens);
+		}
+		stats.end();
+		stats.countTree(parser.getBPLHead()); // before the code generator adds to it
+		stats.start("typecheck");
+		BPLTypeChecker typeChecker = new BPLTypeChecker(parser);
+		stats.start("codegen");
+		new BPLCodeGenerator(typeChecker, this.options, out);
+		out.flush();
+		stats.end();
+	}
+}
@@ -0,0 +1,158 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLConstantFolder {
+	private HashMap<BPLNode, Integer> bindings;
+	private HashMap<BPLNode, Integer> values;
+	private HashMap<BPLNode, Integer> known;
+
+	public BPLConstantFolder() {
+		this.bindings = new HashMap<BPLNode, Integer>();
+		this.values = new HashMap<BPLNode, Integer>();
+		this.known = new HashMap<BPLNode, Integer>();
+	}
+
+	/**
+	* adds values found by an analysis, which hold wherever the nodes are generated
+	*/
+	public void addConstants(HashMap<BPLNode, Integer> constants) {
+		this.known.putAll(constants);
+		this.values.clear();
+	}
+
+	/**
+	* makes every read of the var (an inlined param) fold to the given value
+	*/
+	public void bind(BPLNode varDec, int value) {
+		this.bindings.put(varDec, value);
+		this.values.clear();
+	}
+
+	public void unbind(BPLNode varDec) {
+		this.bindings.remove(varDec);
+		this.values.clear();
+	}
+
+	/**
+	* @return the value of an EXPRESSION, COMP_EXP, E, T, F or FACTOR node
+	* if it is known at compile time and evaluating it has no side effects
+	* @return null otherwise
+	*/
+	public Integer getConstant(BPLNode node) {
+		if (this.values.containsKey(node)) {
+			return this.values.get(node);
+		}
+		Integer value = this.fold(node);
+		this.values.put(node, value);
+		return value;
+	}
+
+	private Integer fold(BPLNode node) {
+		if (this.known.containsKey(node)) {
+			return this.known.get(node);
+		} else if (node.isType("EXPRESSION")) {
+			if (!node.isChildrenSize(1)) { // assignment
+				return null;
+			}
+			return this.getConstant(node.getChild(0));
+		} else if (node.isType("COMP_EXP")) {
+			return this.foldCompExp(node);
+		} else if (node.isType("E") || node.isType("T")) {
+			return this.foldOperation(node);
+		} else if (node.isType("F")) {
+			BPLNode child = node.getChild(0);
+			if (child.isType("FACTOR")) {
+				return this.getConstant(child);
+			} else if (child.isType("-")) {
+				Integer value = this.getConstant(node.getChild(1));
+				return (value == null) ? null : -value;
+			}
+			return null; // * and &
+		} else if (node.isType("FACTOR")) {
+			return this.foldFactor(node);
+		}
+		return null;
+	}
+
+	private Integer foldCompExp(BPLNode compExp) {
+		if (compExp.isChildrenSize(1)) {
+			return this.getConstant(compExp.getChild(0));
+		}
+		Integer right = this.getConstant(compExp.getChild(2));
+		if (right == null) {
+			return null;
+		}
+		Integer left = this.getConstant(compExp.getChild(0));
+		if (left == null) {
+			return null;
+		}
+
+		String relop = compExp.getChild(1).getChild(0).getType();
+		boolean result;
+		if (relop.equals("==")) {
+			result = left.intValue() == right.intValue();
+		} else if (relop.equals("!=")) {
+			result = left.intValue() != right.intValue();
+		} else if (relop.equals("<")) {
+			result = left < right;
+		} else if (relop.equals(">")) {
+			result = left > right;
+		} else if (relop.equals("<=")) {
+			result = left <= right;
+		} else {
+			result = left >= right;
+		}
+		return result ? 1 : 0;
+	}
+
+	/**
+	* folds E (addop) and T (mulop) nodes with 32 bit wraparound like the generated code
+	*/
+	private Integer foldOperation(BPLNode node) {
+		if (node.isChildrenSize(1)) {
+			return this.getConstant(node.getChild(0));
+		}
+		// the right side is usually a short T or F, so check it first
+		Integer right = this.getConstant(node.getChild(2));
+		if (right == null) {
+			return null;
+		}
+		Integer left = this.getConstant(node.getChild(0));
+		if (left == null) {
+			return null;
+		}
+
+		String op = node.getChild(1).getChild(0).getType();
+		if (op.equals("+")) {
+			return left + right;
+		} else if (op.equals("-")) {
+			return left - right;
+		} else if (op.equals("*")) {
+			return left * right;
+		}
+		// idivl traps on these, so leave them to run time
+		if (right == 0 || (left == Integer.MIN_VALUE && right == -1)) {
+			return null;
+		}
+		if (op.equals("/")) {
+			return left / right;
+		}
+		return left % right;
+	}
+
+	private Integer foldFactor(BPLNode factor) {
+		BPLNode child = factor.getChild(0);
+		if (child.isType("INTEGER")) {
+			return ((BPLIntegerNode) child).getInteger();
+		} else if (child.isType("EXPRESSION")) {
+			return this.getConstant(child);
+		} else if (child.isType("ID") && factor.isChildrenSize(1)) {
+			BPLNode varDec = child.getDeclaration();
+			if (this.bindings.containsKey(varDec)) {
+				return this.bindings.get(varDec);
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,291 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLConstantPropagation {
+	private static final int TOP = 0;
+	private static final int CONSTANT = 1;
+	private static final int BOTTOM = 2;
+
+	private final BPLSSAForm ssa;
+
+	private int[] states;
+	private int[] constants;
+	private boolean[] executableBlocks;
+	private HashSet<Long> executableEdges;
+	private ArrayDeque<BPLBasicBlock[]> flowWorklist;
+	private ArrayDeque<BPLSSAValue> ssaWorklist;
+	private HashMap<BPLSSAValue, BPLBasicBlock> conditionBlocks;
+	private HashMap<BPLNode, Integer> nodeConstants;
+	private long nanos;
+
+	/**
+	* sparse conditional constant propagation (Wegman and Zadeck).
+	* values start unknown and only get lowered, and a block is only looked
+	* at once an edge into it is found to be taken, so constants flowing
+	* around loops and branches that can't be taken are both found
+	*/
+	public BPLConstantPropagation(BPLSSAForm ssa) {
+		long start = System.nanoTime();
+		this.ssa = ssa;
+		int size = ssa.getValues().size();
+		this.states = new int[size];
+		this.constants = new int[size];
+		this.executableBlocks = new boolean[ssa.getControlFlowGraph().getBlocks().size()];
+		this.executableEdges = new HashSet<Long>();
+		this.flowWorklist = new ArrayDeque<BPLBasicBlock[]>();
+		this.ssaWorklist = new ArrayDeque<BPLSSAValue>();
+		this.conditionBlocks = new HashMap<BPLSSAValue, BPLBasicBlock>();
+		for (BPLSSAValue value : ssa.getValues()) {
+			if (value.isOp("undef")) { // reading a var before it is set could give anything
+				this.states[value.getID()] = BOTTOM;
+			}
+		}
+		for (BPLBasicBlock block : ssa.getDominators().getReversePostorder()) {
+			if (block.isBranch()) {
+				this.conditionBlocks.put(ssa.getConditionValue(block), block);
+			}
+		}
+
+		this.solve();
+		this.findNodeConstants();
+		this.nanos = System.nanoTime() - start;
+	}
+
+	public boolean isExecutable(BPLBasicBlock block) {
+		return this.executableBlocks[block.getID()];
+	}
+
+	/**
+	* @return true if instruction is in a block that never runs
+	*/
+	public boolean isDead(BPLNode instruction) {
+		BPLBasicBlock block = this.ssa.getControlFlowGraph().getBlock(instruction);
+		return block != null && !this.isExecutable(block);
+	}
+
+	public boolean isConstant(BPLSSAValue value) {
+		return this.states[value.getID()] == CONSTANT;
+	}
+
+	public int getConstant(BPLSSAValue value) {
+		return this.constants[value.getID()];
+	}
+
+	/**
+	* @return the nodes known to have a constant value that can be computed
+	* without side effects, along with the value
+	*/
+	public HashMap<BPLNode, Integer> getNodeConstants() {
+		return this.nodeConstants;
+	}
+
+	public long getNanos() {
+		return this.nanos;
+	}
+
+	private void solve() {
+		BPLBasicBlock entry = this.ssa.getControlFlowGraph().getEntry();
+		this.executableBlocks[entry.getID()] = true;
+		this.visitBlock(entry);
+		while (!this.flowWorklist.isEmpty() || !this.ssaWorklist.isEmpty()) {
+			while (!this.flowWorklist.isEmpty()) {
+				BPLBasicBlock[] edge = this.flowWorklist.poll();
+				if (!this.executableEdges.add(this.getEdgeKey(edge[0], edge[1]))) {
+					continue;
+				}
+				BPLBasicBlock target = edge[1];
+				if (!this.executableBlocks[target.getID()]) {
+					this.executableBlocks[target.getID()] = true;
+					this.visitBlock(target);
+				} else {
+					for (BPLSSAValue phi : this.ssa.getPhis(target)) {
+						this.evaluate(phi);
+					}
+				}
+			}
+			while (!this.ssaWorklist.isEmpty()) {
+				BPLSSAValue value = this.ssaWorklist.poll();
+				for (BPLSSAValue user : value.getUsers()) {
+					if (this.executableBlocks[user.getBlock().getID()]) {
+						this.evaluate(user);
+					}
+				}
+				BPLBasicBlock branch = this.conditionBlocks.get(value);
+				if (branch != null && this.executableBlocks[branch.getID()]) {
+					this.visitBranch(branch);
+				}
+			}
+		}
+	}
+
+	private long getEdgeKey(BPLBasicBlock from, BPLBasicBlock to) {
+		return ((long) from.getID() << 32) | to.getID();
+	}
+
+	private void visitBlock(BPLBasicBlock block) {
+		for (BPLSSAValue phi : this.ssa.getPhis(block)) {
+			this.evaluate(phi);
+		}
+		for (BPLSSAValue value : this.ssa.getBlockValues(block)) {
+			this.evaluate(value);
+		}
+		if (block.isBranch()) {
+			this.visitBranch(block);
+		} else {
+			for (BPLBasicBlock successor : block.getSuccessors()) {
+				this.flowWorklist.add(new BPLBasicBlock[] {block, successor});
+			}
+		}
+	}
+
+	private void visitBranch(BPLBasicBlock block) {
+		BPLSSAValue condition = this.ssa.getConditionValue(block);
+		int state = this.states[condition.getID()];
+		if (state == BOTTOM || (state == CONSTANT && this.constants[condition.getID()] != 0)) {
+			this.flowWorklist.add(new BPLBasicBlock[] {block, block.getTrueSuccessor()});
+		}
+		if (state == BOTTOM || (state == CONSTANT && this.constants[condition.getID()] == 0)) {
+			this.flowWorklist.add(new BPLBasicBlock[] {block, block.getFalseSuccessor()});
+		}
+	}
+
+	private void evaluate(BPLSSAValue value) {
+		int id = value.getID();
+		if (this.states[id] == BOTTOM) {
+			return;
+		}
+
+		int state;
+		int constant = 0;
+		String op = value.getOp();
+		if (op.equals("const")) {
+			state = CONSTANT;
+			constant = value.getConstant();
+		} else if (op.equals("phi")) {
+			state = TOP;
+			ArrayList<BPLBasicBlock> predecessors = value.getBlock().getPredecessors();
+			for (int i = 0; i < predecessors.size() && state != BOTTOM; i++) {
+				if (!this.executableEdges.contains(this.getEdgeKey(predecessors.get(i), value.getBlock()))) {
+					continue;
+				}
+				BPLSSAValue operand = value.getOperand(i);
+				int operandState = this.states[operand.getID()];
+				if (operandState == BOTTOM) {
+					state = BOTTOM;
+				} else if (operandState == CONSTANT) {
+					if (state == CONSTANT && constant != this.constants[operand.getID()]) {
+						state = BOTTOM;
+					} else {
+						state = CONSTANT;
+						constant = this.constants[operand.getID()];
+					}
+				}
+			}
+		} else if (isArithmetic(op)) {
+			state = CONSTANT;
+			for (BPLSSAValue operand : value.getOperands()) {
+				state = Math.max(state, this.states[operand.getID()]);
+				if (this.states[operand.getID()] == TOP) {
+					state = TOP;
+					break;
+				}
+			}
+			if (state == CONSTANT) {
+				Integer result = this.compute(value);
+				if (result == null) {
+					state = BOTTOM;
+				} else {
+					constant = result;
+				}
+			}
+		} else { // loads, calls, params and undefined values can be anything
+			state = BOTTOM;
+		}
+
+		if (state != this.states[id] || (state == CONSTANT && constant != this.constants[id])) {
+			this.states[id] = state;
+			this.constants[id] = constant;
+			this.ssaWorklist.add(value);
+		}
+	}
+
+	private static boolean isArithmetic(String op) {
+		return op.equals("+") || op.equals("-") || op.equals("*") || op.equals("/") || op.equals("%") || op.equals("neg")
+			|| op.equals("==") || op.equals("!=") || op.equals("<") || op.equals(">") || op.equals("<=") || op.equals(">=");
+	}
+
+	/**
+	* same 32 bit results as BPLConstantFolder
+	*/
+	private Integer compute(BPLSSAValue value) {
+		String op = value.getOp();
+		int left = this.constants[value.getOperand(0).getID()];
+		if (op.equals("neg")) {
+			return -left;
+		}
+		int right = this.constants[value.getOperand(1).getID()];
+		if (op.equals("+")) {
+			return left + right;
+		} else if (op.equals("-")) {
+			return left - right;
+		} else if (op.equals("*")) {
+			return left * right;
+		} else if (op.equals("/") || op.equals("%")) {
+			if (right == 0 || (left == Integer.MIN_VALUE && right == -1)) {
+				return null;
+			}
+			return op.equals("/") ? left / right : left % right;
+		}
+
+		boolean result;
+		if (op.equals("==")) {
+			result = left == right;
+		} else if (op.equals("!=")) {
+			result = left != right;
+		} else if (op.equals("<")) {
+			result = left < right;
+		} else if (op.equals(">")) {
+			result = left > right;
+		} else if (op.equals("<=")) {
+			result = left <= right;
+		} else {
+			result = left >= right;
+		}
+		return result ? 1 : 0;
+	}
+
+	/**
+	* only nodes without assignments, calls or read() can be replaced by
+	* their value, since the code generator skips evaluating them
+	*/
+	private void findNodeConstants() {
+		this.nodeConstants = new HashMap<BPLNode, Integer>();
+		for (BPLBasicBlock block : this.ssa.getDominators().getReversePostorder()) {
+			if (!this.executableBlocks[block.getID()]) {
+				continue;
+			}
+			for (BPLNode instruction : block.getInstructions()) {
+				this.findNodeConstants(instruction);
+			}
+		}
+	}
+
+	/**
+	* @return true if node has no side effects
+	*/
+	private boolean findNodeConstants(BPLNode node) {
+		boolean pure = true;
+		for (BPLNode child : node.getChildren()) {
+			pure &= this.findNodeConstants(child);
+		}
+		if (node.isType("FUN_CALL") || node.isType("READ") || (node.isType("EXPRESSION") && node.isChildrenSize(3))) {
+			pure = false;
+		}
+		BPLSSAValue value = this.ssa.getValue(node);
+		if (pure && value != null && this.isConstant(value) && !node.isType("FUN_CALL")) {
+			this.nodeConstants.put(node, this.getConstant(value));
+		}
+		return pure;
+	}
+}
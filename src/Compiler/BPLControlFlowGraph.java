@@ -0,0 +1,380 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLControlFlowGraph {
+	private final BPLNode funDec;
+
+	private ArrayList<BPLBasicBlock> blocks;
+	private BPLBasicBlock entry;
+	private BPLBasicBlock exit;
+	private HashMap<BPLNode, BPLBasicBlock> instructionBlocks;
+
+	private ArrayList<BPLNode> vars;
+	private HashMap<BPLNode, Integer> varIndexes;
+	private BitSet addressTaken;
+
+	private HashMap<BPLNode, ArrayList<BPLVarAccess>> accesses;
+	private HashMap<BPLNode, BPLVarAccess> uses;
+	private ArrayList<BPLVarAccess> definitions;
+	private ArrayList<BPLVarAccess> entryDefinitions;
+	private BitSet[] varDefinitions;
+
+	private long buildNanos;
+
+	/**
+	* builds the basic blocks of a type checked FUN_DEC.
+	* the vars tracked are the params and locals of the function, globals are not
+	*/
+	public BPLControlFlowGraph(BPLNode funDec) {
+		long start = System.nanoTime();
+		this.funDec = funDec;
+		this.blocks = new ArrayList<BPLBasicBlock>();
+		this.instructionBlocks = new HashMap<BPLNode, BPLBasicBlock>();
+		this.vars = new ArrayList<BPLNode>();
+		this.varIndexes = new HashMap<BPLNode, Integer>();
+		this.addressTaken = new BitSet();
+		this.accesses = new HashMap<BPLNode, ArrayList<BPLVarAccess>>();
+		this.uses = new HashMap<BPLNode, BPLVarAccess>();
+		this.definitions = new ArrayList<BPLVarAccess>();
+		this.entryDefinitions = new ArrayList<BPLVarAccess>();
+
+		this.findVars();
+		this.entry = this.newBlock();
+		this.exit = this.newBlock();
+		BPLBasicBlock last = this.buildStatement(funDec.getChild(3), this.entry);
+		last.addSuccessor(this.exit);
+
+		this.findAccesses();
+		this.buildNanos = System.nanoTime() - start;
+	}
+
+	public BPLNode getFunDec() {
+		return this.funDec;
+	}
+
+	public ArrayList<BPLBasicBlock> getBlocks() {
+		return this.blocks;
+	}
+
+	public BPLBasicBlock getEntry() {
+		return this.entry;
+	}
+
+	public BPLBasicBlock getExit() {
+		return this.exit;
+	}
+
+	public BPLBasicBlock getBlock(BPLNode instruction) {
+		return this.instructionBlocks.get(instruction);
+	}
+
+	public long getBuildNanos() {
+		return this.buildNanos;
+	}
+
+	/**
+	* @return the PARAM and VAR_DEC nodes tracked, indexed by var number
+	*/
+	public ArrayList<BPLNode> getVars() {
+		return this.vars;
+	}
+
+	/**
+	* @return the var number of a PARAM or VAR_DEC node, or -1 if it isn't tracked
+	*/
+	public int getVarIndex(BPLNode varDec) {
+		Integer index = this.varIndexes.get(varDec);
+		return (index == null) ? -1 : index;
+	}
+
+	/**
+	* vars that can be read or written through a pointer: the ones used
+	* with & and all arrays
+	*/
+	public BitSet getAddressTaken() {
+		return this.addressTaken;
+	}
+
+	public boolean isAddressTaken(BPLNode varDec) {
+		int var = this.getVarIndex(varDec);
+		return var >= 0 && this.addressTaken.get(var);
+	}
+
+	/**
+	* @return the uses and defs of an instruction in the order they happen
+	*/
+	public ArrayList<BPLVarAccess> getAccesses(BPLNode instruction) {
+		return this.accesses.get(instruction);
+	}
+
+	/**
+	* @return the use made by an ID node, or null if its var isn't tracked
+	*/
+	public BPLVarAccess getUse(BPLNode idNode) {
+		return this.uses.get(idNode);
+	}
+
+	/**
+	* @return every def, indexed by def number. the params are defined on entry
+	*/
+	public ArrayList<BPLVarAccess> getDefinitions() {
+		return this.definitions;
+	}
+
+	public ArrayList<BPLVarAccess> getEntryDefinitions() {
+		return this.entryDefinitions;
+	}
+
+	/**
+	* @return the def numbers of all the defs of a var
+	*/
+	public BitSet getVarDefinitions(int var) {
+		return this.varDefinitions[var];
+	}
+
+	private BPLBasicBlock newBlock() {
+		BPLBasicBlock block = new BPLBasicBlock(this.blocks.size());
+		this.blocks.add(block);
+		return block;
+	}
+
+	private void findVars() {
+		for (BPLNode param : BPLInliner.getParams(this.funDec)) {
+			this.addVar(param);
+		}
+		this.findLocalVars(this.funDec.getChild(3));
+	}
+
+	private void findLocalVars(BPLNode node) {
+		if (node.isType("VAR_DEC")) {
+			this.addVar(node);
+			if (node.getChildrenSize() == 5) {
+				this.addressTaken.set(this.getVarIndex(node));
+			}
+		} else if (node.isType("F") && node.getChild(0).isType("&")) {
+			BPLNode varDec = node.getChild(1).getChild(0).getDeclaration();
+			if (this.varIndexes.containsKey(varDec)) {
+				this.addressTaken.set(this.getVarIndex(varDec));
+			}
+		}
+		for (BPLNode child : node.getChildren()) {
+			this.findLocalVars(child);
+		}
+	}
+
+	private void addVar(BPLNode varDec) {
+		this.varIndexes.put(varDec, this.vars.size());
+		if (varDec.getChildrenSize() > 3) { // array param
+			this.addressTaken.set(this.vars.size());
+		}
+		this.vars.add(varDec);
+	}
+
+	/**
+	* adds statement to the current block
+	* @return the block control reaches after it
+	*/
+	private BPLBasicBlock buildStatement(BPLNode statement, BPLBasicBlock current) {
+		if (statement.isType("STATEMENT")) {
+			statement = statement.getChild(0);
+		}
+
+		if (statement.isType("COMPOUND_STMT")) {
+			BPLNode stmtList = statement.getChild(1);
+			while (!stmtList.isType("<empty>")) {
+				current = this.buildStatement(stmtList.getChild(0), current);
+				stmtList = stmtList.getChild(1);
+			}
+			return current;
+		} else if (statement.isType("IF_STMT")) {
+			current.setCondition(statement.getChild(0));
+			this.instructionBlocks.put(statement.getChild(0), current);
+			BPLBasicBlock thenBlock = this.newBlock();
+			current.addSuccessor(thenBlock);
+			BPLBasicBlock thenEnd = this.buildStatement(statement.getChild(1), thenBlock);
+			BPLBasicBlock join;
+			if (statement.getChildrenSize() > 2) {
+				BPLBasicBlock elseBlock = this.newBlock();
+				current.addSuccessor(elseBlock);
+				BPLBasicBlock elseEnd = this.buildStatement(statement.getChild(2), elseBlock);
+				join = this.newBlock();
+				elseEnd.addSuccessor(join);
+			} else {
+				join = this.newBlock();
+				current.addSuccessor(join);
+			}
+			thenEnd.addSuccessor(join);
+			return join;
+		} else if (statement.isType("WHILE_STMT")) {
+			BPLBasicBlock header = this.newBlock();
+			current.addSuccessor(header);
+			header.setCondition(statement.getChild(0));
+			header.setLoop(statement);
+			this.instructionBlocks.put(statement.getChild(0), header);
+			BPLBasicBlock body = this.newBlock();
+			header.addSuccessor(body);
+			BPLBasicBlock bodyEnd = this.buildStatement(statement.getChild(1), body);
+			bodyEnd.addSuccessor(header);
+			BPLBasicBlock after = this.newBlock();
+			header.addSuccessor(after);
+			return after;
+		} else if (statement.isType("RETURN_STMT")) {
+			current.addInstruction(statement);
+			this.instructionBlocks.put(statement, current);
+			current.addSuccessor(this.exit);
+			return this.newBlock(); // unreachable
+		} else if (statement.isType("EXPRESSION_STMT") && statement.isChildrenSize(0)) {
+			return current;
+		}
+		current.addInstruction(statement);
+		this.instructionBlocks.put(statement, current);
+		return current;
+	}
+
+	private void findAccesses() {
+		for (BPLNode param : BPLInliner.getParams(this.funDec)) {
+			BPLVarAccess def = new BPLVarAccess(param, null, this.getVarIndex(param), true, true);
+			this.entryDefinitions.add(def);
+			this.addDefinition(def);
+		}
+
+		for (BPLBasicBlock block : this.blocks) {
+			for (BPLNode instruction : block.getInstructions()) {
+				ArrayList<BPLVarAccess> list = new ArrayList<BPLVarAccess>();
+				this.findAccesses(instruction, instruction, list);
+				this.accesses.put(instruction, list);
+			}
+		}
+
+		this.varDefinitions = new BitSet[this.vars.size()];
+		for (int i = 0; i < this.vars.size(); i++) {
+			this.varDefinitions[i] = new BitSet();
+		}
+		for (BPLVarAccess def : this.definitions) {
+			this.varDefinitions[def.getVar()].set(def.getDefIndex());
+		}
+	}
+
+	private void addDefinition(BPLVarAccess def) {
+		def.setDefIndex(this.definitions.size());
+		this.definitions.add(def);
+	}
+
+	/**
+	* walks node in the order the code generator evaluates it
+	*/
+	private void findAccesses(BPLNode node, BPLNode instruction, ArrayList<BPLVarAccess> list) {
+		if (node.isType("EXPRESSION_STMT") || node.isType("WRITE_STMT") || node.isType("RETURN_STMT")) {
+			if (node.getChildrenSize() > 0) {
+				this.findAccesses(node.getChild(0), instruction, list);
+			}
+		} else if (node.isType("EXPRESSION")) {
+			if (node.isChildrenSize(1)) {
+				this.findAccesses(node.getChild(0), instruction, list);
+				return;
+			}
+			this.findAccesses(node.getChild(2), instruction, list);
+			// the type checker links the VAR node, not its ID
+			BPLNode var = node.getChild(0);
+			if (var.getChild(0).isType("*")) { // store through a pointer
+				this.addUse(var.getChild(1), var.getDeclaration(), instruction, list);
+				this.addPointerDefs(node, instruction, list);
+			} else if (var.getChildrenSize() == 4) { // store to an array entry
+				this.findAccesses(var.getChild(2), instruction, list);
+				this.addUse(var.getChild(0), var.getDeclaration(), instruction, list);
+				this.addDef(var.getDeclaration(), node, instruction, false, list);
+			} else {
+				this.addDef(var.getDeclaration(), node, instruction, true, list);
+			}
+		} else if (node.isType("COMP_EXP")) {
+			this.findAccesses(node.getChild(0), instruction, list);
+			if (node.getChildrenSize() > 1) {
+				this.findAccesses(node.getChild(2), instruction, list);
+			}
+		} else if (node.isType("E") || node.isType("T")) {
+			if (node.getChildrenSize() > 1) { // the right side is evaluated first
+				this.findAccesses(node.getChild(2), instruction, list);
+			}
+			this.findAccesses(node.getChild(0), instruction, list);
+		} else if (node.isType("F")) {
+			BPLNode child = node.getChild(0);
+			if (child.isType("FACTOR")) {
+				this.findAccesses(child, instruction, list);
+			} else if (child.isType("-")) {
+				this.findAccesses(node.getChild(1), instruction, list);
+			} else if (child.isType("*")) {
+				this.findAccesses(node.getChild(1), instruction, list);
+				this.addPointerUses(node, instruction, list);
+			} else { // & only evaluates the index of an array entry
+				BPLNode factor = node.getChild(1);
+				if (factor.getChildrenSize() > 1) {
+					this.findAccesses(factor.getChild(2), instruction, list);
+				}
+			}
+		} else if (node.isType("FACTOR")) {
+			BPLNode child = node.getChild(0);
+			if (child.isType("EXPRESSION")) {
+				this.findAccesses(child, instruction, list);
+			} else if (child.isType("FUN_CALL")) {
+				ArrayList<BPLNode> args = BPLInliner.getArgs(child);
+				for (int i = args.size() - 1; i >= 0; i--) {
+					this.findAccesses(args.get(i), instruction, list);
+				}
+				// the callee can read and write anything it gets a pointer to
+				this.addPointerUses(child, instruction, list);
+				this.addPointerDefs(child, instruction, list);
+			} else if (child.isType("ID")) {
+				if (node.getChildrenSize() > 1) {
+					this.findAccesses(node.getChild(2), instruction, list);
+				}
+				this.addUse(child, child.getDeclaration(), instruction, list);
+			}
+		}
+	}
+
+	private void addUse(BPLNode idNode, BPLNode varDec, BPLNode instruction, ArrayList<BPLVarAccess> list) {
+		int var = this.getVarIndex(varDec);
+		if (var < 0) {
+			return;
+		}
+		BPLVarAccess use = new BPLVarAccess(idNode, instruction, var, false, false);
+		this.uses.put(idNode, use);
+		list.add(use);
+	}
+
+	private void addDef(BPLNode varDec, BPLNode node, BPLNode instruction, boolean definite, ArrayList<BPLVarAccess> list) {
+		int var = this.getVarIndex(varDec);
+		if (var < 0) {
+			return;
+		}
+		BPLVarAccess def = new BPLVarAccess(node, instruction, var, true, definite);
+		this.addDefinition(def);
+		list.add(def);
+	}
+
+	private void addPointerUses(BPLNode node, BPLNode instruction, ArrayList<BPLVarAccess> list) {
+		for (int var = this.addressTaken.nextSetBit(0); var >= 0; var = this.addressTaken.nextSetBit(var + 1)) {
+			list.add(new BPLVarAccess(node, instruction, var, false, false));
+		}
+	}
+
+	private void addPointerDefs(BPLNode node, BPLNode instruction, ArrayList<BPLVarAccess> list) {
+		for (int var = this.addressTaken.nextSetBit(0); var >= 0; var = this.addressTaken.nextSetBit(var + 1)) {
+			BPLVarAccess def = new BPLVarAccess(node, instruction, var, true, false);
+			this.addDefinition(def);
+			list.add(def);
+		}
+	}
+
+	public String toString() {
+		String rtn = "";
+		for (BPLBasicBlock block : this.blocks) {
+			rtn += block + "\n";
+			for (BPLNode instruction : block.getInstructions()) {
+				rtn += "   " + instruction;
+			}
+		}
+		return rtn;
+	}
+}
@@ -0,0 +1,153 @@
+package Compiler;
+
+import java.util.*;
+
+public abstract class BPLDataflowAnalysis {
+	protected final BPLControlFlowGraph cfg;
+
+	private final boolean forward;
+	private final boolean union;
+	private BitSet[] in;
+	private BitSet[] out;
+	private int visits;
+	private long nanos;
+
+	/**
+	* a bit set analysis solved with a worklist.
+	* forward analyses go from the entry, backward ones from the exit.
+	* union analyses meet with or (may), the others with and (must)
+	*/
+	public BPLDataflowAnalysis(BPLControlFlowGraph cfg, boolean forward, boolean union) {
+		this.cfg = cfg;
+		this.forward = forward;
+		this.union = union;
+		this.in = null;
+		this.out = null;
+		this.visits = 0;
+		this.nanos = 0;
+	}
+
+	/**
+	* value at the entry of a forward analysis or the exit of a backward one
+	*/
+	protected abstract BitSet getBoundary();
+
+	/**
+	* starting value for the other blocks, the top of the lattice
+	*/
+	protected abstract BitSet getInitial();
+
+	/**
+	* @return the value on the other side of block, without changing input
+	*/
+	protected abstract BitSet transfer(BPLBasicBlock block, BitSet input);
+
+	public String getName() {
+		return this.getClass().getSimpleName();
+	}
+
+	public void solve() {
+		long start = System.nanoTime();
+		ArrayList<BPLBasicBlock> blocks = this.cfg.getBlocks();
+		int size = blocks.size();
+		this.in = new BitSet[size];
+		this.out = new BitSet[size];
+		BPLBasicBlock boundaryBlock = this.forward ? this.cfg.getEntry() : this.cfg.getExit();
+
+		// visit in reverse postorder (forward) or postorder (backward) so most
+		// blocks see their final inputs the first time through
+		ArrayList<BPLBasicBlock> order = BPLDominators.getReversePostorder(this.cfg.getEntry(), size);
+		boolean[] reachable = new boolean[size];
+		for (BPLBasicBlock block : order) {
+			reachable[block.getID()] = true;
+		}
+		for (BPLBasicBlock block : blocks) { // unreachable blocks go last
+			if (!reachable[block.getID()]) {
+				order.add(block);
+			}
+		}
+		if (!this.forward) {
+			Collections.reverse(order);
+		}
+
+		ArrayDeque<BPLBasicBlock> worklist = new ArrayDeque<BPLBasicBlock>();
+		boolean[] queued = new boolean[size];
+		for (BPLBasicBlock block : order) {
+			this.getInputs()[block.getID()] = (block == boundaryBlock) ? this.getBoundary() : this.getInitial();
+			this.getOutputs()[block.getID()] = this.getInitial();
+			worklist.add(block);
+			queued[block.getID()] = true;
+		}
+
+		while (!worklist.isEmpty()) {
+			BPLBasicBlock block = worklist.poll();
+			queued[block.getID()] = false;
+			this.visits++;
+
+			if (block != boundaryBlock) {
+				List<BPLBasicBlock> sources = this.forward ? block.getPredecessors() : block.getSuccessors();
+				BitSet input = null;
+				for (BPLBasicBlock source : sources) {
+					BitSet value = this.getOutputs()[source.getID()];
+					if (input == null) {
+						input = (BitSet) value.clone();
+					} else if (this.union) {
+						input.or(value);
+					} else {
+						input.and(value);
+					}
+				}
+				this.getInputs()[block.getID()] = (input == null) ? this.getInitial() : input;
+			}
+
+			BitSet output = this.transfer(block, this.getInputs()[block.getID()]);
+			if (!output.equals(this.getOutputs()[block.getID()])) {
+				this.getOutputs()[block.getID()] = output;
+				List<BPLBasicBlock> targets = this.forward ? block.getSuccessors() : block.getPredecessors();
+				for (BPLBasicBlock target : targets) {
+					if (!queued[target.getID()]) {
+						worklist.add(target);
+						queued[target.getID()] = true;
+					}
+				}
+			}
+		}
+		this.nanos = System.nanoTime() - start;
+	}
+
+	/**
+	* the solution flows from inputs to outputs in the direction of the analysis
+	*/
+	private BitSet[] getInputs() {
+		return this.forward ? this.in : this.out;
+	}
+
+	private BitSet[] getOutputs() {
+		return this.forward ? this.out : this.in;
+	}
+
+	/**
+	* @return the value at the start of block
+	*/
+	public BitSet getIn(BPLBasicBlock block) {
+		return this.in[block.getID()];
+	}
+
+	/**
+	* @return the value at the end of block
+	*/
+	public BitSet getOut(BPLBasicBlock block) {
+		return this.out[block.getID()];
+	}
+
+	/**
+	* @return how many times a block was processed
+	*/
+	public int getVisits() {
+		return this.visits;
+	}
+
+	public long getNanos() {
+		return this.nanos;
+	}
+}
@@ -0,0 +1,176 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLDominators {
+	private final BPLControlFlowGraph cfg;
+
+	private ArrayList<BPLBasicBlock> reversePostorder;
+	private int[] order;
+	private BPLBasicBlock[] idoms;
+	private ArrayList<ArrayList<BPLBasicBlock>> children;
+	private ArrayList<HashSet<BPLBasicBlock>> frontiers;
+	private long nanos;
+
+	/**
+	* computes immediate dominators with the iterative algorithm from
+	* Cooper, Harvey and Kennedy, then the dominance frontiers.
+	* blocks that can't be reached from the entry have no dominators
+	*/
+	public BPLDominators(BPLControlFlowGraph cfg) {
+		long start = System.nanoTime();
+		this.cfg = cfg;
+		int size = cfg.getBlocks().size();
+		this.reversePostorder = getReversePostorder(cfg.getEntry(), size);
+		this.order = new int[size];
+		Arrays.fill(this.order, -1);
+		for (int i = 0; i < this.reversePostorder.size(); i++) {
+			this.order[this.reversePostorder.get(i).getID()] = i;
+		}
+
+		this.idoms = new BPLBasicBlock[size];
+		this.findIdoms();
+
+		this.children = new ArrayList<ArrayList<BPLBasicBlock>>();
+		this.frontiers = new ArrayList<HashSet<BPLBasicBlock>>();
+		for (int i = 0; i < size; i++) {
+			this.children.add(new ArrayList<BPLBasicBlock>());
+			this.frontiers.add(new HashSet<BPLBasicBlock>());
+		}
+		for (BPLBasicBlock block : this.reversePostorder) {
+			if (block != cfg.getEntry()) {
+				this.children.get(this.idoms[block.getID()].getID()).add(block);
+			}
+		}
+		this.findFrontiers();
+		this.nanos = System.nanoTime() - start;
+	}
+
+	private void findIdoms() {
+		BPLBasicBlock entry = this.cfg.getEntry();
+		this.idoms[entry.getID()] = entry;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (BPLBasicBlock block : this.reversePostorder) {
+				if (block == entry) {
+					continue;
+				}
+				BPLBasicBlock newIdom = null;
+				for (BPLBasicBlock pred : block.getPredecessors()) {
+					if (this.idoms[pred.getID()] == null) { // unreachable or not processed yet
+						continue;
+					}
+					newIdom = (newIdom == null) ? pred : this.intersect(pred, newIdom);
+				}
+				if (this.idoms[block.getID()] != newIdom) {
+					this.idoms[block.getID()] = newIdom;
+					changed = true;
+				}
+			}
+		}
+	}
+
+	private BPLBasicBlock intersect(BPLBasicBlock a, BPLBasicBlock b) {
+		while (a != b) {
+			while (this.order[a.getID()] > this.order[b.getID()]) {
+				a = this.idoms[a.getID()];
+			}
+			while (this.order[b.getID()] > this.order[a.getID()]) {
+				b = this.idoms[b.getID()];
+			}
+		}
+		return a;
+	}
+
+	private void findFrontiers() {
+		for (BPLBasicBlock block : this.reversePostorder) {
+			if (block.getPredecessors().size() < 2) {
+				continue;
+			}
+			for (BPLBasicBlock pred : block.getPredecessors()) {
+				if (!this.isReachable(pred)) {
+					continue;
+				}
+				BPLBasicBlock runner = pred;
+				while (runner != this.idoms[block.getID()]) {
+					this.frontiers.get(runner.getID()).add(block);
+					runner = this.idoms[runner.getID()];
+				}
+			}
+		}
+	}
+
+	/**
+	* @return the blocks reachable from the entry, each before its successors
+	* except along back edges
+	*/
+	public static ArrayList<BPLBasicBlock> getReversePostorder(BPLBasicBlock entry, int size) {
+		ArrayList<BPLBasicBlock> postorder = new ArrayList<BPLBasicBlock>();
+		boolean[] visited = new boolean[size];
+		// iterative dfs so long functions don't overflow the stack
+		Stack<BPLBasicBlock> blocks = new Stack<BPLBasicBlock>();
+		Stack<Integer> nextSuccessor = new Stack<Integer>();
+		blocks.push(entry);
+		nextSuccessor.push(0);
+		visited[entry.getID()] = true;
+		while (!blocks.isEmpty()) {
+			BPLBasicBlock block = blocks.peek();
+			int next = nextSuccessor.pop();
+			if (next < block.getSuccessors().size()) {
+				nextSuccessor.push(next + 1);
+				BPLBasicBlock successor = block.getSuccessors().get(next);
+				if (!visited[successor.getID()]) {
+					visited[successor.getID()] = true;
+					blocks.push(successor);
+					nextSuccessor.push(0);
+				}
+			} else {
+				blocks.pop();
+				postorder.add(block);
+			}
+		}
+		Collections.reverse(postorder);
+		return postorder;
+	}
+
+	public ArrayList<BPLBasicBlock> getReversePostorder() {
+		return this.reversePostorder;
+	}
+
+	public boolean isReachable(BPLBasicBlock block) {
+		return this.idoms[block.getID()] != null;
+	}
+
+	/**
+	* @return the immediate dominator, the entry for the entry, null if unreachable
+	*/
+	public BPLBasicBlock getImmediateDominator(BPLBasicBlock block) {
+		return this.idoms[block.getID()];
+	}
+
+	public boolean dominates(BPLBasicBlock a, BPLBasicBlock b) {
+		if (!this.isReachable(a) || !this.isReachable(b)) {
+			return false;
+		}
+		while (b != a && b != this.cfg.getEntry()) {
+			b = this.idoms[b.getID()];
+		}
+		return b == a;
+	}
+
+	/**
+	* @return the blocks immediately dominated by block
+	*/
+	public ArrayList<BPLBasicBlock> getChildren(BPLBasicBlock block) {
+		return this.children.get(block.getID());
+	}
+
+	public Set<BPLBasicBlock> getFrontier(BPLBasicBlock block) {
+		return this.frontiers.get(block.getID());
+	}
+
+	public long getNanos() {
+		return this.nanos;
+	}
+}
@@ -0,0 +1,42 @@
+package Compiler;
+
+public class BPLEmittedFunction {
+	private final String name;
+	private final int firstLabel;
+	private final int labels;
+	private final int boundsChecks;
+	private final int boundsChecksRemoved;
+
+	/**
+	* what BPLCodeGenerator numbered and counted while emitting a function,
+	* which BPLIncremental needs to put its code into another program
+	* @param firstLabel the first .Meow label it took, and labels how many
+	*/
+	public BPLEmittedFunction(String name, int firstLabel, int labels, int boundsChecks, int boundsChecksRemoved) {
+		this.name = name;
+		this.firstLabel = firstLabel;
+		this.labels = labels;
+		this.boundsChecks = boundsChecks;
+		this.boundsChecksRemoved = boundsChecksRemoved;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public int getFirstLabel() {
+		return this.firstLabel;
+	}
+
+	public int getLabels() {
+		return this.labels;
+	}
+
+	public int getBoundsChecks() {
+		return this.boundsChecks;
+	}
+
+	public int getBoundsChecksRemoved() {
+		return this.boundsChecksRemoved;
+	}
+}
@@ -0,0 +1,568 @@
+package Compiler;
+
+import java.io.*;
+import java.nio.CharBuffer;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.regex.*;
+
+public class BPLIncremental {
+	public static final String STATE_VERSION = "BPL incremental 1";
+
+	private static final Pattern LABEL = Pattern.compile("\\.(Meow|Potato)(\\d+)");
+
+	private final BPLOptions options;
+	private final BPLCompiler compiler;
+	private final String compilerVersion;
+	private final HashMap<File, ArrayList<BPLParsedDeclaration>> trees;
+	private int parsed;
+	private int typeChecked;
+	private int recompiled;
+	private int reused;
+	private int fullCompiles;
+
+	/**
+	* recompiles only the functions of a source that changed since the last
+	* time. the source is split at its top-level declarations, and each is
+	* parsed on its own unless the same tokens were parsed the last time
+	* this compiled the file, then the tree is reused. a function is type
+	* checked again only if it was parsed again or one of the declarations
+	* before it that its ids could refer to was, and the rest keep what the
+	* type checker linked them to last time. the trees are only kept in
+	* memory, so the first compile of each file parses and checks all of it.
+	* each function gets a key hashing its tokens and, for every id in it,
+	* the var declarations and what its code depends on of the functions it
+	* could refer to: the key of one that can be inlined into it, since its
+	* body is copied in, and for any other its signature and whether it is a
+	* leaf function, which changes how it is called. only the functions whose
+	* key isn't in the state from last time are generated. the rest is copied
+	* from the state, with its labels and strings renumbered, so the assembly
+	* is the same as a full compile's. a source that doesn't split cleanly,
+	* or doesn't compile, gets a full compile, so its errors are the same too
+	*/
+	public BPLIncremental(BPLOptions options) throws IOException {
+		this.options = options;
+		this.compiler = new BPLCompiler(options);
+		this.compilerVersion = BPLBuildCache.findCompilerVersion();
+		this.trees = new HashMap<File, ArrayList<BPLParsedDeclaration>>();
+		this.parsed = 0;
+		this.typeChecked = 0;
+		this.recompiled = 0;
+		this.reused = 0;
+		this.fullCompiles = 0;
+	}
+
+	/**
+	* compiles source, reusing what stateFile has from the last compile,
+	* and writes the functions of this one there if it compiled
+	*/
+	public BPLCompilation compile(byte[] source, File stateFile) throws IOException {
+		String text = new String(source, "UTF-8");
+		ArrayList<BPLSourceDeclaration> declarations = this.split(text);
+		if (declarations == null) {
+			return this.compileFully(text);
+		}
+		// taken out while it's used, so the same file compiled twice at once doesn't share trees
+		File treesKey = stateFile.getAbsoluteFile();
+		ArrayList<BPLParsedDeclaration> lastTrees;
+		synchronized (this.trees) {
+			lastTrees = this.trees.remove(treesKey);
+		}
+		ArrayList<BPLParsedDeclaration> trees = this.parse(declarations, lastTrees);
+		if (trees == null) {
+			return this.compileFully(text);
+		}
+		HashMap<String, ArrayList<Integer>> named = new HashMap<String, ArrayList<Integer>>();
+		for (int i = 0; i < declarations.size(); i++) {
+			if (!named.containsKey(declarations.get(i).getName())) {
+				named.put(declarations.get(i).getName(), new ArrayList<Integer>());
+			}
+			named.get(declarations.get(i).getName()).add(i);
+		}
+		BPLTypeChecker typeChecker = this.typeCheck(declarations, named, trees);
+		if (typeChecker == null) {
+			return this.compileFully(text);
+		}
+		synchronized (this.trees) {
+			this.trees.put(treesKey, trees);
+		}
+		BPLNode[] funDecs = new BPLNode[declarations.size()];
+		for (int i = 0; i < declarations.size(); i++) {
+			if (declarations.get(i).isFunction()) {
+				funDecs[i] = trees.get(i).getDec();
+			}
+		}
+		BPLInliner inliner = new BPLInliner(this.options.inlineLimit());
+		for (int i = 0; i < declarations.size(); i++) {
+			if (declarations.get(i).isFunction()) {
+				declarations.get(i).setKey(this.getKey(declarations, named, funDecs, inliner, i));
+			}
+		}
+
+		HashMap<String, BPLCachedFunction> state = readState(stateFile);
+		HashSet<String> changed = new HashSet<String>();
+		for (BPLSourceDeclaration declaration : declarations) {
+			if (declaration.isFunction() && !state.containsKey(declaration.getKey())) {
+				changed.add(declaration.getName());
+			}
+		}
+
+		ArrayList<BPLCachedFunction> generated = this.generate(typeChecker, declarations, changed, state);
+		if (generated == null) {
+			return this.compileFully(text);
+		}
+		String header = generated.remove(0).getCode();
+		int recompiled = generated.size();
+		ArrayList<BPLCachedFunction> functions = new ArrayList<BPLCachedFunction>();
+		for (BPLSourceDeclaration declaration : declarations) {
+			if (declaration.isFunction()) {
+				functions.add(state.get(declaration.getKey()));
+			}
+		}
+		String assembly = this.link(header, functions);
+		writeState(stateFile, functions);
+		synchronized (this) {
+			this.recompiled += recompiled;
+			this.reused += functions.size() - recompiled;
+		}
+		return new BPLCompilation(assembly, new ArrayList<String>());
+	}
+
+	private BPLCompilation compileFully(String text) {
+		synchronized (this) {
+			this.fullCompiles++;
+		}
+		return this.compiler.compile(text);
+	}
+
+	/**
+	* @return the declarations, or null if the source can't be scanned or split
+	*/
+	private ArrayList<BPLSourceDeclaration> split(String text) {
+		ArrayList<Token> tokens = new ArrayList<Token>();
+		try {
+			BPLScanner scanner = new BPLScanner(CharBuffer.wrap(text));
+			scanner.getNextToken();
+			while (scanner.nextToken().getType() != Token.T_EOF) {
+				tokens.add(scanner.nextToken());
+				scanner.getNextToken();
+			}
+		} catch (BPLException e) {
+			return null;
+		}
+		return BPLSourceDeclaration.split(tokens);
+	}
+
+	/**
+	* parses the declarations, reusing the trees from lastTrees that have
+	* the same tokens
+	* @return a tree for each declaration, or null if one doesn't parse
+	*/
+	private ArrayList<BPLParsedDeclaration> parse(ArrayList<BPLSourceDeclaration> declarations, ArrayList<BPLParsedDeclaration> lastTrees) {
+		HashMap<String, LinkedList<BPLParsedDeclaration>> unused = new HashMap<String, LinkedList<BPLParsedDeclaration>>();
+		if (lastTrees != null) {
+			for (BPLParsedDeclaration tree : lastTrees) {
+				if (!unused.containsKey(tree.getText())) {
+					unused.put(tree.getText(), new LinkedList<BPLParsedDeclaration>());
+				}
+				unused.get(tree.getText()).add(tree);
+			}
+		}
+		ArrayList<BPLParsedDeclaration> trees = new ArrayList<BPLParsedDeclaration>();
+		int parsed = 0;
+		for (BPLSourceDeclaration declaration : declarations) {
+			LinkedList<BPLParsedDeclaration> same = unused.get(declaration.getLinesText());
+			BPLParsedDeclaration tree;
+			if (same != null && !same.isEmpty()) {
+				tree = same.poll();
+				tree.moveTo(declaration.getFirstLine());
+			} else {
+				try {
+					tree = BPLParsedDeclaration.parse(declaration);
+				} catch (BPLException e) {
+					return null;
+				} catch (RuntimeException e) {
+					return null;
+				}
+				parsed++;
+			}
+			if (tree.getDec().isType("FUN_DEC") != declaration.isFunction()) {
+				return null;
+			}
+			trees.add(tree);
+		}
+		synchronized (this) {
+			this.parsed += parsed;
+		}
+		return trees;
+	}
+
+	/**
+	* puts the trees together into one program and type checks it, skipping
+	* the functions that were checked last time with the same declarations
+	* before them for each of their ids
+	* @return the type checker, or null if it doesn't compile
+	*/
+	private BPLTypeChecker typeCheck(ArrayList<BPLSourceDeclaration> declarations, HashMap<String, ArrayList<Integer>> named, ArrayList<BPLParsedDeclaration> trees) {
+		HashSet<BPLNode> checked = new HashSet<BPLNode>();
+		for (int i = 0; i < declarations.size(); i++) {
+			if (!declarations.get(i).isFunction()) {
+				continue;
+			}
+			HashMap<String, ArrayList<BPLNode>> earlier = new HashMap<String, ArrayList<BPLNode>>();
+			for (String id : declarations.get(i).getIDs()) {
+				ArrayList<BPLNode> decs = new ArrayList<BPLNode>();
+				for (int j : getEarlier(named, id, i)) {
+					decs.add(trees.get(j).getDec());
+				}
+				earlier.put(id, decs);
+			}
+			if (earlier.equals(trees.get(i).getEarlier())) { // BPLNodes are equal only to themselves, which are only reused unchanged
+				checked.add(trees.get(i).getDec());
+			}
+			trees.get(i).setEarlier(earlier);
+		}
+
+		BPLNode declarationList = null;
+		for (int i = trees.size() - 1; i >= 0; i--) {
+			BPLNode declaration = trees.get(i).getDeclaration();
+			BPLNode list = new BPLNode("DECLARATION_LIST", declaration.getLineNumber());
+			list.addChild(declaration);
+			if (declarationList != null) {
+				list.addChild(declarationList);
+			}
+			declarationList = list;
+		}
+		BPLNode program = new BPLNode("PROGRAM", declarationList.getLineNumber());
+		program.addChild(declarationList);
+
+		BPLTypeChecker typeChecker;
+		try {
+			typeChecker = new BPLTypeChecker(program, checked);
+		} catch (BPLException e) {
+			return null;
+		} catch (RuntimeException e) {
+			return null;
+		}
+		synchronized (this) {
+			this.typeChecked += BPLAnalysis.getFunDecs(program).size() - checked.size();
+		}
+		return typeChecker;
+	}
+
+	/**
+	* the lines only matter to the code with bounds checks, whose errors give them
+	* @param named the indexes of the declarations with each name
+	*/
+	private String getKey(ArrayList<BPLSourceDeclaration> declarations, HashMap<String, ArrayList<Integer>> named, BPLNode[] funDecs, BPLInliner inliner, int index) {
+		BPLSourceDeclaration declaration = declarations.get(index);
+		MessageDigest digest = BPLBuildCache.newDigest();
+		BPLBuildCache.update(digest, this.compilerVersion);
+		BPLBuildCache.update(digest, this.options.toString());
+		StringBuilder tokens = new StringBuilder();
+		for (Token token : declaration.getTokens()) {
+			if (this.options.boundsCheck()) {
+				tokens.append(token.getLineNumber()).append(' ');
+			}
+			tokens.append(token.getValue()).append('\n'); // string literals are on one line
+		}
+		BPLBuildCache.update(digest, tokens.toString());
+		for (String id : declaration.getIDs()) {
+			BPLBuildCache.update(digest, id);
+			for (int i : getEarlier(named, id, index)) {
+				BPLSourceDeclaration other = declarations.get(i);
+				BPLBuildCache.update(digest, other.isFunction() ? getCalleeKey(other, funDecs[i], inliner) : other.getText());
+			}
+		}
+		return BPLBuildCache.toHex(digest.digest());
+	}
+
+	/**
+	* @return what a caller's code depends on of callee: all of it if it can
+	* be inlined, and otherwise its signature and whether it's a leaf. a leaf
+	* makes no calls once the calls it inlines are, and when its only calls
+	* are to itself its tail calls decide it, so then its tokens are used
+	*/
+	private static String getCalleeKey(BPLSourceDeclaration callee, BPLNode funDec, BPLInliner inliner) {
+		if (inliner.isInlinable(funDec)) {
+			return "inlined " + callee.getKey();
+		}
+		HashSet<BPLNode> calls = new HashSet<BPLNode>();
+		findCalls(funDec.getChild(3), inliner, calls);
+		String leaf;
+		if (calls.isEmpty()) {
+			leaf = "leaf";
+		} else if (calls.size() == 1 && calls.contains(funDec)) {
+			leaf = "self calls " + callee.getKey();
+		} else {
+			leaf = "calls";
+		}
+		StringBuilder signature = new StringBuilder();
+		for (Token token : callee.getTokens()) {
+			if (token.getType() == Token.T_LCURLY) {
+				break;
+			}
+			signature.append(token.getValue()).append(' ');
+		}
+		return leaf + "\n" + signature;
+	}
+
+	/**
+	* adds the functions node calls that aren't inlined, looking inside the ones that are
+	*/
+	private static void findCalls(BPLNode node, BPLInliner inliner, HashSet<BPLNode> calls) {
+		if (node.isType("FUN_CALL")) {
+			BPLNode callee = node.getChild(0).getDeclaration();
+			if (inliner.isInlinable(callee)) {
+				findCalls(callee.getChild(3), inliner, calls);
+			} else {
+				calls.add(callee);
+			}
+		}
+		for (BPLNode child : node.getChildren()) {
+			findCalls(child, inliner, calls);
+		}
+	}
+
+	/**
+	* @return the indexes of the declarations named id before index
+	*/
+	private static List<Integer> getEarlier(HashMap<String, ArrayList<Integer>> named, String id, int index) {
+		ArrayList<Integer> indexes = named.get(id);
+		if (indexes == null) {
+			return new ArrayList<Integer>();
+		}
+		int end = 0;
+		while (end < indexes.size() && indexes.get(end) < index) {
+			end++;
+		}
+		return indexes.subList(0, end);
+	}
+
+	/**
+	* generates the header and the changed functions, and puts the functions into state
+	* @return the header of the program in a BPLCachedFunction of its own,
+	* followed by the functions generated, or null if it didn't compile or
+	* the output wasn't laid out as expected
+	*/
+	private ArrayList<BPLCachedFunction> generate(BPLTypeChecker typeChecker, ArrayList<BPLSourceDeclaration> declarations, HashSet<String> changed, HashMap<String, BPLCachedFunction> state) {
+		// the type checker adds each declaration's strings in turn
+		ArrayList<BPLSourceDeclaration> functions = new ArrayList<BPLSourceDeclaration>();
+		ArrayList<Integer> firstStrings = new ArrayList<Integer>();
+		int string = 0;
+		for (BPLSourceDeclaration declaration : declarations) {
+			if (declaration.isFunction() && changed.contains(declaration.getName())) {
+				functions.add(declaration);
+				firstStrings.add(string);
+			}
+			string += declaration.countStrings();
+		}
+		ArrayList<String> strings = typeChecker.getStrings();
+		if (string != strings.size()) {
+			return null;
+		}
+
+		ByteArrayOutputStream assembly = new ByteArrayOutputStream();
+		BPLCodeGenerator generator;
+		String[] lines;
+		try {
+			PrintStream out = new PrintStream(assembly, false, "UTF-8");
+			generator = new BPLCodeGenerator(typeChecker, this.options, out, changed);
+			out.flush();
+			lines = assembly.toString("UTF-8").split("\n", -1);
+		} catch (BPLException e) {
+			return null;
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		} catch (RuntimeException e) {
+			return null;
+		}
+
+		ArrayList<BPLEmittedFunction> emitted = generator.getEmittedFunctions();
+		if (emitted.size() != functions.size()) {
+			return null;
+		}
+		// where each function starts, and the end of the last one
+		int[] starts = new int[emitted.size() + 1];
+		int line = 0;
+		for (int i = 0; i < emitted.size(); i++) {
+			if (!emitted.get(i).getName().equals(functions.get(i).getName())) {
+				return null;
+			}
+			while (line < lines.length && !lines[line].equals(emitted.get(i).getName() + ":")) {
+				line++;
+			}
+			if (line == lines.length) {
+				return null;
+			}
+			starts[i] = line;
+		}
+		starts[emitted.size()] = lines.length - (this.options.boundsCheck() ? 2 : 1); // before the totals and after the last newline
+		if (starts[emitted.size()] < line || (this.options.boundsCheck() && !lines[starts[emitted.size()]].startsWith("# bounds checks"))) {
+			return null;
+		}
+
+		ArrayList<BPLCachedFunction> generated = new ArrayList<BPLCachedFunction>();
+		generated.add(new BPLCachedFunction(null, null, null, null, join(lines, 0, starts[0])));
+		for (int i = 0; i < emitted.size(); i++) {
+			BPLEmittedFunction function = emitted.get(i);
+			int first = firstStrings.get(i);
+			int stringCount = functions.get(i).countStrings();
+			ArrayList<String> refs = new ArrayList<String>();
+			String code = normalize(join(lines, starts[i], starts[i + 1]), function, strings, refs);
+			if (code == null) {
+				return null;
+			}
+			BPLEmittedFunction relative = new BPLEmittedFunction(function.getName(), 0, function.getLabels(), function.getBoundsChecks(), function.getBoundsChecksRemoved());
+			BPLCachedFunction cached = new BPLCachedFunction(functions.get(i).getKey(), relative, new ArrayList<String>(strings.subList(first, first + stringCount)), refs, code);
+			state.put(cached.getKey(), cached);
+			generated.add(cached);
+		}
+		return generated;
+	}
+
+	/**
+	* @return the lines from start up to end, each ending with a newline
+	*/
+	private static String join(String[] lines, int start, int end) {
+		StringBuilder text = new StringBuilder();
+		for (int i = start; i < end; i++) {
+			text.append(lines[i]).append('\n');
+		}
+		return text.toString();
+	}
+
+	/**
+	* numbers the labels of code from 0 and its strings by refs, which it adds them to
+	* @return the code, or null if it uses a label that isn't its own
+	*/
+	private static String normalize(String code, BPLEmittedFunction function, ArrayList<String> strings, ArrayList<String> refs) {
+		Matcher matcher = LABEL.matcher(code);
+		StringBuffer normalized = new StringBuffer();
+		while (matcher.find()) {
+			int n = Integer.parseInt(matcher.group(2));
+			if (matcher.group(1).equals("Meow")) {
+				n -= function.getFirstLabel();
+				if (n < 0 || n >= function.getLabels()) {
+					return null;
+				}
+			} else {
+				if (n >= strings.size()) {
+					return null;
+				}
+				String s = strings.get(n);
+				if (!refs.contains(s)) {
+					refs.add(s);
+				}
+				n = refs.indexOf(s);
+			}
+			matcher.appendReplacement(normalized, "." + matcher.group(1) + n);
+		}
+		matcher.appendTail(normalized);
+		return normalized.toString();
+	}
+
+	/**
+	* puts the program together the way BPLCodeGenerator would have: the
+	* header with every function's strings, then the functions with their
+	* labels following on from the last one's
+	*/
+	private String link(String header, ArrayList<BPLCachedFunction> functions) {
+		ArrayList<String> strings = new ArrayList<String>();
+		for (BPLCachedFunction function : functions) {
+			strings.addAll(function.getStrings());
+		}
+		// like BPLCodeGenerator's stringMap, a string is the last .Potato with its text
+		HashMap<String, Integer> stringLabels = new HashMap<String, Integer>();
+		StringBuilder stringLines = new StringBuilder();
+		for (int i = 0; i < strings.size(); i++) {
+			stringLabels.put(strings.get(i), i);
+			stringLines.append(".Potato" + i + ": .string " + strings.get(i) + "\n");
+		}
+
+		StringBuilder assembly = new StringBuilder();
+		for (String line : header.split("\n")) {
+			if (line.equals(".text ")) {
+				assembly.append(stringLines);
+			}
+			if (!line.startsWith(".Potato")) {
+				assembly.append(line).append('\n');
+			}
+		}
+
+		int label = 0;
+		int boundsChecks = 0;
+		int boundsChecksRemoved = 0;
+		for (BPLCachedFunction function : functions) {
+			Matcher matcher = LABEL.matcher(function.getCode());
+			StringBuffer code = new StringBuffer();
+			while (matcher.find()) {
+				int n = Integer.parseInt(matcher.group(2));
+				if (matcher.group(1).equals("Meow")) {
+					n += label;
+				} else {
+					n = stringLabels.get(function.getRefs().get(n));
+				}
+				matcher.appendReplacement(code, "." + matcher.group(1) + n);
+			}
+			matcher.appendTail(code);
+			assembly.append(code);
+			label += function.getEmitted().getLabels();
+			boundsChecks += function.getEmitted().getBoundsChecks();
+			boundsChecksRemoved += function.getEmitted().getBoundsChecksRemoved();
+		}
+		if (this.options.boundsCheck()) {
+			assembly.append("# bounds checks: " + boundsChecks + " emitted, " + boundsChecksRemoved + " removed\n");
+		}
+		return assembly.toString();
+	}
+
+	/**
+	* @return the functions stateFile has by key, or none if it is missing or from another version
+	*/
+	private static HashMap<String, BPLCachedFunction> readState(File stateFile) throws IOException {
+		HashMap<String, BPLCachedFunction> state = new HashMap<String, BPLCachedFunction>();
+		if (!stateFile.isFile()) {
+			return state;
+		}
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(stateFile), "UTF-8"));
+		try {
+			if (!STATE_VERSION.equals(in.readLine())) {
+				return state;
+			}
+			for (BPLCachedFunction function = BPLCachedFunction.read(in); function != null; function = BPLCachedFunction.read(in)) {
+				state.put(function.getKey(), function);
+			}
+		} catch (IOException e) {
+			state.clear(); // cut short, so none of it is trusted
+		} finally {
+			in.close();
+		}
+		return state;
+	}
+
+	/**
+	* writes to a temporary file and renames it, like BPLBuildCache
+	*/
+	private static void writeState(File stateFile, ArrayList<BPLCachedFunction> functions) throws IOException {
+		File directory = stateFile.getAbsoluteFile().getParentFile();
+		File temporary = File.createTempFile(stateFile.getName(), ".tmp", directory);
+		PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporary), "UTF-8"), 1 << 16));
+		try {
+			out.println(STATE_VERSION);
+			for (BPLCachedFunction function : functions) {
+				function.write(out);
+			}
+		} finally {
+			out.close();
+		}
+		if (out.checkError() || !temporary.renameTo(stateFile)) {
+			temporary.delete();
+			throw new IOException("Can't write " + stateFile);
+		}
+	}
+
+	public synchronized String toString() {
+		return String.format("incremental: %d functions recompiled, %d reused, %d full compiles, %d declarations parsed, %d functions type checked", this.recompiled, this.reused, this.fullCompiles, this.parsed, this.typeChecked);
+	}
+}
@@ -0,0 +1,243 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLInliner {
+	private final int limit;
+
+	private HashMap<BPLNode, Integer> sizes;
+	private HashMap<BPLNode, Boolean> recursive;
+	private HashMap<BPLNode, HashSet<BPLNode>> writtenParams;
+	private HashMap<BPLNode, Integer> inlineSlots;
+	private HashMap<BPLNode, Integer> tempSlots;
+
+	/**
+	* decides which calls get inlined.
+	* the FUN_DEC nodes must already have positions assigned to their locals
+	*/
+	public BPLInliner(int limit) {
+		this.limit = limit;
+		this.sizes = new HashMap<BPLNode, Integer>();
+		this.recursive = new HashMap<BPLNode, Boolean>();
+		this.writtenParams = new HashMap<BPLNode, HashSet<BPLNode>>();
+		this.inlineSlots = new HashMap<BPLNode, Integer>();
+		this.tempSlots = new HashMap<BPLNode, Integer>();
+	}
+
+	/**
+	* main and functions that can end up calling themselves are never inlined
+	*/
+	public boolean isInlinable(BPLNode funDec) {
+		if (this.limit <= 0 || getFunDecID(funDec).equals("main")) {
+			return false;
+		}
+		return this.getSize(funDec) <= this.limit && !this.isRecursive(funDec);
+	}
+
+	/**
+	* number of statements, factors and operators in the body
+	*/
+	public int getSize(BPLNode funDec) {
+		if (!this.sizes.containsKey(funDec)) {
+			this.sizes.put(funDec, this.countSize(funDec.getChild(3)));
+		}
+		return this.sizes.get(funDec);
+	}
+
+	private int countSize(BPLNode node) {
+		int size = 0;
+		if (node.isType("STATEMENT") || node.isType("FACTOR") || node.isType("ADDOP") || node.isType("MULOP") || node.isType("RELOP")) {
+			size = 1;
+		}
+		for (BPLNode child : node.getChildren()) {
+			size += this.countSize(child);
+		}
+		return size;
+	}
+
+	/**
+	* @return true if funDec can reach itself in the call graph
+	*/
+	public boolean isRecursive(BPLNode funDec) {
+		if (!this.recursive.containsKey(funDec)) {
+			HashSet<BPLNode> visited = new HashSet<BPLNode>();
+			Stack<BPLNode> toVisit = new Stack<BPLNode>();
+			toVisit.addAll(getCallees(funDec));
+			boolean found = false;
+			while (!toVisit.isEmpty() && !found) {
+				BPLNode callee = toVisit.pop();
+				if (callee == funDec) {
+					found = true;
+				} else if (visited.add(callee)) {
+					toVisit.addAll(getCallees(callee));
+				}
+			}
+			this.recursive.put(funDec, found);
+		}
+		return this.recursive.get(funDec);
+	}
+
+	/**
+	* a param that is never assigned and never has its address taken
+	* can be replaced by a constant argument
+	*/
+	public boolean isReadOnly(BPLNode funDec, BPLNode param) {
+		if (!this.writtenParams.containsKey(funDec)) {
+			HashSet<BPLNode> written = new HashSet<BPLNode>();
+			this.findWrittenVars(funDec.getChild(3), written);
+			this.writtenParams.put(funDec, written);
+		}
+		return !this.writtenParams.get(funDec).contains(param);
+	}
+
+	private void findWrittenVars(BPLNode node, HashSet<BPLNode> written) {
+		if (node.isType("EXPRESSION") && node.isChildrenSize(3)) {
+			BPLNode var = node.getChild(0);
+			if (!var.getChild(0).isType("*")) {
+				written.add(var.getDeclaration());
+			}
+		} else if (node.isType("F") && node.getChild(0).isType("&")) {
+			written.add(node.getChild(1).getChild(0).getDeclaration());
+		}
+		for (BPLNode child : node.getChildren()) {
+			this.findWrittenVars(child, written);
+		}
+	}
+
+	/**
+	* frame slots an inlined copy of funDec takes: its params, then its locals,
+	* then its temps
+	*/
+	public int getSlots(BPLNode funDec) {
+		return getParams(funDec).size() + countLocalSlots(funDec.getChild(3)) + this.getTempSlots(funDec);
+	}
+
+	/**
+	* temps hold results funDec's body reuses. they have to be set before
+	* any slots are counted
+	*/
+	public void setTempSlots(BPLNode funDec, int slots) {
+		this.tempSlots.put(funDec, slots);
+	}
+
+	public int getTempSlots(BPLNode funDec) {
+		Integer slots = this.tempSlots.get(funDec);
+		return (slots == null) ? 0 : slots;
+	}
+
+	/**
+	* extra frame slots needed by the calls inlined inside node, including
+	* the calls those inlined bodies inline in turn
+	*/
+	public int getInlineSlots(BPLNode node) {
+		if (this.inlineSlots.containsKey(node)) {
+			return this.inlineSlots.get(node);
+		}
+		int slots = 0;
+		if (node.isType("FUN_CALL")) {
+			BPLNode funDec = node.getChild(0).getDeclaration();
+			if (this.isInlinable(funDec)) {
+				slots = this.getSlots(funDec) + this.getInlineSlots(funDec.getChild(3));
+			}
+		}
+		for (BPLNode child : node.getChildren()) {
+			slots = Math.max(slots, this.getInlineSlots(child));
+		}
+		if (node.isType("FUN_CALL") || node.isType("COMPOUND_STMT")) {
+			this.inlineSlots.put(node, slots);
+		}
+		return slots;
+	}
+
+	/**
+	* every local of an inlined copy gets its own slots, since the
+	* frame positions leave out the locals kept in registers
+	*/
+	private static int countLocalSlots(BPLNode node) {
+		int slots = 0;
+		if (node.isType("VAR_DEC")) {
+			slots = getVarSlots(node);
+		}
+		for (BPLNode child : node.getChildren()) {
+			slots += countLocalSlots(child);
+		}
+		return slots;
+	}
+
+	/**
+	* @return 1 for scalars and the size for arrays
+	*/
+	public static int getVarSlots(BPLNode varDec) {
+		if (varDec.getChildrenSize() == 5) {
+			return ((BPLIntegerNode) varDec.getChild(3)).getInteger();
+		}
+		return 1;
+	}
+
+	private static ArrayList<BPLNode> getCallees(BPLNode funDec) {
+		ArrayList<BPLNode> callees = new ArrayList<BPLNode>();
+		findCallees(funDec.getChild(3), callees);
+		return callees;
+	}
+
+	private static void findCallees(BPLNode node, ArrayList<BPLNode> callees) {
+		if (node.isType("FUN_CALL")) {
+			callees.add(node.getChild(0).getDeclaration());
+		}
+		for (BPLNode child : node.getChildren()) {
+			findCallees(child, callees);
+		}
+	}
+
+	/**
+	* @return the PARAM nodes of funDec in order
+	*/
+	public static ArrayList<BPLNode> getParams(BPLNode funDec) {
+		ArrayList<BPLNode> params = new ArrayList<BPLNode>();
+		BPLNode paramList = funDec.getChild(2).getChild(0);
+		while (paramList.isType("PARAM_LIST")) {
+			params.add(paramList.getChild(0));
+			if (paramList.getChildrenSize() < 2) {
+				break;
+			}
+			paramList = paramList.getChild(1);
+		}
+		return params;
+	}
+
+	/**
+	* @return the argument EXPRESSION nodes of funCall in order
+	*/
+	public static ArrayList<BPLNode> getArgs(BPLNode funCall) {
+		ArrayList<BPLNode> args = new ArrayList<BPLNode>();
+		BPLNode argList = funCall.getChild(1).getChild(0);
+		while (argList.isType("ARG_LIST")) {
+			args.add(argList.getChild(0));
+			if (argList.getChildrenSize() < 2) {
+				break;
+			}
+			argList = argList.getChild(1);
+		}
+		return args;
+	}
+
+	/**
+	* @return whether evaluating node can call a function, read or assign,
+	* so the order it is evaluated in next to other operands shows
+	*/
+	public static boolean hasSideEffects(BPLNode node) {
+		if (node.isType("FUN_CALL") || node.isType("READ") || (node.isType("EXPRESSION") && node.isChildrenSize(3))) {
+			return true;
+		}
+		for (BPLNode child : node.getChildren()) {
+			if (hasSideEffects(child)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static String getFunDecID(BPLNode funDec) {
+		return ((BPLVarNode) funDec.getChild(1)).getID();
+	}
+}
@@ -0,0 +1,639 @@
+package Compiler;
+
+import java.util.*;
+import java.io.*;
+
+public class BPLJVMGenerator {
+	public static final String CLASS_NAME = "BPLProgram";
+	/**
+	* static int $run(BPLJVMRuntime) sets up the globals and calls main
+	*/
+	public static final String ENTRY = "$run";
+
+	private static final String RUNTIME = "Compiler/BPLJVMRuntime";
+	private static final String RUNTIME_FIELD = "$runtime";
+	private static final String POINTER = "Compiler/BPLPointer";
+	private static final String INT = "I";
+	private static final String STRING = "Ljava/lang/String;";
+	private static final String INT_ARRAY = "[I";
+	private static final String STRING_ARRAY = "[Ljava/lang/String;";
+	private static final String POINTER_TYPE = "L" + POINTER + ";";
+	/**
+	* in the order of the branch instructions, ifeq to ifle. each one's
+	* opposite is next to it
+	*/
+	private static final List<String> RELOPS = Arrays.asList("==", "!=", "<", ">=", ">", "<=");
+	private static final List<String> ARITHMETIC_OPS = Arrays.asList("+", "-", "*", "/", "%");
+
+	private BPLNode parseTreeHead;
+	private BPLClassWriter writer;
+	private HashSet<BPLNode> boxed;
+	private HashMap<BPLNode, Integer> slots;
+	private ArrayList<BPLNode> globals;
+	private BPLNode mainFunDec;
+	private BPLBytecode code;
+	private int nextSlot;
+	private byte[] classFile;
+
+	/**
+	* compiles the program to the class file of one class, CLASS_NAME.
+	* every function is a static method and every global a static field.
+	* ints are JVM ints, strings are Strings and arrays are int[] and
+	* String[]. a var that has its address taken is kept in an array of
+	* one element, so a pointer can be a BPLPointer to an array element.
+	* locals are all set up at the start of the function, like the native
+	* frame. operands and args are evaluated in the native backend's order,
+	* not the JVM's left to right, where that shows. load the class with
+	* BPLClassLoader and run it with BPLJVMRuntime
+	*/
+	public BPLJVMGenerator(String fileName) throws BPLException {
+		BPLTypeChecker typeChecker = new BPLTypeChecker(fileName);
+		this.parseTreeHead = typeChecker.getParseTreeHead();
+		this.writer = new BPLClassWriter(CLASS_NAME, new File(fileName).getName());
+		this.boxed = new HashSet<BPLNode>();
+		this.slots = new HashMap<BPLNode, Integer>();
+		this.globals = new ArrayList<BPLNode>();
+		this.mainFunDec = null;
+		this.code = null;
+		this.nextSlot = 0;
+
+		ArrayList<BPLNode> funDecs = new ArrayList<BPLNode>();
+		if (this.parseTreeHead.getChildrenSize() != 0) {
+			for (BPLNode decList = this.parseTreeHead.getChild(0); decList != null; decList = (decList.getChildrenSize() > 1) ? decList.getChild(1) : null) {
+				BPLNode dec = decList.getChild(0).getChild(0);
+				if (dec.isType("VAR_DEC")) {
+					this.globals.add(dec);
+				} else {
+					funDecs.add(dec);
+					this.findAddressTaken(dec.getChild(3));
+				}
+			}
+		}
+
+		this.writer.addField(BPLClassWriter.ACC_STATIC, RUNTIME_FIELD, "L" + RUNTIME + ";");
+		for (BPLNode global : this.globals) {
+			this.writer.addField(BPLClassWriter.ACC_STATIC, getID(global), this.getDescriptor(global));
+		}
+		for (BPLNode funDec : funDecs) {
+			this.genFunDec(funDec);
+		}
+		this.genEntry();
+		this.classFile = this.writer.toByteArray();
+	}
+
+	public byte[] getClassFile() {
+		return this.classFile;
+	}
+
+	/**
+	* @return the class, loaded by a new BPLClassLoader
+	*/
+	public Class<?> load() {
+		return new BPLClassLoader().defineProgram(CLASS_NAME, this.classFile);
+	}
+
+	/**
+	* the vars used with &, which have to be kept in an array
+	*/
+	private void findAddressTaken(BPLNode node) {
+		if (node.isType("F") && node.getChild(0).isType("&")) {
+			BPLNode factor = node.getChild(1);
+			if (factor.getChildrenSize() == 1 && factor.getChild(0).isType("ID")) {
+				this.boxed.add(factor.getChild(0).getDeclaration());
+			}
+		}
+		for (BPLNode child : node.getChildren()) {
+			this.findAddressTaken(child);
+		}
+	}
+
+	/**
+	* the globals are set back to 0 on every run, so a loaded program can be run again
+	*/
+	private void genEntry() throws BPLException {
+		this.code = new BPLBytecode(this.writer, 1);
+		this.code.local(BPLBytecode.ALOAD, 0);
+		this.code.field(BPLBytecode.PUTSTATIC, CLASS_NAME, RUNTIME_FIELD, "L" + RUNTIME + ";");
+		for (BPLNode global : this.globals) {
+			this.genInitialValue(global);
+			this.code.field(BPLBytecode.PUTSTATIC, CLASS_NAME, getID(global), this.getDescriptor(global));
+		}
+		if (this.mainFunDec != null) {
+			ArrayList<BPLNode> params = BPLInliner.getParams(this.mainFunDec);
+			for (BPLNode param : params) { // nothing to pass, so main gets zeros
+				this.genInitialValue(param);
+			}
+			String descriptor = this.getMethodDescriptor(this.mainFunDec);
+			this.code.invoke(BPLBytecode.INVOKESTATIC, CLASS_NAME, "main", descriptor);
+			if (descriptor.endsWith(")" + INT)) {
+				this.code.ret(BPLBytecode.IRETURN);
+			} else if (!descriptor.endsWith(")V")) {
+				this.code.op(BPLBytecode.POP, -1);
+			}
+		}
+		this.code.op(BPLBytecode.ICONST_0, 1);
+		this.code.ret(BPLBytecode.IRETURN);
+		this.writer.addMethod(BPLClassWriter.ACC_PUBLIC | BPLClassWriter.ACC_STATIC, ENTRY, "(L" + RUNTIME + ";)I", this.code);
+	}
+
+	/**
+	* pushes what a var starts out as: 0, null, or a new array
+	*/
+	private void genInitialValue(BPLNode dec) {
+		String descriptor = this.getDescriptor(dec);
+		if (descriptor.equals(INT)) {
+			this.code.op(BPLBytecode.ICONST_0, 1);
+		} else if (!descriptor.startsWith("[")) {
+			this.code.op(BPLBytecode.ACONST_NULL, 1);
+		} else {
+			int size = this.boxed.contains(dec) ? 1 : BPLRangeAnalysis.getArraySize(dec);
+			this.code.pushInt(size);
+			this.genNewArray(descriptor);
+		}
+	}
+
+	private void genNewArray(String descriptor) {
+		if (descriptor.equals(INT_ARRAY)) {
+			this.code.op1(BPLBytecode.NEWARRAY, BPLBytecode.T_INT, 0);
+		} else {
+			this.code.type(BPLBytecode.ANEWARRAY, "java/lang/String");
+		}
+	}
+
+	/**
+	* params take the first slots. params used with & are copied into an
+	* array, and the locals of every block get their own slot after them,
+	* followed by the temps of calls
+	*/
+	private void genFunDec(BPLNode funDec) throws BPLException {
+		String id = getID(funDec);
+		if (id.equals("main")) {
+			this.mainFunDec = funDec;
+		}
+		ArrayList<BPLNode> params = BPLInliner.getParams(funDec);
+		this.code = new BPLBytecode(this.writer, params.size());
+		this.code.line(funDec.getLineNumber());
+		int slot = params.size();
+		for (int i = 0; i < params.size(); i++) {
+			BPLNode param = params.get(i);
+			if (!this.boxed.contains(param)) {
+				this.slots.put(param, i);
+				continue;
+			}
+			this.slots.put(param, slot);
+			this.code.pushInt(1);
+			this.genNewArray(this.getDescriptor(param));
+			this.code.op(BPLBytecode.DUP, 1);
+			this.code.pushInt(0);
+			this.code.local(this.getParamDescriptor(param).equals(INT) ? BPLBytecode.ILOAD : BPLBytecode.ALOAD, i);
+			this.code.op(this.getParamDescriptor(param).equals(INT) ? BPLBytecode.IASTORE : BPLBytecode.AASTORE, -3);
+			this.code.local(BPLBytecode.ASTORE, slot++);
+		}
+
+		ArrayList<BPLNode> locals = new ArrayList<BPLNode>();
+		this.findLocals(funDec.getChild(3), locals);
+		for (BPLNode local : locals) {
+			this.slots.put(local, slot);
+			this.genInitialValue(local);
+			this.code.local(this.getDescriptor(local).equals(INT) ? BPLBytecode.ISTORE : BPLBytecode.ASTORE, slot++);
+		}
+		this.nextSlot = slot;
+
+		this.genStatement(funDec.getChild(3));
+
+		// falling off the end returns nothing, or 0 or null
+		String descriptor = this.getMethodDescriptor(funDec);
+		if (descriptor.endsWith(")V")) {
+			this.code.ret(BPLBytecode.RETURN);
+		} else if (descriptor.endsWith(")" + INT)) {
+			this.code.op(BPLBytecode.ICONST_0, 1);
+			this.code.ret(BPLBytecode.IRETURN);
+		} else {
+			this.code.op(BPLBytecode.ACONST_NULL, 1);
+			this.code.ret(BPLBytecode.ARETURN);
+		}
+		this.writer.addMethod(BPLClassWriter.ACC_STATIC, id, descriptor, this.code);
+	}
+
+	private void findLocals(BPLNode node, ArrayList<BPLNode> locals) {
+		if (node.isType("VAR_DEC")) {
+			locals.add(node);
+			return;
+		}
+		for (BPLNode child : node.getChildren()) {
+			this.findLocals(child, locals);
+		}
+	}
+
+	private void genStatement(BPLNode statement) {
+		if (statement.isType("STATEMENT")) {
+			statement = statement.getChild(0);
+		}
+		this.code.line(statement.getLineNumber());
+		if (statement.isType("COMPOUND_STMT")) {
+			for (BPLNode statementList = statement.getChild(1); statementList.isType("STATEMENT_LIST"); statementList = statementList.getChild(1)) {
+				this.genStatement(statementList.getChild(0));
+			}
+		} else if (statement.isType("IF_STMT")) {
+			int elseLabel = this.code.newLabel();
+			this.genCondition(statement.getChild(0), elseLabel, false);
+			this.genStatement(statement.getChild(1));
+			if (statement.getChildrenSize() > 2) {
+				int endLabel = this.code.newLabel();
+				this.code.jump(BPLBytecode.GOTO, endLabel);
+				this.code.placeLabel(elseLabel);
+				this.genStatement(statement.getChild(2));
+				this.code.placeLabel(endLabel);
+			} else {
+				this.code.placeLabel(elseLabel);
+			}
+		} else if (statement.isType("WHILE_STMT")) {
+			// the condition goes at the bottom, so each iteration takes one jump
+			int bodyLabel = this.code.newLabel();
+			int conditionLabel = this.code.newLabel();
+			this.code.jump(BPLBytecode.GOTO, conditionLabel);
+			this.code.placeLabel(bodyLabel);
+			this.genStatement(statement.getChild(1));
+			this.code.placeLabel(conditionLabel);
+			this.code.line(statement.getLineNumber());
+			this.genCondition(statement.getChild(0), bodyLabel, true);
+		} else if (statement.isType("RETURN_STMT")) {
+			if (statement.getChildrenSize() == 0) {
+				this.code.ret(BPLBytecode.RETURN);
+			} else if (this.genExpression(statement.getChild(0), true).equals(INT)) {
+				this.code.ret(BPLBytecode.IRETURN);
+			} else {
+				this.code.ret(BPLBytecode.ARETURN);
+			}
+		} else if (statement.isType("WRITE_STMT")) {
+			this.code.field(BPLBytecode.GETSTATIC, CLASS_NAME, RUNTIME_FIELD, "L" + RUNTIME + ";");
+			if (statement.getChildrenSize() == 0) {
+				this.code.invoke(BPLBytecode.INVOKEVIRTUAL, RUNTIME, "writeln", "()V");
+			} else if (this.genExpression(statement.getChild(0), true).equals(INT)) {
+				this.code.invoke(BPLBytecode.INVOKEVIRTUAL, RUNTIME, "writeInt", "(I)V");
+			} else {
+				this.code.invoke(BPLBytecode.INVOKEVIRTUAL, RUNTIME, "writeString", "(" + STRING + ")V");
+			}
+		} else if (statement.getChildrenSize() > 0) {
+			this.genExpression(statement.getChild(0), false);
+		}
+	}
+
+	/**
+	* jumps to label if expression is jumpIf. comparisons jump on the
+	* comparison itself instead of making a 0 or 1 first
+	*/
+	private void genCondition(BPLNode expression, int label, boolean jumpIf) {
+		BPLNode compExp = expression.getChild(0);
+		if (expression.getChildrenSize() != 1 || compExp.getChildrenSize() != 3) {
+			this.genExpression(expression, true);
+			this.code.jump(jumpIf ? BPLBytecode.IFNE : BPLBytecode.IFEQ, label);
+			return;
+		}
+		this.genComparison(compExp, label, jumpIf);
+	}
+
+	private void genComparison(BPLNode compExp, int label, boolean jumpIf) {
+		int relop = RELOPS.indexOf(compExp.getChild(1).getChild(0).getType());
+		int branch = BPLBytecode.IFEQ + (jumpIf ? relop : relop ^ 1);
+		this.genOperation(compExp.getChild(0));
+		if (this.genOperation(compExp.getChild(2)).equals(INT)) {
+			this.code.jump(branch + (BPLBytecode.IF_ICMPEQ - BPLBytecode.IFEQ), label);
+		} else {
+			this.code.invoke(BPLBytecode.INVOKESTATIC, RUNTIME, "compare", "(Ljava/lang/Object;Ljava/lang/Object;)I");
+			this.code.jump(branch, label);
+		}
+	}
+
+	/**
+	* @param keep whether the value is used, so assignments only dup it when it is
+	* @return the descriptor of the value, or V if nothing was left
+	*/
+	private String genExpression(BPLNode expression, boolean keep) {
+		if (expression.getChildrenSize() == 3) {
+			return this.genAssignment(expression.getChild(0), expression.getChild(2), keep);
+		}
+		String type = this.genOperation(expression.getChild(0));
+		if (!keep && !type.equals("V")) {
+			this.code.op(BPLBytecode.POP, -1);
+			return "V";
+		}
+		return type;
+	}
+
+	/**
+	* like the native backend, the value assigned to an array element or
+	* through a pointer is found before the element or pointer when that shows
+	*/
+	private String genAssignment(BPLNode var, BPLNode value, boolean keep) {
+		boolean valueFirst = BPLInliner.hasSideEffects(var) || BPLInliner.hasSideEffects(value);
+		if (var.getChild(0).isType("*")) {
+			BPLNode pointerDec = var.getDeclaration();
+			String type;
+			if (valueFirst) {
+				type = this.genExpression(value, true);
+				this.genLoad(pointerDec);
+				this.code.op(BPLBytecode.SWAP, 0);
+			} else {
+				this.genLoad(pointerDec);
+				type = this.genExpression(value, true);
+			}
+			if (keep) {
+				this.code.op(BPLBytecode.DUP_X1, 1);
+			}
+			this.code.invoke(BPLBytecode.INVOKEVIRTUAL, POINTER, type.equals(INT) ? "setInt" : "setString", "(" + type + ")V");
+			return keep ? type : "V";
+		}
+
+		BPLNode dec = var.getDeclaration();
+		String type;
+		if (var.getChildrenSize() == 4 && valueFirst) {
+			type = this.genExpression(value, true);
+			this.genLoadRef(dec);
+			this.genExpression(var.getChild(2), true);
+			this.code.op(BPLBytecode.DUP2_X1, 2); // the array and index go under the value
+			this.code.op(BPLBytecode.POP2, -2);
+			if (keep) {
+				this.code.op(BPLBytecode.DUP_X2, 1);
+			}
+			this.code.op(type.equals(INT) ? BPLBytecode.IASTORE : BPLBytecode.AASTORE, -3);
+		} else if (var.getChildrenSize() == 4 || this.boxed.contains(dec)) {
+			this.genLoadRef(dec);
+			if (var.getChildrenSize() == 4) {
+				this.genExpression(var.getChild(2), true);
+			} else {
+				this.code.op(BPLBytecode.ICONST_0, 1);
+			}
+			type = this.genExpression(value, true);
+			if (keep) {
+				this.code.op(BPLBytecode.DUP_X2, 1);
+			}
+			this.code.op(type.equals(INT) ? BPLBytecode.IASTORE : BPLBytecode.AASTORE, -3);
+		} else {
+			type = this.genExpression(value, true);
+			if (keep) {
+				this.code.op(BPLBytecode.DUP, 1);
+			}
+			if (this.slots.containsKey(dec)) {
+				this.code.local(type.equals(INT) ? BPLBytecode.ISTORE : BPLBytecode.ASTORE, this.slots.get(dec));
+			} else {
+				this.code.field(BPLBytecode.PUTSTATIC, CLASS_NAME, getID(dec), this.getDescriptor(dec));
+			}
+		}
+		return keep ? type : "V";
+	}
+
+	/**
+	* the left side of a comparison is found first. the right side of the
+	* other operations is, like in the native backend, when that shows
+	* @param node a COMP_EXP, E, T or F
+	*/
+	private String genOperation(BPLNode node) {
+		if (node.isType("F")) {
+			return this.genF(node);
+		} else if (node.getChildrenSize() == 1) {
+			return this.genOperation(node.getChild(0));
+		} else if (node.isType("COMP_EXP")) {
+			int trueLabel = this.code.newLabel();
+			int endLabel = this.code.newLabel();
+			this.genComparison(node, trueLabel, true);
+			this.code.op(BPLBytecode.ICONST_0, 1);
+			this.code.jump(BPLBytecode.GOTO, endLabel);
+			this.code.placeLabel(trueLabel);
+			this.code.pushInt(1);
+			this.code.placeLabel(endLabel);
+			return INT;
+		}
+		if (BPLInliner.hasSideEffects(node)) {
+			this.genOperation(node.getChild(2));
+			this.genOperation(node.getChild(0));
+			this.code.op(BPLBytecode.SWAP, 0);
+		} else {
+			this.genOperation(node.getChild(0));
+			this.genOperation(node.getChild(2));
+		}
+		String op = node.getChild(1).getChild(0).getType();
+		this.code.op(BPLBytecode.IADD + 4 * ARITHMETIC_OPS.indexOf(op), -1); // iadd, isub, imul, idiv, irem
+		return INT;
+	}
+
+	private String genF(BPLNode f) {
+		BPLNode child = f.getChild(0);
+		if (child.isType("FACTOR")) {
+			return this.genFactor(child);
+		} else if (child.isType("-")) {
+			this.genF(f.getChild(1));
+			this.code.op(BPLBytecode.INEG, 0);
+			return INT;
+		}
+
+		BPLNode factor = f.getChild(1);
+		if (child.isType("*")) {
+			this.genFactor(factor);
+			if (this.pointsToString(factor)) {
+				this.code.invoke(BPLBytecode.INVOKEVIRTUAL, POINTER, "getString", "()" + STRING);
+				return STRING;
+			}
+			this.code.invoke(BPLBytecode.INVOKEVIRTUAL, POINTER, "getInt", "()" + INT);
+			return INT;
+		}
+
+		// &x points at the array x is kept in, &a[i] at a's element
+		this.code.type(BPLBytecode.NEW, POINTER);
+		this.code.op(BPLBytecode.DUP, 1);
+		this.genLoadRef(factor.getChild(0).getDeclaration());
+		if (factor.getChildrenSize() == 4) {
+			this.genExpression(factor.getChild(2), true);
+		} else {
+			this.code.op(BPLBytecode.ICONST_0, 1);
+		}
+		this.code.invoke(BPLBytecode.INVOKESPECIAL, POINTER, "<init>", "(Ljava/lang/Object;I)V");
+		return POINTER_TYPE;
+	}
+
+	private boolean pointsToString(BPLNode factor) {
+		BPLNode child = factor.getChild(0);
+		if (child.isType("EXPRESSION")) {
+			return child.getEvalType().equals(BPLTypeChecker.TYPE_PTRSTRING);
+		}
+		return child.getDeclaration().getChild(0).isType("string");
+	}
+
+	private String genFactor(BPLNode factor) {
+		BPLNode child = factor.getChild(0);
+		if (child.isType("EXPRESSION")) {
+			return this.genExpression(child, true);
+		} else if (child.isType("FUN_CALL")) {
+			return this.genFunCall(child);
+		} else if (child.isType("READ")) {
+			this.code.field(BPLBytecode.GETSTATIC, CLASS_NAME, RUNTIME_FIELD, "L" + RUNTIME + ";");
+			this.code.invoke(BPLBytecode.INVOKEVIRTUAL, RUNTIME, "readInt", "()I");
+			return INT;
+		} else if (child.isType("INTEGER")) {
+			this.code.pushInt(((BPLIntegerNode) child).getInteger());
+			return INT;
+		} else if (child.isType("STRING")) {
+			this.code.pushString(unescape(child.getChild(0).getType()));
+			return STRING;
+		} else if (factor.getChildrenSize() == 4) {
+			BPLNode dec = child.getDeclaration();
+			this.genLoadRef(dec);
+			this.genExpression(factor.getChild(2), true);
+			if (dec.getChild(0).isType("string")) {
+				this.code.op(BPLBytecode.AALOAD, -1);
+				return STRING;
+			}
+			this.code.op(BPLBytecode.IALOAD, -1);
+			return INT;
+		}
+		return this.genLoad(child.getDeclaration());
+	}
+
+	/**
+	* when the order shows, the args are found last to first like the
+	* native backend does, and all but the first wait in temps
+	*/
+	private String genFunCall(BPLNode funCall) {
+		BPLNode funDec = funCall.getChild(0).getDeclaration();
+		ArrayList<BPLNode> args = BPLInliner.getArgs(funCall);
+		if (args.size() > 1 && BPLInliner.hasSideEffects(funCall.getChild(1))) {
+			int temps = this.nextSlot - 1; // the temp of arg i is temps + i
+			this.nextSlot += args.size() - 1;
+			boolean[] ints = new boolean[args.size()];
+			for (int i = args.size() - 1; i > 0; i--) {
+				ints[i] = this.genExpression(args.get(i), true).equals(INT);
+				this.code.local(ints[i] ? BPLBytecode.ISTORE : BPLBytecode.ASTORE, temps + i);
+			}
+			this.genExpression(args.get(0), true);
+			for (int i = 1; i < args.size(); i++) {
+				this.code.local(ints[i] ? BPLBytecode.ILOAD : BPLBytecode.ALOAD, temps + i);
+			}
+			this.nextSlot = temps + 1;
+		} else {
+			for (BPLNode arg : args) {
+				this.genExpression(arg, true);
+			}
+		}
+		String descriptor = this.getMethodDescriptor(funDec);
+		this.code.invoke(BPLBytecode.INVOKESTATIC, CLASS_NAME, getID(funDec), descriptor);
+		return descriptor.substring(descriptor.indexOf(')') + 1);
+	}
+
+	/**
+	* pushes the value of the var dec
+	*/
+	private String genLoad(BPLNode dec) {
+		String type = this.genLoadRef(dec);
+		if (!this.boxed.contains(dec)) {
+			return type;
+		}
+		this.code.op(BPLBytecode.ICONST_0, 1);
+		if (type.equals(INT_ARRAY)) {
+			this.code.op(BPLBytecode.IALOAD, -1);
+			return INT;
+		}
+		this.code.op(BPLBytecode.AALOAD, -1);
+		return STRING;
+	}
+
+	/**
+	* pushes what is in the slot or field of the var dec, which is the array for boxed vars
+	*/
+	private String genLoadRef(BPLNode dec) {
+		String type = this.getDescriptor(dec);
+		if (this.slots.containsKey(dec)) {
+			this.code.local(type.equals(INT) ? BPLBytecode.ILOAD : BPLBytecode.ALOAD, this.slots.get(dec));
+		} else {
+			this.code.field(BPLBytecode.GETSTATIC, CLASS_NAME, getID(dec), type);
+		}
+		return type;
+	}
+
+	/**
+	* @return the descriptor of the slot or field of a VAR_DEC or PARAM
+	*/
+	private String getDescriptor(BPLNode dec) {
+		String type = this.getParamDescriptor(dec);
+		if (this.boxed.contains(dec)) {
+			return "[" + type;
+		}
+		return type;
+	}
+
+	/**
+	* @return the descriptor of the value of a VAR_DEC or PARAM, or of what a FUN_DEC returns
+	*/
+	private String getParamDescriptor(BPLNode dec) {
+		boolean string = dec.getChild(0).isType("string");
+		if (dec.isType("FUN_DEC")) {
+			return dec.getChild(0).isType("void") ? "V" : string ? STRING : INT;
+		} else if (dec.getChild(1).isType("*")) {
+			return POINTER_TYPE;
+		} else if (dec.getChildrenSize() > 3) {
+			return string ? STRING_ARRAY : INT_ARRAY;
+		}
+		return string ? STRING : INT;
+	}
+
+	private String getMethodDescriptor(BPLNode funDec) {
+		StringBuilder descriptor = new StringBuilder("(");
+		for (BPLNode param : BPLInliner.getParams(funDec)) {
+			descriptor.append(this.getParamDescriptor(param));
+		}
+		return descriptor.append(")").append(this.getParamDescriptor(funDec)).toString();
+	}
+
+	private static String getID(BPLNode dec) {
+		BPLNode id = dec.getChild(1).isType("*") ? dec.getChild(2) : dec.getChild(1);
+		return ((BPLVarNode) id).getID();
+	}
+
+	/**
+	* @return the text of a string literal, with the escapes the assembler
+	* would turn into characters
+	*/
+	static String unescape(String literal) {
+		StringBuilder s = new StringBuilder();
+		for (int i = 1; i < literal.length() - 1; i++) {
+			char c = literal.charAt(i);
+			if (c != '\\' || i + 1 >= literal.length() - 1) {
+				s.append(c);
+				continue;
+			}
+			c = literal.charAt(++i);
+			int escape = "ntrbf\\\"'".indexOf(c);
+			if (escape >= 0) {
+				s.append("\n\t\r\b\f\\\"'".charAt(escape));
+			} else if (c >= '0' && c <= '7') {
+				int value = c - '0';
+				for (int digits = 1; digits < 3 && i + 1 < literal.length() - 1 && literal.charAt(i + 1) >= '0' && literal.charAt(i + 1) <= '7'; digits++) {
+					value = 8 * value + (literal.charAt(++i) - '0');
+				}
+				s.append((char) value);
+			} else {
+				s.append(c);
+			}
+		}
+		return s.toString();
+	}
+
+	/**
+	* compiles the file and runs it in this JVM, exiting with what main returns
+	*/
+	public static void main(String[] args) throws FileNotFoundException, UnsupportedEncodingException, BPLException {
+		BPLOptions options = BPLOptions.parse(args);
+		if (options.getFileName() == null) {
+			System.err.println("File to run needed!");
+			System.exit(1);
+		}
+
+		BPLJVMGenerator generator = new BPLJVMGenerator("../" + options.getFileName());
+		try {
+			System.exit(BPLJVMRuntime.run(generator.load(), System.in, System.out));
+		} catch (BPLRuntimeException e) {
+			System.out.flush();
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+}
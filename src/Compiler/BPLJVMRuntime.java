@@ -0,0 +1,78 @@
+package Compiler;
+
+import java.io.*;
+import java.lang.reflect.*;
+
+public class BPLJVMRuntime extends BPLStreams implements Runnable {
+	/**
+	* deep recursion needs about as much stack as a native program gets
+	*/
+	private static final long STACK_SIZE = 1L << 30;
+
+	private final Class<?> program;
+
+	private int status;
+	private Throwable error;
+
+	/**
+	* what programs from BPLJVMGenerator call for write and read
+	*/
+	private BPLJVMRuntime(Class<?> program, InputStream in, OutputStream out) {
+		super(in, out);
+		this.program = program;
+		this.status = 0;
+		this.error = null;
+	}
+
+	/**
+	* runs a program loaded from BPLJVMGenerator's class file on its own
+	* thread, and flushes the output when it is done, even if it failed
+	* @return what an int main returns, or 0
+	*/
+	public static int run(Class<?> program, InputStream in, OutputStream out) throws BPLException {
+		BPLJVMRuntime runtime = new BPLJVMRuntime(program, in, out);
+		Thread thread = new Thread(null, runtime, "BPL main", STACK_SIZE);
+		thread.start();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			thread.interrupt();
+			throw new BPLRuntimeException("Interrupted");
+		}
+		try {
+			runtime.flush();
+		} catch (IOException e) {
+			throw new BPLRuntimeException("Output failed: " + e.getMessage());
+		}
+		if (runtime.error != null) {
+			throw BPLRuntimeException.from(runtime.error, BPLJVMGenerator.CLASS_NAME);
+		}
+		return runtime.status;
+	}
+
+	public void run() {
+		try {
+			Method entry = this.program.getMethod(BPLJVMGenerator.ENTRY, BPLJVMRuntime.class);
+			this.status = (Integer) entry.invoke(null, this);
+		} catch (InvocationTargetException e) {
+			this.error = e.getCause();
+		} catch (ReflectiveOperationException e) {
+			this.error = e;
+		}
+	}
+
+	/**
+	* orders strings and pointers for the relational operators
+	* @return 0 if a and b are the same string or point at the same element
+	*/
+	public static int compare(Object a, Object b) {
+		if (a == b) {
+			return 0;
+		} else if (a == null || b == null) {
+			return (a == null) ? -1 : 1;
+		} else if (a instanceof BPLPointer) {
+			return ((BPLPointer) a).compareTo((BPLPointer) b);
+		}
+		return ((String) a).compareTo((String) b);
+	}
+}
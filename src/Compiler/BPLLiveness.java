@@ -0,0 +1,99 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLLiveness extends BPLDataflowAnalysis {
+	private BitSet[] gen;
+	private BitSet[] kill;
+
+	/**
+	* a var is live if its current value may still be read.
+	* the bits are var numbers of the control flow graph
+	*/
+	public BPLLiveness(BPLControlFlowGraph cfg) {
+		super(cfg, false, true);
+		int size = cfg.getBlocks().size();
+		this.gen = new BitSet[size];
+		this.kill = new BitSet[size];
+		for (BPLBasicBlock block : cfg.getBlocks()) {
+			BitSet blockGen = new BitSet();
+			BitSet blockKill = new BitSet();
+			for (BPLNode instruction : block.getInstructions()) {
+				for (BPLVarAccess access : cfg.getAccesses(instruction)) {
+					if (access.isUse() && !blockKill.get(access.getVar())) {
+						blockGen.set(access.getVar());
+					} else if (access.isDef() && access.isDefinite()) {
+						blockKill.set(access.getVar());
+					}
+				}
+			}
+			this.gen[block.getID()] = blockGen;
+			this.kill[block.getID()] = blockKill;
+		}
+		this.solve();
+	}
+
+	protected BitSet getBoundary() {
+		return new BitSet();
+	}
+
+	protected BitSet getInitial() {
+		return new BitSet();
+	}
+
+	protected BitSet transfer(BPLBasicBlock block, BitSet liveOut) {
+		BitSet liveIn = (BitSet) liveOut.clone();
+		liveIn.andNot(this.kill[block.getID()]);
+		liveIn.or(this.gen[block.getID()]);
+		return liveIn;
+	}
+
+	public boolean isLiveIn(BPLBasicBlock block, BPLNode varDec) {
+		int var = this.cfg.getVarIndex(varDec);
+		return var >= 0 && this.getIn(block).get(var);
+	}
+
+	public boolean isLiveOut(BPLBasicBlock block, BPLNode varDec) {
+		int var = this.cfg.getVarIndex(varDec);
+		return var >= 0 && this.getOut(block).get(var);
+	}
+
+	/**
+	* @return the vars live right after instruction
+	*/
+	public BitSet getLiveAfter(BPLNode instruction) {
+		BPLBasicBlock block = this.cfg.getBlock(instruction);
+		BitSet live = (BitSet) this.getOut(block).clone();
+		ArrayList<BPLNode> instructions = block.getInstructions();
+		for (int i = instructions.size() - 1; instructions.get(i) != instruction; i--) {
+			this.transferInstruction(instructions.get(i), live);
+		}
+		return live;
+	}
+
+	/**
+	* @return the vars live right before instruction
+	*/
+	public BitSet getLiveBefore(BPLNode instruction) {
+		BitSet live = this.getLiveAfter(instruction);
+		this.transferInstruction(instruction, live);
+		return live;
+	}
+
+	public boolean isLiveAfter(BPLNode instruction, BPLNode varDec) {
+		int var = this.cfg.getVarIndex(varDec);
+		return var >= 0 && this.getLiveAfter(instruction).get(var);
+	}
+
+	private void transferInstruction(BPLNode instruction, BitSet live) {
+		ArrayList<BPLVarAccess> accesses = this.cfg.getAccesses(instruction);
+		for (int i = accesses.size() - 1; i >= 0; i--) {
+			BPLVarAccess access = accesses.get(i);
+			if (access.isUse()) {
+				live.set(access.getVar());
+			} else if (access.isDefinite()) {
+				live.clear(access.getVar());
+			}
+		}
+	}
+}
@@ -0,0 +1,381 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLLoopInvariants {
+	private static final int VARIANT = 0;
+	private static final int SAFE = 1;
+	private static final int MAY_TRAP = 2;
+
+	private final BPLSSAForm ssa;
+	private final BPLConstantPropagation constants;
+	private final BPLRangeAnalysis ranges;
+	private final int firstTemp;
+
+	private HashMap<BPLNode, Integer> valueTemps;
+	private HashMap<BPLNode, Integer> addressTemps;
+	private HashMap<BPLNode, ArrayList<BPLNode>> preheaders;
+	private HashMap<BPLNode, ArrayList<BPLNode>> guardedPreheaders;
+	private int loops;
+	private long nanos;
+
+	private HashSet<BPLBasicBlock> loopBlocks;
+	private boolean clobbersMemory;
+	private boolean storesThroughPointers;
+	private HashSet<BPLNode> storedVars;
+	private BPLNode currentLoop;
+	private boolean inCondition;
+
+	/**
+	* finds the computations in each while loop that give the same result on
+	* every iteration: operators, loads and element addresses whose vars are
+	* set outside the loop and whose memory is not stored to inside it.
+	* the code generator computes them once in a preheader and keeps them in
+	* temps numbered from firstTemp. loads and divisions could fault, so they
+	* are only hoisted from code that runs whenever the loop is entered.
+	* so are element addresses, if ranges is given because they get bounds
+	* checked, unless the index is known to be in bounds
+	*/
+	public BPLLoopInvariants(BPLSSAForm ssa, BPLConstantPropagation constants, BPLRangeAnalysis ranges, int firstTemp) {
+		long start = System.nanoTime();
+		this.ssa = ssa;
+		this.constants = constants;
+		this.ranges = ranges;
+		this.firstTemp = firstTemp;
+		this.valueTemps = new HashMap<BPLNode, Integer>();
+		this.addressTemps = new HashMap<BPLNode, Integer>();
+		this.preheaders = new HashMap<BPLNode, ArrayList<BPLNode>>();
+		this.guardedPreheaders = new HashMap<BPLNode, ArrayList<BPLNode>>();
+		this.loops = 0;
+
+		this.findLoops(ssa.getControlFlowGraph().getFunDec().getChild(3));
+		this.nanos = System.nanoTime() - start;
+	}
+
+	/**
+	* @return the temp holding node's value, or its element address if address
+	* is set, when it is computed before the loop, or -1
+	*/
+	public int getTemp(BPLNode node, boolean address) {
+		Integer temp = address ? this.addressTemps.get(node) : this.valueTemps.get(node);
+		return (temp == null) ? -1 : temp;
+	}
+
+	/**
+	* @return the nodes to compute before whileNode, in evaluation order.
+	* guarded ones can only be computed once the condition has been found true
+	*/
+	public ArrayList<BPLNode> getHoisted(BPLNode whileNode, boolean guarded) {
+		ArrayList<BPLNode> hoisted = (guarded ? this.guardedPreheaders : this.preheaders).get(whileNode);
+		return (hoisted == null) ? new ArrayList<BPLNode>() : hoisted;
+	}
+
+	public int getFirstTemp() {
+		return this.firstTemp;
+	}
+
+	public int getTempCount() {
+		return this.valueTemps.size() + this.addressTemps.size();
+	}
+
+	/**
+	* @return how many loops had something hoisted out of them
+	*/
+	public int getLoopCount() {
+		return this.loops;
+	}
+
+	public long getNanos() {
+		return this.nanos;
+	}
+
+	/**
+	* outer loops go first, so an inner loop only gets what depends on the outer one
+	*/
+	private void findLoops(BPLNode node) {
+		if (node.isType("WHILE_STMT")) {
+			BPLBasicBlock header = this.ssa.getControlFlowGraph().getBlock(node.getChild(0));
+			if (header != null && this.constants.isExecutable(header)) {
+				this.hoistFrom(node, header);
+			}
+		}
+		for (BPLNode child : node.getChildren()) {
+			this.findLoops(child);
+		}
+	}
+
+	private void hoistFrom(BPLNode whileNode, BPLBasicBlock header) {
+		this.currentLoop = whileNode;
+		this.loopBlocks = this.getLoopBlocks(header);
+		this.clobbersMemory = false;
+		this.storesThroughPointers = false;
+		this.storedVars = new HashSet<BPLNode>();
+		this.findStores(whileNode);
+
+		int count = this.getTempCount();
+		this.inCondition = true;
+		this.visit(whileNode.getChild(0), true);
+		this.inCondition = false;
+		boolean guaranteed = true; // statements that run on the first iteration
+		BPLNode body = whileNode.getChild(1).getChild(0);
+		if (body.isType("COMPOUND_STMT") && !body.getChild(1).isType("<empty>")) {
+			BPLNode stmtList = body.getChild(1);
+			while (!stmtList.isType("<empty>")) {
+				BPLNode statement = stmtList.getChild(0).getChild(0);
+				guaranteed = guaranteed && statement.isType("EXPRESSION_STMT") && !this.hasCall(statement);
+				this.visitStatement(statement, guaranteed);
+				stmtList = stmtList.getChild(1);
+			}
+		} else if (!body.isType("COMPOUND_STMT")) {
+			guaranteed = body.isType("EXPRESSION_STMT") && !this.hasCall(body);
+			this.visitStatement(body, guaranteed);
+		}
+		if (this.getTempCount() > count) {
+			this.loops++;
+		}
+	}
+
+	/**
+	* the header and every block that gets back to it without going through it
+	*/
+	private HashSet<BPLBasicBlock> getLoopBlocks(BPLBasicBlock header) {
+		HashSet<BPLBasicBlock> blocks = new HashSet<BPLBasicBlock>();
+		blocks.add(header);
+		ArrayDeque<BPLBasicBlock> worklist = new ArrayDeque<BPLBasicBlock>();
+		for (BPLBasicBlock predecessor : header.getPredecessors()) {
+			if (this.ssa.getDominators().dominates(header, predecessor)) {
+				worklist.add(predecessor);
+			}
+		}
+		while (!worklist.isEmpty()) {
+			BPLBasicBlock block = worklist.poll();
+			if (blocks.add(block)) {
+				worklist.addAll(block.getPredecessors());
+			}
+		}
+		return blocks;
+	}
+
+	/**
+	* calls and read() can change any memory, stores through pointers or
+	* array params any but tracked vars, and other stores only their var
+	*/
+	private void findStores(BPLNode node) {
+		if (node.isType("FUN_CALL") || node.isType("READ")) {
+			this.clobbersMemory = true;
+		} else if (node.isType("EXPRESSION") && node.isChildrenSize(3)) {
+			BPLNode var = node.getChild(0);
+			BPLNode varDec = var.getDeclaration();
+			if (var.getChild(0).isType("*") || (var.getChildrenSize() == 4 && varDec.isType("PARAM"))) {
+				this.storesThroughPointers = true;
+			} else if (var.getChildrenSize() == 4 || !this.isTracked(varDec)) {
+				this.storedVars.add(varDec);
+			}
+		}
+		for (BPLNode child : node.getChildren()) {
+			this.findStores(child);
+		}
+	}
+
+	private boolean hasCall(BPLNode node) {
+		if (node.isType("FUN_CALL") || node.isType("READ")) {
+			return true;
+		}
+		for (BPLNode child : node.getChildren()) {
+			if (this.hasCall(child)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isTracked(BPLNode varDec) {
+		BPLControlFlowGraph cfg = this.ssa.getControlFlowGraph();
+		return cfg.getVarIndex(varDec) >= 0 && !cfg.isAddressTaken(varDec);
+	}
+
+	private boolean canLoad(BPLNode varDec) {
+		return !this.clobbersMemory && !this.storesThroughPointers && !this.storedVars.contains(varDec);
+	}
+
+	private boolean canLoadThroughPointer() {
+		return !this.clobbersMemory && !this.storesThroughPointers && this.storedVars.isEmpty();
+	}
+
+	private void visitStatement(BPLNode statement, boolean guaranteed) {
+		if (statement.isType("EXPRESSION_STMT") || statement.isType("WRITE_STMT") || statement.isType("RETURN_STMT")) {
+			if (this.isExecutable(statement) && statement.getChildrenSize() > 0) {
+				this.visit(statement.getChild(0), guaranteed);
+			}
+		} else if (statement.isType("IF_STMT") || statement.isType("WHILE_STMT")) {
+			if (this.isExecutable(statement.getChild(0))) {
+				this.visit(statement.getChild(0), false);
+				for (int i = 1; i < statement.getChildrenSize(); i++) {
+					this.visitStatement(statement.getChild(i).getChild(0), false);
+				}
+			}
+		} else if (statement.isType("COMPOUND_STMT")) {
+			BPLNode stmtList = statement.getChild(1);
+			while (!stmtList.isType("<empty>")) {
+				this.visitStatement(stmtList.getChild(0).getChild(0), false);
+				stmtList = stmtList.getChild(1);
+			}
+		}
+	}
+
+	private boolean isExecutable(BPLNode instruction) {
+		BPLBasicBlock block = this.ssa.getControlFlowGraph().getBlock(instruction);
+		return block != null && this.constants.isExecutable(block);
+	}
+
+	/**
+	* hoists the largest invariant computations in node, in the order the
+	* code generator evaluates them
+	*/
+	private void visit(BPLNode node, boolean guaranteed) {
+		if (this.constants.getNodeConstants().containsKey(node) || this.valueTemps.containsKey(node)) {
+			return; // a constant, or hoisted out of an outer loop
+		}
+		if (isOccurrence(node) && this.hoist(node, this.getInvariance(node), guaranteed, this.valueTemps)) {
+			return;
+		}
+
+		if (node.isType("E") || node.isType("T")) {
+			if (node.getChildrenSize() > 1) {
+				this.visit(node.getChild(2), guaranteed);
+			}
+			this.visit(node.getChild(0), guaranteed);
+		} else if (node.isType("EXPRESSION") && node.isChildrenSize(3)) {
+			this.visit(node.getChild(2), guaranteed);
+			BPLNode var = node.getChild(0);
+			if (var.getChildrenSize() == 4) {
+				this.visitAddress(var, guaranteed);
+			}
+		} else if (node.isType("F") && node.getChild(0).isType("&")) {
+			if (node.getChild(1).getChildrenSize() > 1) {
+				this.visitAddress(node.getChild(1), guaranteed);
+			}
+		} else if (node.isType("FACTOR") && node.getChildrenSize() > 1) {
+			this.visitAddress(node, guaranteed);
+		} else if (node.isType("FUN_CALL")) {
+			ArrayList<BPLNode> args = BPLInliner.getArgs(node);
+			for (int i = args.size() - 1; i >= 0; i--) {
+				this.visit(args.get(i), guaranteed);
+			}
+		} else {
+			for (BPLNode child : node.getChildren()) {
+				this.visit(child, guaranteed);
+			}
+		}
+	}
+
+	/**
+	* the element address of an indexed VAR or FACTOR
+	*/
+	private void visitAddress(BPLNode node, boolean guaranteed) {
+		if (this.addressTemps.containsKey(node)) {
+			return;
+		}
+		if (!this.hoist(node, this.getAddressInvariance(node), guaranteed, this.addressTemps)) {
+			this.visit(node.getChild(2), guaranteed);
+		}
+	}
+
+	private boolean hoist(BPLNode node, int invariance, boolean guaranteed, HashMap<BPLNode, Integer> temps) {
+		if (invariance == VARIANT || (invariance == MAY_TRAP && !guaranteed)) {
+			return false;
+		}
+		// the condition always runs once, so the preheader can fault for it
+		boolean guarded = invariance == MAY_TRAP && !this.inCondition;
+		HashMap<BPLNode, ArrayList<BPLNode>> lists = guarded ? this.guardedPreheaders : this.preheaders;
+		if (!lists.containsKey(this.currentLoop)) {
+			lists.put(this.currentLoop, new ArrayList<BPLNode>());
+		}
+		lists.get(this.currentLoop).add(node);
+		temps.put(node, this.firstTemp + this.getTempCount());
+		return true;
+	}
+
+	private static boolean isOccurrence(BPLNode node) {
+		if (node.isType("COMP_EXP") || node.isType("E") || node.isType("T")) {
+			return node.getChildrenSize() > 1;
+		}
+		return (node.isType("F") && node.getChild(0).isType("*")) || (node.isType("FACTOR") && node.getChildrenSize() > 1);
+	}
+
+	/**
+	* @return VARIANT if node can change from one iteration to the next, else
+	* SAFE, or MAY_TRAP if evaluating it early could fault
+	*/
+	private int getInvariance(BPLNode node) {
+		if (node.isType("EXPRESSION")) {
+			return node.isChildrenSize(1) ? this.getInvariance(node.getChild(0)) : VARIANT;
+		} else if (node.isType("COMP_EXP") || node.isType("E")) {
+			int rtn = this.getInvariance(node.getChild(0));
+			if (node.getChildrenSize() > 1) {
+				rtn = combine(rtn, this.getInvariance(node.getChild(2)));
+			}
+			return rtn;
+		} else if (node.isType("T")) {
+			if (node.getChildrenSize() == 1) {
+				return this.getInvariance(node.getChild(0));
+			}
+			int rtn = combine(this.getInvariance(node.getChild(0)), this.getInvariance(node.getChild(2)));
+			String op = node.getChild(1).getChild(0).getType();
+			if (rtn == SAFE && (op.equals("/") || op.equals("%"))) {
+				BPLSSAValue divisor = this.ssa.getValue(node.getChild(2));
+				if (divisor == null || !this.constants.isConstant(divisor) || this.constants.getConstant(divisor) == 0 || this.constants.getConstant(divisor) == -1) {
+					rtn = MAY_TRAP;
+				}
+			}
+			return rtn;
+		} else if (node.isType("F")) {
+			BPLNode child = node.getChild(0);
+			if (child.isType("FACTOR") || child.isType("-")) {
+				return this.getInvariance(node.getChild(child.isType("-") ? 1 : 0));
+			} else if (child.isType("*")) {
+				int rtn = this.getInvariance(node.getChild(1));
+				return (rtn == VARIANT || !this.canLoadThroughPointer()) ? VARIANT : MAY_TRAP;
+			}
+			BPLNode factor = node.getChild(1);
+			return (factor.getChildrenSize() > 1) ? this.getAddressInvariance(factor) : SAFE;
+		}
+
+		BPLNode child = node.getChild(0);
+		if (child.isType("EXPRESSION")) {
+			return this.getInvariance(child);
+		} else if (child.isType("FUN_CALL") || child.isType("READ")) {
+			return VARIANT;
+		} else if (child.isType("INTEGER") || child.isType("STRING")) {
+			return SAFE;
+		}
+		BPLNode varDec = child.getDeclaration();
+		if (node.getChildrenSize() > 1) { // array entry
+			int rtn = this.getAddressInvariance(node);
+			boolean canLoad = varDec.isType("PARAM") ? this.canLoadThroughPointer() : this.canLoad(varDec);
+			return (rtn == VARIANT || !canLoad) ? VARIANT : MAY_TRAP;
+		} else if ((varDec.isType("VAR_DEC") && varDec.getChildrenSize() == 5) || (varDec.isType("PARAM") && varDec.getChildrenSize() > 3)) {
+			return SAFE; // an array's base never changes
+		} else if (this.isTracked(varDec)) {
+			BPLSSAValue value = this.ssa.getValue(node);
+			return (value != null && !this.loopBlocks.contains(value.getBlock())) ? SAFE : VARIANT;
+		}
+		return this.canLoad(varDec) ? SAFE : VARIANT;
+	}
+
+	/**
+	* the element address of an indexed VAR or FACTOR
+	*/
+	private int getAddressInvariance(BPLNode node) {
+		int rtn = this.getInvariance(node.getChild(2));
+		BPLNode varDec = node.isType("VAR") ? node.getDeclaration() : node.getChild(0).getDeclaration();
+		if (rtn == SAFE && this.ranges != null && BPLRangeAnalysis.getArraySize(varDec) >= 0 && !this.ranges.isInBounds(node)) {
+			rtn = MAY_TRAP;
+		}
+		return rtn;
+	}
+
+	private static int combine(int a, int b) {
+		return (a == VARIANT || b == VARIANT) ? VARIANT : Math.max(a, b);
+	}
+}
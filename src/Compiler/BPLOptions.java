@@ -0,0 +1,219 @@
+package Compiler;
+
+public class BPLOptions {
+	public static final int DEFAULT_INLINE_LIMIT = 30;
+
+	private boolean leafFunctions;
+	private boolean tailCalls;
+	private int inlineLimit;
+	private boolean registerVars;
+	private boolean constantPropagation;
+	private boolean valueNumbering;
+	private boolean moveLoopInvariants;
+	private boolean boundsCheck;
+	private boolean bufferedWrite;
+	private String stats;
+	private boolean pipeline;
+	private String fileName;
+
+	public BPLOptions() {
+		this.leafFunctions = true;
+		this.tailCalls = true;
+		this.inlineLimit = DEFAULT_INLINE_LIMIT;
+		this.registerVars = true;
+		this.constantPropagation = true;
+		this.valueNumbering = true;
+		this.moveLoopInvariants = true;
+		this.boundsCheck = false;
+		this.bufferedWrite = true;
+		this.stats = null;
+		this.pipeline = false;
+		this.fileName = null;
+	}
+
+	/**
+	* parses gcc style flags (-O0, -fno-leaf-functions, ...) followed by the file name
+	*/
+	public static BPLOptions parse(String[] args) throws BPLException {
+		BPLOptions options = new BPLOptions();
+		for (String arg : args) {
+			if (!arg.startsWith("-")) {
+				if (options.fileName != null) {
+					throw new BPLException("Only one file can be compiled at a time");
+				}
+				options.fileName = arg;
+			} else {
+				options.setFlag(arg);
+			}
+		}
+		return options;
+	}
+
+	private void setFlag(String flag) throws BPLException {
+		if (flag.equals("-O0")) {
+			this.leafFunctions = false;
+			this.tailCalls = false;
+			this.inlineLimit = 0;
+			this.registerVars = false;
+			this.constantPropagation = false;
+			this.valueNumbering = false;
+			this.moveLoopInvariants = false;
+			this.bufferedWrite = false;
+		} else if (flag.equals("-O") || flag.equals("-O1")) {
+			this.leafFunctions = true;
+			this.tailCalls = true;
+			this.inlineLimit = DEFAULT_INLINE_LIMIT;
+			this.registerVars = true;
+			this.constantPropagation = true;
+			this.valueNumbering = true;
+			this.moveLoopInvariants = true;
+			this.bufferedWrite = true;
+		} else if (flag.equals("-fleaf-functions")) {
+			this.leafFunctions = true;
+		} else if (flag.equals("-fno-leaf-functions")) {
+			this.leafFunctions = false;
+		} else if (flag.equals("-ftail-calls")) {
+			this.tailCalls = true;
+		} else if (flag.equals("-fno-tail-calls")) {
+			this.tailCalls = false;
+		} else if (flag.equals("-fno-inline")) {
+			this.inlineLimit = 0;
+		} else if (flag.startsWith("-finline-limit=")) {
+			try {
+				this.inlineLimit = Integer.parseInt(flag.substring("-finline-limit=".length()));
+			} catch (NumberFormatException e) {
+				throw new BPLException("Bad inline limit in " + flag);
+			}
+		} else if (flag.equals("-fregister-vars")) {
+			this.registerVars = true;
+		} else if (flag.equals("-fno-register-vars")) {
+			this.registerVars = false;
+		} else if (flag.equals("-fconstant-propagation")) {
+			this.constantPropagation = true;
+		} else if (flag.equals("-fno-constant-propagation")) {
+			this.constantPropagation = false;
+		} else if (flag.equals("-fvalue-numbering")) {
+			this.valueNumbering = true;
+		} else if (flag.equals("-fno-value-numbering")) {
+			this.valueNumbering = false;
+		} else if (flag.equals("-fmove-loop-invariants")) {
+			this.moveLoopInvariants = true;
+		} else if (flag.equals("-fno-move-loop-invariants")) {
+			this.moveLoopInvariants = false;
+		} else if (flag.equals("-fbounds-check")) {
+			this.boundsCheck = true;
+		} else if (flag.equals("-fno-bounds-check")) {
+			this.boundsCheck = false;
+		} else if (flag.equals("-fbuffered-write")) {
+			this.bufferedWrite = true;
+		} else if (flag.equals("-fno-buffered-write")) {
+			this.bufferedWrite = false;
+		} else if (flag.equals("--stats") || flag.equals("--stats=text")) {
+			this.stats = "text";
+		} else if (flag.equals("--stats=json")) {
+			this.stats = "json";
+		} else if (flag.equals("--pipeline")) {
+			this.pipeline = true;
+		} else {
+			throw new BPLException("Unknown option " + flag);
+		}
+	}
+
+	/**
+	* @return every option as a flag, so options that compile the same way give the same string.
+	* --stats and --pipeline are left out, since they don't change the code
+	*/
+	public String toString() {
+		return (this.leafFunctions ? "-fleaf-functions" : "-fno-leaf-functions")
+			+ (this.tailCalls ? " -ftail-calls" : " -fno-tail-calls")
+			+ " -finline-limit=" + this.inlineLimit
+			+ (this.registerVars ? " -fregister-vars" : " -fno-register-vars")
+			+ (this.constantPropagation ? " -fconstant-propagation" : " -fno-constant-propagation")
+			+ (this.valueNumbering ? " -fvalue-numbering" : " -fno-value-numbering")
+			+ (this.moveLoopInvariants ? " -fmove-loop-invariants" : " -fno-move-loop-invariants")
+			+ (this.boundsCheck ? " -fbounds-check" : " -fno-bounds-check")
+			+ (this.bufferedWrite ? " -fbuffered-write" : " -fno-buffered-write");
+	}
+
+	public String getFileName() {
+		return this.fileName;
+	}
+
+	/**
+	* leaf functions get their own frame pointer so callers can skip saving %rbx
+	*/
+	public boolean leafFunctions() {
+		return this.leafFunctions;
+	}
+
+	/**
+	* self recursive calls in return statements become jumps
+	*/
+	public boolean tailCalls() {
+		return this.tailCalls;
+	}
+
+	/**
+	* functions with at most this many statements, factors and operators get inlined
+	*/
+	public int inlineLimit() {
+		return this.inlineLimit;
+	}
+
+	/**
+	* scalar params and locals whose address is never taken live in registers
+	*/
+	public boolean registerVars() {
+		return this.registerVars;
+	}
+
+	/**
+	* constants are propagated through vars, and branches that can't be taken are dropped
+	*/
+	public boolean constantPropagation() {
+		return this.constantPropagation;
+	}
+
+	/**
+	* repeated computations, loads and element addresses reuse the first result
+	*/
+	public boolean valueNumbering() {
+		return this.valueNumbering;
+	}
+
+	/**
+	* computations that are the same on every iteration of a while loop are done once before it
+	*/
+	public boolean moveLoopInvariants() {
+		return this.moveLoopInvariants;
+	}
+
+	/**
+	* array accesses exit with an error if the index is outside the declared size.
+	* off unless asked for, and not changed by -O0
+	*/
+	public boolean boundsCheck() {
+		return this.boundsCheck;
+	}
+
+	/**
+	* write and writeln go through the buffered runtime instead of a printf call each
+	*/
+	public boolean bufferedWrite() {
+		return this.bufferedWrite;
+	}
+
+	/**
+	* @return how to report the time and sizes of each phase, "text" or "json", or null for not at all
+	*/
+	public String stats() {
+		return this.stats;
+	}
+
+	/**
+	* the source is scanned on a thread of its own while it's parsed
+	*/
+	public boolean pipeline() {
+		return this.pipeline;
+	}
+}
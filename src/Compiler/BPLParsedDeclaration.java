@@ -0,0 +1,81 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLParsedDeclaration {
+	private final String text;
+	private final BPLNode declaration;
+	private int firstLine;
+	private HashMap<String, ArrayList<BPLNode>> earlier;
+
+	/**
+	* the parse tree of one top-level declaration, which BPLIncremental
+	* keeps between compiles so an unchanged one isn't parsed again, and an
+	* unchanged function whose ids name the same declarations as last time
+	* isn't type checked again either
+	* @param declaration the DECLARATION node
+	*/
+	public BPLParsedDeclaration(BPLSourceDeclaration source, BPLNode declaration) {
+		this.text = source.getLinesText();
+		this.declaration = declaration;
+		this.firstLine = source.getFirstLine();
+		this.earlier = null;
+	}
+
+	/**
+	* parses source on its own, which gives the same tree as parsing it in
+	* the whole program, since declarations don't depend on each other until
+	* they are type checked
+	*/
+	public static BPLParsedDeclaration parse(BPLSourceDeclaration source) throws BPLException {
+		BPLParser parser = new BPLParser(new BPLTokenList(source.getTokens()));
+		return new BPLParsedDeclaration(source, parser.getBPLHead().getChild(0).getChild(0));
+	}
+
+	/**
+	* @return what BPLSourceDeclaration.getLinesText gave for it
+	*/
+	public String getText() {
+		return this.text;
+	}
+
+	public BPLNode getDeclaration() {
+		return this.declaration;
+	}
+
+	/**
+	* @return the VAR_DEC or FUN_DEC
+	*/
+	public BPLNode getDec() {
+		return this.declaration.getChild(0);
+	}
+
+	/**
+	* renumbers the lines of the tree as if it had been parsed starting at line
+	*/
+	public void moveTo(int line) {
+		if (line != this.firstLine) {
+			moveLines(this.declaration, line - this.firstLine);
+			this.firstLine = line;
+		}
+	}
+
+	private static void moveLines(BPLNode node, int lines) {
+		node.setLineNumber(node.getLineNumber() + lines);
+		for (BPLNode child : node.getChildren()) {
+			moveLines(child, lines);
+		}
+	}
+
+	/**
+	* @return the declarations before it that each of its ids could refer to,
+	* as of the last time it was type checked, or null if it hasn't been
+	*/
+	public HashMap<String, ArrayList<BPLNode>> getEarlier() {
+		return this.earlier;
+	}
+
+	public void setEarlier(HashMap<String, ArrayList<BPLNode>> earlier) {
+		this.earlier = earlier;
+	}
+}
@@ -3,7 +3,7 @@ package Compiler;
 import java.util.*;
 
 public class BPLParser {
-	private final BPLScanner scanner;
+	private final BPLTokenSource scanner;
 
 	private Token currentToken;
 	private BPLNode head;
@@ -11,7 +11,14 @@ public class BPLParser {
 	private LinkedList<Token> cachedTokens;
 
 	public BPLParser(String fileName) throws BPLException {
-		this.scanner = new BPLScanner(fileName);
+		this(new BPLScanner(fileName));
+	}
+
+	/**
+	* @param scanner a BPLScanner, or anything else that gives its tokens
+	*/
+	public BPLParser(BPLTokenSource scanner) throws BPLException {
+		this.scanner = scanner;
 		this.cachedTokens = new LinkedList<Token>();
 		this.firstToken = true;
 		this.head = this.program();
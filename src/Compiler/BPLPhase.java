@@ -0,0 +1,35 @@
+package Compiler;
+
+public class BPLPhase {
+	private final String name;
+	private final long wallNanos;
+	private final long cpuNanos;
+	private final long allocatedBytes;
+
+	/**
+	* what one phase of a compile took, on the thread that ran it
+	* @param cpuNanos -1 if the JVM can't measure it, like allocatedBytes
+	*/
+	public BPLPhase(String name, long wallNanos, long cpuNanos, long allocatedBytes) {
+		this.name = name;
+		this.wallNanos = wallNanos;
+		this.cpuNanos = cpuNanos;
+		this.allocatedBytes = allocatedBytes;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public long getWallNanos() {
+		return this.wallNanos;
+	}
+
+	public long getCpuNanos() {
+		return this.cpuNanos;
+	}
+
+	public long getAllocatedBytes() {
+		return this.allocatedBytes;
+	}
+}
@@ -0,0 +1,24 @@
+package Compiler;
+
+import jdk.jfr.*;
+
+@Name("bpl.Phase")
+@Label("BPL Compiler Phase")
+@Category("BPL")
+@Description("One phase of compiling a BPL program")
+@StackTrace(false)
+public class BPLPhaseEvent extends Event {
+	@Label("Source")
+	public String source;
+
+	@Label("Phase")
+	public String phase;
+
+	@Label("CPU Time")
+	@Timespan(Timespan.NANOSECONDS)
+	public long cpuTime;
+
+	@Label("Allocated")
+	@DataAmount
+	public long allocated;
+}
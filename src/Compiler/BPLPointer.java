@@ -0,0 +1,43 @@
+package Compiler;
+
+public class BPLPointer {
+	private final Object array;
+	private final int index;
+
+	/**
+	* what a BPL pointer is in the JVM backend: an element of an int[] or
+	* String[]. vars that have their address taken are kept in an array of
+	* one element, so &x points at element 0
+	*/
+	public BPLPointer(Object array, int index) {
+		this.array = array;
+		this.index = index;
+	}
+
+	public int getInt() {
+		return ((int[]) this.array)[this.index];
+	}
+
+	public void setInt(int value) {
+		((int[]) this.array)[this.index] = value;
+	}
+
+	public String getString() {
+		return ((String[]) this.array)[this.index];
+	}
+
+	public void setString(String value) {
+		((String[]) this.array)[this.index] = value;
+	}
+
+	/**
+	* @return 0 if this and other point at the same element
+	*/
+	public int compareTo(BPLPointer other) {
+		if (this.array != other.array) { // any order, as long as it isn't 0
+			int order = Integer.compare(System.identityHashCode(this.array), System.identityHashCode(other.array));
+			return (order != 0) ? order : 1;
+		}
+		return Integer.compare(this.index, other.index);
+	}
+}
@@ -0,0 +1,309 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLRangeAnalysis {
+	private static final int WIDEN_AFTER = 3;
+	private static final int REFINE_DEPTH = 4;
+
+	private final BPLSSAForm ssa;
+	private final BPLConstantPropagation constants;
+
+	private long[] lows;
+	private long[] highs;
+	private boolean[] seen;
+	private int[] changes;
+	private HashSet<BPLNode> inBounds;
+	private int accesses;
+	private long nanos;
+
+	/**
+	* finds the range of values each int can have, then narrows it where it
+	* is used by the conditions that have to be true to get there, like
+	* i < 10 inside while (i < 10). an array element access whose index
+	* is always inside the array's declared size needs no bounds check
+	*/
+	public BPLRangeAnalysis(BPLSSAForm ssa, BPLConstantPropagation constants) {
+		long start = System.nanoTime();
+		this.ssa = ssa;
+		this.constants = constants;
+		int size = ssa.getValues().size();
+		this.lows = new long[size];
+		this.highs = new long[size];
+		this.seen = new boolean[size];
+		this.changes = new int[size];
+		this.inBounds = new HashSet<BPLNode>();
+		this.accesses = 0;
+
+		this.solve();
+		for (BPLBasicBlock block : ssa.getDominators().getReversePostorder()) {
+			if (!constants.isExecutable(block)) {
+				continue;
+			}
+			for (BPLNode instruction : block.getInstructions()) {
+				this.findAccesses(instruction);
+			}
+		}
+		this.nanos = System.nanoTime() - start;
+	}
+
+	/**
+	* @return true if the index of node, an indexed VAR or FACTOR, is known
+	* to be inside its array
+	*/
+	public boolean isInBounds(BPLNode node) {
+		return this.inBounds.contains(node);
+	}
+
+	/**
+	* @return how many accesses are to arrays with a declared size
+	*/
+	public int getAccessCount() {
+		return this.accesses;
+	}
+
+	public int getInBoundsCount() {
+		return this.inBounds.size();
+	}
+
+	public long getNanos() {
+		return this.nanos;
+	}
+
+	/**
+	* @return the declared size of the array varDec, or -1 for array params
+	*/
+	public static int getArraySize(BPLNode varDec) {
+		if (varDec.isType("VAR_DEC") && varDec.getChildrenSize() == 5) {
+			return ((BPLIntegerNode) varDec.getChild(3)).getInteger();
+		}
+		return -1;
+	}
+
+	/**
+	* ranges only grow, and a phi that keeps growing jumps to the end of the int range
+	*/
+	private void solve() {
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (BPLBasicBlock block : this.ssa.getDominators().getReversePostorder()) {
+				if (!this.constants.isExecutable(block)) {
+					continue;
+				}
+				for (BPLSSAValue phi : this.ssa.getPhis(block)) {
+					changed |= this.evaluate(phi);
+				}
+				for (BPLSSAValue value : this.ssa.getBlockValues(block)) {
+					changed |= this.evaluate(value);
+				}
+			}
+		}
+	}
+
+	private boolean evaluate(BPLSSAValue value) {
+		int id = value.getID();
+		long[] range;
+		if (value.isOp("phi")) {
+			range = null;
+			ArrayList<BPLBasicBlock> predecessors = value.getBlock().getPredecessors();
+			for (int i = 0; i < predecessors.size(); i++) {
+				BPLSSAValue operand = value.getOperand(i);
+				if (this.constants.isExecutable(predecessors.get(i)) && this.seen[operand.getID()]) {
+					range = union(range, this.getRange(operand));
+				}
+			}
+			if (range == null) {
+				return false;
+			}
+			if (this.seen[id] && ++this.changes[id] > WIDEN_AFTER) {
+				range[0] = (range[0] < this.lows[id]) ? Integer.MIN_VALUE : range[0];
+				range[1] = (range[1] > this.highs[id]) ? Integer.MAX_VALUE : range[1];
+			}
+		} else {
+			range = this.compute(value, this.getRanges(value.getOperands(), value.getBlock()));
+		}
+
+		if (this.seen[id] && range[0] == this.lows[id] && range[1] == this.highs[id]) {
+			return false;
+		}
+		this.seen[id] = true;
+		this.lows[id] = range[0];
+		this.highs[id] = range[1];
+		return true;
+	}
+
+	private long[] getRange(BPLSSAValue value) {
+		if (!this.seen[value.getID()]) { // not reached yet, so anything
+			return new long[] {Integer.MIN_VALUE, Integer.MAX_VALUE};
+		}
+		return new long[] {this.lows[value.getID()], this.highs[value.getID()]};
+	}
+
+	/**
+	* narrowing the operands keeps i + 1 from overflowing inside while (i < n)
+	*/
+	private long[][] getRanges(ArrayList<BPLSSAValue> operands, BPLBasicBlock block) {
+		long[][] ranges = new long[operands.size()][];
+		for (int i = 0; i < operands.size(); i++) {
+			ranges[i] = this.getRange(operands.get(i), block, 0);
+		}
+		return ranges;
+	}
+
+	private static long[] union(long[] a, long[] b) {
+		if (a == null) {
+			return b;
+		}
+		return new long[] {Math.min(a[0], b[0]), Math.max(a[1], b[1])};
+	}
+
+	/**
+	* interval arithmetic with the same 32 bit results as the generated code,
+	* so anything that could overflow can be any int
+	*/
+	private long[] compute(BPLSSAValue value, long[][] operands) {
+		String op = value.getOp();
+		long[] rtn;
+		if (op.equals("const")) {
+			rtn = new long[] {value.getConstant(), value.getConstant()};
+		} else if (op.equals("+")) {
+			rtn = new long[] {operands[0][0] + operands[1][0], operands[0][1] + operands[1][1]};
+		} else if (op.equals("-")) {
+			rtn = new long[] {operands[0][0] - operands[1][1], operands[0][1] - operands[1][0]};
+		} else if (op.equals("neg")) {
+			rtn = new long[] {-operands[0][1], -operands[0][0]};
+		} else if (op.equals("*")) {
+			long a = operands[0][0] * operands[1][0];
+			long b = operands[0][0] * operands[1][1];
+			long c = operands[0][1] * operands[1][0];
+			long d = operands[0][1] * operands[1][1];
+			rtn = new long[] {Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d))};
+		} else if (op.equals("/") && operands[1][0] == operands[1][1] && operands[1][0] > 0) {
+			rtn = new long[] {operands[0][0] / operands[1][0], operands[0][1] / operands[1][0]};
+		} else if (op.equals("%") && operands[1][0] == operands[1][1] && operands[1][0] != 0) {
+			long max = Math.abs(operands[1][0]) - 1;
+			rtn = new long[] {(operands[0][0] >= 0) ? 0 : -max, (operands[0][1] <= 0) ? 0 : max};
+		} else if (op.equals("==") || op.equals("!=") || op.equals("<") || op.equals(">") || op.equals("<=") || op.equals(">=")) {
+			rtn = new long[] {0, 1};
+		} else {
+			rtn = new long[] {Integer.MIN_VALUE, Integer.MAX_VALUE};
+		}
+		if (rtn[0] < Integer.MIN_VALUE || rtn[1] > Integer.MAX_VALUE) {
+			rtn = new long[] {Integer.MIN_VALUE, Integer.MAX_VALUE};
+		}
+		return rtn;
+	}
+
+	/**
+	* @return the range of value where block uses it. sums and products are
+	* narrowed through their operands up to REFINE_DEPTH deep
+	*/
+	private long[] getRange(BPLSSAValue value, BPLBasicBlock block, int depth) {
+		long[] range = this.getRange(value);
+		if (depth > 0 && (value.isOp("+") || value.isOp("-") || value.isOp("*") || value.isOp("%") || value.isOp("/"))) {
+			long[][] operands = new long[2][];
+			for (int i = 0; i < 2; i++) {
+				operands[i] = this.getRange(value.getOperand(i), block, depth - 1);
+			}
+			range = intersect(range, this.compute(value, operands));
+		}
+
+		// walk up the dominator tree, looking for the branches taken to get here
+		BPLDominators dominators = this.ssa.getDominators();
+		BPLBasicBlock entry = this.ssa.getControlFlowGraph().getEntry();
+		for (BPLBasicBlock child = block; child != entry; child = dominators.getImmediateDominator(child)) {
+			BPLBasicBlock parent = dominators.getImmediateDominator(child);
+			if (!parent.isBranch() || child.getPredecessors().size() != 1) {
+				continue;
+			}
+			BPLSSAValue condition = this.ssa.getConditionValue(parent);
+			if (condition == null || condition.getOperands().size() != 2) {
+				continue;
+			}
+			String op = condition.getOp();
+			if (child != parent.getTrueSuccessor()) {
+				op = negate(op);
+			}
+			if (condition.getOperand(0) == value) {
+				range = intersect(range, limit(op, this.getRange(condition.getOperand(1))));
+			} else if (condition.getOperand(1) == value) {
+				range = intersect(range, limit(flip(op), this.getRange(condition.getOperand(0))));
+			}
+		}
+		return range;
+	}
+
+	private static long[] intersect(long[] a, long[] b) {
+		return new long[] {Math.max(a[0], b[0]), Math.min(a[1], b[1])};
+	}
+
+	/**
+	* @return the values x can have if x op y is true and y is in other
+	*/
+	private static long[] limit(String op, long[] other) {
+		if (op.equals("<")) {
+			return new long[] {Integer.MIN_VALUE, other[1] - 1};
+		} else if (op.equals("<=")) {
+			return new long[] {Integer.MIN_VALUE, other[1]};
+		} else if (op.equals(">")) {
+			return new long[] {other[0] + 1, Integer.MAX_VALUE};
+		} else if (op.equals(">=")) {
+			return new long[] {other[0], Integer.MAX_VALUE};
+		} else if (op.equals("==")) {
+			return other;
+		}
+		return new long[] {Integer.MIN_VALUE, Integer.MAX_VALUE};
+	}
+
+	private static String negate(String op) {
+		if (op.equals("<")) {
+			return ">=";
+		} else if (op.equals("<=")) {
+			return ">";
+		} else if (op.equals(">")) {
+			return "<=";
+		} else if (op.equals(">=")) {
+			return "<";
+		} else if (op.equals("==")) {
+			return "!=";
+		} else if (op.equals("!=")) {
+			return "==";
+		}
+		return op;
+	}
+
+	/**
+	* @return op with its sides swapped
+	*/
+	private static String flip(String op) {
+		if (op.equals("<")) {
+			return ">";
+		} else if (op.equals("<=")) {
+			return ">=";
+		} else if (op.equals(">")) {
+			return "<";
+		} else if (op.equals(">=")) {
+			return "<=";
+		}
+		return op;
+	}
+
+	private void findAccesses(BPLNode node) {
+		if ((node.isType("VAR") || node.isType("FACTOR")) && node.getChildrenSize() == 4 && node.getChild(0).isType("ID")) {
+			BPLNode varDec = node.isType("VAR") ? node.getDeclaration() : node.getChild(0).getDeclaration();
+			BPLSSAValue address = this.ssa.getAddress(node);
+			int size = getArraySize(varDec);
+			if (size >= 0 && address != null) {
+				this.accesses++;
+				long[] range = this.getRange(address.getOperand(1), address.getBlock(), REFINE_DEPTH);
+				if (range[0] >= 0 && range[1] < size) {
+					this.inBounds.add(node);
+				}
+			}
+		}
+		for (BPLNode child : node.getChildren()) {
+			this.findAccesses(child);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLReachingDefinitions extends BPLDataflowAnalysis {
+	private BitSet[] gen;
+	private BitSet[] kill;
+	private BitSet entryDefinitions;
+
+	/**
+	* a def reaches a point if the var may still hold the value it wrote.
+	* the bits are def numbers of the control flow graph
+	*/
+	public BPLReachingDefinitions(BPLControlFlowGraph cfg) {
+		super(cfg, true, true);
+		int size = cfg.getBlocks().size();
+		this.gen = new BitSet[size];
+		this.kill = new BitSet[size];
+		for (BPLBasicBlock block : cfg.getBlocks()) {
+			BitSet blockGen = new BitSet();
+			BitSet blockKill = new BitSet();
+			for (BPLNode instruction : block.getInstructions()) {
+				for (BPLVarAccess access : cfg.getAccesses(instruction)) {
+					this.transferAccess(access, blockGen, blockKill);
+				}
+			}
+			this.gen[block.getID()] = blockGen;
+			this.kill[block.getID()] = blockKill;
+		}
+		this.entryDefinitions = new BitSet();
+		for (BPLVarAccess def : cfg.getEntryDefinitions()) {
+			this.entryDefinitions.set(def.getDefIndex());
+		}
+		this.solve();
+	}
+
+	protected BitSet getBoundary() {
+		// the entry block's input, so the params reach into it
+		return (BitSet) this.entryDefinitions.clone();
+	}
+
+	protected BitSet getInitial() {
+		return new BitSet();
+	}
+
+	protected BitSet transfer(BPLBasicBlock block, BitSet reachIn) {
+		BitSet reachOut = (BitSet) reachIn.clone();
+		reachOut.andNot(this.kill[block.getID()]);
+		reachOut.or(this.gen[block.getID()]);
+		return reachOut;
+	}
+
+	/**
+	* applies one access to the defs reaching, and to a kill set if there is one
+	*/
+	private void transferAccess(BPLVarAccess access, BitSet reaching, BitSet killed) {
+		if (!access.isDef()) {
+			return;
+		}
+		if (access.isDefinite()) {
+			BitSet varDefs = this.cfg.getVarDefinitions(access.getVar());
+			reaching.andNot(varDefs);
+			if (killed != null) {
+				killed.or(varDefs);
+			}
+		}
+		reaching.set(access.getDefIndex());
+	}
+
+	/**
+	* @return the defs that may have written the value read by an ID node
+	*/
+	public ArrayList<BPLVarAccess> getReachingDefinitions(BPLNode idNode) {
+		ArrayList<BPLVarAccess> rtn = new ArrayList<BPLVarAccess>();
+		BPLVarAccess use = this.cfg.getUse(idNode);
+		if (use == null) {
+			return rtn;
+		}
+
+		BPLBasicBlock block = this.cfg.getBlock(use.getInstruction());
+		BitSet reaching = (BitSet) this.getIn(block).clone();
+		boolean found = false;
+		for (BPLNode instruction : block.getInstructions()) {
+			for (BPLVarAccess access : this.cfg.getAccesses(instruction)) {
+				if (access == use) {
+					found = true;
+					break;
+				}
+				this.transferAccess(access, reaching, null);
+			}
+			if (found) {
+				break;
+			}
+		}
+
+		reaching.and(this.cfg.getVarDefinitions(use.getVar()));
+		for (int def = reaching.nextSetBit(0); def >= 0; def = reaching.nextSetBit(def + 1)) {
+			rtn.add(this.cfg.getDefinitions().get(def));
+		}
+		return rtn;
+	}
+}
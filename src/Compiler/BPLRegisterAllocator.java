@@ -0,0 +1,202 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLRegisterAllocator {
+	/**
+	* kept across calls, so a function has to save the ones it uses
+	*/
+	public static final String[] CALLEE_SAVED = {"%r13", "%r14", "%r15"};
+	/**
+	* not touched by the generated code, but clobbered by any call
+	*/
+	public static final String[] CALLER_SAVED = {"%r8", "%r9", "%r10", "%r11", "%rcx"};
+
+	private final BPLControlFlowGraph cfg;
+	private final BPLLiveness liveness;
+
+	private HashMap<BPLNode, Integer> loopDepths;
+	private long[] weights;
+	private ArrayList<BitSet> interference;
+	private HashMap<BPLNode, String> registers;
+	private ArrayList<String> savedRegisters;
+
+	/**
+	* keeps the scalar params and locals of funDec that never have their
+	* address taken in registers. vars that are never live at the same time
+	* can share one. functions that make calls only get callee saved registers
+	*/
+	public BPLRegisterAllocator(BPLControlFlowGraph cfg, BPLLiveness liveness, boolean makesCalls) {
+		this.cfg = cfg;
+		this.liveness = liveness;
+		this.loopDepths = new HashMap<BPLNode, Integer>();
+		this.registers = new HashMap<BPLNode, String>();
+		this.savedRegisters = new ArrayList<String>();
+
+		this.findLoopDepths(cfg.getFunDec().getChild(3), 0);
+		this.findWeights();
+		this.findInterference();
+
+		ArrayList<String> available = new ArrayList<String>();
+		if (!makesCalls) {
+			available.addAll(Arrays.asList(CALLER_SAVED));
+		}
+		available.addAll(Arrays.asList(CALLEE_SAVED));
+		this.assignRegisters(available);
+	}
+
+	/**
+	* @return the register varDec lives in, or null if it stays in memory
+	*/
+	public String getRegister(BPLNode varDec) {
+		return this.registers.get(varDec);
+	}
+
+	public HashMap<BPLNode, String> getRegisters() {
+		return this.registers;
+	}
+
+	/**
+	* @return the callee saved registers used, which the prologue has to save
+	*/
+	public ArrayList<String> getSavedRegisters() {
+		return this.savedRegisters;
+	}
+
+	private void findLoopDepths(BPLNode node, int depth) {
+		if (node.isType("WHILE_STMT")) {
+			this.loopDepths.put(node.getChild(0), depth + 1);
+			this.findLoopDepths(node.getChild(1), depth + 1);
+			return;
+		} else if (node.isType("IF_STMT")) {
+			this.loopDepths.put(node.getChild(0), depth);
+		} else if (node.isType("EXPRESSION_STMT") || node.isType("WRITE_STMT") || node.isType("RETURN_STMT")) {
+			this.loopDepths.put(node, depth);
+			return;
+		}
+		for (BPLNode child : node.getChildren()) {
+			this.findLoopDepths(child, depth);
+		}
+	}
+
+	/**
+	* accesses count 8 times more for each loop they are in
+	*/
+	private void findWeights() {
+		this.weights = new long[this.cfg.getVars().size()];
+		for (BPLBasicBlock block : this.cfg.getBlocks()) {
+			for (BPLNode instruction : block.getInstructions()) {
+				long weight = 1L << (3 * Math.min(this.loopDepths.get(instruction), 6));
+				for (BPLVarAccess access : this.cfg.getAccesses(instruction)) {
+					this.weights[access.getVar()] += weight;
+				}
+			}
+		}
+	}
+
+	/**
+	* a var interferes with every var live right after one of its defs.
+	* the params and the vars read before being written are all live on entry
+	*/
+	private void findInterference() {
+		int size = this.cfg.getVars().size();
+		this.interference = new ArrayList<BitSet>();
+		for (int i = 0; i < size; i++) {
+			this.interference.add(new BitSet());
+		}
+
+		for (BPLBasicBlock block : this.cfg.getBlocks()) {
+			BitSet live = (BitSet) this.liveness.getOut(block).clone();
+			ArrayList<BPLNode> instructions = block.getInstructions();
+			for (int i = instructions.size() - 1; i >= 0; i--) {
+				ArrayList<BPLVarAccess> accesses = this.cfg.getAccesses(instructions.get(i));
+				for (int j = accesses.size() - 1; j >= 0; j--) {
+					BPLVarAccess access = accesses.get(j);
+					if (access.isUse()) {
+						live.set(access.getVar());
+						continue;
+					}
+					this.addInterference(access.getVar(), live);
+					if (access.isDefinite()) {
+						live.clear(access.getVar());
+					}
+				}
+			}
+		}
+
+		BitSet entryLive = (BitSet) this.liveness.getIn(this.cfg.getEntry()).clone();
+		for (BPLVarAccess def : this.cfg.getEntryDefinitions()) {
+			entryLive.set(def.getVar());
+		}
+		for (int var = entryLive.nextSetBit(0); var >= 0; var = entryLive.nextSetBit(var + 1)) {
+			this.addInterference(var, entryLive);
+		}
+	}
+
+	private void addInterference(int var, BitSet live) {
+		for (int other = live.nextSetBit(0); other >= 0; other = live.nextSetBit(other + 1)) {
+			if (other != var) {
+				this.interference.get(var).set(other);
+				this.interference.get(other).set(var);
+			}
+		}
+	}
+
+	/**
+	* the heaviest vars pick first, each taking the first register
+	* none of the vars it interferes with has and it can pay for
+	*/
+	private void assignRegisters(ArrayList<String> available) {
+		ArrayList<Integer> candidates = new ArrayList<Integer>();
+		for (int var = 0; var < this.cfg.getVars().size(); var++) {
+			if (!this.cfg.getAddressTaken().get(var) && this.weights[var] > 0) {
+				candidates.add(var);
+			}
+		}
+		Collections.sort(candidates, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Long.compare(weights[b], weights[a]);
+			}
+		});
+
+		String[] assigned = new String[this.cfg.getVars().size()];
+		for (int var : candidates) {
+			HashSet<String> taken = new HashSet<String>();
+			BitSet neighbors = this.interference.get(var);
+			for (int other = neighbors.nextSetBit(0); other >= 0; other = neighbors.nextSetBit(other + 1)) {
+				if (assigned[other] != null) {
+					taken.add(assigned[other]);
+				}
+			}
+			for (String register : available) {
+				boolean unsaved = Arrays.asList(CALLEE_SAVED).contains(register) && !this.registers.containsValue(register);
+				if (unsaved && this.weights[var] < this.getSaveCost(var)) {
+					continue;
+				}
+				if (!taken.contains(register)) {
+					assigned[var] = register;
+					this.registers.put(this.cfg.getVars().get(var), register);
+					break;
+				}
+			}
+		}
+
+		for (String register : CALLEE_SAVED) {
+			if (this.registers.containsValue(register)) {
+				this.savedRegisters.add(register);
+			}
+		}
+	}
+
+	/**
+	* saving a callee saved register in the prologue and restoring it costs
+	* two memory accesses on every call, and loading a param into it one
+	* more. a var only gets one that no other var has paid for if it is
+	* used at least twice that much, so a few uses outside a loop stay in
+	* memory while a use inside one is enough
+	*/
+	private long getSaveCost(int var) {
+		long cost = this.cfg.getVars().get(var).isType("PARAM") ? 3 : 2;
+		return 2 * cost;
+	}
+}
@@ -0,0 +1,257 @@
+package Compiler;
+
+import java.io.*;
+
+public class BPLRuntime {
+	public static final int WRITE_BUFFER_SIZE = 65536;
+	public static final int READ_BUFFER_SIZE = 65536;
+
+	private final PrintStream out;
+
+	/**
+	* routines the generated code calls instead of libc. they only touch
+	* %rax, %rcx, %rdx, %rsi, %rdi and %r8-%r11, and make no libc calls
+	* unless printf is still used for write, so they can be called with the
+	* stack at any alignment
+	* @param out where the assembly goes
+	*/
+	public BPLRuntime(PrintStream out) {
+		this.out = out;
+	}
+
+	/**
+	* buffered output for write and writeln:
+	*   .WriteInt       writes the int in %edi
+	*   .WriteString    writes the string %rdi points to, or (null) as printf
+	*                   did if it's 0, like a string var never assigned
+	*   .WriteNewline   writes a newline
+	*   .WriteFlush     writes out the buffer, also called at exit
+	* ints are converted by multiplying by the inverse of 10 rather than
+	* dividing, and the buffer goes out with the write system call
+	*/
+	public void genWriteRuntime() {
+		this.genLocal(".WriteBuffer", WRITE_BUFFER_SIZE, 32);
+		this.genLocal(".WriteDigits", 16, 16);
+		this.genLocal(".WritePos", 8, 8);
+		this.out.println(".section .rodata");
+		this.out.println(".WriteNull: .string \"(null)\"");
+		this.out.println(".section .fini_array, \"aw\"");
+		this.print(".align 8");
+		this.print(".quad .WriteFlush", "flush the buffer at exit");
+		this.out.println(".text");
+
+		this.out.println(".WriteInt:");
+		this.print("cmpq $" + (WRITE_BUFFER_SIZE - 12) + ", .WritePos", "room for a sign and 10 digits?");
+		this.print("jbe .WriteIntRoom");
+		this.print("push %rdi");
+		this.print("call .WriteFlush");
+		this.print("pop %rdi");
+		this.out.println(".WriteIntRoom:");
+		this.print("movq .WritePos, %r8");
+		this.print("movslq %edi, %rax");
+		this.print("testq %rax, %rax");
+		this.print("jns .WriteIntDigits");
+		this.print("movb $45, .WriteBuffer(%r8)", "minus sign");
+		this.print("incq %r8");
+		this.print("negq %rax");
+		this.out.println(".WriteIntDigits:");
+		this.print("movq $.WriteDigits+16, %rsi", "digits go in backwards");
+		this.print("movl $0xCCCCCCCD, %ecx", "2^35 / 10, rounded up");
+		this.out.println(".WriteIntDigit:");
+		this.print("movq %rax, %rdx");
+		this.print("imulq %rcx, %rdx");
+		this.print("shrq $35, %rdx", "n / 10");
+		this.print("leaq (%rdx,%rdx,4), %r9");
+		this.print("addq %r9, %r9");
+		this.print("subq %r9, %rax", "n % 10");
+		this.print("addb $48, %al");
+		this.print("decq %rsi");
+		this.print("movb %al, 0(%rsi)");
+		this.print("movq %rdx, %rax");
+		this.print("testq %rax, %rax");
+		this.print("jnz .WriteIntDigit");
+		this.out.println(".WriteIntCopy:");
+		this.print("movb 0(%rsi), %al");
+		this.print("movb %al, .WriteBuffer(%r8)");
+		this.print("incq %r8");
+		this.print("incq %rsi");
+		this.print("cmpq $.WriteDigits+16, %rsi");
+		this.print("jne .WriteIntCopy");
+		this.print("movq %r8, .WritePos");
+		this.print("ret");
+
+		this.out.println(".WriteString:");
+		this.print("testq %rdi, %rdi");
+		this.print("jnz .WriteStringStart");
+		this.print("movq $.WriteNull, %rdi", "a string never assigned");
+		this.out.println(".WriteStringStart:");
+		this.print("movq .WritePos, %r8");
+		this.out.println(".WriteStringChar:");
+		this.print("cmpq $" + WRITE_BUFFER_SIZE + ", %r8");
+		this.print("jb .WriteStringRoom");
+		this.print("movq %r8, .WritePos");
+		this.print("push %rdi");
+		this.print("call .WriteFlush");
+		this.print("pop %rdi");
+		this.print("xorl %r8d, %r8d");
+		this.out.println(".WriteStringRoom:");
+		this.print("movb 0(%rdi), %al");
+		this.print("testb %al, %al");
+		this.print("jz .WriteStringDone");
+		this.print("movb %al, .WriteBuffer(%r8)");
+		this.print("incq %r8");
+		this.print("incq %rdi");
+		this.print("jmp .WriteStringChar");
+		this.out.println(".WriteStringDone:");
+		this.print("movq %r8, .WritePos");
+		this.print("ret");
+
+		this.out.println(".WriteNewline:");
+		this.print("movq .WritePos, %r8");
+		this.print("cmpq $" + WRITE_BUFFER_SIZE + ", %r8");
+		this.print("jb .WriteNewlineRoom");
+		this.print("call .WriteFlush");
+		this.print("xorl %r8d, %r8d");
+		this.out.println(".WriteNewlineRoom:");
+		this.print("movb $10, .WriteBuffer(%r8)");
+		this.print("incq %r8");
+		this.print("movq %r8, .WritePos");
+		this.print("ret");
+
+		this.out.println(".WriteFlush:");
+		this.print("movq $.WriteBuffer, %rsi");
+		this.print("movq .WritePos, %rdx");
+		this.out.println(".WriteFlushLoop:");
+		this.print("testq %rdx, %rdx");
+		this.print("jle .WriteFlushDone");
+		this.print("movl $1, %eax", "write system call");
+		this.print("movl $1, %edi", "stdout");
+		this.print("syscall");
+		this.print("cmpq $-4, %rax", "interrupted, try again");
+		this.print("je .WriteFlushLoop");
+		this.print("testq %rax, %rax");
+		this.print("jle .WriteFlushDone", "nowhere to write, drop the output");
+		this.print("addq %rax, %rsi");
+		this.print("subq %rax, %rdx");
+		this.print("jmp .WriteFlushLoop");
+		this.out.println(".WriteFlushDone:");
+		this.print("movq $0, .WritePos");
+		this.print("ret");
+	}
+
+	/**
+	* buffered input for read():
+	*   .ReadInt        reads the next int into %rax, or 0 at the end of input
+	*   .ReadFill       reads the next block of stdin into the buffer
+	* anything before an int that isn't a digit or a minus sign is skipped,
+	* and the digits are parsed straight out of the buffer. output is flushed
+	* before each block is read, so prompts show up before the program waits
+	* @param bufferedWrite whether write goes through .WriteFlush or printf
+	*/
+	public void genReadRuntime(boolean bufferedWrite) {
+		this.genLocal(".ReadBuffer", READ_BUFFER_SIZE, 32);
+		this.genLocal(".ReadPos", 8, 8);
+		this.genLocal(".ReadEnd", 8, 8);
+
+		this.out.println(".ReadInt:");
+		this.print("movq .ReadPos, %r8");
+		this.print("movq .ReadEnd, %r9");
+		this.print("xorl %r10d, %r10d", "not negative");
+		this.out.println(".ReadIntSkip:");
+		this.print("cmpq %r9, %r8");
+		this.print("jb .ReadIntSkipRoom");
+		this.print("call .ReadFill");
+		this.print("testq %r9, %r9");
+		this.print("jz .ReadIntEnd", "nothing left, read 0");
+		this.out.println(".ReadIntSkipRoom:");
+		this.print("movzbl .ReadBuffer(%r8), %ecx");
+		this.print("incq %r8");
+		this.print("cmpl $45, %ecx", "minus sign?");
+		this.print("je .ReadIntMinus");
+		this.print("subl $48, %ecx");
+		this.print("cmpl $9, %ecx");
+		this.print("ja .ReadIntSkip", "not a digit, skip it");
+		this.print("movl %ecx, %eax", "first digit");
+		this.print("jmp .ReadIntDigit");
+		this.out.println(".ReadIntMinus:");
+		this.print("movl $1, %r10d");
+		this.print("xorl %eax, %eax");
+		this.out.println(".ReadIntDigit:");
+		this.print("cmpq %r9, %r8");
+		this.print("jb .ReadIntDigitRoom");
+		this.print("call .ReadFill", "an int can go past the end of a block");
+		this.print("testq %r9, %r9");
+		this.print("jz .ReadIntDone");
+		this.out.println(".ReadIntDigitRoom:");
+		this.print("movzbl .ReadBuffer(%r8), %ecx");
+		this.print("subl $48, %ecx");
+		this.print("cmpl $9, %ecx");
+		this.print("ja .ReadIntDone");
+		this.print("imull $10, %eax");
+		this.print("addl %ecx, %eax");
+		this.print("incq %r8");
+		this.print("jmp .ReadIntDigit");
+		this.out.println(".ReadIntDone:");
+		this.print("movq %r8, .ReadPos");
+		this.print("testl %r10d, %r10d");
+		this.print("jz .ReadIntPositive");
+		this.print("negl %eax");
+		this.out.println(".ReadIntPositive:");
+		this.print("movslq %eax, %rax");
+		this.print("ret");
+		this.out.println(".ReadIntEnd:");
+		this.print("movq %r8, .ReadPos");
+		this.print("xorl %eax, %eax");
+		this.print("ret");
+
+		// leaves the new block's start in %r8 and its end in %r9, and keeps
+		// the int read so far in %rax and its sign in %r10
+		this.out.println(".ReadFill:");
+		this.print("push %rax");
+		this.print("push %r10");
+		if (bufferedWrite) {
+			this.print("call .WriteFlush");
+		} else {
+			this.print("push %rbp");
+			this.print("movq %rsp, %rbp");
+			this.print("andq $-16, %rsp", "align stack for call");
+			this.print("movq stdout, %rdi");
+			this.print("call fflush", "printf's buffer");
+			this.print("leave");
+		}
+		this.out.println(".ReadFillAgain:");
+		this.print("xorl %eax, %eax", "read system call");
+		this.print("xorl %edi, %edi", "stdin");
+		this.print("movq $.ReadBuffer, %rsi");
+		this.print("movq $" + READ_BUFFER_SIZE + ", %rdx");
+		this.print("syscall");
+		this.print("cmpq $-4, %rax", "interrupted, try again");
+		this.print("je .ReadFillAgain");
+		this.print("testq %rax, %rax");
+		this.print("jg .ReadFillDone");
+		this.print("xorl %eax, %eax", "end of input or an error, nothing read");
+		this.out.println(".ReadFillDone:");
+		this.print("movq %rax, .ReadEnd");
+		this.print("movq %rax, %r9");
+		this.print("xorl %r8d, %r8d");
+		this.print("pop %r10");
+		this.print("pop %rax");
+		this.print("ret");
+	}
+
+	/**
+	* zeroed space only this file sees
+	*/
+	private void genLocal(String name, int size, int align) {
+		this.out.println(".local " + name);
+		this.out.println(".comm " + name + ", " + size + ", " + align);
+	}
+
+	private void print(String code) {
+		this.out.println("\t" + code);
+	}
+
+	private void print(String code, String comment) {
+		this.out.println("\t" + code + "\t\t# " + comment);
+	}
+}
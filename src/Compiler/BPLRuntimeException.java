@@ -0,0 +1,48 @@
+package Compiler;
+
+import java.io.*;
+
+public class BPLRuntimeException extends BPLException {
+	public BPLRuntimeException() { 
+		super(); 
+	}
+
+	public BPLRuntimeException(String message) { 
+		super(message); 
+	}
+
+	public BPLRuntimeException(String message, int lineNumber) { 
+		super(message + " (Line " + lineNumber + ")"); 
+	}
+
+	/**
+	* @param className the class the program was compiled to, whose frames have BPL lines
+	* @return error, thrown by a running program, with the BPL line it happened on
+	*/
+	public static BPLRuntimeException from(Throwable error, String className) {
+		for (StackTraceElement element : error.getStackTrace()) {
+			if (element.getClassName().equals(className) && element.getLineNumber() > 0) {
+				return new BPLRuntimeException(describe(error), element.getLineNumber());
+			}
+		}
+		return new BPLRuntimeException(describe(error));
+	}
+
+	/**
+	* @return what went wrong, in BPL terms
+	*/
+	public static String describe(Throwable error) {
+		if (error instanceof ArrayIndexOutOfBoundsException) {
+			return "Array index out of bounds: " + error.getMessage();
+		} else if (error instanceof ArithmeticException) {
+			return "Division by zero";
+		} else if (error instanceof NullPointerException) {
+			return "String or pointer used before it was set";
+		} else if (error instanceof StackOverflowError) {
+			return "Stack overflow";
+		} else if (error instanceof IOException) {
+			return "Input or output failed: " + error.getMessage();
+		}
+		return error.toString();
+	}
+}
@@ -0,0 +1,460 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLSSAForm {
+	/**
+	* the var standing for all memory: globals, arrays and vars used with &
+	*/
+	public static final String MEMORY = "memory";
+
+	private final BPLControlFlowGraph cfg;
+	private final BPLDominators dominators;
+	private final BPLLiveness liveness;
+
+	private ArrayList<BPLSSAValue> values;
+	private ArrayList<ArrayList<BPLSSAValue>> blockValues;
+	private ArrayList<ArrayList<BPLSSAValue>> blockPhis;
+	private HashMap<BPLNode, BPLSSAValue> nodeValues;
+	private HashMap<BPLNode, BPLSSAValue> addressValues;
+	private HashMap<Object, Stack<BPLSSAValue>> currentDefs;
+	private BPLSSAValue undef;
+	private long nanos;
+
+	/**
+	* lowers the expressions of each reachable block into SSA values.
+	* params and locals that are never used with & get a value per assignment
+	* and phis where assignments meet. everything else is read and written
+	* through loads and stores that take and make memory states
+	*/
+	public BPLSSAForm(BPLControlFlowGraph cfg, BPLDominators dominators, BPLLiveness liveness) {
+		long start = System.nanoTime();
+		this.cfg = cfg;
+		this.dominators = dominators;
+		this.liveness = liveness;
+		this.values = new ArrayList<BPLSSAValue>();
+		this.blockValues = new ArrayList<ArrayList<BPLSSAValue>>();
+		this.blockPhis = new ArrayList<ArrayList<BPLSSAValue>>();
+		for (int i = 0; i < cfg.getBlocks().size(); i++) {
+			this.blockValues.add(new ArrayList<BPLSSAValue>());
+			this.blockPhis.add(new ArrayList<BPLSSAValue>());
+		}
+		this.nodeValues = new HashMap<BPLNode, BPLSSAValue>();
+		this.addressValues = new HashMap<BPLNode, BPLSSAValue>();
+		this.currentDefs = new HashMap<Object, Stack<BPLSSAValue>>();
+		this.undef = new BPLSSAValue(this.values.size(), "undef", cfg.getEntry(), null);
+		this.values.add(this.undef);
+
+		this.placePhis();
+		this.rename();
+		this.nanos = System.nanoTime() - start;
+	}
+
+	public BPLControlFlowGraph getControlFlowGraph() {
+		return this.cfg;
+	}
+
+	public BPLDominators getDominators() {
+		return this.dominators;
+	}
+
+	public ArrayList<BPLSSAValue> getValues() {
+		return this.values;
+	}
+
+	public ArrayList<BPLSSAValue> getPhis(BPLBasicBlock block) {
+		return this.blockPhis.get(block.getID());
+	}
+
+	/**
+	* @return the values of a block other than its phis, in evaluation order
+	*/
+	public ArrayList<BPLSSAValue> getBlockValues(BPLBasicBlock block) {
+		return this.blockValues.get(block.getID());
+	}
+
+	/**
+	* @return the value of an EXPRESSION, COMP_EXP, E, T, F or FACTOR node,
+	* or null if it is in an unreachable block
+	*/
+	public BPLSSAValue getValue(BPLNode node) {
+		return this.nodeValues.get(node);
+	}
+
+	/**
+	* @return the element address computed by a VAR or FACTOR node with an index
+	*/
+	public BPLSSAValue getAddress(BPLNode node) {
+		return this.addressValues.get(node);
+	}
+
+	/**
+	* @return the value a branching block tests
+	*/
+	public BPLSSAValue getConditionValue(BPLBasicBlock block) {
+		return this.nodeValues.get(block.getCondition());
+	}
+
+	public long getNanos() {
+		return this.nanos;
+	}
+
+	private boolean isTracked(BPLNode varDec) {
+		return this.cfg.getVarIndex(varDec) >= 0 && !this.cfg.isAddressTaken(varDec);
+	}
+
+	private static boolean isArray(BPLNode varDec) {
+		return (varDec.isType("VAR_DEC") && varDec.getChildrenSize() == 5) || (varDec.isType("PARAM") && varDec.getChildrenSize() > 3);
+	}
+
+	/**
+	* a var gets a phi at the iterated dominance frontier of its defs,
+	* if it is live there. memory gets one wherever stores meet
+	*/
+	private void placePhis() {
+		LinkedHashMap<Object, HashSet<BPLBasicBlock>> defBlocks = new LinkedHashMap<Object, HashSet<BPLBasicBlock>>();
+		defBlocks.put(MEMORY, new HashSet<BPLBasicBlock>());
+		defBlocks.get(MEMORY).add(this.cfg.getEntry());
+		for (BPLVarAccess def : this.cfg.getEntryDefinitions()) {
+			BPLNode varDec = this.cfg.getVars().get(def.getVar());
+			if (this.isTracked(varDec)) {
+				defBlocks.put(varDec, new HashSet<BPLBasicBlock>());
+				defBlocks.get(varDec).add(this.cfg.getEntry());
+			}
+		}
+
+		for (BPLBasicBlock block : this.dominators.getReversePostorder()) {
+			for (BPLNode instruction : block.getInstructions()) {
+				for (BPLVarAccess access : this.cfg.getAccesses(instruction)) {
+					BPLNode varDec = this.cfg.getVars().get(access.getVar());
+					if (access.isDef() && this.isTracked(varDec)) {
+						if (!defBlocks.containsKey(varDec)) {
+							defBlocks.put(varDec, new HashSet<BPLBasicBlock>());
+						}
+						defBlocks.get(varDec).add(block);
+					}
+				}
+				if (writesMemory(instruction)) {
+					defBlocks.get(MEMORY).add(block);
+				}
+			}
+		}
+
+		for (Object var : defBlocks.keySet()) {
+			int index = (var == MEMORY) ? -1 : this.cfg.getVarIndex((BPLNode) var);
+			HashSet<BPLBasicBlock> hasPhi = new HashSet<BPLBasicBlock>();
+			ArrayDeque<BPLBasicBlock> worklist = new ArrayDeque<BPLBasicBlock>(defBlocks.get(var));
+			while (!worklist.isEmpty()) {
+				BPLBasicBlock block = worklist.poll();
+				for (BPLBasicBlock frontier : this.dominators.getFrontier(block)) {
+					if (hasPhi.contains(frontier)) {
+						continue;
+					}
+					hasPhi.add(frontier);
+					// no phi where the var is dead, but the merge still counts as a def
+					if (index < 0 || this.liveness.getIn(frontier).get(index)) {
+						BPLSSAValue phi = this.newValue("phi", frontier, null);
+						phi.setKey(var);
+						for (int i = 0; i < frontier.getPredecessors().size(); i++) {
+							phi.addEmptyOperand();
+						}
+						this.blockPhis.get(frontier.getID()).add(phi);
+					}
+					if (!defBlocks.get(var).contains(frontier)) {
+						worklist.add(frontier);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	* @return true if evaluating node can change memory: stores to
+	* untracked vars, stores through pointers, calls and read()
+	*/
+	private boolean writesMemory(BPLNode node) {
+		if (node.isType("FUN_CALL") || node.isType("READ")) {
+			return true;
+		} else if (node.isType("EXPRESSION") && node.isChildrenSize(3)) {
+			BPLNode var = node.getChild(0);
+			if (var.getChild(0).isType("*") || var.getChildrenSize() == 4 || !this.isTracked(var.getDeclaration())) {
+				return true;
+			}
+		}
+		for (BPLNode child : node.getChildren()) {
+			if (this.writesMemory(child)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	* walks the dominator tree keeping a stack of defs per var
+	*/
+	private void rename() {
+		BPLBasicBlock entry = this.cfg.getEntry();
+		this.pushDef(MEMORY, this.newValue("entry", entry, null));
+		for (BPLNode param : BPLInliner.getParams(this.cfg.getFunDec())) {
+			if (this.isTracked(param)) {
+				BPLSSAValue value = this.newValue("param", entry, param);
+				value.setKey(param);
+				this.pushDef(param, value);
+			}
+		}
+
+		int size = this.cfg.getBlocks().size();
+		ArrayList<ArrayList<Object>> pushed = new ArrayList<ArrayList<Object>>();
+		for (int i = 0; i < size; i++) {
+			pushed.add(null);
+		}
+		Stack<BPLBasicBlock> blocks = new Stack<BPLBasicBlock>();
+		blocks.push(entry);
+		while (!blocks.isEmpty()) {
+			BPLBasicBlock block = blocks.peek();
+			if (pushed.get(block.getID()) == null) {
+				pushed.set(block.getID(), this.renameBlock(block));
+				ArrayList<BPLBasicBlock> children = this.dominators.getChildren(block);
+				for (int i = children.size() - 1; i >= 0; i--) {
+					blocks.push(children.get(i));
+				}
+			} else {
+				blocks.pop();
+				for (Object var : pushed.get(block.getID())) {
+					this.currentDefs.get(var).pop();
+				}
+			}
+		}
+
+		// edges from unreachable blocks
+		for (ArrayList<BPLSSAValue> phis : this.blockPhis) {
+			for (BPLSSAValue phi : phis) {
+				for (int i = 0; i < phi.getOperands().size(); i++) {
+					if (phi.getOperand(i) == null) {
+						phi.setOperand(i, this.undef);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	* @return the vars given new defs in block
+	*/
+	private ArrayList<Object> renameBlock(BPLBasicBlock block) {
+		ArrayList<Object> pushed = new ArrayList<Object>();
+		for (BPLSSAValue phi : this.getPhis(block)) {
+			this.pushDef(phi.getKey(), phi);
+			pushed.add(phi.getKey());
+		}
+		for (BPLNode instruction : block.getInstructions()) {
+			BPLNode node = instruction;
+			if (node.isType("EXPRESSION_STMT") || node.isType("WRITE_STMT") || node.isType("RETURN_STMT")) {
+				node = (node.getChildrenSize() > 0) ? node.getChild(0) : null;
+			}
+			if (node != null) {
+				this.lower(node, block, pushed);
+			}
+		}
+		for (BPLBasicBlock successor : block.getSuccessors()) {
+			int index = successor.getPredecessors().indexOf(block);
+			for (BPLSSAValue phi : this.getPhis(successor)) {
+				phi.setOperand(index, this.getDef(phi.getKey()));
+			}
+		}
+		return pushed;
+	}
+
+	private void pushDef(Object var, BPLSSAValue value) {
+		if (!this.currentDefs.containsKey(var)) {
+			this.currentDefs.put(var, new Stack<BPLSSAValue>());
+		}
+		this.currentDefs.get(var).push(value);
+	}
+
+	private BPLSSAValue getDef(Object var) {
+		Stack<BPLSSAValue> defs = this.currentDefs.get(var);
+		return (defs == null || defs.isEmpty()) ? this.undef : defs.peek();
+	}
+
+	private BPLSSAValue newValue(String op, BPLBasicBlock block, BPLNode node) {
+		BPLSSAValue value = new BPLSSAValue(this.values.size(), op, block, node);
+		this.values.add(value);
+		if (!op.equals("phi")) {
+			this.blockValues.get(block.getID()).add(value);
+		}
+		return value;
+	}
+
+	private BPLSSAValue newValue(String op, BPLBasicBlock block, BPLNode node, BPLSSAValue... operands) {
+		BPLSSAValue value = this.newValue(op, block, node);
+		for (BPLSSAValue operand : operands) {
+			value.addOperand(operand);
+		}
+		return value;
+	}
+
+	private BPLSSAValue newLeaf(String op, BPLBasicBlock block, BPLNode node, Object key) {
+		BPLSSAValue value = this.newValue(op, block, node);
+		value.setKey(key);
+		return value;
+	}
+
+	/**
+	* lowers node in the order the code generator evaluates it
+	*/
+	private BPLSSAValue lower(BPLNode node, BPLBasicBlock block, ArrayList<Object> pushed) {
+		BPLSSAValue value;
+		if (node.isType("EXPRESSION")) {
+			if (node.isChildrenSize(1)) {
+				value = this.lower(node.getChild(0), block, pushed);
+			} else {
+				value = this.lowerAssignment(node, block, pushed);
+			}
+		} else if (node.isType("COMP_EXP")) {
+			value = this.lower(node.getChild(0), block, pushed);
+			if (node.getChildrenSize() > 1) {
+				BPLSSAValue right = this.lower(node.getChild(2), block, pushed);
+				value = this.newValue(node.getChild(1).getChild(0).getType(), block, node, value, right);
+			}
+		} else if (node.isType("E") || node.isType("T")) {
+			if (node.isChildrenSize(1)) {
+				value = this.lower(node.getChild(0), block, pushed);
+			} else { // the right side is evaluated first
+				BPLSSAValue right = this.lower(node.getChild(2), block, pushed);
+				BPLSSAValue left = this.lower(node.getChild(0), block, pushed);
+				value = this.newValue(node.getChild(1).getChild(0).getType(), block, node, left, right);
+			}
+		} else if (node.isType("F")) {
+			BPLNode child = node.getChild(0);
+			if (child.isType("FACTOR")) {
+				value = this.lower(child, block, pushed);
+			} else if (child.isType("-")) {
+				value = this.newValue("neg", block, node, this.lower(node.getChild(1), block, pushed));
+			} else if (child.isType("*")) {
+				BPLSSAValue pointer = this.lower(node.getChild(1), block, pushed);
+				value = this.newValue("load", block, node, pointer, this.getDef(MEMORY));
+			} else {
+				value = this.lowerAmpersand(node.getChild(1), block, pushed);
+			}
+		} else {
+			value = this.lowerFactor(node, block, pushed);
+		}
+		this.nodeValues.put(node, value);
+		return value;
+	}
+
+	private BPLSSAValue lowerFactor(BPLNode factor, BPLBasicBlock block, ArrayList<Object> pushed) {
+		BPLNode child = factor.getChild(0);
+		if (child.isType("EXPRESSION")) {
+			return this.lower(child, block, pushed);
+		} else if (child.isType("FUN_CALL")) {
+			ArrayList<BPLNode> args = BPLInliner.getArgs(child);
+			BPLSSAValue[] argValues = new BPLSSAValue[args.size()];
+			for (int i = args.size() - 1; i >= 0; i--) {
+				argValues[i] = this.lower(args.get(i), block, pushed);
+			}
+			BPLSSAValue call = this.newValue("call", block, child, argValues);
+			this.clobberMemory(block, child, pushed);
+			return call;
+		} else if (child.isType("READ")) {
+			BPLSSAValue read = this.newValue("read", block, child);
+			this.clobberMemory(block, child, pushed);
+			return read;
+		} else if (child.isType("INTEGER")) {
+			BPLSSAValue value = this.newValue("const", block, factor);
+			value.setConstant(((BPLIntegerNode) child).getInteger());
+			return value;
+		} else if (child.isType("STRING")) {
+			return this.newLeaf("string", block, factor, child.getChild(0).getType());
+		}
+
+		BPLNode varDec = child.getDeclaration();
+		if (factor.getChildrenSize() > 1) { // array entry
+			BPLSSAValue address = this.lowerElementAddress(factor, varDec, factor.getChild(2), block, pushed);
+			return this.newValue("load", block, factor, address, this.getDef(MEMORY));
+		} else if (isArray(varDec)) {
+			return this.newLeaf("base", block, factor, varDec);
+		}
+		return this.lowerVar(varDec, factor, block);
+	}
+
+	private BPLSSAValue lowerVar(BPLNode varDec, BPLNode node, BPLBasicBlock block) {
+		if (this.isTracked(varDec)) {
+			return this.getDef(varDec);
+		}
+		BPLSSAValue address = this.newLeaf("varaddr", block, node, varDec);
+		return this.newValue("load", block, node, address, this.getDef(MEMORY));
+	}
+
+	private BPLSSAValue lowerElementAddress(BPLNode node, BPLNode varDec, BPLNode index, BPLBasicBlock block, ArrayList<Object> pushed) {
+		BPLSSAValue indexValue = this.lower(index, block, pushed);
+		BPLSSAValue base = this.newLeaf("base", block, node, varDec);
+		BPLSSAValue address = this.newValue("addr", block, node, base, indexValue);
+		this.addressValues.put(node, address);
+		return address;
+	}
+
+	/**
+	* the type checker only lets & take the address of a var or array entry.
+	* anything else, in a tree that wasn't checked, is an unknown value so
+	* nothing is folded through it
+	*/
+	private BPLSSAValue lowerAmpersand(BPLNode factor, BPLBasicBlock block, ArrayList<Object> pushed) {
+		BPLSSAValue value;
+		if (!factor.getChild(0).isType("ID")) {
+			value = this.newValue("addrof", block, factor, this.lowerFactor(factor, block, pushed));
+			this.nodeValues.put(factor, value);
+			return value;
+		}
+		BPLNode varDec = factor.getChild(0).getDeclaration();
+		if (factor.getChildrenSize() > 1) {
+			value = this.lowerElementAddress(factor, varDec, factor.getChild(2), block, pushed);
+		} else {
+			value = this.newLeaf(isArray(varDec) ? "base" : "varaddr", block, factor, varDec);
+		}
+		this.nodeValues.put(factor, value);
+		return value;
+	}
+
+	private BPLSSAValue lowerAssignment(BPLNode expression, BPLBasicBlock block, ArrayList<Object> pushed) {
+		BPLSSAValue value = this.lower(expression.getChild(2), block, pushed);
+		BPLNode var = expression.getChild(0);
+		BPLNode varDec = var.getDeclaration();
+		BPLSSAValue address;
+		if (var.getChild(0).isType("*")) {
+			address = this.lowerVar(varDec, var, block);
+		} else if (var.getChildrenSize() == 4) {
+			address = this.lowerElementAddress(var, varDec, var.getChild(2), block, pushed);
+		} else if (this.isTracked(varDec)) {
+			this.pushDef(varDec, value);
+			pushed.add(varDec);
+			return value;
+		} else {
+			address = this.newLeaf("varaddr", block, var, varDec);
+		}
+		BPLSSAValue store = this.newValue("store", block, expression, this.getDef(MEMORY), address, value);
+		this.pushDef(MEMORY, store);
+		pushed.add(MEMORY);
+		return value;
+	}
+
+	private void clobberMemory(BPLBasicBlock block, BPLNode node, ArrayList<Object> pushed) {
+		this.pushDef(MEMORY, this.newValue("clobber", block, node, this.getDef(MEMORY)));
+		pushed.add(MEMORY);
+	}
+
+	public String toString() {
+		String rtn = "";
+		for (BPLBasicBlock block : this.dominators.getReversePostorder()) {
+			rtn += block + "\n";
+			for (BPLSSAValue phi : this.getPhis(block)) {
+				rtn += "   " + phi + "\n";
+			}
+			for (BPLSSAValue value : this.getBlockValues(block)) {
+				rtn += "   " + value + "\n";
+			}
+		}
+		return rtn;
+	}
+}
@@ -0,0 +1,126 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLSSAValue {
+	private final int id;
+	private final String op;
+	private final BPLBasicBlock block;
+	private final BPLNode node;
+
+	private ArrayList<BPLSSAValue> operands;
+	private ArrayList<BPLSSAValue> users;
+	private Object key;
+	private int constant;
+
+	/**
+	* one value of a function in SSA form. op is one of
+	*   const, undef, param, string, base, varaddr     leaves, see getKey()
+	*   + - * / % neg == != < > <= >=                  arithmetic on the operands
+	*   load (address, memory), addr (base, index)     memory reads and element addresses
+	*   call, read                                     opaque results
+	*   store, clobber, entry                          new memory states
+	*   phi                                            one operand per predecessor of block
+	* node is the tree node the value was made for, if any
+	*/
+	public BPLSSAValue(int id, String op, BPLBasicBlock block, BPLNode node) {
+		this.id = id;
+		this.op = op;
+		this.block = block;
+		this.node = node;
+		this.operands = new ArrayList<BPLSSAValue>();
+		this.users = new ArrayList<BPLSSAValue>();
+		this.key = null;
+		this.constant = 0;
+	}
+
+	public int getID() {
+		return this.id;
+	}
+
+	public String getOp() {
+		return this.op;
+	}
+
+	public boolean isOp(String op) {
+		return this.op.equals(op);
+	}
+
+	public BPLBasicBlock getBlock() {
+		return this.block;
+	}
+
+	public BPLNode getNode() {
+		return this.node;
+	}
+
+	public ArrayList<BPLSSAValue> getOperands() {
+		return this.operands;
+	}
+
+	public BPLSSAValue getOperand(int i) {
+		return this.operands.get(i);
+	}
+
+	public void addOperand(BPLSSAValue operand) {
+		this.operands.add(operand);
+		operand.users.add(this);
+	}
+
+	/**
+	* a phi starts with an empty operand for each predecessor, filled in
+	* once the predecessor has been renamed
+	*/
+	public void addEmptyOperand() {
+		this.operands.add(null);
+	}
+
+	public void setOperand(int i, BPLSSAValue operand) {
+		this.operands.set(i, operand);
+		operand.users.add(this);
+	}
+
+	public ArrayList<BPLSSAValue> getUsers() {
+		return this.users;
+	}
+
+	/**
+	* the var or string of a leaf value, so equal leaves can be told apart
+	*/
+	public Object getKey() {
+		return this.key;
+	}
+
+	public void setKey(Object key) {
+		this.key = key;
+	}
+
+	public int getConstant() {
+		return this.constant;
+	}
+
+	public void setConstant(int constant) {
+		this.constant = constant;
+	}
+
+	/**
+	* memory states are only used to order loads against stores
+	*/
+	public boolean isMemory() {
+		if (this.op.equals("phi")) {
+			return BPLSSAForm.MEMORY.equals(this.key);
+		}
+		return this.op.equals("store") || this.op.equals("clobber") || this.op.equals("entry");
+	}
+
+	public String toString() {
+		String rtn = "v" + this.id + " = " + this.op;
+		if (this.op.equals("const")) {
+			rtn += " " + this.constant;
+		}
+		for (BPLSSAValue operand : this.operands) {
+			rtn += (operand == null) ? " ?" : " v" + operand.getID();
+		}
+		return rtn;
+	}
+}
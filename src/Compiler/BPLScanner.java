@@ -4,7 +4,7 @@ import java.util.Scanner;
 import java.io.File;
 import java.io.FileNotFoundException;
 
-public class BPLScanner {
+public class BPLScanner implements BPLTokenSource {
 	private String fileName;
 	private Scanner scan;
 	private Token curToken;
@@ -12,15 +12,21 @@ public class BPLScanner {
 	private int lineNumber;
 	private int position;
 	
-	public BPLScanner(String fileName)  {
+	public BPLScanner(String fileName) throws BPLScannerException {
+		this(open(fileName), fileName);
+	}
+
+	/**
+	* scans source instead of a file, like a CharBuffer wrapping a program's text
+	*/
+	public BPLScanner(Readable source) {
+		this(new Scanner(source), "<source>");
+	}
+
+	private BPLScanner(Scanner scan, String fileName) {
 		this.fileName = fileName;
 		this.position = 0;
-		try {
-			this.scan = new Scanner(new File(fileName));
-		} catch (FileNotFoundException f) {
-			f.printStackTrace();
-			System.exit(-1);
-		}
+		this.scan = scan;
 		this.currentLine = "";
 		if (scan.hasNextLine()) {
 			this.currentLine = scan.nextLine();
@@ -28,6 +34,14 @@ public class BPLScanner {
 		this.lineNumber = 1;
 	}
 
+	private static Scanner open(String fileName) throws BPLScannerException {
+		try {
+			return new Scanner(new File(fileName));
+		} catch (FileNotFoundException f) {
+			throw new BPLScannerException("Can't open " + fileName);
+		}
+	}
+
 	/**
 	* returns the current token
 	**/
@@ -0,0 +1,199 @@
+package Compiler;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class BPLServer {
+	public static final int DEFAULT_PORT = 7878;
+	public static final List<String> TOOLS = Arrays.asList("scan", "parse", "typecheck", "codegen");
+
+	private final ServerSocket serverSocket;
+	private final ExecutorService executor;
+	private final File root;
+
+	/**
+	* a compiler that stays running, so each compile doesn't pay for starting
+	* a JVM and for the scanner, parser, type checker and code generator
+	* being interpreted until HotSpot compiles them. it only listens on the
+	* loopback address. each connection is one request:
+	*   the tool, one of TOOLS, on a line
+	*   the directory the file name is relative to, on a line
+	*   the options and the file name, one per line
+	*   an empty line
+	* and gets back the exit status on a line, followed by the output, or
+	* the error if the status isn't 0. the bplc script sends them.
+	* anything on this machine can connect, so it only opens .bpl files
+	* under root, and a request for any other file gets an error
+	*/
+	public BPLServer(int port, File root) throws IOException {
+		this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+		this.executor = newExecutor();
+		this.root = root.getCanonicalFile();
+	}
+
+	/**
+	* a virtual thread for each request where the JVM has them, and a pool that grows otherwise
+	*/
+	private static ExecutorService newExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	* takes connections until the server socket is closed
+	*/
+	public void serve() throws IOException {
+		try {
+			while (true) {
+				final Socket socket = this.serverSocket.accept();
+				this.executor.execute(new Runnable() {
+					public void run() {
+						handle(socket, root);
+					}
+				});
+			}
+		} catch (SocketException e) {
+			if (!this.serverSocket.isClosed()) {
+				throw e;
+			}
+		} finally {
+			this.executor.shutdown();
+		}
+	}
+
+	public void close() throws IOException {
+		this.serverSocket.close();
+	}
+
+	private static void handle(Socket socket, File root) {
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+			String tool = in.readLine();
+			String directory = in.readLine();
+			ArrayList<String> args = new ArrayList<String>();
+			for (String line = in.readLine(); line != null && !line.isEmpty(); line = in.readLine()) {
+				args.add(line);
+			}
+
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			PrintStream out = new PrintStream(output, false, "UTF-8");
+			int status = 0;
+			try {
+				compile(tool, directory, args.toArray(new String[0]), root, out);
+			} catch (BPLException e) {
+				output.reset();
+				out.println(e.getMessage());
+				status = 1;
+			} catch (RuntimeException e) {
+				output.reset();
+				out.println("Compiler error: " + e);
+				status = 2;
+			}
+			out.flush();
+
+			OutputStream response = socket.getOutputStream();
+			response.write((status + "\n").getBytes("UTF-8"));
+			output.writeTo(response);
+			response.flush();
+		} catch (IOException e) {
+			System.err.println("Request failed: " + e.getMessage());
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	/**
+	* does what the main of the tool does, with the output going to out
+	* @param root the directory the file has to be in, or in a directory under
+	*/
+	public static void compile(String tool, String directory, String[] args, File root, PrintStream out) throws BPLException {
+		if (!TOOLS.contains(tool)) {
+			throw new BPLException("Unknown tool " + tool + ", expected one of " + TOOLS);
+		}
+		BPLOptions options = BPLOptions.parse(args);
+		if (options.getFileName() == null) {
+			throw new BPLException("File to " + tool + " needed");
+		}
+		File file = new File(options.getFileName());
+		if (!file.isAbsolute() && directory != null) {
+			file = new File(directory, options.getFileName());
+		}
+		String fileName = checkFile(file, root).getPath();
+
+		if (tool.equals("scan")) {
+			BPLScanner scanner = new BPLScanner(fileName);
+			scanner.getNextToken();
+			while (scanner.nextToken().getType() != Token.T_EOF) {
+				out.println(scanner.nextToken());
+				scanner.getNextToken();
+			}
+		} else if (tool.equals("parse")) {
+			out.println(new BPLParser(fileName));
+		} else if (tool.equals("typecheck")) {
+			new BPLTypeChecker(fileName);
+		} else {
+			try {
+				new BPLCodeGenerator(fileName, options, out);
+			} catch (IOException e) {
+				throw new BPLException("Can't write the assembly: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	* @return the file with symbolic links and .. resolved
+	* @throws BPLException if it isn't a .bpl file under root
+	*/
+	private static File checkFile(File file, File root) throws BPLException {
+		File canonical;
+		try {
+			canonical = file.getCanonicalFile();
+		} catch (IOException e) {
+			throw new BPLException("Can't open " + file);
+		}
+		if (canonical.getName().endsWith(".bpl")) {
+			for (File parent = canonical.getParentFile(); parent != null; parent = parent.getParentFile()) {
+				if (parent.equals(root)) {
+					return canonical;
+				}
+			}
+		}
+		throw new BPLException(file + " isn't a .bpl file under " + root + ", the only files the server opens");
+	}
+
+	/**
+	* usage: BPLServer [--root=<directory>] [port]
+	* the root is the current directory unless --root gives another
+	*/
+	public static void main(String[] args) throws IOException {
+		int port = DEFAULT_PORT;
+		File root = new File(".");
+		for (String arg : args) {
+			if (arg.startsWith("--root=")) {
+				root = new File(arg.substring("--root=".length()));
+				if (!root.isDirectory()) {
+					System.err.println(root + " isn't a directory");
+					System.exit(1);
+				}
+				continue;
+			}
+			try {
+				port = Integer.parseInt(arg);
+			} catch (NumberFormatException e) {
+				System.err.println("Bad port " + arg);
+				System.exit(1);
+			}
+		}
+		BPLServer server = new BPLServer(port, root);
+		System.err.println("BPL compiler server listening on localhost:" + port + " for .bpl files under " + server.root);
+		server.serve();
+	}
+}
@@ -0,0 +1,148 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLSourceDeclaration {
+	private final List<Token> tokens;
+	private final String name;
+	private final boolean function;
+	private String key;
+
+	/**
+	* the tokens of one top-level var or function declaration, as
+	* BPLIncremental splits a source before parsing any of it
+	*/
+	public BPLSourceDeclaration(List<Token> tokens, String name, boolean function) {
+		this.tokens = tokens;
+		this.name = name;
+		this.function = function;
+		this.key = null;
+	}
+
+	/**
+	* splits tokens at the ';' or '}' that ends each top-level declaration
+	* @return the declarations, or null if the tokens don't split into them
+	* cleanly, which the parser then has to report
+	*/
+	public static ArrayList<BPLSourceDeclaration> split(ArrayList<Token> tokens) {
+		ArrayList<BPLSourceDeclaration> declarations = new ArrayList<BPLSourceDeclaration>();
+		int start = 0;
+		int depth = 0;
+		boolean function = false;
+		for (int i = 0; i < tokens.size(); i++) {
+			int type = tokens.get(i).getType();
+			boolean end = false;
+			if (type == Token.T_LCURLY) {
+				depth++;
+			} else if (type == Token.T_RCURLY) {
+				depth--;
+				if (depth < 0 || (depth == 0 && !function)) {
+					return null;
+				}
+				end = (depth == 0);
+			} else if (type == Token.T_LPAREN && depth == 0) {
+				function = true;
+			} else if (type == Token.T_SEMICOL && depth == 0) {
+				if (function) {
+					return null;
+				}
+				end = true;
+			}
+
+			if (end) {
+				List<Token> declaration = tokens.subList(start, i + 1);
+				String name = null;
+				for (Token token : declaration) {
+					if (token.getType() == Token.T_ID) {
+						name = token.getValue();
+						break;
+					}
+				}
+				if (name == null) {
+					return null;
+				}
+				declarations.add(new BPLSourceDeclaration(declaration, name, function));
+				start = i + 1;
+				function = false;
+			}
+		}
+		if (start != tokens.size() || declarations.isEmpty()) {
+			return null;
+		}
+		return declarations;
+	}
+
+	public List<Token> getTokens() {
+		return this.tokens;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public boolean isFunction() {
+		return this.function;
+	}
+
+	public String getKey() {
+		return this.key;
+	}
+
+	public void setKey(String key) {
+		this.key = key;
+	}
+
+	/**
+	* @return every id in the declaration, each once
+	*/
+	public TreeSet<String> getIDs() {
+		TreeSet<String> ids = new TreeSet<String>();
+		for (Token token : this.tokens) {
+			if (token.getType() == Token.T_ID) {
+				ids.add(token.getValue());
+			}
+		}
+		return ids;
+	}
+
+	/**
+	* @return how many string literals are in it, which is how many the type checker adds for it
+	*/
+	public int countStrings() {
+		int count = 0;
+		for (Token token : this.tokens) {
+			if (token.getType() == Token.T_REALSTRING) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int getFirstLine() {
+		return this.tokens.get(0).getLineNumber();
+	}
+
+	/**
+	* @return the tokens with their lines counted from the first, which is
+	* all its parse tree depends on besides the line it starts on
+	*/
+	public String getLinesText() {
+		StringBuilder text = new StringBuilder();
+		int first = this.getFirstLine();
+		for (Token token : this.tokens) {
+			text.append(token.getLineNumber() - first).append(' ').append(token.getValue()).append('\n');
+		}
+		return text.toString();
+	}
+
+	/**
+	* @return the tokens with a space between each
+	*/
+	public String getText() {
+		StringBuilder text = new StringBuilder();
+		for (Token token : this.tokens) {
+			text.append(token.getValue()).append(' ');
+		}
+		return text.toString();
+	}
+}
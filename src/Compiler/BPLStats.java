@@ -0,0 +1,235 @@
+package Compiler;
+
+import java.lang.management.*;
+import java.util.*;
+
+public class BPLStats {
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final String source;
+	private final ArrayList<BPLPhase> phases;
+	private final BPLCompileEvent compileEvent;
+	private String phase;
+	private BPLPhaseEvent phaseEvent;
+	private long startWall;
+	private long startCpu;
+	private long startAllocated;
+	private long tokens;
+	private long nodes;
+	private long symbols;
+	private long instructions;
+	private boolean succeeded;
+
+	/**
+	* the wall time, CPU time and allocation of each phase of one compile,
+	* measured on the thread running it, and the sizes of what the phases
+	* made: tokens, parse tree nodes, symbols declared and instructions
+	* emitted. each phase and the whole compile are also JFR events, named
+	* bpl.Phase and bpl.Compile, which cost nothing unless a recording
+	* is running
+	*/
+	public BPLStats(String source) {
+		this.source = source;
+		this.phases = new ArrayList<BPLPhase>();
+		this.compileEvent = new BPLCompileEvent();
+		this.compileEvent.begin();
+		this.phase = null;
+		this.phaseEvent = null;
+		this.tokens = 0;
+		this.nodes = 0;
+		this.symbols = 0;
+		this.instructions = 0;
+		this.succeeded = false;
+	}
+
+	public void start(String phase) {
+		this.end();
+		this.phase = phase;
+		this.phaseEvent = new BPLPhaseEvent();
+		this.phaseEvent.begin();
+		this.startAllocated = getAllocatedBytes();
+		this.startCpu = getCpuNanos();
+		this.startWall = System.nanoTime();
+	}
+
+	/**
+	* ends the phase that was started, if there is one
+	*/
+	public void end() {
+		if (this.phase == null) {
+			return;
+		}
+		long wall = System.nanoTime() - this.startWall;
+		long cpu = (this.startCpu < 0) ? -1 : getCpuNanos() - this.startCpu;
+		long allocated = (this.startAllocated < 0) ? -1 : getAllocatedBytes() - this.startAllocated;
+		this.phases.add(new BPLPhase(this.phase, wall, cpu, allocated));
+
+		this.phaseEvent.end();
+		if (this.phaseEvent.shouldCommit()) {
+			this.phaseEvent.source = this.source;
+			this.phaseEvent.phase = this.phase;
+			this.phaseEvent.cpuTime = cpu;
+			this.phaseEvent.allocated = allocated;
+			this.phaseEvent.commit();
+		}
+		this.phase = null;
+		this.phaseEvent = null;
+	}
+
+	/**
+	* ends the last phase and the compile
+	*/
+	public void finish(boolean succeeded) {
+		this.end();
+		this.succeeded = succeeded;
+		this.compileEvent.end();
+		if (this.compileEvent.shouldCommit()) {
+			this.compileEvent.source = this.source;
+			this.compileEvent.succeeded = succeeded;
+			this.compileEvent.tokens = this.tokens;
+			this.compileEvent.nodes = this.nodes;
+			this.compileEvent.symbols = this.symbols;
+			this.compileEvent.instructions = this.instructions;
+			this.compileEvent.allocated = this.getTotal().getAllocatedBytes();
+			this.compileEvent.commit();
+		}
+	}
+
+	public void setTokens(long tokens) {
+		this.tokens = tokens;
+	}
+
+	/**
+	* counts the nodes of the parse tree, and its declarations as the symbols
+	*/
+	public void countTree(BPLNode head) {
+		Stack<BPLNode> pending = new Stack<BPLNode>();
+		pending.push(head);
+		while (!pending.isEmpty()) {
+			BPLNode node = pending.pop();
+			this.nodes++;
+			if (node.isType("VAR_DEC") || node.isType("PARAM") || node.isType("FUN_DEC")) {
+				this.symbols++;
+			}
+			for (BPLNode child : node.getChildren()) {
+				pending.push(child);
+			}
+		}
+	}
+
+	/**
+	* counts the lines of assembly that are instructions, which are the indented ones
+	*/
+	public void countInstructions(String assembly) {
+		for (int i = 0; i < assembly.length(); i++) {
+			if (assembly.charAt(i) == '\t' && (i == 0 || assembly.charAt(i - 1) == '\n')) {
+				this.instructions++;
+			}
+		}
+	}
+
+	public ArrayList<BPLPhase> getPhases() {
+		return this.phases;
+	}
+
+	/**
+	* @return the phases added up
+	*/
+	public BPLPhase getTotal() {
+		long wall = 0;
+		long cpu = 0;
+		long allocated = 0;
+		for (BPLPhase phase : this.phases) {
+			wall += phase.getWallNanos();
+			cpu = (cpu < 0 || phase.getCpuNanos() < 0) ? -1 : cpu + phase.getCpuNanos();
+			allocated = (allocated < 0 || phase.getAllocatedBytes() < 0) ? -1 : allocated + phase.getAllocatedBytes();
+		}
+		return new BPLPhase("total", wall, cpu, allocated);
+	}
+
+	public long getTokens() {
+		return this.tokens;
+	}
+
+	public long getNodes() {
+		return this.nodes;
+	}
+
+	public long getSymbols() {
+		return this.symbols;
+	}
+
+	public long getInstructions() {
+		return this.instructions;
+	}
+
+	public String toString() {
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("%-10s %10s %10s %12s%n", "phase", "wall ms", "cpu ms", "allocated KB"));
+		ArrayList<BPLPhase> rows = new ArrayList<BPLPhase>(this.phases);
+		rows.add(this.getTotal());
+		for (BPLPhase phase : rows) {
+			report.append(String.format("%-10s %10.2f %10s %12s%n", phase.getName(), phase.getWallNanos() / 1e6,
+				(phase.getCpuNanos() < 0) ? "-" : String.format("%.2f", phase.getCpuNanos() / 1e6),
+				(phase.getAllocatedBytes() < 0) ? "-" : String.format("%.1f", phase.getAllocatedBytes() / 1024.0)));
+		}
+		report.append(String.format("%s: %d tokens, %d nodes, %d symbols, %d instructions%s", this.source, this.tokens, this.nodes, this.symbols, this.instructions, this.succeeded ? "" : ", failed"));
+		return report.toString();
+	}
+
+	public String toJSON() {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"source\": ").append(quote(this.source));
+		json.append(", \"succeeded\": ").append(this.succeeded);
+		json.append(", \"phases\": [");
+		ArrayList<BPLPhase> rows = new ArrayList<BPLPhase>(this.phases);
+		rows.add(this.getTotal());
+		for (int i = 0; i < rows.size(); i++) {
+			BPLPhase phase = rows.get(i);
+			json.append((i == 0) ? "" : ", ");
+			json.append("{\"name\": ").append(quote(phase.getName()));
+			json.append(", \"wallNanos\": ").append(phase.getWallNanos());
+			json.append(", \"cpuNanos\": ").append(phase.getCpuNanos());
+			json.append(", \"allocatedBytes\": ").append(phase.getAllocatedBytes()).append("}");
+		}
+		json.append("], \"tokens\": ").append(this.tokens);
+		json.append(", \"nodes\": ").append(this.nodes);
+		json.append(", \"symbols\": ").append(this.symbols);
+		json.append(", \"instructions\": ").append(this.instructions).append("}");
+		return json.toString();
+	}
+
+	private static String quote(String s) {
+		StringBuilder quoted = new StringBuilder("\"");
+		for (char c : s.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < ' ') {
+				quoted.append(String.format("\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	/**
+	* @return the CPU time of this thread, or -1 if the JVM can't measure it
+	*/
+	private static long getCpuNanos() {
+		return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+	}
+
+	/**
+	* @return the bytes this thread has allocated, or -1 if the JVM can't measure it
+	*/
+	private static long getAllocatedBytes() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+			if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+				return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+}
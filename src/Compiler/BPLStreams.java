@@ -0,0 +1,114 @@
+package Compiler;
+
+import java.io.*;
+
+public class BPLStreams {
+	private final InputStream in;
+	private final OutputStream out;
+
+	private byte[] writeBuffer;
+	private int writePos;
+	private byte[] readBuffer;
+	private int readPos;
+	private int readEnd;
+
+	/**
+	* write and read for the backends that run in this JVM. input and
+	* output are buffered in blocks the same way BPLRuntime does it
+	*/
+	public BPLStreams(InputStream in, OutputStream out) {
+		this.in = in;
+		this.out = out;
+		this.writeBuffer = new byte[BPLRuntime.WRITE_BUFFER_SIZE];
+		this.writePos = 0;
+		this.readBuffer = new byte[BPLRuntime.READ_BUFFER_SIZE];
+		this.readPos = 0;
+		this.readEnd = 0;
+	}
+
+	public void writeInt(int n) throws IOException {
+		if (this.writePos > this.writeBuffer.length - 11) { // a sign and 10 digits
+			this.flush();
+		}
+		long value = n;
+		if (value < 0) {
+			this.writeBuffer[this.writePos++] = '-';
+			value = -value;
+		}
+		int digits = 1;
+		for (long rest = value; rest >= 10; rest /= 10) {
+			digits++;
+		}
+		this.writePos += digits;
+		for (int i = this.writePos - 1; i >= this.writePos - digits; i--) {
+			this.writeBuffer[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+
+	/**
+	* writes (null) for a string var that was never assigned, like the native runtime
+	*/
+	public void writeString(String s) throws IOException {
+		if (s == null) {
+			s = "(null)";
+		}
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c >= 0x80) { // not ASCII, so encode the rest as a whole
+				this.flush();
+				this.out.write(s.substring(i).getBytes());
+				return;
+			}
+			if (this.writePos == this.writeBuffer.length) {
+				this.flush();
+			}
+			this.writeBuffer[this.writePos++] = (byte) c;
+		}
+	}
+
+	public void writeln() throws IOException {
+		this.writeString("\n");
+	}
+
+	public void flush() throws IOException {
+		this.out.write(this.writeBuffer, 0, this.writePos);
+		this.out.flush();
+		this.writePos = 0;
+	}
+
+	/**
+	* @return the next int in the input, skipping anything before it that
+	* isn't a digit or a minus sign, or 0 at the end of the input
+	*/
+	public int readInt() throws IOException {
+		int c;
+		do {
+			if (this.readPos == this.readEnd && !this.fill()) {
+				return 0;
+			}
+			c = this.readBuffer[this.readPos++];
+		} while (c != '-' && (c < '0' || c > '9'));
+		boolean negative = (c == '-');
+		int n = negative ? 0 : c - '0';
+		while (this.readPos < this.readEnd || this.fill()) {
+			c = this.readBuffer[this.readPos];
+			if (c < '0' || c > '9') {
+				break;
+			}
+			n = n * 10 + (c - '0');
+			this.readPos++;
+		}
+		return negative ? -n : n;
+	}
+
+	/**
+	* output is flushed first, so prompts show up before the program waits
+	*/
+	private boolean fill() throws IOException {
+		this.flush();
+		this.readPos = 0;
+		this.readEnd = Math.max(this.in.read(this.readBuffer), 0);
+		return this.readEnd > 0;
+	}
+}
@@ -0,0 +1,75 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLTokenList implements BPLTokenSource {
+	private final ArrayList<Token> tokens;
+	private final BPLException error;
+	private int next;
+
+	/**
+	* scans every token up front, so scanning can be timed apart from
+	* parsing. if the scanner fails, the parser gets the error when it
+	* reaches that point, the same as it would from the scanner
+	*/
+	public BPLTokenList(BPLScanner scanner) {
+		this.tokens = new ArrayList<Token>();
+		BPLException error = null;
+		try {
+			scanner.getNextToken();
+			this.tokens.add(scanner.nextToken());
+			while (scanner.nextToken().getType() != Token.T_EOF) {
+				scanner.getNextToken();
+				this.tokens.add(scanner.nextToken());
+			}
+		} catch (BPLException e) {
+			error = e;
+		}
+		this.error = error;
+		this.next = -1;
+	}
+
+	/**
+	* gives tokens that were already scanned, followed by T_EOF, so part of
+	* a source can be parsed on its own
+	*/
+	public BPLTokenList(List<Token> tokens) {
+		this.tokens = new ArrayList<Token>(tokens);
+		Token last = tokens.isEmpty() ? null : tokens.get(tokens.size() - 1);
+		this.tokens.add(new Token("", Token.T_EOF, (last == null) ? 1 : last.getLineNumber(), (last == null) ? 0 : last.getPosition() + 1));
+		this.error = null;
+		this.next = -1;
+	}
+
+	public void getNextToken() throws BPLException {
+		if (this.next + 1 == this.tokens.size()) {
+			if (this.error != null) {
+				throw this.error;
+			}
+			return; // stays on T_EOF
+		}
+		this.next++;
+	}
+
+	public Token nextToken() {
+		return (this.next < 0) ? null : this.tokens.get(this.next);
+	}
+
+	/**
+	* goes back to before the first token, so another parser can read them
+	*/
+	public void rewind() {
+		this.next = -1;
+	}
+
+	/**
+	* @return how many tokens there are, not counting T_EOF
+	*/
+	public int size() {
+		int size = this.tokens.size();
+		if (size > 0 && this.tokens.get(size - 1).getType() == Token.T_EOF) {
+			size--;
+		}
+		return size;
+	}
+}
@@ -0,0 +1,154 @@
+package Compiler;
+
+public class BPLTokenPipeline implements BPLTokenSource {
+	public static final int BATCH_SIZE = 512;
+	public static final int RING_SIZE = 64;
+	private static final int SPINS = 100;
+	private static final Token[] FAILED = new Token[0];
+
+	private final BPLTokenRing ring;
+	private final Thread thread;
+	private volatile boolean closed;
+	private Throwable failure; // written before FAILED is put in the ring, so the ring publishes it
+	private Token[] batch;
+	private int next;
+	private Token current;
+	private int count;
+
+	/**
+	* scans on a thread of its own while the parser takes the tokens, so
+	* reading and scanning the source overlap with parsing it. the scanner
+	* thread hands over tokens BATCH_SIZE at a time through a BPLTokenRing,
+	* and waits when the parser is RING_SIZE batches behind. a scanner
+	* error reaches the parser at the same token it would have from the
+	* scanner. close it once the parser is done, so a scanner left waiting
+	* on a parser that stopped early ends
+	*/
+	public BPLTokenPipeline(final BPLScanner scanner) {
+		this.ring = new BPLTokenRing(RING_SIZE);
+		this.closed = false;
+		this.failure = null;
+		this.batch = null;
+		this.next = 0;
+		this.current = null;
+		this.count = 0;
+		this.thread = new Thread(new Runnable() {
+			public void run() {
+				BPLTokenPipeline.this.scan(scanner);
+			}
+		}, "BPL scanner");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	private void scan(BPLScanner scanner) {
+		Token[] batch = new Token[BATCH_SIZE];
+		int size = 0;
+		try {
+			while (true) {
+				scanner.getNextToken();
+				Token token = scanner.nextToken();
+				batch[size++] = token;
+				if (token.getType() == Token.T_EOF) {
+					this.put(trim(batch, size));
+					return;
+				}
+				if (size == BATCH_SIZE) {
+					if (!this.put(batch)) {
+						return;
+					}
+					batch = new Token[BATCH_SIZE];
+					size = 0;
+				}
+			}
+		} catch (Throwable e) {
+			this.failure = e;
+			if (size > 0 && !this.put(trim(batch, size))) {
+				return;
+			}
+			this.put(FAILED);
+		}
+	}
+
+	private static Token[] trim(Token[] batch, int size) {
+		Token[] trimmed = new Token[size];
+		System.arraycopy(batch, 0, trimmed, 0, size);
+		return trimmed;
+	}
+
+	/**
+	* puts batch in the ring, waiting while it's full
+	* @return false if the pipeline was closed first
+	*/
+	private boolean put(Token[] batch) {
+		for (int spins = 0; !this.ring.offer(batch); spins++) {
+			if (this.closed) {
+				return false;
+			}
+			backOff(spins);
+		}
+		return !this.closed;
+	}
+
+	/**
+	* busy waits a little, then gives the core to the other thread, which
+	* is what a single core needs
+	*/
+	private static void backOff(int spins) {
+		if (spins < SPINS) {
+			Thread.onSpinWait();
+		} else {
+			Thread.yield();
+		}
+	}
+
+	public void getNextToken() throws BPLException {
+		if (this.current != null && this.current.getType() == Token.T_EOF) {
+			return; // stays on T_EOF
+		}
+		if (this.batch == null || this.next == this.batch.length) {
+			this.batch = this.take();
+			this.next = 0;
+		}
+		if (this.batch == FAILED) {
+			if (this.failure instanceof BPLException) {
+				throw (BPLException) this.failure;
+			} else if (this.failure instanceof RuntimeException) {
+				throw (RuntimeException) this.failure;
+			}
+			throw (Error) this.failure;
+		}
+		this.current = this.batch[this.next++];
+		if (this.current.getType() != Token.T_EOF) {
+			this.count++;
+		}
+	}
+
+	private Token[] take() {
+		for (int spins = 0; ; spins++) {
+			Token[] batch = this.ring.poll();
+			if (batch != null) {
+				return batch;
+			}
+			backOff(spins);
+		}
+	}
+
+	public Token nextToken() {
+		return this.current;
+	}
+
+	/**
+	* @return how many tokens the parser has taken, not counting T_EOF
+	*/
+	public int size() {
+		return this.count;
+	}
+
+	/**
+	* stops the scanner thread if it's still waiting to hand over tokens
+	*/
+	public void close() {
+		this.closed = true;
+	}
+}
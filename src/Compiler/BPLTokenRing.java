@@ -0,0 +1,70 @@
+package Compiler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class BPLTokenRing {
+	private final Token[][] slots;
+	private final int mask;
+	private final AtomicLong head;
+	private final AtomicLong tail;
+	private long cachedHead;
+	private long cachedTail;
+
+	/**
+	* a bounded queue of token batches for exactly one thread putting them
+	* in and one taking them out, without locks. head and tail only ever
+	* grow: the producer alone writes tail and the consumer alone writes
+	* head, each publishing with an ordered store that the other reads, so
+	* a slot is written before it can be seen as full and read before it
+	* can be seen as empty. each side keeps the other's index as last seen
+	* and only reads it again when the ring looks full or empty
+	* @param capacity how many batches it holds, a power of two
+	*/
+	public BPLTokenRing(int capacity) {
+		if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+			throw new IllegalArgumentException("Ring capacity " + capacity + " isn't a power of two");
+		}
+		this.slots = new Token[capacity][];
+		this.mask = capacity - 1;
+		this.head = new AtomicLong();
+		this.tail = new AtomicLong();
+		this.cachedHead = 0;
+		this.cachedTail = 0;
+	}
+
+	/**
+	* called only by the producer
+	* @return false if the ring is full
+	*/
+	public boolean offer(Token[] batch) {
+		long tail = this.tail.get();
+		if (tail - this.cachedHead == this.slots.length) {
+			this.cachedHead = this.head.get();
+			if (tail - this.cachedHead == this.slots.length) {
+				return false;
+			}
+		}
+		this.slots[(int) tail & this.mask] = batch;
+		this.tail.lazySet(tail + 1);
+		return true;
+	}
+
+	/**
+	* called only by the consumer
+	* @return the oldest batch, or null if the ring is empty
+	*/
+	public Token[] poll() {
+		long head = this.head.get();
+		if (head == this.cachedTail) {
+			this.cachedTail = this.tail.get();
+			if (head == this.cachedTail) {
+				return null;
+			}
+		}
+		int slot = (int) head & this.mask;
+		Token[] batch = this.slots[slot];
+		this.slots[slot] = null;
+		this.head.lazySet(head + 1);
+		return batch;
+	}
+}
@@ -0,0 +1,13 @@
+package Compiler;
+
+public interface BPLTokenSource {
+	/**
+	* moves on to the next token, which is T_EOF once there are no more
+	*/
+	public void getNextToken() throws BPLException;
+
+	/**
+	* @return the token getNextToken moved to
+	*/
+	public Token nextToken();
+}
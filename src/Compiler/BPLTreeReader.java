@@ -0,0 +1,152 @@
+package Compiler;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+public class BPLTreeReader {
+	private BPLTreeReader() {
+	}
+
+	/**
+	* maps a file BPLTreeWriter wrote and rebuilds the tree, which the type
+	* checker and code generator can take in place of BPLParser's
+	* @return the tree, or null if there is no file, or it is from another
+	* version, of another source, or cut short
+	*/
+	public static BPLNode read(File file, byte[] sourceHash) throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+		ByteBuffer buffer;
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			channel.close(); // the mapping stays
+		}
+		try {
+			return read(buffer, sourceHash);
+		} catch (BPLException e) {
+			return null; // corrupt, so parsed and written again
+		} catch (RuntimeException e) {
+			return null; // cut short or corrupt
+		}
+	}
+
+	/**
+	* @return the tree of the file, from <file>.tree if that is of the same
+	* source, and parsed otherwise, in which case <file>.tree is written
+	*/
+	public static BPLNode readOrParse(String fileName) throws BPLException, IOException {
+		byte[] source;
+		try {
+			source = BPLBuildCache.readFile(new File(fileName));
+		} catch (FileNotFoundException e) {
+			throw new BPLScannerException("Can't open " + fileName);
+		}
+		byte[] hash = BPLTreeWriter.hash(source);
+		File treeFile = new File(fileName + ".tree");
+		BPLNode head = read(treeFile, hash);
+		if (head == null) {
+			head = new BPLParser(new BPLScanner(CharBuffer.wrap(new String(source, StandardCharsets.UTF_8)))).getBPLHead();
+			BPLTreeWriter.write(head, hash, treeFile);
+		}
+		return head;
+	}
+
+	/**
+	* counts are checked against what is left before anything is allocated
+	* for them, so a corrupt count can't run out of memory
+	*/
+	private static BPLNode read(ByteBuffer buffer, byte[] sourceHash) throws BPLException {
+		if (buffer.remaining() < 8 + BPLTreeWriter.HASH_SIZE || buffer.getInt() != BPLTreeWriter.MAGIC || buffer.getInt() != BPLTreeWriter.VERSION) {
+			return null;
+		}
+		byte[] hash = new byte[BPLTreeWriter.HASH_SIZE];
+		buffer.get(hash);
+		if (!Arrays.equals(hash, sourceHash)) {
+			return null;
+		}
+
+		int stringCount = buffer.getInt();
+		int nodeCount = buffer.getInt();
+		if (stringCount < 0 || stringCount > buffer.remaining() / 4) { // a string takes at least its length
+			throw new BPLException("Bad string count " + stringCount + " in tree file");
+		}
+		if (nodeCount < 1 || nodeCount > buffer.remaining() / 3) { // a node takes at least 3 bytes
+			throw new BPLException("Bad node count " + nodeCount + " in tree file");
+		}
+		String[] strings = new String[stringCount];
+		for (int i = 0; i < strings.length; i++) {
+			int length = buffer.getInt();
+			if (length < 0 || length > buffer.remaining()) {
+				throw new BPLException("Bad string length " + length + " in tree file");
+			}
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			strings[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		// the nodes still taking children, and how many each has left to take
+		BPLNode[] parents = new BPLNode[nodeCount];
+		int[] remaining = new int[nodeCount];
+		int depth = 0;
+		int lineNumber = 0;
+		BPLNode head = null;
+		for (int i = 0; i < nodeCount; i++) {
+			int kindAndString = readVarint(buffer);
+			String s = strings[kindAndString >>> 2];
+			lineNumber += unzigzag(readVarint(buffer));
+			int childrenSize = readVarint(buffer);
+			BPLNode node;
+			if ((kindAndString & 3) == BPLTreeWriter.VAR) {
+				node = new BPLVarNode(s, lineNumber);
+			} else if ((kindAndString & 3) == BPLTreeWriter.INTEGER) {
+				node = new BPLIntegerNode(unzigzag(readVarint(buffer)), lineNumber);
+			} else {
+				node = new BPLNode(s, lineNumber);
+			}
+
+			if (depth == 0) {
+				if (head != null) {
+					return null; // a second tree
+				}
+				head = node;
+			} else {
+				parents[depth - 1].addChild(node);
+				remaining[depth - 1]--;
+			}
+			if (childrenSize > 0) {
+				parents[depth] = node;
+				remaining[depth] = childrenSize;
+				depth++;
+			}
+			while (depth > 0 && remaining[depth - 1] == 0) {
+				depth--;
+			}
+		}
+		if (depth != 0 || buffer.hasRemaining()) {
+			return null;
+		}
+		return head;
+	}
+
+	private static int readVarint(ByteBuffer buffer) {
+		int n = 0;
+		for (int shift = 0; ; shift += 7) {
+			byte b = buffer.get();
+			n |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return n;
+			}
+		}
+	}
+
+	private static int unzigzag(int n) {
+		return (n >>> 1) ^ -(n & 1);
+	}
+}
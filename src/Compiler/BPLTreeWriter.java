@@ -0,0 +1,148 @@
+package Compiler;
+
+import java.io.*;
+import java.util.*;
+
+public class BPLTreeWriter {
+	public static final int MAGIC = 0x42504C54; // "BPLT"
+	/**
+	* goes up whenever the format or the trees BPLParser makes change, so
+	* the files written before are read as stale
+	*/
+	public static final int VERSION = 1;
+	public static final int HASH_SIZE = 32;
+
+	// what each node is, before its string
+	public static final byte NODE = 0;
+	public static final byte VAR = 1;
+	public static final byte INTEGER = 2;
+
+	private final HashMap<String, Integer> stringIndexes;
+	private final ArrayList<String> strings;
+	private final ByteArrayOutputStream nodeBytes;
+	private final DataOutputStream nodes;
+	private int nodeCount;
+	private int lastLineNumber;
+
+	/**
+	* a parse tree in a form BPLTreeReader loads much faster than the source
+	* can be parsed:
+	*   MAGIC, VERSION, the SHA-256 of the source, the number of strings and of nodes
+	*   the strings, each its UTF-8 length and bytes
+	*   the nodes in preorder, each the string index of its type, or of its
+	*   id if it is a BPLVarNode, shifted left by 2 and or'd with its kind,
+	*   its line less the last node's, how many children it has, and then
+	*   the value if it is a BPLIntegerNode
+	* the strings are every node type, id and string literal, once each.
+	* the numbers in the nodes are varints, and the ones that can be
+	* negative are zigzagged, so most take one byte
+	*/
+	private BPLTreeWriter() {
+		this.stringIndexes = new HashMap<String, Integer>();
+		this.strings = new ArrayList<String>();
+		this.nodeBytes = new ByteArrayOutputStream();
+		this.nodes = new DataOutputStream(this.nodeBytes);
+		this.nodeCount = 0;
+		this.lastLineNumber = 0;
+	}
+
+	/**
+	* writes the tree of the source with that hash to a temporary file and
+	* renames it, so a reader never sees half of it
+	*/
+	public static void write(BPLNode head, byte[] sourceHash, File file) throws IOException {
+		BPLTreeWriter writer = new BPLTreeWriter();
+		writer.addTree(head);
+
+		File directory = file.getAbsoluteFile().getParentFile();
+		File temporary = File.createTempFile(file.getName(), ".tmp", directory);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.write(sourceHash);
+			out.writeInt(writer.strings.size());
+			out.writeInt(writer.nodeCount);
+			for (String s : writer.strings) {
+				byte[] bytes = s.getBytes("UTF-8");
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			writer.nodeBytes.writeTo(out);
+		} finally {
+			out.close();
+		}
+		if (!temporary.renameTo(file)) {
+			temporary.delete();
+			throw new IOException("Can't write " + file);
+		}
+	}
+
+	/**
+	* @return the SHA-256 of source, which a tree file is checked against
+	*/
+	public static byte[] hash(byte[] source) {
+		return BPLBuildCache.newDigest().digest(source);
+	}
+
+	/**
+	* adds the nodes without recursing, since declaration and statement
+	* lists nest as deep as they are long
+	*/
+	private void addTree(BPLNode head) throws IOException {
+		Stack<BPLNode> pending = new Stack<BPLNode>();
+		pending.push(head);
+		while (!pending.isEmpty()) {
+			BPLNode node = pending.pop();
+			this.addNode(node);
+			for (int i = node.getChildrenSize() - 1; i >= 0; i--) {
+				pending.push(node.getChild(i));
+			}
+		}
+	}
+
+	private void addNode(BPLNode node) throws IOException {
+		if (node instanceof BPLVarNode) {
+			this.writeVarint(this.getStringIndex(((BPLVarNode) node).getID()) << 2 | VAR);
+		} else if (node instanceof BPLIntegerNode) {
+			this.writeVarint(this.getStringIndex(node.getType()) << 2 | INTEGER);
+		} else {
+			this.writeVarint(this.getStringIndex(node.getType()) << 2 | NODE);
+		}
+		this.writeVarint(zigzag(node.getLineNumber() - this.lastLineNumber));
+		this.writeVarint(node.getChildrenSize());
+		if (node instanceof BPLIntegerNode) {
+			this.writeVarint(zigzag(((BPLIntegerNode) node).getInteger()));
+		}
+		this.lastLineNumber = node.getLineNumber();
+		this.nodeCount++;
+	}
+
+	/**
+	* 7 bits a byte, low bits first, with the top bit set on all but the last
+	*/
+	private void writeVarint(int n) throws IOException {
+		while ((n & ~0x7F) != 0) {
+			this.nodes.writeByte((n & 0x7F) | 0x80);
+			n >>>= 7;
+		}
+		this.nodes.writeByte(n);
+	}
+
+	/**
+	* maps 0, -1, 1, -2, ... to 0, 1, 2, 3, ...
+	*/
+	private static int zigzag(int n) {
+		return (n << 1) ^ (n >> 31);
+	}
+
+	private int getStringIndex(String s) {
+		Integer index = this.stringIndexes.get(s);
+		if (index == null) {
+			index = this.strings.size();
+			this.stringIndexes.put(s, index);
+			this.strings.add(s);
+		}
+		return index;
+	}
+}
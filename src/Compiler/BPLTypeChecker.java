@@ -16,8 +16,6 @@ public class BPLTypeChecker {
 	public static final String TYPE_ADDSTRING = "address of integer";
 	public static final String TYPE_NULL = "NULL";
 
-	private final BPLParser parser;
-	
 	private BPLNode parseTree;
 	private BPLNode currFunDec;
 	private HashMap<String, BPLNode> globalDecs;
@@ -25,11 +23,32 @@ public class BPLTypeChecker {
 	private Stack<Integer> scopeSizes;
 	private boolean isArg;
 	private ArrayList<String> strings;
+	private Set<BPLNode> checked;
 
 	public BPLTypeChecker(String filename) throws BPLException {
-		this.parser = new BPLParser(filename);
-		this.parseTree = this.parser.getBPLHead();
-		this.globalDecs = new HashMap<String, BPLNode>();
+		this(new BPLParser(filename));
+	}
+
+	public BPLTypeChecker(BPLParser parser) throws BPLException {
+		this(parser.getBPLHead());
+	}
+
+	/**
+	* checks a tree from BPLParser, or one BPLTreeReader loaded
+	*/
+	public BPLTypeChecker(BPLNode parseTree) throws BPLException {
+		this(parseTree, new HashSet<BPLNode>());
+	}
+
+	/**
+	* checks a tree whose FUN_DECs in checked were checked before, with the
+	* same declarations before them, so their bodies are still linked and
+	* only their names and strings are added
+	*/
+	public BPLTypeChecker(BPLNode parseTree, Set<BPLNode> checked) throws BPLException {
+		this.parseTree = parseTree;
+		this.checked = checked;
+		this.globalDecs = new LinkedHashMap<String, BPLNode>(); // declaration order, so globals are emitted the same way every time
 		this.localDecs = new LinkedList<BPLNode>();
 		this.scopeSizes = new Stack<Integer>();
 		this.strings = new ArrayList<String>();
@@ -51,8 +70,11 @@ public class BPLTypeChecker {
 	}
 
 	private void typeCheck(BPLNode head) throws BPLException {
-		BPLNode decList = this.getDecList(head);
-		this.findRefHelper(decList);
+		if (head.isChildrenSize(0)) {
+			this.printDebug("Nothing in BPL file.");
+			return;
+		}
+		this.findRefHelper(head.getChild(0));
 	}
 
 	private void findRefHelper(BPLNode decList) throws BPLException {
@@ -63,7 +85,11 @@ public class BPLTypeChecker {
 			this.addToGlobalDecs(decChild);
 		} else {
 			this.addFunToDecs(decChild);
-			this.handleFunDec(decChild);
+			if (this.checked.contains(decChild)) {
+				this.addStrings(decChild);
+			} else {
+				this.handleFunDec(decChild);
+			}
 		}
 		
 		if (decList.isChildrenSize(2)) {
@@ -71,14 +97,6 @@ public class BPLTypeChecker {
 		}
 	}
 
-	private BPLNode getDecList(BPLNode head) throws BPLException {
-		if (head.isChildrenSize(0)) {
-			this.printDebug("Nothing in BPL file.");
-			System.exit(0);
-		}
-		return head.getChild(0);
-	}
-
 	private void addToGlobalDecs(BPLNode decChild) throws BPLException {
 		String varName = this.getNameFromVarDec(decChild);
 		if (this.globalDecs.containsKey(varName)) {
@@ -370,6 +388,9 @@ public class BPLTypeChecker {
 
 	private String checkPointer(BPLNode f, String origFactorType) throws BPLException {
 		BPLNode child = f.getChild(0);
+		if (child.isType("&") && !f.getChild(1).getChild(0).isType("ID")) {
+			throw new BPLTypeCheckerException("You can only take the address of a var or array entry", f.getLineNumber());
+		}
 		if (child.isType("&") && origFactorType.equals(this.TYPE_INT)) {
 			return this.TYPE_ADDINT;
 		} else if (child.isType("*") && origFactorType.equals(this.TYPE_PTRINT)) {
@@ -429,6 +450,18 @@ public class BPLTypeChecker {
 		return this.TYPE_INT;
 	}
 
+	/**
+	* adds the strings under node in the order checking it would
+	*/
+	private void addStrings(BPLNode node) {
+		if (node.isType("STRING")) {
+			this.addStringToSet(node);
+		}
+		for (BPLNode child : node.getChildren()) {
+			this.addStrings(child);
+		}
+	}
+
 	private void addStringToSet(BPLNode stringNode) {
 		BPLNode child = stringNode.getChild(0);
 		this.strings.add(child.getType());
@@ -443,6 +476,10 @@ public class BPLTypeChecker {
 		}
 
 		BPLNode funRef = this.globalDecs.get(id);
+		if (!funRef.isType("FUN_DEC")) {
+			throw new BPLTypeCheckerException(id + " is not a function", funCall.getLineNumber());
+		}
+		idChild.setDeclaration(funRef);
 		this.printDebug("Function call " + id + " on line " + funCall.getLineNumber() + " linked to declaration on line " + funRef.getLineNumber());
 		
 		this.compareParamArgs(funRef, funCall, id);
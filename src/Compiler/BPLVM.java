@@ -0,0 +1,316 @@
+package Compiler;
+
+import java.io.*;
+import java.util.*;
+
+public class BPLVM extends BPLStreams {
+	// operands follow the opcode in the code. a is the local at fp + a
+	public static final int CONST = 0; // value: push value
+	public static final int LOAD_LOCAL = 1; // a: push a
+	public static final int STORE_LOCAL = 2; // a: pop into a
+	public static final int LOAD_GLOBAL = 3; // address: push memory[address]
+	public static final int STORE_GLOBAL = 4; // address: pop into memory[address]
+	public static final int ADDR_LOCAL = 5; // a: push the address of a
+	public static final int LOAD = 6; // replace an address with what is there
+	public static final int STORE = 7; // pop a value, then an address, and store it there
+	public static final int STORE_KEEP = 8; // like STORE, but push the value back
+	public static final int CHECK = 9; // size: exit with an error if the index on top isn't below size
+	public static final int ADD = 10;
+	public static final int SUB = 11;
+	public static final int MUL = 12;
+	public static final int DIV = 13;
+	public static final int REM = 14;
+	public static final int NEG = 15;
+	public static final int EQ = 16; // EQ to LE push 1 or 0, and are in the order of BPLVMGenerator.RELOPS
+	public static final int NE = 17;
+	public static final int LT = 18;
+	public static final int GE = 19;
+	public static final int GT = 20;
+	public static final int LE = 21;
+	public static final int BR_EQ = 22; // target: pop two values and jump if they compare
+	public static final int BR_NE = 23;
+	public static final int BR_LT = 24;
+	public static final int BR_GE = 25;
+	public static final int BR_GT = 26;
+	public static final int BR_LE = 27;
+	public static final int JUMP = 28; // target
+	public static final int JZ = 29; // target: pop and jump if 0
+	public static final int JNZ = 30; // target: pop and jump if not 0
+	public static final int CALL = 31; // target: save the return pc and fp, then jump
+	public static final int ENTER = 32; // size args stack: make a frame of size words, move the args into it
+	public static final int RET = 33; // go back to the caller, leaving the value if there is one
+	public static final int HALT = 34; // stop with the value on top
+	public static final int WRITE_INT = 35;
+	public static final int WRITE_STRING = 36;
+	public static final int WRITELN = 37;
+	public static final int READ = 38;
+	public static final int POP = 39;
+	public static final int DUP = 40;
+	public static final int SWAP = 41; // swap the top two values
+	// superinstructions, from BPLVMCode
+	public static final int ADD_LOCAL = 42; // a: add a to the top
+	public static final int ADD_CONST = 43; // value: add value to the top
+	public static final int INC_LOCAL = 44; // a value: add value to a
+	public static final int BR_LOCAL_LOCAL = 45; // relop a b target: jump if a compares with b
+	public static final int BR_LOCAL_CONST = 46; // relop a value target: jump if a compares with value
+
+	private static final int INITIAL_MEMORY = 1 << 16;
+	private static final int INITIAL_STACK = 1 << 10;
+	private static final int INITIAL_CALLS = 1 << 8;
+	/**
+	* about as deep as the JVM backend's recursion can go
+	*/
+	private static final int MAX_MEMORY = 1 << 27;
+
+	private final BPLVMProgram program;
+
+	/**
+	* runs BPLVMGenerator's programs. memory is one int[] with the globals
+	* at the start and then the frames, so a pointer or an array is just an
+	* index into it. a string is an index into the program's strings. the
+	* values being computed are on a separate stack, and the return pcs and
+	* frame pointers of the calls on a third
+	*/
+	private BPLVM(BPLVMProgram program, InputStream in, OutputStream out) {
+		super(in, out);
+		this.program = program;
+	}
+
+	/**
+	* runs the program, and flushes the output when it is done, even if it failed
+	* @return what an int main returns, or 0
+	*/
+	public static int run(BPLVMProgram program, InputStream in, OutputStream out) throws BPLException {
+		BPLVM vm = new BPLVM(program, in, out);
+		try {
+			return vm.execute();
+		} finally {
+			try {
+				vm.flush();
+			} catch (IOException e) {
+				throw new BPLRuntimeException("Output failed: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	* the interpreter loop. everything it changes is in locals, and nothing
+	* is allocated unless memory or a stack has to grow
+	*/
+	private int execute() throws BPLException {
+		int[] code = this.program.getCode();
+		String[] strings = this.program.getStrings();
+		int[] memory = new int[Math.max(INITIAL_MEMORY, 2 * this.program.getGlobalsSize())];
+		int[] stack = new int[INITIAL_STACK];
+		int[] calls = new int[INITIAL_CALLS];
+		int pc = 0;
+		int sp = 0;
+		int cp = 0;
+		int fp = this.program.getGlobalsSize();
+		int top = fp;
+		try {
+			while (true) {
+				switch (code[pc++]) {
+				case CONST:
+					stack[sp++] = code[pc++];
+					break;
+				case LOAD_LOCAL:
+					stack[sp++] = memory[fp + code[pc++]];
+					break;
+				case STORE_LOCAL:
+					memory[fp + code[pc++]] = stack[--sp];
+					break;
+				case LOAD_GLOBAL:
+					stack[sp++] = memory[code[pc++]];
+					break;
+				case STORE_GLOBAL:
+					memory[code[pc++]] = stack[--sp];
+					break;
+				case ADDR_LOCAL:
+					stack[sp++] = fp + code[pc++];
+					break;
+				case LOAD:
+					stack[sp - 1] = memory[stack[sp - 1]];
+					break;
+				case STORE:
+					sp -= 2;
+					memory[stack[sp]] = stack[sp + 1];
+					break;
+				case STORE_KEEP:
+					sp--;
+					memory[stack[sp - 1]] = stack[sp];
+					stack[sp - 1] = stack[sp];
+					break;
+				case CHECK: {
+					int index = stack[sp - 1];
+					int size = code[pc++];
+					if (index < 0 || index >= size) {
+						throw new BPLRuntimeException("Array index out of bounds: Index " + index + " out of bounds for length " + size, this.program.getLines()[pc - 1]);
+					}
+					break;
+				}
+				case ADD:
+					sp--;
+					stack[sp - 1] += stack[sp];
+					break;
+				case SUB:
+					sp--;
+					stack[sp - 1] -= stack[sp];
+					break;
+				case MUL:
+					sp--;
+					stack[sp - 1] *= stack[sp];
+					break;
+				case DIV:
+					sp--;
+					stack[sp - 1] /= stack[sp];
+					break;
+				case REM:
+					sp--;
+					stack[sp - 1] %= stack[sp];
+					break;
+				case NEG:
+					stack[sp - 1] = -stack[sp - 1];
+					break;
+				case EQ:
+				case NE:
+				case LT:
+				case GE:
+				case GT:
+				case LE:
+					sp--;
+					stack[sp - 1] = compare(code[pc - 1] - EQ, stack[sp - 1], stack[sp]) ? 1 : 0;
+					break;
+				case BR_EQ:
+				case BR_NE:
+				case BR_LT:
+				case BR_GE:
+				case BR_GT:
+				case BR_LE:
+					sp -= 2;
+					pc = compare(code[pc - 1] - BR_EQ, stack[sp], stack[sp + 1]) ? code[pc] : pc + 1;
+					break;
+				case JUMP:
+					pc = code[pc];
+					break;
+				case JZ:
+					pc = (stack[--sp] == 0) ? code[pc] : pc + 1;
+					break;
+				case JNZ:
+					pc = (stack[--sp] != 0) ? code[pc] : pc + 1;
+					break;
+				case CALL:
+					if (cp + 2 > calls.length) {
+						calls = Arrays.copyOf(calls, 2 * calls.length);
+					}
+					calls[cp++] = pc + 1;
+					calls[cp++] = fp;
+					pc = code[pc];
+					break;
+				case ENTER: {
+					int args = code[pc + 1];
+					fp = top;
+					top += code[pc];
+					if (top > memory.length) {
+						memory = grow(memory, top);
+					}
+					if (sp + code[pc + 2] > stack.length) {
+						stack = Arrays.copyOf(stack, 2 * (sp + code[pc + 2]));
+					}
+					sp -= args;
+					System.arraycopy(stack, sp, memory, fp, args);
+					Arrays.fill(memory, fp + args, top, 0);
+					pc += 3;
+					break;
+				}
+				case RET:
+					top = fp;
+					fp = calls[--cp];
+					pc = calls[--cp];
+					break;
+				case HALT:
+					return stack[--sp];
+				case WRITE_INT:
+					this.writeInt(stack[--sp]);
+					break;
+				case WRITE_STRING:
+					this.writeString(strings[stack[--sp]]);
+					break;
+				case WRITELN:
+					this.writeln();
+					break;
+				case READ:
+					stack[sp++] = this.readInt();
+					break;
+				case POP:
+					sp--;
+					break;
+				case DUP:
+					stack[sp] = stack[sp - 1];
+					sp++;
+					break;
+				case SWAP: {
+					int swapped = stack[sp - 1];
+					stack[sp - 1] = stack[sp - 2];
+					stack[sp - 2] = swapped;
+					break;
+				}
+				case ADD_LOCAL:
+					stack[sp - 1] += memory[fp + code[pc++]];
+					break;
+				case ADD_CONST:
+					stack[sp - 1] += code[pc++];
+					break;
+				case INC_LOCAL:
+					memory[fp + code[pc]] += code[pc + 1];
+					pc += 2;
+					break;
+				case BR_LOCAL_LOCAL:
+					pc = compare(code[pc], memory[fp + code[pc + 1]], memory[fp + code[pc + 2]]) ? code[pc + 3] : pc + 4;
+					break;
+				case BR_LOCAL_CONST:
+					pc = compare(code[pc], memory[fp + code[pc + 1]], code[pc + 2]) ? code[pc + 3] : pc + 4;
+					break;
+				default:
+					throw new BPLRuntimeException("Bad instruction " + code[pc - 1] + " at " + (pc - 1));
+				}
+			}
+		} catch (RuntimeException e) {
+			throw new BPLRuntimeException(BPLRuntimeException.describe(e), this.program.getLines()[pc - 1]);
+		} catch (StackOverflowError e) {
+			throw new BPLRuntimeException(BPLRuntimeException.describe(e), this.program.getLines()[pc - 1]);
+		} catch (IOException e) {
+			throw new BPLRuntimeException(BPLRuntimeException.describe(e), this.program.getLines()[pc - 1]);
+		}
+	}
+
+	/**
+	* @param relop an index into BPLVMGenerator.RELOPS
+	*/
+	private static boolean compare(int relop, int a, int b) {
+		switch (relop) {
+		case 0:
+			return a == b;
+		case 1:
+			return a != b;
+		case 2:
+			return a < b;
+		case 3:
+			return a >= b;
+		case 4:
+			return a > b;
+		default:
+			return a <= b;
+		}
+	}
+
+	/**
+	* @return memory, made big enough for size words
+	*/
+	private static int[] grow(int[] memory, int size) {
+		if (size > MAX_MEMORY) {
+			throw new StackOverflowError();
+		}
+		return Arrays.copyOf(memory, Math.min(MAX_MEMORY, Math.max(size, 2 * memory.length)));
+	}
+}
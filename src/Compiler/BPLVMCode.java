@@ -0,0 +1,222 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLVMCode {
+	private int[] code;
+	private int[] lines;
+	private int length;
+	private int line;
+	private int depth;
+	private int maxStack;
+	private int barrier;
+	private ArrayList<Integer> starts;
+	private ArrayList<Integer> stackChanges;
+	private ArrayList<Integer> labelOffsets;
+	private ArrayList<Integer> labelDepths;
+	private ArrayList<int[]> jumps;
+	private ArrayList<String> strings;
+	private HashMap<String, Integer> stringIndexes;
+
+	/**
+	* the instructions of a whole program for BPLVM. like BPLBytecode, the
+	* stack depth is followed for each function's max stack. instructions
+	* are fused into the superinstructions as they are added, but never
+	* across a label, since a jump could land between them
+	*/
+	public BPLVMCode() {
+		this.code = new int[256];
+		this.lines = new int[256];
+		this.length = 0;
+		this.line = 0;
+		this.depth = 0;
+		this.maxStack = 0;
+		this.barrier = 0;
+		this.starts = new ArrayList<Integer>();
+		this.stackChanges = new ArrayList<Integer>();
+		this.labelOffsets = new ArrayList<Integer>();
+		this.labelDepths = new ArrayList<Integer>();
+		this.jumps = new ArrayList<int[]>();
+		this.strings = new ArrayList<String>();
+		this.stringIndexes = new HashMap<String, Integer>();
+		this.strings.add(null);
+	}
+
+	/**
+	* @param stackChange how many values the instruction pushes minus how many it pops
+	*/
+	public void emit(int opcode, int stackChange, int... operands) {
+		int last = this.previous(1);
+		int lastOpcode = (last >= 0) ? this.code[last] : -1;
+		if ((opcode == BPLVM.ADD || opcode == BPLVM.SUB) && lastOpcode == BPLVM.CONST) {
+			int value = this.code[last + 1];
+			this.remove();
+			this.emit(BPLVM.ADD_CONST, 0, (opcode == BPLVM.ADD) ? value : -value);
+		} else if (opcode == BPLVM.ADD && lastOpcode == BPLVM.LOAD_LOCAL) {
+			int offset = this.code[last + 1];
+			this.remove();
+			this.emit(BPLVM.ADD_LOCAL, 0, offset);
+		} else if (opcode == BPLVM.NEG && lastOpcode == BPLVM.CONST) {
+			int value = this.code[last + 1];
+			this.remove();
+			this.emit(BPLVM.CONST, 1, -value);
+		} else if (opcode == BPLVM.STORE_LOCAL && lastOpcode == BPLVM.ADD_CONST && this.isLoadLocal(this.previous(2), operands[0])) {
+			int value = this.code[last + 1];
+			this.remove();
+			this.remove();
+			this.emit(BPLVM.INC_LOCAL, 0, operands[0], value);
+		} else {
+			this.append(opcode, stackChange, operands);
+		}
+	}
+
+	/**
+	* @param opcode JUMP, JZ, JNZ or one of BR_EQ to BR_LE, which pop two values.
+	* comparisons of a local with a local or a constant become one instruction
+	*/
+	public void jump(int opcode, int label) {
+		int stackChange = (opcode == BPLVM.JUMP) ? 0 : (opcode == BPLVM.JZ || opcode == BPLVM.JNZ) ? -1 : -2;
+		int last = this.previous(1);
+		int first = this.previous(2);
+		if (stackChange == -2 && this.isLoadLocal(first, -1) && (this.code[last] == BPLVM.LOAD_LOCAL || this.code[last] == BPLVM.CONST)) {
+			int fused = (this.code[last] == BPLVM.LOAD_LOCAL) ? BPLVM.BR_LOCAL_LOCAL : BPLVM.BR_LOCAL_CONST;
+			int a = this.code[first + 1];
+			int b = this.code[last + 1];
+			this.remove();
+			this.remove();
+			this.append(fused, 0, opcode - BPLVM.BR_EQ, a, b, 0);
+		} else {
+			this.append(opcode, stackChange, 0);
+		}
+		this.labelDepths.set(label, this.depth);
+		this.jumps.add(new int[] {this.length - 1, label});
+		if (opcode == BPLVM.JUMP) {
+			this.depth = 0;
+		}
+	}
+
+	/**
+	* @param stackChange what the function returns minus the args
+	*/
+	public void call(int label, int stackChange) {
+		this.append(BPLVM.CALL, stackChange, 0);
+		this.jumps.add(new int[] {this.length - 1, label});
+	}
+
+	/**
+	* @param opcode RET or HALT
+	*/
+	public void ret(int opcode) {
+		this.append(opcode, 0);
+		this.depth = 0;
+	}
+
+	public int newLabel() {
+		this.labelOffsets.add(-1);
+		this.labelDepths.add(-1);
+		return this.labelOffsets.size() - 1;
+	}
+
+	public void placeLabel(int label) {
+		this.labelOffsets.set(label, this.length);
+		if (this.labelDepths.get(label) >= 0) {
+			this.depth = this.labelDepths.get(label);
+		}
+		this.barrier = this.length;
+	}
+
+	/**
+	* the instructions added after this came from line
+	*/
+	public void line(int line) {
+		this.line = line;
+	}
+
+	/**
+	* @return the index of a string literal in the program's strings, the same for the same text
+	*/
+	public int string(String s) {
+		if (!this.stringIndexes.containsKey(s)) {
+			this.stringIndexes.put(s, this.strings.size());
+			this.strings.add(s);
+		}
+		return this.stringIndexes.get(s);
+	}
+
+	/**
+	* the next instructions are a new function, which starts with nothing on the stack
+	*/
+	public void startFunction() {
+		this.depth = 0;
+		this.maxStack = 0;
+	}
+
+	public int getMaxStack() {
+		return this.maxStack;
+	}
+
+	public int getLength() {
+		return this.length;
+	}
+
+	/**
+	* changes an operand that wasn't known when it was added
+	*/
+	public void set(int pc, int value) {
+		this.code[pc] = value;
+	}
+
+	/**
+	* fills in the jump and call targets
+	*/
+	public BPLVMProgram toProgram(int globalsSize) {
+		for (int[] jump : this.jumps) {
+			this.code[jump[0]] = this.labelOffsets.get(jump[1]);
+		}
+		return new BPLVMProgram(Arrays.copyOf(this.code, this.length), Arrays.copyOf(this.lines, this.length), this.strings.toArray(new String[0]), globalsSize);
+	}
+
+	/**
+	* @return where the instruction back instructions ago starts, or -1 if
+	* there is a label since then
+	*/
+	private int previous(int back) {
+		if (this.starts.size() < back) {
+			return -1;
+		}
+		int start = this.starts.get(this.starts.size() - back);
+		return (start >= this.barrier) ? start : -1;
+	}
+
+	/**
+	* @param offset the local it has to load, or -1 for any
+	*/
+	private boolean isLoadLocal(int start, int offset) {
+		return start >= 0 && this.code[start] == BPLVM.LOAD_LOCAL && (offset < 0 || this.code[start + 1] == offset);
+	}
+
+	/**
+	* takes back the last instruction
+	*/
+	private void remove() {
+		this.length = this.starts.remove(this.starts.size() - 1);
+		this.depth -= this.stackChanges.remove(this.stackChanges.size() - 1);
+	}
+
+	private void append(int opcode, int stackChange, int... operands) {
+		if (this.length + 1 + operands.length > this.code.length) {
+			this.code = Arrays.copyOf(this.code, 2 * this.code.length);
+			this.lines = Arrays.copyOf(this.lines, 2 * this.lines.length);
+		}
+		this.starts.add(this.length);
+		this.stackChanges.add(stackChange);
+		this.lines[this.length] = this.line;
+		this.code[this.length++] = opcode;
+		for (int operand : operands) {
+			this.lines[this.length] = this.line;
+			this.code[this.length++] = operand;
+		}
+		this.depth += stackChange;
+		this.maxStack = Math.max(this.maxStack, this.depth);
+	}
+}
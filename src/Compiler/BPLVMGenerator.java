@@ -0,0 +1,428 @@
+package Compiler;
+
+import java.util.*;
+import java.io.*;
+
+public class BPLVMGenerator {
+	/**
+	* in the order of BPLVM's comparisons, EQ to LE. each one's opposite is next to it
+	*/
+	public static final List<String> RELOPS = Arrays.asList("==", "!=", "<", ">=", ">", "<=");
+	private static final List<String> ARITHMETIC_OPS = Arrays.asList("+", "-", "*", "/", "%");
+
+	private BPLNode parseTreeHead;
+	private BPLOptions options;
+	private BPLVMCode code;
+	private HashMap<BPLNode, Integer> globals;
+	private HashMap<BPLNode, Integer> locals;
+	private HashMap<BPLNode, Integer> functions;
+	private int nextOffset;
+	private int frameSize;
+	private BPLVMProgram program;
+
+	/**
+	* compiles the program to BPLVM's instructions, which start at 0 with a
+	* call to main. globals have fixed addresses, and params and locals an
+	* offset from the frame pointer, with arrays taking a word per element.
+	* an array param is the address of the first element. operands and
+	* args are evaluated in the native backend's order where that shows.
+	* run the program with BPLVM
+	*/
+	public BPLVMGenerator(String fileName, BPLOptions options) throws BPLException {
+		BPLTypeChecker typeChecker = new BPLTypeChecker(fileName);
+		this.parseTreeHead = typeChecker.getParseTreeHead();
+		this.options = options;
+		this.code = new BPLVMCode();
+		this.globals = new HashMap<BPLNode, Integer>();
+		this.locals = new HashMap<BPLNode, Integer>();
+		this.functions = new HashMap<BPLNode, Integer>();
+		this.nextOffset = 0;
+		this.frameSize = 0;
+
+		int globalsSize = 0;
+		BPLNode mainFunDec = null;
+		ArrayList<BPLNode> funDecs = new ArrayList<BPLNode>();
+		if (this.parseTreeHead.getChildrenSize() != 0) {
+			for (BPLNode decList = this.parseTreeHead.getChild(0); decList != null; decList = (decList.getChildrenSize() > 1) ? decList.getChild(1) : null) {
+				BPLNode dec = decList.getChild(0).getChild(0);
+				if (dec.isType("VAR_DEC")) {
+					this.globals.put(dec, globalsSize);
+					globalsSize += getSize(dec);
+				} else {
+					funDecs.add(dec);
+					this.functions.put(dec, this.code.newLabel());
+					if (getID(dec).equals("main")) {
+						mainFunDec = dec;
+					}
+				}
+			}
+		}
+
+		this.genEntry(mainFunDec);
+		for (BPLNode funDec : funDecs) {
+			this.genFunDec(funDec);
+		}
+		this.program = this.code.toProgram(globalsSize);
+	}
+
+	public BPLVMProgram getProgram() {
+		return this.program;
+	}
+
+	/**
+	* calls main with zeros for any params, and halts with what it returns
+	*/
+	private void genEntry(BPLNode mainFunDec) {
+		if (mainFunDec != null) {
+			this.code.line(mainFunDec.getLineNumber());
+			int args = BPLInliner.getParams(mainFunDec).size();
+			for (int i = 0; i < args; i++) {
+				this.code.emit(BPLVM.CONST, 1, 0);
+			}
+			boolean value = !mainFunDec.getChild(0).isType("void");
+			this.code.call(this.functions.get(mainFunDec), (value ? 1 : 0) - args);
+			if (mainFunDec.getChild(0).isType("int")) {
+				this.code.ret(BPLVM.HALT);
+				return;
+			} else if (value) {
+				this.code.emit(BPLVM.POP, -1);
+			}
+		}
+		this.code.emit(BPLVM.CONST, 1, 0);
+		this.code.ret(BPLVM.HALT);
+	}
+
+	/**
+	* the frame has the params, then the locals, then the temps of calls
+	*/
+	private void genFunDec(BPLNode funDec) {
+		this.code.placeLabel(this.functions.get(funDec));
+		this.code.startFunction();
+		this.code.line(funDec.getLineNumber());
+		this.locals.clear();
+		ArrayList<BPLNode> params = BPLInliner.getParams(funDec);
+		int offset = 0;
+		for (BPLNode param : params) {
+			this.locals.put(param, offset++);
+		}
+		ArrayList<BPLNode> decs = new ArrayList<BPLNode>();
+		this.findLocals(funDec.getChild(3), decs);
+		for (BPLNode dec : decs) {
+			this.locals.put(dec, offset);
+			offset += getSize(dec);
+		}
+		this.nextOffset = offset;
+		this.frameSize = offset;
+		int enter = this.code.getLength();
+		this.code.emit(BPLVM.ENTER, 0, 0, params.size(), 0);
+
+		this.genStatement(funDec.getChild(3));
+
+		// falling off the end returns nothing, or 0
+		if (!funDec.getChild(0).isType("void")) {
+			this.code.emit(BPLVM.CONST, 1, 0);
+		}
+		this.code.ret(BPLVM.RET);
+		this.code.set(enter + 1, this.frameSize);
+		this.code.set(enter + 3, this.code.getMaxStack());
+	}
+
+	private void findLocals(BPLNode node, ArrayList<BPLNode> decs) {
+		if (node.isType("VAR_DEC")) {
+			decs.add(node);
+			return;
+		}
+		for (BPLNode child : node.getChildren()) {
+			this.findLocals(child, decs);
+		}
+	}
+
+	private void genStatement(BPLNode statement) {
+		if (statement.isType("STATEMENT")) {
+			statement = statement.getChild(0);
+		}
+		this.code.line(statement.getLineNumber());
+		if (statement.isType("COMPOUND_STMT")) {
+			for (BPLNode statementList = statement.getChild(1); statementList.isType("STATEMENT_LIST"); statementList = statementList.getChild(1)) {
+				this.genStatement(statementList.getChild(0));
+			}
+		} else if (statement.isType("IF_STMT")) {
+			int elseLabel = this.code.newLabel();
+			this.genCondition(statement.getChild(0), elseLabel, false);
+			this.genStatement(statement.getChild(1));
+			if (statement.getChildrenSize() > 2) {
+				int endLabel = this.code.newLabel();
+				this.code.jump(BPLVM.JUMP, endLabel);
+				this.code.placeLabel(elseLabel);
+				this.genStatement(statement.getChild(2));
+				this.code.placeLabel(endLabel);
+			} else {
+				this.code.placeLabel(elseLabel);
+			}
+		} else if (statement.isType("WHILE_STMT")) {
+			// the condition goes at the bottom, so each iteration takes one jump
+			int bodyLabel = this.code.newLabel();
+			int conditionLabel = this.code.newLabel();
+			this.code.jump(BPLVM.JUMP, conditionLabel);
+			this.code.placeLabel(bodyLabel);
+			this.genStatement(statement.getChild(1));
+			this.code.placeLabel(conditionLabel);
+			this.code.line(statement.getLineNumber());
+			this.genCondition(statement.getChild(0), bodyLabel, true);
+		} else if (statement.isType("RETURN_STMT")) {
+			if (statement.getChildrenSize() > 0) {
+				this.genExpression(statement.getChild(0), true);
+			}
+			this.code.ret(BPLVM.RET);
+		} else if (statement.isType("WRITE_STMT")) {
+			if (statement.getChildrenSize() == 0) {
+				this.code.emit(BPLVM.WRITELN, 0);
+			} else {
+				this.genExpression(statement.getChild(0), true);
+				boolean string = statement.getChild(0).getEvalType().equals(BPLTypeChecker.TYPE_STRING);
+				this.code.emit(string ? BPLVM.WRITE_STRING : BPLVM.WRITE_INT, -1);
+			}
+		} else if (statement.getChildrenSize() > 0) {
+			this.genExpression(statement.getChild(0), false);
+		}
+	}
+
+	/**
+	* jumps to label if expression is jumpIf. comparisons jump on the
+	* comparison itself instead of making a 0 or 1 first
+	*/
+	private void genCondition(BPLNode expression, int label, boolean jumpIf) {
+		BPLNode compExp = expression.getChild(0);
+		if (expression.getChildrenSize() != 1 || compExp.getChildrenSize() != 3) {
+			this.genExpression(expression, true);
+			this.code.jump(jumpIf ? BPLVM.JNZ : BPLVM.JZ, label);
+			return;
+		}
+		int relop = RELOPS.indexOf(compExp.getChild(1).getChild(0).getType());
+		this.genOperation(compExp.getChild(0));
+		this.genOperation(compExp.getChild(2));
+		this.code.jump(BPLVM.BR_EQ + (jumpIf ? relop : relop ^ 1), label);
+	}
+
+	/**
+	* @param keep whether the value is used, so assignments only dup it when it is
+	* @return whether a value was left
+	*/
+	private boolean genExpression(BPLNode expression, boolean keep) {
+		if (expression.getChildrenSize() == 3) {
+			return this.genAssignment(expression.getChild(0), expression.getChild(2), keep);
+		}
+		boolean value = this.genOperation(expression.getChild(0));
+		if (!keep && value) {
+			this.code.emit(BPLVM.POP, -1);
+			return false;
+		}
+		return value;
+	}
+
+	/**
+	* like the native backend, the value assigned to an array element or
+	* through a pointer is found before the element or pointer when that shows
+	*/
+	private boolean genAssignment(BPLNode var, BPLNode value, boolean keep) {
+		BPLNode dec = var.getDeclaration();
+		if (var.getChild(0).isType("*") || var.getChildrenSize() == 4) {
+			boolean valueFirst = BPLInliner.hasSideEffects(var) || BPLInliner.hasSideEffects(value);
+			if (valueFirst) {
+				this.genExpression(value, true);
+			}
+			if (var.getChild(0).isType("*")) {
+				this.genLoad(dec);
+			} else {
+				this.genElementAddress(var.getChild(0), dec, var.getChild(2));
+			}
+			if (valueFirst) {
+				this.code.emit(BPLVM.SWAP, 0);
+			} else {
+				this.genExpression(value, true);
+			}
+			this.code.emit(keep ? BPLVM.STORE_KEEP : BPLVM.STORE, keep ? -1 : -2);
+			return keep;
+		}
+
+		this.genExpression(value, true);
+		if (keep) {
+			this.code.emit(BPLVM.DUP, 1);
+		}
+		if (this.locals.containsKey(dec)) {
+			this.code.emit(BPLVM.STORE_LOCAL, -1, this.locals.get(dec));
+		} else {
+			this.code.emit(BPLVM.STORE_GLOBAL, -1, this.globals.get(dec));
+		}
+		return keep;
+	}
+
+	/**
+	* the left side of a comparison is found first. the right side of the
+	* other operations is, like in the native backend, when that shows
+	* @param node a COMP_EXP, E, T or F
+	*/
+	private boolean genOperation(BPLNode node) {
+		if (node.isType("F")) {
+			return this.genF(node);
+		} else if (node.getChildrenSize() == 1) {
+			return this.genOperation(node.getChild(0));
+		}
+		if (!node.isType("COMP_EXP") && BPLInliner.hasSideEffects(node)) {
+			this.genOperation(node.getChild(2));
+			this.genOperation(node.getChild(0));
+			this.code.emit(BPLVM.SWAP, 0);
+		} else {
+			this.genOperation(node.getChild(0));
+			this.genOperation(node.getChild(2));
+		}
+		String op = node.getChild(1).getChild(0).getType();
+		if (node.isType("COMP_EXP")) {
+			this.code.emit(BPLVM.EQ + RELOPS.indexOf(op), -1);
+		} else {
+			this.code.emit(BPLVM.ADD + ARITHMETIC_OPS.indexOf(op), -1);
+		}
+		return true;
+	}
+
+	private boolean genF(BPLNode f) {
+		BPLNode child = f.getChild(0);
+		if (child.isType("FACTOR")) {
+			return this.genFactor(child);
+		} else if (child.isType("-")) {
+			this.genF(f.getChild(1));
+			this.code.emit(BPLVM.NEG, 0);
+			return true;
+		}
+
+		BPLNode factor = f.getChild(1);
+		if (child.isType("*")) {
+			this.genFactor(factor);
+			this.code.emit(BPLVM.LOAD, 0);
+		} else if (factor.getChildrenSize() == 4) {
+			this.genElementAddress(factor.getChild(0), factor.getChild(0).getDeclaration(), factor.getChild(2));
+		} else {
+			this.genAddress(factor.getChild(0).getDeclaration());
+		}
+		return true;
+	}
+
+	private boolean genFactor(BPLNode factor) {
+		BPLNode child = factor.getChild(0);
+		if (child.isType("EXPRESSION")) {
+			return this.genExpression(child, true);
+		} else if (child.isType("FUN_CALL")) {
+			return this.genFunCall(child);
+		} else if (child.isType("READ")) {
+			this.code.emit(BPLVM.READ, 1);
+		} else if (child.isType("INTEGER")) {
+			this.code.emit(BPLVM.CONST, 1, ((BPLIntegerNode) child).getInteger());
+		} else if (child.isType("STRING")) {
+			this.code.emit(BPLVM.CONST, 1, this.code.string(BPLJVMGenerator.unescape(child.getChild(0).getType())));
+		} else if (factor.getChildrenSize() == 4) {
+			this.genElementAddress(child, child.getDeclaration(), factor.getChild(2));
+			this.code.emit(BPLVM.LOAD, 0);
+		} else {
+			this.genLoad(child.getDeclaration());
+		}
+		return true;
+	}
+
+	/**
+	* when the order shows, the args are found last to first like the
+	* native backend does, and all but the first wait in temps
+	*/
+	private boolean genFunCall(BPLNode funCall) {
+		BPLNode funDec = funCall.getChild(0).getDeclaration();
+		ArrayList<BPLNode> args = BPLInliner.getArgs(funCall);
+		if (args.size() > 1 && BPLInliner.hasSideEffects(funCall.getChild(1))) {
+			int temps = this.nextOffset - 1; // the temp of arg i is temps + i
+			this.nextOffset += args.size() - 1;
+			this.frameSize = Math.max(this.frameSize, this.nextOffset);
+			for (int i = args.size() - 1; i > 0; i--) {
+				this.genExpression(args.get(i), true);
+				this.code.emit(BPLVM.STORE_LOCAL, -1, temps + i);
+			}
+			this.genExpression(args.get(0), true);
+			for (int i = 1; i < args.size(); i++) {
+				this.code.emit(BPLVM.LOAD_LOCAL, 1, temps + i);
+			}
+			this.nextOffset = temps + 1;
+		} else {
+			for (BPLNode arg : args) {
+				this.genExpression(arg, true);
+			}
+		}
+		boolean value = !funDec.getChild(0).isType("void");
+		this.code.call(this.functions.get(funDec), (value ? 1 : 0) - args.size());
+		return value;
+	}
+
+	/**
+	* pushes the address of element index of the array dec. with
+	* -fbounds-check, indexes into arrays with a declared size are checked
+	*/
+	private void genElementAddress(BPLNode id, BPLNode dec, BPLNode index) {
+		this.genLoad(dec);
+		this.genExpression(index, true);
+		int size = BPLRangeAnalysis.getArraySize(dec);
+		if (this.options.boundsCheck() && size >= 0) {
+			this.code.line(id.getLineNumber());
+			this.code.emit(BPLVM.CHECK, 0, size);
+		}
+		this.code.emit(BPLVM.ADD, -1);
+	}
+
+	/**
+	* pushes the value of the var dec. the value of an array is its address
+	*/
+	private void genLoad(BPLNode dec) {
+		if (dec.isType("VAR_DEC") && dec.getChildrenSize() > 3) {
+			this.genAddress(dec);
+		} else if (this.locals.containsKey(dec)) {
+			this.code.emit(BPLVM.LOAD_LOCAL, 1, this.locals.get(dec));
+		} else {
+			this.code.emit(BPLVM.LOAD_GLOBAL, 1, this.globals.get(dec));
+		}
+	}
+
+	private void genAddress(BPLNode dec) {
+		if (this.locals.containsKey(dec)) {
+			this.code.emit(BPLVM.ADDR_LOCAL, 1, this.locals.get(dec));
+		} else {
+			this.code.emit(BPLVM.CONST, 1, this.globals.get(dec));
+		}
+	}
+
+	/**
+	* @return how many words a VAR_DEC takes
+	*/
+	private static int getSize(BPLNode dec) {
+		return (dec.getChildrenSize() > 3) ? BPLRangeAnalysis.getArraySize(dec) : 1;
+	}
+
+	private static String getID(BPLNode dec) {
+		BPLNode id = dec.getChild(1).isType("*") ? dec.getChild(2) : dec.getChild(1);
+		return ((BPLVarNode) id).getID();
+	}
+
+	/**
+	* compiles the file and runs it, exiting with what main returns
+	*/
+	public static void main(String[] args) throws FileNotFoundException, UnsupportedEncodingException, BPLException {
+		BPLOptions options = BPLOptions.parse(args);
+		if (options.getFileName() == null) {
+			System.err.println("File to run needed!");
+			System.exit(1);
+		}
+
+		BPLVMGenerator generator = new BPLVMGenerator("../" + options.getFileName(), options);
+		try {
+			System.exit(BPLVM.run(generator.getProgram(), System.in, System.out));
+		} catch (BPLRuntimeException e) {
+			System.out.flush();
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+}
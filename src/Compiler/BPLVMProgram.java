@@ -0,0 +1,38 @@
+package Compiler;
+
+public class BPLVMProgram {
+	private final int[] code;
+	private final int[] lines;
+	private final String[] strings;
+	private final int globalsSize;
+
+	/**
+	* a program compiled by BPLVMGenerator for BPLVM to run
+	* @param code the instructions of every function, starting at the entry at 0
+	* @param lines the BPL line of every word of code
+	* @param strings the string literals, which string values index. 0 is null
+	* @param globalsSize how many words of memory the globals take
+	*/
+	public BPLVMProgram(int[] code, int[] lines, String[] strings, int globalsSize) {
+		this.code = code;
+		this.lines = lines;
+		this.strings = strings;
+		this.globalsSize = globalsSize;
+	}
+
+	public int[] getCode() {
+		return this.code;
+	}
+
+	public int[] getLines() {
+		return this.lines;
+	}
+
+	public String[] getStrings() {
+		return this.strings;
+	}
+
+	public int getGlobalsSize() {
+		return this.globalsSize;
+	}
+}
@@ -0,0 +1,294 @@
+package Compiler;
+
+import java.util.*;
+
+public class BPLValueNumbering {
+	private final BPLSSAForm ssa;
+	private final BPLConstantPropagation constants;
+
+	private int[] numbers;
+	private int nextNumber;
+	private HashMap<List<Object>, Integer> table;
+
+	private HashMap<Integer, BPLSSAValue> available;
+	private HashMap<BPLSSAValue, BPLSSAValue> leaders;
+	private HashMap<BPLSSAValue, Integer> temps;
+	private HashMap<BPLNode, Boolean> pure;
+	private int redundant;
+	private long nanos;
+
+	/**
+	* global value numbering over the SSA form: two values get the same number
+	* when they apply the same op to values with the same numbers. loads also
+	* take the memory state, so they only match if nothing was stored between
+	* them. then, walking the dominator tree, a computation whose number is
+	* already available is marked to reuse the earlier result from a temp slot.
+	* constants is optional and lets known values match by value
+	*/
+	public BPLValueNumbering(BPLSSAForm ssa, BPLConstantPropagation constants) {
+		long start = System.nanoTime();
+		this.ssa = ssa;
+		this.constants = constants;
+		this.numbers = new int[ssa.getValues().size()];
+		Arrays.fill(this.numbers, -1);
+		this.nextNumber = 0;
+		this.table = new HashMap<List<Object>, Integer>();
+		this.available = new HashMap<Integer, BPLSSAValue>();
+		this.leaders = new HashMap<BPLSSAValue, BPLSSAValue>();
+		this.temps = new HashMap<BPLSSAValue, Integer>();
+		this.pure = new HashMap<BPLNode, Boolean>();
+		this.redundant = 0;
+
+		for (BPLBasicBlock block : ssa.getDominators().getReversePostorder()) {
+			for (BPLSSAValue phi : ssa.getPhis(block)) {
+				this.number(phi);
+			}
+			for (BPLSSAValue value : ssa.getBlockValues(block)) {
+				this.number(value);
+			}
+		}
+		this.findRedundant();
+		this.nanos = System.nanoTime() - start;
+	}
+
+	public int getNumber(BPLSSAValue value) {
+		return this.numbers[value.getID()];
+	}
+
+	/**
+	* @return how many temp slots the reused results need
+	*/
+	public int getTempCount() {
+		return this.temps.size();
+	}
+
+	/**
+	* @return how many computations reuse an earlier result
+	*/
+	public int getRedundantCount() {
+		return this.redundant;
+	}
+
+	public long getNanos() {
+		return this.nanos;
+	}
+
+	/**
+	* @return the temp a computation saves its result to for later reuse, or -1
+	* @param address whether it is the element address of an indexed VAR or
+	* FACTOR node rather than the node's value
+	*/
+	public int getStoreTemp(BPLNode node, boolean address) {
+		BPLSSAValue value = this.getOccurrence(node, address);
+		if (value == null || !this.temps.containsKey(value)) {
+			return -1;
+		}
+		return this.temps.get(value);
+	}
+
+	/**
+	* @return the temp holding an earlier result a computation can reuse, or -1
+	*/
+	public int getLoadTemp(BPLNode node, boolean address) {
+		BPLSSAValue value = this.getOccurrence(node, address);
+		if (value == null || !this.leaders.containsKey(value)) {
+			return -1;
+		}
+		return this.temps.get(this.leaders.get(value));
+	}
+
+	private BPLSSAValue getOccurrence(BPLNode node, boolean address) {
+		return address ? this.ssa.getAddress(node) : this.ssa.getValue(node);
+	}
+
+	private void number(BPLSSAValue value) {
+		String op = value.getOp();
+		List<Object> key = null;
+		if (this.constants != null && this.constants.isConstant(value)) {
+			key = Arrays.<Object>asList("const", this.constants.getConstant(value));
+		} else if (op.equals("const")) {
+			key = Arrays.<Object>asList(op, value.getConstant());
+		} else if (op.equals("string") || op.equals("base") || op.equals("varaddr")) {
+			key = Arrays.<Object>asList(op, value.getKey());
+		} else if (op.equals("phi")) {
+			int same = -1;
+			for (BPLSSAValue operand : value.getOperands()) {
+				int number = this.numbers[operand.getID()];
+				if (operand == value) {
+					continue;
+				} else if (number < 0 || (same >= 0 && number != same)) { // around a loop or different
+					same = -2;
+					break;
+				}
+				same = number;
+			}
+			if (same >= 0) {
+				this.numbers[value.getID()] = same;
+				return;
+			}
+			key = null;
+		} else if (op.equals("load") || op.equals("addr") || op.equals("neg") || value.getOperands().size() == 2 && !value.isMemory() && !op.equals("call")) {
+			ArrayList<Object> list = new ArrayList<Object>();
+			list.add(op);
+			for (BPLSSAValue operand : value.getOperands()) {
+				list.add(this.numbers[operand.getID()]);
+			}
+			if (isCommutative(op) && (Integer) list.get(1) > (Integer) list.get(2)) {
+				Collections.swap(list, 1, 2);
+			}
+			key = list;
+		}
+
+		if (key == null) { // params, calls, read(), memory states
+			this.numbers[value.getID()] = this.nextNumber++;
+		} else if (this.table.containsKey(key)) {
+			this.numbers[value.getID()] = this.table.get(key);
+		} else {
+			this.numbers[value.getID()] = this.nextNumber;
+			this.table.put(key, this.nextNumber++);
+		}
+	}
+
+	private static boolean isCommutative(String op) {
+		return op.equals("+") || op.equals("*") || op.equals("==") || op.equals("!=");
+	}
+
+	/**
+	* walks each block's expressions in evaluation order, in dominator tree
+	* preorder. a computation is redundant if an earlier one with its number
+	* dominates it, and then its operands are never evaluated
+	*/
+	private void findRedundant() {
+		BPLControlFlowGraph cfg = this.ssa.getControlFlowGraph();
+		int size = cfg.getBlocks().size();
+		ArrayList<ArrayList<Integer>> added = new ArrayList<ArrayList<Integer>>();
+		for (int i = 0; i < size; i++) {
+			added.add(null);
+		}
+		Stack<BPLBasicBlock> blocks = new Stack<BPLBasicBlock>();
+		blocks.push(cfg.getEntry());
+		while (!blocks.isEmpty()) {
+			BPLBasicBlock block = blocks.peek();
+			if (added.get(block.getID()) == null) {
+				ArrayList<Integer> numbers = new ArrayList<Integer>();
+				added.set(block.getID(), numbers);
+				if (this.constants == null || this.constants.isExecutable(block)) {
+					for (BPLNode instruction : block.getInstructions()) {
+						this.visit(instruction, numbers);
+					}
+				}
+				ArrayList<BPLBasicBlock> children = this.ssa.getDominators().getChildren(block);
+				for (int i = children.size() - 1; i >= 0; i--) {
+					blocks.push(children.get(i));
+				}
+			} else {
+				blocks.pop();
+				for (int number : added.get(block.getID())) {
+					this.available.remove(number);
+				}
+			}
+		}
+	}
+
+	/**
+	* @return true if node reuses an earlier result, so its operands are skipped.
+	* that is only allowed if skipping them skips no side effects
+	*/
+	private boolean reuse(BPLSSAValue value, BPLNode node) {
+		if (value == null || !this.isPure(node)) {
+			return false;
+		}
+		BPLSSAValue leader = this.available.get(this.numbers[value.getID()]);
+		if (leader == null) {
+			return false;
+		}
+		this.leaders.put(value, leader);
+		if (!this.temps.containsKey(leader)) {
+			this.temps.put(leader, this.temps.size());
+		}
+		this.redundant++;
+		return true;
+	}
+
+	private boolean isPure(BPLNode node) {
+		if (!this.pure.containsKey(node)) {
+			boolean rtn = !node.isType("FUN_CALL") && !node.isType("READ") && !(node.isType("EXPRESSION") && node.isChildrenSize(3));
+			for (BPLNode child : node.getChildren()) {
+				rtn = rtn && this.isPure(child);
+			}
+			this.pure.put(node, rtn);
+		}
+		return this.pure.get(node);
+	}
+
+	private void makeAvailable(BPLSSAValue value, ArrayList<Integer> added) {
+		if (value == null) {
+			return;
+		}
+		int number = this.numbers[value.getID()];
+		if (!this.available.containsKey(number)) {
+			this.available.put(number, value);
+			added.add(number);
+		}
+	}
+
+	/**
+	* mirrors the order BPLSSAForm lowers nodes in. only operators, loads and
+	* element addresses are worth keeping in a temp
+	*/
+	private void visit(BPLNode node, ArrayList<Integer> added) {
+		if (this.constants != null && this.constants.getNodeConstants().containsKey(node)) {
+			return; // the code generator emits the constant instead
+		}
+
+		BPLSSAValue value = null;
+		if ((node.isType("COMP_EXP") || node.isType("E") || node.isType("T")) && node.getChildrenSize() > 1) {
+			value = this.ssa.getValue(node);
+		} else if (node.isType("F") && node.getChild(0).isType("*")) {
+			value = this.ssa.getValue(node);
+		} else if (node.isType("FACTOR") && node.getChildrenSize() > 1) {
+			value = this.ssa.getValue(node);
+		}
+		if (this.reuse(value, node)) {
+			return;
+		}
+
+		if (node.isType("E") || node.isType("T")) {
+			if (node.getChildrenSize() > 1) {
+				this.visit(node.getChild(2), added);
+			}
+			this.visit(node.getChild(0), added);
+		} else if (node.isType("EXPRESSION") && node.isChildrenSize(3)) {
+			this.visit(node.getChild(2), added);
+			BPLNode var = node.getChild(0);
+			if (var.getChildrenSize() == 4) {
+				this.visitAddress(var, added);
+			}
+		} else if (node.isType("F") && node.getChild(0).isType("&")) {
+			if (node.getChild(1).getChildrenSize() > 1) {
+				this.visitAddress(node.getChild(1), added);
+			}
+		} else if (node.isType("FACTOR") && node.getChildrenSize() > 1) {
+			this.visitAddress(node, added);
+		} else if (node.isType("FUN_CALL")) {
+			ArrayList<BPLNode> args = BPLInliner.getArgs(node);
+			for (int i = args.size() - 1; i >= 0; i--) {
+				this.visit(args.get(i), added);
+			}
+		} else {
+			for (BPLNode child : node.getChildren()) {
+				this.visit(child, added);
+			}
+		}
+		this.makeAvailable(value, added);
+	}
+
+	private void visitAddress(BPLNode node, ArrayList<Integer> added) {
+		BPLSSAValue address = this.ssa.getAddress(node);
+		if (this.reuse(address, node.getChild(2))) {
+			return;
+		}
+		this.visit(node.getChild(2), added);
+		this.makeAvailable(address, added);
+	}
+}
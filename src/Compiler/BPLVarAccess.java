@@ -0,0 +1,64 @@
+package Compiler;
+
+public class BPLVarAccess {
+	private final BPLNode node;
+	private final BPLNode instruction;
+	private final int var;
+	private final boolean def;
+	private final boolean definite;
+	private int defIndex;
+
+	/**
+	* node is the ID node of a use, or the EXPRESSION, FUN_CALL or PARAM node making a def.
+	* a def is definite when it overwrites the whole var (not through a pointer,
+	* a call or a single array entry)
+	*/
+	public BPLVarAccess(BPLNode node, BPLNode instruction, int var, boolean def, boolean definite) {
+		this.node = node;
+		this.instruction = instruction;
+		this.var = var;
+		this.def = def;
+		this.definite = definite;
+		this.defIndex = -1;
+	}
+
+	public BPLNode getNode() {
+		return this.node;
+	}
+
+	/**
+	* @return the instruction the access happens in, null for the param defs on entry
+	*/
+	public BPLNode getInstruction() {
+		return this.instruction;
+	}
+
+	public int getVar() {
+		return this.var;
+	}
+
+	public boolean isDef() {
+		return this.def;
+	}
+
+	public boolean isUse() {
+		return !this.def;
+	}
+
+	public boolean isDefinite() {
+		return this.definite;
+	}
+
+	public void setDefIndex(int defIndex) {
+		this.defIndex = defIndex;
+	}
+
+	public int getDefIndex() {
+		return this.defIndex;
+	}
+
+	public String toString() {
+		String kind = this.def ? (this.definite ? "def" : "may def") : "use";
+		return kind + " of var " + this.var + " on line " + this.node.getLineNumber();
+	}
+}
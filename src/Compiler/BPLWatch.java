@@ -0,0 +1,169 @@
+package Compiler;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+public class BPLWatch {
+	public static final int DEFAULT_DEBOUNCE_MS = 50;
+
+	private final WatchService watcher;
+	private final HashMap<WatchKey, Path> directories;
+	private final BPLBatch batch;
+	private final int debounceMillis;
+	private final PrintStream out;
+
+	/**
+	* recompiles the .bpl files under the directories whenever they are
+	* saved, in this JVM, so after the first compile each one only pays for
+	* the functions that changed. an editor's save is usually a burst of
+	* events, so the files are compiled once the events stop for
+	* debounceMillis. new subdirectories are watched too
+	*/
+	public BPLWatch(List<Path> roots, BPLOptions options, int debounceMillis, PrintStream out) throws IOException {
+		this.watcher = FileSystems.getDefault().newWatchService();
+		this.directories = new HashMap<WatchKey, Path>();
+		this.batch = new BPLBatch(options, 1, null, false, new BPLIncremental(options));
+		this.debounceMillis = debounceMillis;
+		this.out = out;
+		for (Path root : roots) {
+			this.register(root);
+		}
+	}
+
+	/**
+	* watches directory and everything under it
+	*/
+	private void register(Path directory) throws IOException {
+		if (!Files.isDirectory(directory)) {
+			return;
+		}
+		DirectoryStream<Path> children = Files.newDirectoryStream(directory);
+		try {
+			WatchKey key = directory.register(this.watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+			this.directories.put(key, directory);
+			for (Path child : children) {
+				if (Files.isDirectory(child)) {
+					this.register(child);
+				}
+			}
+		} finally {
+			children.close();
+		}
+	}
+
+	/**
+	* compiles every file under the directories, so the next compiles are incremental
+	*/
+	public void compileAll() throws InterruptedException {
+		ArrayList<String> fileNames = new ArrayList<String>();
+		for (Path directory : new TreeSet<Path>(this.directories.values())) {
+			File[] files = directory.toFile().listFiles();
+			if (files == null) {
+				continue;
+			}
+			Arrays.sort(files);
+			for (File file : files) {
+				if (file.isFile() && file.getName().endsWith(".bpl")) {
+					fileNames.add(file.getPath());
+				}
+			}
+		}
+		this.compile(fileNames);
+	}
+
+	/**
+	* waits for saves and compiles what they changed, until interrupted or
+	* every directory is gone
+	*/
+	public void watch() throws IOException, InterruptedException {
+		try {
+			while (!this.directories.isEmpty()) {
+				LinkedHashSet<String> changed = new LinkedHashSet<String>();
+				this.take(this.watcher.take(), changed);
+				for (WatchKey key = this.watcher.poll(this.debounceMillis, TimeUnit.MILLISECONDS); key != null; key = this.watcher.poll(this.debounceMillis, TimeUnit.MILLISECONDS)) {
+					this.take(key, changed);
+				}
+				this.compile(new ArrayList<String>(changed));
+			}
+		} finally {
+			this.watcher.close();
+		}
+	}
+
+	/**
+	* adds the .bpl files key has events for to changed, and starts watching new directories
+	*/
+	private void take(WatchKey key, LinkedHashSet<String> changed) throws IOException {
+		Path directory = this.directories.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+				continue;
+			}
+			Path path = directory.resolve((Path) event.context());
+			if (Files.isDirectory(path)) {
+				if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+					this.register(path);
+				}
+			} else if (path.toString().endsWith(".bpl")) {
+				changed.add(path.toString());
+			}
+		}
+		if (!key.reset()) {
+			this.directories.remove(key);
+		}
+	}
+
+	private void compile(ArrayList<String> fileNames) throws InterruptedException {
+		ArrayList<String> existing = new ArrayList<String>();
+		for (String fileName : fileNames) {
+			if (new File(fileName).isFile()) { // not deleted or renamed since
+				existing.add(fileName);
+			}
+		}
+		for (BPLBatchResult result : this.batch.compile(existing)) {
+			if (result.failed()) {
+				this.out.printf("%s: %s (%.1f ms)%n", result.getFileName(), result.getError(), result.getNanos() / 1e6);
+			} else {
+				this.out.printf("%s: ok (%.1f ms)%n", result.getFileName(), result.getNanos() / 1e6);
+			}
+		}
+		this.out.flush();
+	}
+
+	/**
+	* compiles the .bpl files under the directories to <file>.s, then again
+	* each time one is saved. --debounce=<ms> is how long to wait for the
+	* rest of a save's events. the other options go to the code generator
+	*/
+	public static void main(String[] args) throws BPLException, IOException, InterruptedException {
+		int debounceMillis = DEFAULT_DEBOUNCE_MS;
+		ArrayList<String> flags = new ArrayList<String>();
+		ArrayList<Path> roots = new ArrayList<Path>();
+		for (String arg : args) {
+			if (arg.startsWith("--debounce=")) {
+				try {
+					debounceMillis = Integer.parseInt(arg.substring("--debounce=".length()));
+				} catch (NumberFormatException e) {
+					throw new BPLException("Bad debounce time in " + arg);
+				}
+			} else if (arg.startsWith("-")) {
+				flags.add(arg);
+			} else if (!new File(arg).isDirectory()) {
+				throw new BPLException(arg + " isn't a directory");
+			} else {
+				roots.add(Paths.get(arg));
+			}
+		}
+		if (roots.isEmpty()) {
+			System.err.println("Directories to watch needed!");
+			System.exit(1);
+		}
+
+		BPLWatch watch = new BPLWatch(roots, BPLOptions.parse(flags.toArray(new String[0])), debounceMillis, System.out);
+		watch.compileAll();
+		System.out.println("Watching " + roots + " for changes");
+		watch.watch();
+	}
+}
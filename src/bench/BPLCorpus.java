@@ -0,0 +1,127 @@
+package bench;
+
+import Compiler.*;
+import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+public class BPLCorpus {
+	public static final String DIRECTORY = "bench";
+
+	/**
+	* the programs the benchmarks compile. a name is either one of the
+	* programs in bench/, like "loops", or "tiled-<lines>", which is every
+	* program in bench/ copied over and over into one program of about that
+	* many lines, with each copy's globals and functions renamed and a main
+	* that calls each copy's main, or "generated-<lines>", a program of
+	* about that many lines from BPLProgramGenerator's default knobs
+	*/
+	public static String load(String name) throws BPLException, IOException {
+		if (name.startsWith("generated-")) {
+			try {
+				return new BPLProgramGenerator().set("lines", Integer.parseInt(name.substring("generated-".length()))).generate();
+			} catch (NumberFormatException e) {
+				throw new BPLException("Bad corpus size in " + name);
+			}
+		}
+		if (name.startsWith("tiled-")) {
+			try {
+				return tile(Integer.parseInt(name.substring("tiled-".length())));
+			} catch (NumberFormatException e) {
+				throw new BPLException("Bad corpus size in " + name);
+			}
+		}
+		return read(new File(DIRECTORY, name + ".bpl"));
+	}
+
+	/**
+	* @return how many lines source has
+	*/
+	public static int countLines(String source) {
+		int lines = 1;
+		for (int i = 0; i < source.length(); i++) {
+			if (source.charAt(i) == '\n') {
+				lines++;
+			}
+		}
+		return lines;
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+	private static String tile(int lines) throws BPLException, IOException {
+		File[] files = new File(DIRECTORY).listFiles();
+		if (files == null) {
+			throw new BPLException("Can't list " + DIRECTORY);
+		}
+		Arrays.sort(files);
+		ArrayList<ArrayList<BPLSourceDeclaration>> programs = new ArrayList<ArrayList<BPLSourceDeclaration>>();
+		for (File file : files) {
+			if (file.getName().endsWith(".bpl")) {
+				ArrayList<BPLSourceDeclaration> declarations = BPLSourceDeclaration.split(scan(read(file)));
+				if (declarations == null) {
+					throw new BPLException(file + " doesn't split into declarations");
+				}
+				programs.add(declarations);
+			}
+		}
+		if (programs.isEmpty()) {
+			throw new BPLException("No programs in " + DIRECTORY);
+		}
+
+		StringBuilder text = new StringBuilder();
+		StringBuilder main = new StringBuilder("void main(void) {\n");
+		int written = 0;
+		int copies = 0;
+		while (written + copies < lines) {
+			ArrayList<BPLSourceDeclaration> program = programs.get(copies % programs.size());
+			HashSet<String> names = new HashSet<String>();
+			for (BPLSourceDeclaration declaration : program) {
+				names.add(declaration.getName());
+			}
+			for (BPLSourceDeclaration declaration : program) {
+				int lineNumber = declaration.getTokens().get(0).getLineNumber();
+				for (Token token : declaration.getTokens()) {
+					for (; lineNumber < token.getLineNumber(); lineNumber++) {
+						text.append('\n');
+						written++;
+					}
+					text.append(token.getValue());
+					if (token.getType() == Token.T_ID && names.contains(token.getValue())) {
+						text.append('_').append(copies);
+					}
+					text.append(' ');
+				}
+				text.append("\n\n");
+				written += 2;
+			}
+			main.append("\tmain_").append(copies).append("();\n");
+			copies++;
+		}
+		return text.append(main).append("}\n").toString();
+	}
+
+	private static ArrayList<Token> scan(String source) throws BPLException {
+		ArrayList<Token> tokens = new ArrayList<Token>();
+		BPLScanner scanner = new BPLScanner(CharBuffer.wrap(source));
+		for (scanner.getNextToken(); scanner.nextToken().getType() != Token.T_EOF; scanner.getNextToken()) {
+			tokens.add(scanner.nextToken());
+		}
+		return tokens;
+	}
+
+	/**
+	* prints a program from the corpus, to see what the benchmarks compile
+	*/
+	public static void main(String[] args) throws BPLException, IOException {
+		if (args.length != 1) {
+			System.err.println("A corpus name needed!");
+			System.exit(1);
+		}
+		System.out.print(load(args[0]));
+	}
+}
@@ -0,0 +1,146 @@
+package bench;
+
+import Compiler.*;
+import java.io.*;
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xss64m"})
+@State(Scope.Benchmark)
+public class BPLPhaseBenchmark {
+	/**
+	* the programs from BPLCorpus: the small ones from bench/, bench/
+	* tiled to several sizes, and generated programs
+	*/
+	@Param({"loops", "arrays", "leafcalls", "tiled-1000", "tiled-10000", "tiled-100000", "generated-10000", "generated-100000"})
+	public String program;
+
+	/**
+	* code generator options, split at spaces
+	*/
+	@Param({""})
+	public String options;
+
+	private String source;
+	private int tokens;
+	private int lines;
+	private BPLTokenList tokenList;
+	private BPLOptions compilerOptions;
+
+	@Setup(Level.Trial)
+	public void load() throws BPLException, IOException {
+		this.source = BPLCorpus.load(this.program);
+		this.lines = BPLCorpus.countLines(this.source);
+		this.tokenList = new BPLTokenList(new BPLScanner(CharBuffer.wrap(this.source)));
+		this.tokens = this.tokenList.size();
+		this.compilerOptions = BPLOptions.parse(this.options.isEmpty() ? new String[0] : this.options.split(" "));
+		BPLCompilation compilation = new BPLCompiler(this.compilerOptions).compile(this.source);
+		if (!compilation.succeeded()) {
+			throw new BPLException(this.program + " doesn't compile: " + compilation.getDiagnostics());
+		}
+	}
+
+	/**
+	* the tokens and lines each benchmark got through, which JMH reports
+	* per second next to the operations
+	*/
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Throughput {
+		public long tokens;
+		public long lines;
+
+		@Setup(Level.Iteration)
+		public void clear() {
+			this.tokens = 0;
+			this.lines = 0;
+		}
+	}
+
+	/**
+	* a fresh parse tree for each call, since the type checker and the code
+	* generator add to the tree they're given. the programs take long
+	* enough to compile that setting up each call doesn't skew the timing
+	*/
+	@State(Scope.Thread)
+	public static class Tree {
+		public BPLNode head;
+
+		@Setup(Level.Invocation)
+		public void parse(BPLPhaseBenchmark benchmark) throws BPLException {
+			benchmark.tokenList.rewind();
+			this.head = new BPLParser(benchmark.tokenList).getBPLHead();
+		}
+	}
+
+	/**
+	* a fresh type checked tree for each call
+	*/
+	@State(Scope.Thread)
+	public static class CheckedTree {
+		public BPLTypeChecker typeChecker;
+
+		@Setup(Level.Invocation)
+		public void check(BPLPhaseBenchmark benchmark) throws BPLException {
+			benchmark.tokenList.rewind();
+			this.typeChecker = new BPLTypeChecker(new BPLParser(benchmark.tokenList));
+		}
+	}
+
+	private void count(Throughput throughput) {
+		throughput.tokens += this.tokens;
+		throughput.lines += this.lines;
+	}
+
+	@Benchmark
+	public int scan(Throughput throughput) throws BPLException {
+		BPLScanner scanner = new BPLScanner(CharBuffer.wrap(this.source));
+		int count = 0;
+		for (scanner.getNextToken(); scanner.nextToken().getType() != Token.T_EOF; scanner.getNextToken()) {
+			count++;
+		}
+		this.count(throughput);
+		return count;
+	}
+
+	/**
+	* parses tokens that were scanned already. the benchmarks run one
+	* thread each, so they can share the token list
+	*/
+	@Benchmark
+	public BPLNode parse(Throughput throughput) throws BPLException {
+		this.tokenList.rewind();
+		BPLNode head = new BPLParser(this.tokenList).getBPLHead();
+		this.count(throughput);
+		return head;
+	}
+
+	@Benchmark
+	public BPLTypeChecker typecheck(Tree tree, Throughput throughput) throws BPLException {
+		BPLTypeChecker typeChecker = new BPLTypeChecker(tree.head);
+		this.count(throughput);
+		return typeChecker;
+	}
+
+	@Benchmark
+	public BPLCodeGenerator codegen(CheckedTree tree, Throughput throughput) throws BPLException {
+		BPLCodeGenerator generator = new BPLCodeGenerator(tree.typeChecker, this.compilerOptions, new PrintStream(new ByteArrayOutputStream()));
+		this.count(throughput);
+		return generator;
+	}
+
+	/**
+	* all four phases from the source to the assembly, as BPLCompiler does them
+	*/
+	@Benchmark
+	public BPLCompilation compile(Throughput throughput) {
+		BPLCompilation compilation = new BPLCompiler(this.compilerOptions).compile(this.source);
+		this.count(throughput);
+		return compilation;
+	}
+}
@@ -0,0 +1,58 @@
+package bench;
+
+import Compiler.*;
+import java.io.*;
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xss64m"})
+@State(Scope.Benchmark)
+public class BPLPipelineBenchmark {
+	@Param({"generated-10000", "generated-100000", "tiled-100000"})
+	public String program;
+
+	/**
+	* synchronous parses with the scanner called as tokens are needed,
+	* pipelined with it on a thread of its own (--pipeline)
+	*/
+	@Param({"synchronous", "pipelined"})
+	public String mode;
+
+	private String source;
+	private int tokens;
+	private int lines;
+
+	@Setup(Level.Trial)
+	public void load() throws BPLException, IOException {
+		this.source = BPLCorpus.load(this.program);
+		this.lines = BPLCorpus.countLines(this.source);
+		this.tokens = new BPLTokenList(new BPLScanner(CharBuffer.wrap(this.source))).size();
+	}
+
+	/**
+	* scans and parses the source, as BPLCompiler does before type checking
+	*/
+	@Benchmark
+	public BPLNode parse(BPLPhaseBenchmark.Throughput throughput) throws BPLException {
+		BPLScanner scanner = new BPLScanner(CharBuffer.wrap(this.source));
+		BPLNode head;
+		if (this.mode.equals("pipelined")) {
+			BPLTokenPipeline pipeline = new BPLTokenPipeline(scanner);
+			try {
+				head = new BPLParser(pipeline).getBPLHead();
+			} finally {
+				pipeline.close();
+			}
+		} else {
+			head = new BPLParser(scanner).getBPLHead();
+		}
+		throughput.tokens += this.tokens;
+		throughput.lines += this.lines;
+		return head;
+	}
+}
@@ -0,0 +1,769 @@
+package bench;
+
+import Compiler.*;
+import java.util.*;
+
+public class BPLProgramGenerator {
+	public static final int ARRAY_SIZE = 16;
+	private static final int LOOP_BOUND = 8;
+	private static final long COST_BOUND = 100000; // statements a function may run, calls included
+	private static final int OPERATORS_PER_LINE = 12;
+	private static final String[] RELOPS = {"<", "<=", "==", "!=", ">", ">="};
+	private static final String[] WORDS = {"alpha", "beta", "gamma", "delta", "sort", "sieve", "matrix", "tree", "node", "value"};
+
+	private long seed;
+	private int lines;
+	private int functions;
+	private int statements;
+	private int depth;
+	private int expressionLength;
+	private int comments;
+	private int locals;
+	private int strings;
+	private int globals;
+
+	private Random random;
+	private StringBuilder text;
+	private int lineCount;
+	private int indent;
+	private int names;
+	private int stringsLeft;
+	private int statementsLeft;
+	private HashMap<String, ArrayList<String>> scope;
+	private ArrayList<String> declared;
+	private ArrayList<String> functionNames;
+	private ArrayList<String[]> functionTypes;
+	private ArrayList<Long> functionCosts;
+	private long cost;
+	private long weight;
+
+	/**
+	* writes random BPL programs that type check, from a seed, so the same
+	* knobs always give the same program. each knob is one way a program
+	* can be big: how many lines (functions are added until there are
+	* that many), how many functions, the statements in each, how deep
+	* ifs, whiles and blocks nest, how many operators an expression has,
+	* how many lines each comment takes, and how many locals, string
+	* literals and globals there are. every loop stops, no function
+	* calls itself or a later one, and every var is given a value before
+	* it's read, so a program prints the same whatever the options it was
+	* compiled with. a function only calls another while the statements it
+	* runs, counting each loop as LOOP_BOUND times its body, stay under
+	* COST_BOUND, so the programs also finish quickly
+	*/
+	public BPLProgramGenerator() {
+		this.seed = 1;
+		this.lines = 1000;
+		this.functions = 0;
+		this.statements = 20;
+		this.depth = 3;
+		this.expressionLength = 4;
+		this.comments = 2;
+		this.locals = 4;
+		this.strings = 2;
+		this.globals = 10;
+	}
+
+	/**
+	* parses --<knob>=<n> flags, e.g. --seed=7 --lines=100000 --depth=50.
+	* --functions=<n> makes exactly n functions whatever --lines says
+	*/
+	public static BPLProgramGenerator parse(String[] args) throws BPLException {
+		BPLProgramGenerator generator = new BPLProgramGenerator();
+		for (String arg : args) {
+			int equals = arg.indexOf('=');
+			if (!arg.startsWith("--") || equals < 0) {
+				throw new BPLException("Unknown option " + arg);
+			}
+			long value;
+			try {
+				value = Long.parseLong(arg.substring(equals + 1));
+			} catch (NumberFormatException e) {
+				throw new BPLException("Bad number in " + arg);
+			}
+			generator.set(arg.substring(2, equals), value);
+		}
+		return generator;
+	}
+
+	/**
+	* sets the knob called name
+	*/
+	public BPLProgramGenerator set(String name, long value) throws BPLException {
+		if (value < 0 || (!name.equals("seed") && value > Integer.MAX_VALUE)) {
+			throw new BPLException("Bad value for " + name + ": " + value);
+		}
+		if (name.equals("seed")) {
+			this.seed = value;
+		} else if (name.equals("lines")) {
+			this.lines = (int) value;
+		} else if (name.equals("functions")) {
+			this.functions = (int) value;
+		} else if (name.equals("statements")) {
+			this.statements = (int) value;
+		} else if (name.equals("depth")) {
+			this.depth = (int) value;
+		} else if (name.equals("expression")) {
+			this.expressionLength = (int) value;
+		} else if (name.equals("comments")) {
+			this.comments = (int) value;
+		} else if (name.equals("locals")) {
+			this.locals = (int) value;
+		} else if (name.equals("strings")) {
+			this.strings = (int) value;
+		} else if (name.equals("globals")) {
+			this.globals = (int) value;
+		} else {
+			throw new BPLException("Unknown knob " + name);
+		}
+		return this;
+	}
+
+	/**
+	* @return the program the knobs and the seed give
+	*/
+	public String generate() {
+		this.random = new Random(this.seed);
+		this.text = new StringBuilder();
+		this.lineCount = 0;
+		this.indent = 0;
+		this.names = 0;
+		this.scope = new HashMap<String, ArrayList<String>>();
+		this.declared = new ArrayList<String>();
+		this.functionNames = new ArrayList<String>();
+		this.functionTypes = new ArrayList<String[]>();
+		this.functionCosts = new ArrayList<Long>();
+
+		this.comment("generated by BPLProgramGenerator from seed " + this.seed);
+		for (int i = 0; i < this.globals; i++) {
+			this.declare(this.pickKind(), "g", true);
+		}
+		this.line("");
+		while ((this.functions > 0) ? this.functionNames.size() < this.functions : (this.lineCount < this.lines || this.functionNames.isEmpty())) {
+			this.function();
+		}
+		this.main();
+		return this.text.toString();
+	}
+
+	/**
+	* @return a kind of variable: int, int[], int*, string, string[] or string*
+	*/
+	private String pickKind() {
+		int r = this.random.nextInt(20);
+		if (r < 9) {
+			return "int";
+		} else if (r < 12) {
+			return "int[]";
+		} else if (r < 14) {
+			return "int*";
+		} else if (r < 17) {
+			return "string";
+		} else if (r < 19) {
+			return "string[]";
+		}
+		return "string*";
+	}
+
+	/**
+	* writes a declaration of a new var of kind and puts it in scope. global
+	* pointers point nowhere, so they go in scope as "global int*" and are
+	* only ever assigned
+	*/
+	private String declare(String kind, String prefix, boolean global) {
+		String name = prefix + this.names++;
+		String base = kind.startsWith("int") ? "int" : "string";
+		if (kind.endsWith("[]")) {
+			this.line(base + " " + name + "[" + ARRAY_SIZE + "];");
+		} else if (kind.endsWith("*")) {
+			this.line(base + " *" + name + ";");
+		} else {
+			this.line(base + " " + name + ";");
+		}
+		if (global && kind.endsWith("*")) {
+			this.addToScope("global " + kind, name);
+		} else {
+			this.addToScope(kind, name);
+		}
+		return name;
+	}
+
+	private void addToScope(String kind, String name) {
+		ArrayList<String> vars = this.scope.get(kind);
+		if (vars == null) {
+			vars = new ArrayList<String>();
+			this.scope.put(kind, vars);
+		}
+		vars.add(name);
+		this.declared.add(kind);
+	}
+
+	/**
+	* takes the vars declared since the scope had mark vars out of it
+	*/
+	private void leaveScope(int mark) {
+		while (this.declared.size() > mark) {
+			ArrayList<String> vars = this.scope.get(this.declared.remove(this.declared.size() - 1));
+			vars.remove(vars.size() - 1);
+		}
+	}
+
+	/**
+	* @return a var of kind in scope, or null if there isn't one
+	*/
+	private String pick(String kind) {
+		ArrayList<String> vars = this.scope.get(kind);
+		if (vars == null || vars.isEmpty()) {
+			return null;
+		}
+		return vars.get(this.random.nextInt(vars.size()));
+	}
+
+	/**
+	* writes a function that only calls the ones before it
+	*/
+	private void function() {
+		String name = "f" + this.functionNames.size();
+		int r = this.random.nextInt(10);
+		String returnType = (r < 6) ? "int" : (r < 9) ? "void" : "string";
+		int paramCount = this.random.nextInt(4);
+		String[] types = new String[paramCount + 1];
+		types[0] = returnType;
+		int mark = this.declared.size();
+		StringBuilder params = new StringBuilder();
+		for (int i = 1; i <= paramCount; i++) {
+			int p = this.random.nextInt(10);
+			types[i] = (p < 5) ? "int" : (p < 7) ? "int[]" : (p < 8) ? "int*" : "string";
+			String param = "p" + this.names++;
+			params.append((i == 1) ? "" : ", ");
+			if (types[i].equals("int[]")) {
+				params.append("int ").append(param).append("[]");
+			} else if (types[i].equals("int*")) {
+				params.append("int *").append(param);
+			} else {
+				params.append(types[i]).append(" ").append(param);
+			}
+			this.addToScope(types[i], param);
+		}
+
+		this.comment("function " + name);
+		this.line(returnType + " " + name + "(" + ((paramCount == 0) ? "void" : params) + ") {");
+		this.indent++;
+		this.stringsLeft = this.strings;
+		this.statementsLeft = this.statements;
+		this.cost = 0;
+		this.weight = 1;
+		this.body(returnType);
+		this.indent--;
+		this.line("}");
+		this.line("");
+		this.leaveScope(mark);
+		this.functionNames.add(name);
+		this.functionTypes.add(types);
+		this.functionCosts.add(this.cost);
+	}
+
+	/**
+	* main gives the global strings values, since they start out as 0,
+	* then calls the last few functions, so none of the program is dead
+	*/
+	private void main() {
+		this.comment("main");
+		this.line("void main(void) {");
+		this.indent++;
+		this.stringsLeft = this.strings;
+		this.statementsLeft = 0;
+		this.cost = 0;
+		this.weight = 1;
+		ArrayList<String> strings = this.inScope("string");
+		ArrayList<String> stringArrays = this.inScope("string[]");
+		int mark = this.declared.size();
+		String counter = this.locals("int", "int[]", "int*", "string");
+		for (String name : strings) {
+			this.line(name + " = " + this.stringLiteral() + ";");
+		}
+		for (String name : stringArrays) {
+			this.fill(name, "string[]", counter);
+		}
+		for (int i = Math.max(0, this.functionNames.size() - 4); i < this.functionNames.size(); i++) {
+			this.line(this.call(i, 1) + ";");
+		}
+		this.leaveScope(mark);
+		this.indent--;
+		this.line("}");
+	}
+
+	private void body(String returnType) {
+		int mark = this.declared.size();
+		String[] kinds = new String[Math.max(1, this.locals)]; // the first is an int, so there's always one to assign
+		for (int i = 0; i < kinds.length; i++) {
+			kinds[i] = (i == 0) ? "int" : this.pickKind();
+		}
+		this.locals(kinds);
+		if (this.depth > 3) {
+			this.nest(this.depth);
+		}
+		while (this.statementsLeft > 0) {
+			this.statement(Math.min(this.depth, 3));
+		}
+		while (this.stringsLeft > 0) {
+			this.line("write(" + this.stringLiteral() + ");");
+		}
+		if (returnType.equals("int")) {
+			this.line("return " + this.intExpression(this.operators(), 2) + ";");
+		} else if (returnType.equals("string")) {
+			this.line("return " + this.stringExpression(2) + ";");
+		} else if (this.random.nextBoolean()) {
+			this.line("return;");
+		}
+		this.leaveScope(mark);
+	}
+
+	/**
+	* @return a copy of the vars of kind in scope
+	*/
+	private ArrayList<String> inScope(String kind) {
+		ArrayList<String> vars = this.scope.get(kind);
+		return (vars == null) ? new ArrayList<String>() : new ArrayList<String>(vars);
+	}
+
+	/**
+	* declares locals of each kind, then gives each a value, every element
+	* of an array included. pointers point at an int or string in scope,
+	* which is declared too if there isn't one
+	* @return the int the arrays were filled with, or null if there are none
+	*/
+	private String locals(String... kinds) {
+		ArrayList<String> kindsDeclared = new ArrayList<String>();
+		ArrayList<String> namesDeclared = new ArrayList<String>();
+		for (String kind : kinds) {
+			kindsDeclared.add(kind);
+			namesDeclared.add(this.declare(kind, "v", false));
+		}
+		for (String kind : kinds) {
+			String base = kind.substring(0, kind.length() - 1);
+			if (kind.endsWith("*") && this.pick(base) == null) {
+				kindsDeclared.add(base);
+				namesDeclared.add(this.declare(base, "v", false));
+			}
+		}
+		String counter = null;
+		if (kindsDeclared.contains("int[]") || kindsDeclared.contains("string[]")) {
+			counter = this.declare("int", "v", false);
+		}
+		for (int i = 0; i < kindsDeclared.size(); i++) {
+			String kind = kindsDeclared.get(i);
+			String name = namesDeclared.get(i);
+			if (kind.equals("int")) {
+				this.line(name + " = " + this.random.nextInt(100) + ";");
+			} else if (kind.equals("string")) {
+				this.line(name + " = " + this.stringLiteral() + ";");
+			} else if (kind.endsWith("[]")) {
+				this.fill(name, kind, counter);
+			} else {
+				this.line(name + " = &" + this.pick(kind.substring(0, kind.length() - 1)) + ";");
+			}
+		}
+		return counter;
+	}
+
+	/**
+	* gives every element of the array name a value, in a loop on counter
+	*/
+	private void fill(String name, String kind, String counter) {
+		this.line(counter + " = 0;");
+		this.line("while (" + counter + " < " + ARRAY_SIZE + ") {");
+		this.indent++;
+		if (kind.equals("int[]")) {
+			this.line(name + "[" + counter + "] = " + counter + " * " + (1 + this.random.nextInt(9)) + " + " + this.random.nextInt(100) + ";");
+		} else {
+			this.line(name + "[" + counter + "] = " + this.stringLiteral() + ";");
+		}
+		this.line(counter + " = " + counter + " + 1;");
+		this.indent--;
+		this.line("}");
+	}
+
+	/**
+	* writes ifs, whiles and blocks inside each other, levels deep
+	*/
+	private void nest(int levels) {
+		ArrayList<Integer> marks = new ArrayList<Integer>();
+		ArrayList<Integer> closes = new ArrayList<Integer>();
+		long weight = this.weight;
+		for (int i = 0; i < levels; i++) {
+			this.statementsLeft--;
+			this.cost += this.weight;
+			marks.add(this.declared.size());
+			int r = this.random.nextInt(3);
+			if (r == 0) {
+				this.line("if (" + this.condition() + ") {");
+				this.indent++;
+				closes.add(1);
+			} else if (r == 1) {
+				this.line("{");
+				this.indent++;
+				String counter = this.counter();
+				this.loop(counter);
+				this.line(counter + " = " + counter + " + 1;");
+				closes.add(2);
+			} else {
+				this.line("{");
+				this.indent++;
+				String value = this.intExpression(this.operators(), 1); // before the local is in scope to be read
+				String local = this.declare("int", "v", false);
+				this.line(local + " = " + value + ";");
+				closes.add(1);
+			}
+		}
+		this.statement(0);
+		for (int i = levels - 1; i >= 0; i--) {
+			for (int j = 0; j < closes.get(i); j++) {
+				this.indent--;
+				this.line("}");
+			}
+			this.leaveScope(marks.get(i));
+		}
+		this.weight = weight;
+	}
+
+	/**
+	* opens a while on counter that goes round LOOP_BOUND times, or once if
+	* the statements in it would run more than COST_BOUND times
+	*/
+	private void loop(String counter) {
+		int bound = (this.weight * LOOP_BOUND > COST_BOUND) ? 1 : LOOP_BOUND;
+		this.line("while (" + counter + " < " + bound + ") {");
+		this.indent++;
+		this.weight *= bound;
+	}
+
+	/**
+	* declares a loop counter set to 0, which nothing else assigns
+	*/
+	private String counter() {
+		String counter = "c" + this.names++;
+		this.line("int " + counter + ";");
+		this.line(counter + " = 0;");
+		this.addToScope("counter", counter);
+		return counter;
+	}
+
+	/**
+	* writes a statement with ifs, whiles and blocks at most levels deep
+	*/
+	private void statement(int levels) {
+		this.statementsLeft--;
+		this.cost += this.weight;
+		int r = this.random.nextInt((levels > 0) ? 14 : 10);
+		if (r < 4) {
+			this.intAssignment();
+		} else if (r < 5) {
+			this.stringAssignment();
+		} else if (r < 7) {
+			int w = this.random.nextInt(5);
+			if (w == 0) {
+				this.line("writeln();");
+			} else if (w == 1) {
+				this.line("write(" + this.stringExpression(1) + ");");
+			} else {
+				this.line("write(" + this.intExpression(this.operators(), 1) + ");");
+			}
+		} else if (r < 9) {
+			int function = this.pickFunction(null);
+			String call = (function < 0) ? null : this.call(function, 1);
+			if (call == null) {
+				this.intAssignment();
+			} else {
+				this.line(call + ";");
+			}
+		} else if (r < 10) {
+			this.line(";");
+		} else if (r < 12) {
+			this.line("if (" + this.condition() + ")");
+			this.block(levels - 1);
+			if (this.random.nextBoolean()) {
+				this.line("else");
+				this.block(levels - 1);
+			}
+		} else if (r < 13) {
+			int mark = this.declared.size();
+			long weight = this.weight;
+			this.line("{");
+			this.indent++;
+			String counter = this.counter();
+			this.loop(counter);
+			this.statements(levels - 1);
+			this.line(counter + " = " + counter + " + 1;");
+			this.weight = weight;
+			this.indent--;
+			this.line("}");
+			this.indent--;
+			this.line("}");
+			this.leaveScope(mark);
+		} else {
+			this.block(levels - 1);
+		}
+	}
+
+	/**
+	* writes a block, with a local of its own half the time
+	*/
+	private void block(int levels) {
+		int mark = this.declared.size();
+		this.line("{");
+		this.indent++;
+		if (this.random.nextBoolean()) {
+			String value = this.intExpression(this.operators(), 1); // before the local is in scope to be read
+			String local = this.declare("int", "v", false);
+			this.line(local + " = " + value + ";");
+		}
+		this.statements(levels);
+		this.indent--;
+		this.line("}");
+		this.leaveScope(mark);
+	}
+
+	/**
+	* writes one to three statements, as the function's budget allows
+	*/
+	private void statements(int levels) {
+		int count = 1 + this.random.nextInt(3);
+		for (int i = 0; i < count && (i == 0 || this.statementsLeft > 0); i++) {
+			this.statement(levels);
+		}
+	}
+
+	private void intAssignment() {
+		String target = this.intTarget();
+		int r = this.random.nextInt(10);
+		String global = this.scope.get("int").get(0);
+		if (r == 0) { // a chain of assignments
+			this.line(target + " = " + this.intTarget() + " = " + this.intExpression(this.operators(), 1) + ";");
+		} else if (r == 1 && this.pick("global int*") != null && global.startsWith("g")) {
+			this.line(this.pick("global int*") + " = &" + global + ";");
+		} else {
+			this.line(target + " = " + this.intExpression(this.operators(), 1) + ";");
+		}
+	}
+
+	/**
+	* @return an int var, array element or dereferenced pointer to assign
+	*/
+	private String intTarget() {
+		int r = this.random.nextInt(6);
+		if (r == 0 && this.pick("int[]") != null) {
+			return this.pick("int[]") + "[" + this.index() + "]";
+		} else if (r == 1 && this.pick("int*") != null) {
+			return "*" + this.pick("int*");
+		}
+		return this.pick("int");
+	}
+
+	private void stringAssignment() {
+		int r = this.random.nextInt(4);
+		String target;
+		if (r == 0 && this.pick("string[]") != null) {
+			target = this.pick("string[]") + "[" + this.index() + "]";
+		} else if (r == 1 && this.pick("string*") != null) {
+			target = "*" + this.pick("string*");
+		} else if (this.pick("string") != null) {
+			target = this.pick("string");
+		} else {
+			this.intAssignment();
+			return;
+		}
+		this.line(target + " = " + this.stringExpression(1) + ";");
+	}
+
+	/**
+	* @return an index of an array, in range
+	*/
+	private String index() {
+		String counter = this.pick("counter");
+		if (counter != null && this.random.nextBoolean()) {
+			return counter; // counters stay below LOOP_BOUND
+		}
+		return String.valueOf(this.random.nextInt(ARRAY_SIZE));
+	}
+
+	private String condition() {
+		return this.intExpression(this.random.nextInt(3), 1) + " " + RELOPS[this.random.nextInt(RELOPS.length)] + " " + this.intExpression(this.random.nextInt(3), 1);
+	}
+
+	/**
+	* @return how many operators an expression gets: most are short, and
+	* one in ten is as long as the knob says
+	*/
+	private int operators() {
+		if (this.expressionLength > 4 && this.random.nextInt(10) == 0) {
+			return this.expressionLength;
+		}
+		return this.random.nextInt(Math.min(this.expressionLength, 4) + 1);
+	}
+
+	/**
+	* @return an int expression with operators operators, wrapped onto new
+	* lines so no line gets too long. calls and parentheses go at most
+	* nesting deep
+	*/
+	private String intExpression(int operators, int nesting) {
+		StringBuilder expression = new StringBuilder(this.intFactor(nesting));
+		for (int i = 0; i < operators; i++) {
+			if (i > 0 && i % OPERATORS_PER_LINE == 0) {
+				expression.append('\n');
+				this.lineCount++;
+				for (int j = 0; j <= this.indent; j++) {
+					expression.append('\t');
+				}
+			}
+			int r = this.random.nextInt(10);
+			if (r < 4) {
+				expression.append(" + ").append(this.intFactor(nesting));
+			} else if (r < 7) {
+				expression.append(" - ").append(this.intFactor(nesting));
+			} else if (r < 8) {
+				expression.append(" * ").append(this.intFactor(nesting));
+			} else if (r < 9) {
+				expression.append(" / ").append(1 + this.random.nextInt(9)); // never by 0
+			} else {
+				expression.append(" % ").append(1 + this.random.nextInt(9));
+			}
+		}
+		return expression.toString();
+	}
+
+	private String intFactor(int nesting) {
+		int r = this.random.nextInt(20);
+		if (r < 4 || this.pick("int") == null) {
+			return String.valueOf(this.random.nextInt(1000));
+		} else if (r < 9) {
+			return this.pick("int");
+		} else if (r < 10 && this.pick("counter") != null) {
+			return this.pick("counter");
+		} else if (r < 12 && this.pick("int[]") != null) {
+			return this.pick("int[]") + "[" + this.index() + "]";
+		} else if (r < 13 && this.pick("int*") != null) {
+			return "*" + this.pick("int*");
+		} else if (r < 14) {
+			return "-" + this.intFactor(0);
+		} else if (r < 15 && nesting > 0) {
+			return "(" + this.intExpression(1 + this.random.nextInt(3), nesting - 1) + ")";
+		} else if (r < 17 && nesting > 0) {
+			int function = this.pickFunction("int");
+			String call = (function < 0) ? null : this.call(function, nesting - 1);
+			if (call != null) {
+				return call;
+			}
+		} else if (r < 18) {
+			return "read()";
+		}
+		return this.pick("int");
+	}
+
+	private String stringExpression(int nesting) {
+		int r = this.random.nextInt(6);
+		if (r == 0 && this.pick("string") != null) {
+			return this.pick("string");
+		} else if (r == 1 && this.pick("string*") != null) {
+			return "*" + this.pick("string*");
+		} else if (r == 2 && nesting > 0) {
+			int function = this.pickFunction("string");
+			String call = (function < 0) ? null : this.call(function, nesting - 1);
+			if (call != null) {
+				return call;
+			}
+		}
+		return this.stringLiteral();
+	}
+
+	private String stringLiteral() {
+		this.stringsLeft--;
+		StringBuilder literal = new StringBuilder("\"");
+		int words = 1 + this.random.nextInt(4);
+		for (int i = 0; i < words; i++) {
+			literal.append((i == 0) ? "" : " ").append(WORDS[this.random.nextInt(WORDS.length)]);
+		}
+		return literal.append(" ").append(this.names++).append("\"").toString();
+	}
+
+	/**
+	* @return one of the functions so far that returns returnType, or any
+	* of them if returnType is null, or -1 if there aren't any. its cost is
+	* added to the function being written, which it can't take past
+	* COST_BOUND
+	*/
+	private int pickFunction(String returnType) {
+		if (this.functionNames.isEmpty()) {
+			return -1;
+		}
+		for (int tries = 0; tries < 4; tries++) {
+			// mostly the last few, so calls don't all go to the first functions
+			int bound = Math.min(this.functionNames.size(), 8);
+			int function = this.functionNames.size() - 1 - this.random.nextInt(bound);
+			long cost = this.cost + this.weight * this.functionCosts.get(function);
+			if ((returnType == null || this.functionTypes.get(function)[0].equals(returnType)) && cost <= COST_BOUND) {
+				this.cost = cost;
+				return function;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	* @return a call of function with args of the right types, or null if
+	* there's no array or pointer in scope to pass it
+	*/
+	private String call(int function, int nesting) {
+		String[] types = this.functionTypes.get(function);
+		StringBuilder call = new StringBuilder(this.functionNames.get(function)).append("(");
+		for (int i = 1; i < types.length; i++) {
+			call.append((i == 1) ? "" : ", ");
+			String arg;
+			if (types[i].equals("int")) {
+				arg = this.intExpression(this.random.nextInt(3), nesting);
+			} else if (types[i].equals("string")) {
+				arg = this.stringExpression(nesting);
+			} else {
+				arg = this.pick(types[i]);
+			}
+			if (arg == null) {
+				return null;
+			}
+			call.append(arg);
+		}
+		return call.append(")").toString();
+	}
+
+	private void comment(String title) {
+		if (this.comments == 0) {
+			return;
+		}
+		this.line("/* " + title);
+		for (int i = 1; i < this.comments; i++) {
+			StringBuilder words = new StringBuilder(" *");
+			int count = 4 + this.random.nextInt(8);
+			for (int j = 0; j < count; j++) {
+				words.append(' ').append(WORDS[this.random.nextInt(WORDS.length)]);
+			}
+			this.line(words.toString());
+		}
+		this.line(" */");
+	}
+
+	private void line(String line) {
+		for (int i = 0; i < this.indent; i++) {
+			this.text.append('\t');
+		}
+		this.text.append(line).append('\n');
+		this.lineCount++;
+	}
+
+	/**
+	* prints the program the knobs give, e.g.
+	* java bench.BPLProgramGenerator --seed=3 --lines=50000 --locals=40
+	*/
+	public static void main(String[] args) throws BPLException {
+		System.out.print(parse(args).generate());
+	}
+}
@@ -0,0 +1,153 @@
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import Compiler.*;
+
+public class BPLBackendsTest {
+	private static final String UNASSIGNED_STRINGS = "string g;\nstring a[3];\n\n"
+		+ "void main(void) {\n\twrite(g);\n\twrite(a[1]);\n\twriteln();\n}\n";
+	// f adds its arg to the trace, so the trace shows the order operands, args
+	// and assignments are evaluated in: the right operand first except in a
+	// comparison, the last arg first, and a stored value before where it goes
+	private static final String ORDER = "int trace;\nint a[4];\nint *p;\n\n"
+		+ "int f(int n) {\n\ttrace = trace * 10 + n;\n\treturn n;\n}\n\n"
+		+ "int g(int x, int y, int z) {\n\treturn x * 100 + y * 10 + z;\n}\n\n"
+		+ "int h(void) {\n\tp = &a[3];\n\treturn 7;\n}\n\n"
+		+ "void main(void) {\n"
+		+ "\twrite(read() - read());\n\twriteln();\n"
+		+ "\ttrace = 0;\n\twrite(f(1) - f(2) * f(3));\n\twrite(\" \");\n\twrite(trace);\n\twriteln();\n"
+		+ "\ttrace = 0;\n\twrite(g(f(1), f(2), f(3)));\n\twrite(\" \");\n\twrite(trace);\n\twriteln();\n"
+		+ "\ttrace = 0;\n\ta[f(1)] = f(2);\n\twrite(trace);\n\twriteln();\n"
+		+ "\ttrace = 0;\n\twrite(f(1) < f(2));\n\twrite(\" \");\n\twrite(trace);\n\twriteln();\n"
+		+ "\ttrace = 5;\n\twrite(trace + f(1));\n\twrite(\" \");\n\twrite(f(2) + trace);\n\twriteln();\n"
+		+ "\tp = &a[0];\n\t*p = h();\n\twrite(a[0]);\n\twrite(a[3]);\n\twriteln();\n"
+		+ "}\n";
+	private static final String ORDER_INPUT = "10 3\n";
+	// what the native backend prints, which the backends run in Java are checked against without gcc
+	private static final String ORDER_OUTPUT = "-7\n-5 321\n123 321\n21\n1 12\n52 53\n07\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File write(String source) throws IOException {
+		File file = this.folder.newFile("program.bpl");
+		Files.write(file.toPath(), source.getBytes("UTF-8"));
+		return file;
+	}
+
+	static String runJVM(File file, String input) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BPLJVMRuntime.run(new BPLJVMGenerator(file.getPath()).load(), new ByteArrayInputStream(input.getBytes("UTF-8")), out);
+		return out.toString("UTF-8");
+	}
+
+	static String runVM(File file, String input) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BPLVM.run(new BPLVMGenerator(file.getPath(), new BPLOptions()).getProgram(), new ByteArrayInputStream(input.getBytes("UTF-8")), out);
+		return out.toString("UTF-8");
+	}
+
+	/**
+	* assembles the native backend's output with gcc, which the test is
+	* skipped without. the other tests run native code with this too
+	*/
+	static String runNative(TemporaryFolder folder, String source, String input, String... flags) throws Exception {
+		File directory = folder.newFolder();
+		File assembly = new File(directory, "program.s");
+		BPLCompilation compilation = new BPLCompiler(BPLOptions.parse(flags)).compile(source);
+		assertTrue(compilation.getDiagnostics().toString(), compilation.succeeded());
+		Files.write(assembly.toPath(), compilation.getAssembly().getBytes("UTF-8"));
+		return build(directory, input, "-no-pie", "-z", "noexecstack", assembly.getPath());
+	}
+
+	private String runNative(String source, String input, String... flags) throws Exception {
+		return runNative(this.folder, source, input, flags);
+	}
+
+	/**
+	* compiles the C backend's output with gcc -O2, which the test is skipped without
+	*/
+	static String runC(TemporaryFolder folder, File file, String input) throws Exception {
+		File directory = folder.newFolder();
+		File c = new File(directory, "program.c");
+		PrintStream stdout = System.out;
+		PrintStream out = new PrintStream(new FileOutputStream(c), false, "UTF-8");
+		System.setOut(out);
+		try {
+			new BPLCGenerator(file.getPath(), new BPLOptions());
+		} finally {
+			System.setOut(stdout);
+			out.close();
+		}
+		return build(directory, input, "-O2", "-fwrapv", c.getPath());
+	}
+
+	private String runC(File file, String input) throws Exception {
+		return runC(this.folder, file, input);
+	}
+
+	/**
+	* builds a program in directory with gcc and gccArgs, then runs it with input on stdin
+	*/
+	private static String build(File directory, String input, String... gccArgs) throws Exception {
+		File program = new File(directory, "program");
+		ArrayList<String> command = new ArrayList<String>(Arrays.asList("gcc", "-o", program.getPath()));
+		command.addAll(Arrays.asList(gccArgs));
+		Process gcc;
+		try {
+			gcc = new ProcessBuilder(command).inheritIO().start();
+		} catch (IOException e) {
+			assumeNoException(e);
+			return null;
+		}
+		assertEquals(0, gcc.waitFor());
+		File in = new File(directory, "input");
+		Files.write(in.toPath(), input.getBytes("UTF-8"));
+		Process run = new ProcessBuilder(program.getPath()).redirectInput(in).start();
+		String output = new String(run.getInputStream().readAllBytes(), "UTF-8");
+		run.waitFor();
+		return output;
+	}
+
+	@Test
+	public void unassignedStringsWriteNullOnTheJVM() throws Exception {
+		assertEquals("(null)(null)\n", runJVM(this.write(UNASSIGNED_STRINGS), ""));
+	}
+
+	@Test
+	public void unassignedStringsWriteNullOnTheVM() throws Exception {
+		assertEquals("(null)(null)\n", runVM(this.write(UNASSIGNED_STRINGS), ""));
+	}
+
+	@Test
+	public void unassignedStringsWriteNullNatively() throws Exception {
+		assertEquals("(null)(null)\n", this.runNative(UNASSIGNED_STRINGS, ""));
+	}
+
+	@Test
+	public void sideEffectsHappenInOrderNatively() throws Exception {
+		assertEquals(ORDER_OUTPUT, this.runNative(ORDER, ORDER_INPUT));
+	}
+
+	@Test
+	public void sideEffectsHappenInTheNativeOrderInC() throws Exception {
+		assertEquals(this.runNative(ORDER, ORDER_INPUT), this.runC(this.write(ORDER), ORDER_INPUT));
+	}
+
+	@Test
+	public void sideEffectsHappenInTheNativeOrderOnTheJVM() throws Exception {
+		assertEquals(ORDER_OUTPUT, runJVM(this.write(ORDER), ORDER_INPUT));
+	}
+
+	@Test
+	public void sideEffectsHappenInTheNativeOrderOnTheVM() throws Exception {
+		assertEquals(ORDER_OUTPUT, runVM(this.write(ORDER), ORDER_INPUT));
+	}
+}
@@ -0,0 +1,37 @@
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import Compiler.*;
+
+public class BPLBuildCacheTest {
+	private static final byte[] SOURCE = "void main(void) {\n\twrite(1);\n}\n".getBytes();
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void onlyStaleTemporaryFilesAreRemoved() throws Exception {
+		File writing = this.folder.newFile("being-written.tmp");
+		File stale = this.folder.newFile("left-behind.tmp");
+		stale.setLastModified(System.currentTimeMillis() - 2 * BPLBuildCache.STALE_TEMP_MILLIS);
+		new BPLBuildCache(this.folder.getRoot(), BPLBuildCache.DEFAULT_MAX_BYTES);
+		assertTrue(writing.exists());
+		assertFalse(stale.exists());
+	}
+
+	@Test
+	public void findsAnEntryAnotherCacheAdded() throws Exception {
+		BPLBuildCache first = new BPLBuildCache(this.folder.getRoot(), BPLBuildCache.DEFAULT_MAX_BYTES);
+		BPLBuildCache second = new BPLBuildCache(this.folder.getRoot(), BPLBuildCache.DEFAULT_MAX_BYTES);
+		BPLCompiler compiler = new BPLCompiler(new BPLOptions());
+		BPLCompilation compilation = first.compile(compiler, SOURCE);
+		assertEquals(compilation.getAssembly(), second.compile(compiler, SOURCE).getAssembly());
+		assertEquals(1, second.getHits());
+		assertEquals(0, second.getMisses());
+		assertEquals(new File(this.folder.getRoot(), second.getKey(SOURCE, compiler.getOptions())).length(), second.getSize());
+	}
+}
@@ -0,0 +1,223 @@
+import static org.junit.Assert.*;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import Compiler.*;
+
+public class BPLCompilerTest {
+	private static final String ADDRESS_OF_CONSTANT = "void main(void) {\n\tint *p;\n\tp = &5;\n}\n";
+	// on 2147483647 the 64 bit adds leave 0x100000000 in rax, but the int j is 0
+	private static final String OVERFLOWING_INDEX = "void main(void) {\n\tint a[10];\n\tint i;\n\tint j;\n"
+		+ "\ti = read();\n\tj = i + i + 2;\n\ta[j] = 1;\n\twrite(a[0]);\n\twriteln();\n}\n";
+	// sum, max3, note and squares make no calls, with and without inlining
+	private static final String LEAF_FUNCTIONS = "int total;\nstring names[3];\n\n"
+		+ "int sum(int a[], int n) {\n\tint i;\n\tint s;\n\ts = 0;\n\ti = 0;\n\twhile (i < n) {\n"
+		+ "\t\ts = s + a[i];\n\t\ti = i + 1;\n\t}\n\treturn s;\n}\n\n"
+		+ "int max3(int x, int y, int z) {\n\tint m;\n\tm = x;\n\tif (m < y) m = y;\n\tif (m < z) m = z;\n"
+		+ "\treturn m;\n}\n\n"
+		+ "void note(string s, int n) {\n\ttotal = total + n;\n\twrite(s);\n\twrite(n);\n\twriteln();\n}\n\n"
+		+ "int squares(int n) {\n\tint b[8];\n\tint i;\n\ti = 0;\n\twhile (i < 8) {\n\t\tb[i] = i * n;\n"
+		+ "\t\ti = i + 1;\n\t}\n\treturn b[7] - b[3];\n}\n\n"
+		+ "int sum2(int n) {\n\treturn n + n;\n}\n\n"
+		+ "int nested(int n) {\n\tnote(names[n % 3], max3(n, sum2(n), squares(n)));\n\treturn total;\n}\n\n"
+		+ "void main(void) {\n\tint a[4];\n\ta[0] = 3;\n\ta[1] = -4;\n\ta[2] = 10;\n\ta[3] = read();\n"
+		+ "\tnames[0] = \"zero \";\n\tnames[1] = \"one \";\n\tnames[2] = \"two \";\n\ttotal = 0;\n"
+		+ "\twrite(sum(a, 4));\n\twrite(max3(a[0], a[1], a[2]));\n\twrite(squares(a[3]));\n\twriteln();\n"
+		+ "\twrite(nested(a[3]) + nested(sum(a, 3)));\n\twriteln();\n}\n";
+
+	// depth's call and ackermann's inner one are inside expressions, gcd swaps
+	// its params, and chain passes a pointer into its own frame
+	private static final String TAIL_CALLS = "int count(int n, int acc) {\n\tif (n == 0) return acc;\n\treturn count(n - 1, acc + n);\n}\n\n"
+		+ "int depth(int n) {\n\tif (n == 0) return 0;\n\treturn depth(n - 1) + 1;\n}\n\n"
+		+ "int collatz(int n, int steps) {\n\tif (n == 1) return steps;\n"
+		+ "\tif (n % 2 == 0) return collatz(n / 2, steps + 1);\n\treturn collatz(3 * n + 1, steps + 1);\n}\n\n"
+		+ "int ackermann(int m, int n) {\n\tif (m == 0) return n + 1;\n"
+		+ "\tif (n == 0) return ackermann(m - 1, 1);\n\treturn ackermann(m - 1, ackermann(m, n - 1));\n}\n\n"
+		+ "int gcd(int a, int b) {\n\tif (b == 0) return a;\n\treturn gcd(b, a % b);\n}\n\n"
+		+ "int chain(int *p, int n) {\n\tint x;\n\tint *q;\n\tx = *p + n;\n\tq = &x;\n\tif (n == 0) return x;\n"
+		+ "\treturn chain(q, n - 1);\n}\n\n"
+		+ "void countdown(int n) {\n\tif (n == 0) return;\n\twrite(n);\n\tcountdown(n - 1);\n}\n\n"
+		+ "string pick(string s, string t, int n) {\n\tif (n == 0) return s;\n\treturn pick(t, s, n - 1);\n"
+		+ "}\n\n"
+		+ "void main(void) {\n\tint v;\n\tint *p;\n\tv = read();\n\tp = &v;\n\twrite(count(50000, 0));\n"
+		+ "\twriteln();\n\twrite(depth(1000));\n\twrite(collatz(27, 0));\n\twriteln();\n"
+		+ "\twrite(ackermann(2, 3));\n\twrite(\" \");\n\twrite(gcd(1071, 462));\n\twrite(\" \");\n"
+		+ "\twrite(chain(p, 3));\n\twriteln();\n\tcountdown(3);\n\twrite(pick(\"a\", \"b\", 3));\n"
+		+ "\twriteln();\n}\n";
+
+	// bump assigns its param, fact and fib are recursive so only calls to them
+	// are inlined, swapFirst writes the caller's array and nest inlines calls
+	// inside inlined calls
+	private static final String INLINING = "int calls;\nint a[5];\n\n"
+		+ "int square(int x) {\n\treturn x * x;\n}\n\n"
+		+ "int bump(int x) {\n\tx = x + 1;\n\tcalls = calls + 1;\n\treturn x;\n}\n\n"
+		+ "int fact(int n) {\n\tif (n <= 1) return 1;\n\treturn n * fact(n - 1);\n}\n\n"
+		+ "int factPlus(int n) {\n\treturn fact(n) + 1;\n}\n\n"
+		+ "int fib(int n) {\n\tif (n < 2) return n;\n\treturn fib(n - 1) + fib(n - 2);\n}\n\n"
+		+ "int swapFirst(int b[], int i) {\n\tint t;\n\tt = b[0];\n\tb[0] = b[i];\n\tb[i] = t;\n\treturn t;\n"
+		+ "}\n\n"
+		+ "int nest(int x) {\n\treturn square(bump(x)) + square(x);\n}\n\n"
+		+ "string sign(int n) {\n\tif (n > 0) return \"pos \";\n\treturn \"neg \";\n}\n\n"
+		+ "void main(void) {\n\tint i;\n\tint *p;\n\ti = read();\n\twrite(square(i) + square(3));\n"
+		+ "\twrite(\" \");\n\twrite(bump(i));\n\twrite(\" \");\n\twrite(i);\n\twriteln();\n\twrite(fact(6));\n"
+		+ "\twrite(\" \");\n\twrite(factPlus(5));\n\twrite(\" \");\n\twrite(fib(15));\n\twriteln();\n"
+		+ "\twhile (calls < 4) {\n\t\ta[calls] = bump(calls) * 10;\n\t}\n\twrite(swapFirst(a, 3));\n"
+		+ "\twrite(a[0]);\n\twrite(a[3]);\n\twriteln();\n\twrite(nest(i));\n\twrite(\" \");\n"
+		+ "\twrite(nest(bump(2)));\n\twrite(\" \");\n\twrite(calls);\n\twriteln();\n\twrite(sign(i - 10));\n"
+		+ "\twrite(sign(i));\n\tp = &i;\n\twrite(bump(*p) + square(*p));\n\twriteln();\n}\n";
+
+	// keep has more locals live across its calls than there are callee saved
+	// registers, clobber uses enough of its own to save them, and addressed
+	// takes the address of a local
+	private static final String REGISTER_PRESSURE = "int g;\n\n"
+		+ "int mix(int a, int b, int c, int d, int e, int f) {\n\treturn a - b + c * d - e + f;\n}\n\n"
+		+ "int clobber(int n) {\n\tint a;\n\tint b;\n\tint c;\n\tint d;\n\tint e;\n\tint f;\n\tint h;\n"
+		+ "\ta = n + 1;\n\tb = a * 2;\n\tc = b - 3;\n\td = c * c;\n\te = d % 7;\n\tf = e + a;\n\th = f * b;\n"
+		+ "\tg = g + 1;\n\treturn a + b + c + d + e + f + h;\n}\n\n"
+		+ "int keep(int n) {\n\tint a;\n\tint b;\n\tint c;\n\tint d;\n\tint e;\n\tint f;\n\tint h;\n\tint i;\n"
+		+ "\tint j;\n\ta = n;\n\tb = n + 1;\n\tc = n + 2;\n\td = n + 3;\n\te = n + 4;\n\tf = n + 5;\n"
+		+ "\th = n + 6;\n\ti = n + 7;\n\tj = n + 8;\n\ta = a + clobber(a);\n\tb = b + clobber(b) - a;\n"
+		+ "\tc = c + clobber(c) - b;\n\tj = j + clobber(j);\n"
+		+ "\treturn a + b + c + d + e + f + h + i + j + mix(a, b, c, d, e, f) * mix(f, e, d, c, b, a);\n}\n\n"
+		+ "int rec(int n) {\n\tint x;\n\tint y;\n\tif (n == 0) return 1;\n\tx = n * 3;\n\ty = rec(n - 1);\n"
+		+ "\treturn x + y + n;\n}\n\n"
+		+ "int addressed(int n) {\n\tint x;\n\tint y;\n\tint *p;\n\tx = n;\n\ty = n * 2;\n\tp = &x;\n"
+		+ "\t*p = *p + y;\n\ty = clobber(x);\n\treturn x + y + *p;\n}\n\n"
+		+ "void main(void) {\n\tint i;\n\tint s;\n\ti = read();\n\ts = 0;\n\twhile (i > 0) {\n"
+		+ "\t\ts = s + keep(i);\n\t\ti = i - 1;\n\t}\n\twrite(s);\n\twriteln();\n\twrite(rec(10));\n"
+		+ "\twrite(\" \");\n\twrite(addressed(3));\n\twrite(\" \");\n\twrite(g);\n\twriteln();\n}\n";
+
+	// branches has constants merging at ifs and a loop, redundant repeats an
+	// expression before and after a param changes, and aliases stores through
+	// a pointer between two reads of the element
+	private static final String SSA_OPTIMIZATIONS = "int g;\nint a[4];\n\n"
+		+ "int branches(int n) {\n\tint x;\n\tint y;\n\tint z;\n\tx = 4;\n\ty = x * 3;\n"
+		+ "\tif (n > 0) z = y + 1;\n\telse z = y - 1;\n\tif (x == 4) y = 7;\n\telse y = n;\n"
+		+ "\twhile (x < 10) x = x + y;\n\treturn x * 100 + y * 10 + z;\n}\n\n"
+		+ "int redundant(int p, int q) {\n\tint s;\n\tint t;\n\tint u;\n\ts = p * q + p;\n\tt = p * q + p;\n"
+		+ "\tp = p + 1;\n\tu = p * q + p;\n\treturn s * 10000 + t * 100 + u;\n}\n\n"
+		+ "int aliases(int i) {\n\tint x;\n\tint *p;\n\tx = a[i] + 1;\n\tp = &a[i];\n\t*p = 100;\n"
+		+ "\tx = x + a[i];\n\tg = 5;\n\tx = x + g;\n\ta[i] = g + a[i];\n\treturn x + g * a[i];\n}\n\n"
+		+ "int reads(void) {\n\treturn read() - read();\n}\n\n"
+		+ "int dead(int n) {\n\tint x;\n\tx = 0;\n\tif (x) x = n / x;\n\twhile (x > 0) x = x - 1;\n"
+		+ "\treturn x + n;\n}\n\n"
+		+ "void main(void) {\n\tint i;\n\tint c;\n\ti = read();\n\tc = 3;\n\twrite(branches(i));\n"
+		+ "\twrite(\" \");\n\twrite(branches(-i));\n\twriteln();\n\twrite(redundant(i, c));\n\twrite(\" \");\n"
+		+ "\twrite(redundant(c, c + 0));\n\twriteln();\n\ta[2] = 7;\n\twrite(aliases(2));\n\twrite(\" \");\n"
+		+ "\twrite(a[2]);\n\twrite(\" \");\n\twrite(reads());\n\twrite(\" \");\n\twrite(dead(c));\n"
+		+ "\twriteln();\n\twrite(2147483647 + c - c);\n\twrite(\" \");\n\twrite(c * c - 9 + i * 0);\n"
+		+ "\twriteln();\n}\n";
+
+	// neverRuns and guarded would divide by zero if their divisions ran
+	// before the loop, throughPointer and stores change what looks invariant
+	// through a pointer or an element, and nested has invariants of each loop
+	private static final String LOOP_INVARIANTS = "int g;\nint a[8];\n\n"
+		+ "int invariant(int n, int m) {\n\tint i;\n\tint s;\n\ti = 0;\n\ts = 0;\n\twhile (i < n) {\n"
+		+ "\t\ts = s + m * m + a[m % 8];\n\t\ti = i + 1;\n\t}\n\treturn s;\n}\n\n"
+		+ "int neverRuns(int n, int z) {\n\tint i;\n\tint s;\n\ti = 0;\n\ts = n;\n\twhile (i < n) {\n"
+		+ "\t\ts = s + 100 / z;\n\t\ti = i + 1;\n\t}\n\treturn s;\n}\n\n"
+		+ "int guarded(int n, int z) {\n\tint i;\n\tint s;\n\ti = 0;\n\ts = 0;\n\twhile (i < n) {\n"
+		+ "\t\tif (z != 0) s = s + 1000 / z;\n\t\telse s = s + i;\n\t\ti = i + 1;\n\t}\n\treturn s;\n}\n\n"
+		+ "int throughPointer(int n) {\n\tint i;\n\tint k;\n\tint s;\n\tint *p;\n\ti = 0;\n\tk = 3;\n\ts = 0;\n"
+		+ "\tp = &k;\n\twhile (i < n) {\n\t\ts = s + k * 2;\n\t\t*p = *p + 1;\n\t\ti = i + 1;\n\t}\n"
+		+ "\treturn s;\n}\n\n"
+		+ "int stores(int n) {\n\tint i;\n\tint s;\n\ti = 0;\n\ts = 0;\n\twhile (i < n) {\n"
+		+ "\t\ts = s + a[1] * 10;\n\t\ta[1] = a[1] + i;\n\t\tg = g + a[1];\n\t\ts = s + g;\n\t\ti = i + 1;\n"
+		+ "\t}\n\treturn s;\n}\n\n"
+		+ "int nested(int n, int m) {\n\tint i;\n\tint j;\n\tint s;\n\ti = 0;\n\ts = 0;\n\twhile (i < n) {\n"
+		+ "\t\tj = 0;\n\t\twhile (j < n) {\n\t\t\ts = s + i * m + j * (m + 1) + n * m;\n\t\t\tj = j + 1;\n"
+		+ "\t\t}\n\t\ti = i + 1;\n\t}\n\treturn s;\n}\n\n"
+		+ "int reads(int n) {\n\tint i;\n\tint s;\n\ti = 0;\n\ts = 0;\n\twhile (i < n) {\n"
+		+ "\t\ts = s * 10 + read();\n\t\ti = i + 1;\n\t}\n\treturn s;\n}\n\n"
+		+ "void main(void) {\n\tint n;\n\tint i;\n\tn = read();\n\ti = 0;\n\twhile (i < 8) {\n"
+		+ "\t\ta[i] = i * i;\n\t\ti = i + 1;\n\t}\n\twrite(invariant(n, 5));\n\twrite(\" \");\n"
+		+ "\twrite(neverRuns(0, 0));\n\twrite(\" \");\n\twrite(guarded(n, 0));\n\twrite(\" \");\n"
+		+ "\twrite(guarded(n, 7));\n\twriteln();\n\twrite(throughPointer(n));\n\twrite(\" \");\n"
+		+ "\twrite(stores(n));\n\twrite(\" \");\n\twrite(g);\n\twrite(\" \");\n\twrite(nested(n, 3));\n"
+		+ "\twrite(\" \");\n\twrite(reads(n));\n\twriteln();\n}\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static BPLCompilation compile(String source, String... flags) throws BPLException {
+		return new BPLCompiler(BPLOptions.parse(flags)).compile(source);
+	}
+
+	/**
+	* runs source natively with each set of flags, split at spaces, and
+	* checks every one prints expected
+	*/
+	private void assertPrints(String expected, String source, String input, String... flagSets) throws Exception {
+		for (String flags : flagSets) {
+			assertEquals(flags, expected, BPLBackendsTest.runNative(this.folder, source, input, flags.isEmpty() ? new String[0] : flags.split(" ")));
+		}
+	}
+
+	@Test
+	public void addressOfConstantIsAnErrorAtO0() throws BPLException {
+		BPLCompilation compilation = compile(ADDRESS_OF_CONSTANT, "-O0");
+		assertFalse(compilation.succeeded());
+		assertEquals("You can only take the address of a var or array entry (Line 3).", compilation.getDiagnostics().get(0));
+	}
+
+	@Test
+	public void addressOfConstantIsAnErrorByDefault() throws BPLException {
+		BPLCompilation compilation = compile(ADDRESS_OF_CONSTANT);
+		assertFalse(compilation.succeeded());
+		assertEquals("You can only take the address of a var or array entry (Line 3).", compilation.getDiagnostics().get(0));
+	}
+
+	@Test
+	public void returnsEndTheFunctionOnce() throws BPLException {
+		String source = "int sign(int n) {\n\tif (n < 0) {\n\t\treturn -1;\n\t} else {\n\t\treturn 1;\n\t}\n}\n\n"
+			+ "void main(void) {\n\twrite(sign(read()));\n}\n";
+		String assembly = compile(source, "-fno-inline").getAssembly();
+		String sign = assembly.substring(assembly.indexOf("sign:"), assembly.indexOf("main:"));
+		assertEquals(2, sign.split("\tret\n", -1).length - 1);
+		assertFalse(sign.contains("\tret\n\tjmp"));
+	}
+
+	@Test
+	public void overflowingIndexesWrapLikeInts() throws Exception {
+		this.assertPrints("1\n", OVERFLOWING_INDEX, "2147483647\n", "", "-O0", "-fbounds-check", "-O0 -fbounds-check");
+	}
+
+	@Test
+	public void leafFunctionsPrintTheSameWithTheirFrames() throws Exception {
+		assertNotEquals(compile(LEAF_FUNCTIONS, "-fno-inline").getAssembly(), compile(LEAF_FUNCTIONS, "-fno-inline", "-fno-leaf-functions").getAssembly());
+		this.assertPrints("141020\nzero 36\ntwo 20\n92\n", LEAF_FUNCTIONS, "5\n", "", "-fno-leaf-functions", "-fno-inline", "-fno-inline -fno-leaf-functions", "-O0");
+	}
+
+	@Test
+	public void tailCallsPrintTheSameAsCalls() throws Exception {
+		assertNotEquals(compile(TAIL_CALLS).getAssembly(), compile(TAIL_CALLS, "-fno-tail-calls").getAssembly());
+		this.assertPrints("1250025000\n1000111\n9 21 7\n321b\n", TAIL_CALLS, "1\n", "", "-fno-tail-calls", "-fno-inline", "-O0");
+	}
+
+	@Test
+	public void inlinedFunctionsPrintTheSameAsCalls() throws Exception {
+		assertNotEquals(compile(INLINING).getAssembly(), compile(INLINING, "-fno-inline").getAssembly());
+		this.assertPrints("25 5 4\n720 121 610\n0300\n41 25 7\nneg pos 21\n", INLINING, "4\n", "", "-fno-inline", "-finline-limit=1000", "-O0");
+	}
+
+	@Test
+	public void registerVarsPrintTheSameAsFrameSlots() throws Exception {
+		assertNotEquals(compile(REGISTER_PRESSURE).getAssembly(), compile(REGISTER_PRESSURE, "-fno-register-vars").getAssembly());
+		this.assertPrints("26039720\n221 608 25\n", REGISTER_PRESSURE, "6\n", "", "-fno-register-vars", "-fno-inline", "-fno-inline -fno-register-vars", "-O0");
+	}
+
+	@Test
+	public void constantsAndValueNumbersPrintTheSameAsRecomputing() throws Exception {
+		String assembly = compile(SSA_OPTIMIZATIONS).getAssembly();
+		assertNotEquals(assembly, compile(SSA_OPTIMIZATIONS, "-fno-constant-propagation").getAssembly());
+		assertNotEquals(assembly, compile(SSA_OPTIMIZATIONS, "-fno-value-numbering").getAssembly());
+		this.assertPrints("1183 1181\n202024 121216\n638 105 -7 3\n2147483647 0\n", SSA_OPTIMIZATIONS, "5 9 2\n", "", "-fno-constant-propagation", "-fno-value-numbering", "-fno-constant-propagation -fno-value-numbering", "-fno-inline", "-O0");
+	}
+
+	@Test
+	public void movedLoopInvariantsPrintTheSameAsInTheLoop() throws Exception {
+		assertNotEquals(compile(LOOP_INVARIANTS).getAssembly(), compile(LOOP_INVARIANTS, "-fno-move-loop-invariants").getAssembly());
+		this.assertPrints("200 0 6 568\n36 105 14 360 1234\n", LOOP_INVARIANTS, "4 1 2 3 4\n", "", "-fno-move-loop-invariants", "-fno-value-numbering", "-fno-inline", "-O0");
+	}
+}
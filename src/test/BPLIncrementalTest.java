@@ -0,0 +1,92 @@
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import Compiler.*;
+
+public class BPLIncrementalTest {
+	// twice and useTwice are small enough to inline, report isn't
+	private static final String PROGRAM =
+		"int twice(int x) {\n\treturn x + x;\n}\n\n"
+		+ "void report(int n) {\n"
+		+ "\twrite(n); write(n + 1); write(n + 2); write(n + 3); writeln();\n"
+		+ "\twrite(n * 2); write(n * 3); write(n * 4); write(n * 5); writeln();\n"
+		+ "\twrite(n - 1); write(n - 2); write(n - 3); write(n - 4); writeln();\n"
+		+ "}\n\n"
+		+ "int useTwice(int x) {\n\treturn twice(x) + 1;\n}\n\n"
+		+ "void main(void) {\n\treport(useTwice(3));\n\twrite(7);\n}\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File state;
+
+	@Before
+	public void compileOnce() throws Exception {
+		this.state = new File(this.folder.getRoot(), "program.bpl.incr");
+		assertEquals("incremental: 4 functions recompiled, 0 reused, 0 full compiles, 4 declarations parsed, 4 functions type checked", this.compile(PROGRAM));
+	}
+
+	/**
+	* compiles source incrementally, checks it gives the same assembly as a full compile
+	* @return the counts of functions recompiled and reused
+	*/
+	private String compile(String source) throws Exception {
+		return this.compile(new BPLIncremental(new BPLOptions()), source);
+	}
+
+	/**
+	* compiles with incremental, which keeps the parse trees from the compiles it did before
+	*/
+	private String compile(BPLIncremental incremental, String source) throws Exception {
+		BPLOptions options = new BPLOptions();
+		BPLCompilation compilation = incremental.compile(source.getBytes("UTF-8"), this.state);
+		assertEquals(new BPLCompiler(options).compile(source).getAssembly(), compilation.getAssembly());
+		return incremental.toString();
+	}
+
+	@Test
+	public void unchangedSourceRecompilesNothing() throws Exception {
+		assertEquals("incremental: 0 functions recompiled, 4 reused, 0 full compiles, 4 declarations parsed, 4 functions type checked", this.compile(PROGRAM));
+	}
+
+	@Test
+	public void editingAFunctionThatIsntInlinedRecompilesOnlyIt() throws Exception {
+		assertEquals("incremental: 1 functions recompiled, 3 reused, 0 full compiles, 4 declarations parsed, 4 functions type checked", this.compile(PROGRAM.replace("n * 5", "n * 6")));
+		assertEquals("incremental: 1 functions recompiled, 3 reused, 0 full compiles, 4 declarations parsed, 4 functions type checked", this.compile(PROGRAM.replace("n * 5", "n * 6").replace("write(7)", "write(8)")));
+	}
+
+	@Test
+	public void editingAnInlinedFunctionRecompilesWhatItIsInlinedInto() throws Exception {
+		assertEquals("incremental: 3 functions recompiled, 1 reused, 0 full compiles, 4 declarations parsed, 4 functions type checked", this.compile(PROGRAM.replace("x + x", "x * x")));
+	}
+
+	@Test
+	public void editingAFunctionReparsesOnlyItAndRechecksItsCallers() throws Exception {
+		BPLIncremental incremental = new BPLIncremental(new BPLOptions());
+		assertEquals("incremental: 0 functions recompiled, 4 reused, 0 full compiles, 4 declarations parsed, 4 functions type checked", this.compile(incremental, PROGRAM));
+		assertEquals("incremental: 1 functions recompiled, 7 reused, 0 full compiles, 5 declarations parsed, 6 functions type checked", this.compile(incremental, PROGRAM.replace("n * 5", "n * 6")));
+		assertEquals("incremental: 2 functions recompiled, 10 reused, 0 full compiles, 6 declarations parsed, 7 functions type checked", this.compile(incremental, PROGRAM.replace("n * 5", "n * 6").replace("write(7)", "write(8)")));
+	}
+
+	@Test
+	public void addingLinesAboveMovesTheTreesWithoutParsingThemAgain() throws Exception {
+		BPLIncremental incremental = new BPLIncremental(new BPLOptions());
+		this.compile(incremental, PROGRAM);
+		assertEquals("incremental: 0 functions recompiled, 8 reused, 0 full compiles, 4 declarations parsed, 4 functions type checked", this.compile(incremental, "\n\n" + PROGRAM));
+	}
+
+	@Test
+	public void aReusedTreeGetsTheSameFrameAsANewOne() throws Exception {
+		// main's locals go in registers, which isn't worked out while main is reused
+		String loop = PROGRAM.replace("void main(void) {\n", "void main(void) {\n\tint i;\n\tint s;\n")
+			.replace("\twrite(7);\n", "\ts = 0;\n\ti = 0;\n\twhile (i < 10) {\n\t\ts = s + i;\n\t\ti = i + 1;\n\t}\n\twrite(s);\n");
+		BPLIncremental incremental = new BPLIncremental(new BPLOptions());
+		this.compile(incremental, loop);
+		this.compile(incremental, loop.replace("n * 5", "n * 6"));
+		assertEquals("incremental: 5 functions recompiled, 7 reused, 0 full compiles, 6 declarations parsed, 8 functions type checked", this.compile(incremental, loop.replace("n * 5", "n * 6").replace("x + x", "x * x")));
+	}
+}
@@ -0,0 +1,153 @@
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import Compiler.*;
+import bench.*;
+
+public class BPLScalingTest {
+	public static final double MAX_EXPONENT = 1.25;
+	private static final int REPEAT = 3;
+	private static final long STACK_SIZE = 1L << 30; // the parser and type checker recurse once per declaration and statement
+	private static final String[][] OPTIONS = {{"-O0"}, {"-fno-constant-propagation"}, {"-fbounds-check"}, {"-fno-inline", "-fno-register-vars"}};
+	private static final int SEEDS = 5;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	* @return the lines of the programs to compile, from -Dscaling.sizes=<lines>,...
+	* ('make scaling' asks for up to 1000000)
+	*/
+	private static int[] getSizes() {
+		String[] values = System.getProperty("scaling.sizes", "10000,100000").split(",");
+		int[] sizes = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			sizes[i] = Integer.parseInt(values[i]);
+		}
+		return sizes;
+	}
+
+	/**
+	* @return the generator, with the knobs in -Dscaling.knobs, e.g. "--locals=40"
+	*/
+	private static BPLProgramGenerator getGenerator() throws BPLException {
+		String knobs = System.getProperty("scaling.knobs", "").trim();
+		return BPLProgramGenerator.parse(knobs.isEmpty() ? new String[0] : knobs.split("\\s+"));
+	}
+
+	/**
+	* compiles generated programs of each size and checks that no phase
+	* grows faster than linearly in the lines between the smallest and the
+	* largest. a phase taking t1 for l1 lines and t2 for l2 lines grows as
+	* lines to the power log(t2 / t1) / log(l2 / l1), so a linear phase is
+	* near 1 and a quadratic one near 2. the best CPU time of REPEAT
+	* compiles is used, since GC and other threads don't count against it
+	*/
+	@Test
+	public void everyPhaseGrowsAtMostLinearly() throws Throwable {
+		final int[] sizes = getSizes();
+		final BPLProgramGenerator generator = getGenerator();
+		final Throwable[] error = new Throwable[1];
+		Thread thread = new Thread(null, new Runnable() {
+			public void run() {
+				try {
+					checkScaling(generator, sizes);
+				} catch (Throwable e) {
+					error[0] = e;
+				}
+			}
+		}, "scaling check", STACK_SIZE);
+		thread.start();
+		thread.join();
+		if (error[0] != null) {
+			throw error[0];
+		}
+	}
+
+	private static void checkScaling(BPLProgramGenerator generator, int[] sizes) throws BPLException {
+		String warmup = generator.set("lines", sizes[0]).generate();
+		for (int i = 0; i < 3; i++) {
+			measure(warmup);
+		}
+
+		ArrayList<String> phases = new ArrayList<String>();
+		long[][] times = new long[sizes.length][];
+		int[] lines = new int[sizes.length];
+		StringBuilder report = new StringBuilder();
+		for (int i = 0; i < sizes.length; i++) {
+			String source = generator.set("lines", sizes[i]).generate();
+			lines[i] = BPLCorpus.countLines(source);
+			times[i] = null;
+			for (int j = 0; j < REPEAT; j++) {
+				BPLStats stats = measure(source);
+				long[] run = new long[stats.getPhases().size()];
+				for (int k = 0; k < run.length; k++) {
+					BPLPhase phase = stats.getPhases().get(k);
+					run[k] = (phase.getCpuNanos() < 0) ? phase.getWallNanos() : phase.getCpuNanos();
+					if (i == 0 && j == 0) {
+						phases.add(phase.getName());
+					}
+				}
+				times[i] = (times[i] == null) ? run : min(times[i], run);
+			}
+			source = null; // so the next size has the heap
+			report.append(String.format("%9d lines:", lines[i]));
+			for (int k = 0; k < phases.size(); k++) {
+				report.append(String.format(" %s %.1f ms", phases.get(k), times[i][k] / 1e6));
+			}
+			report.append('\n');
+		}
+
+		int last = sizes.length - 1;
+		for (int k = 0; k < phases.size(); k++) {
+			double exponent = Math.log((double) Math.max(times[last][k], 1) / Math.max(times[0][k], 1)) / Math.log((double) lines[last] / lines[0]);
+			assertTrue(String.format("%s grows as lines^%.2f from %d to %d lines\n%s", phases.get(k), exponent, lines[0], lines[last], report), exponent <= MAX_EXPONENT);
+		}
+	}
+
+	private static BPLStats measure(String source) throws BPLException {
+		BPLStats stats = new BPLStats("generated");
+		BPLCompilation compilation = new BPLCompiler().compile(source, stats);
+		assertTrue("A generated program didn't compile: " + compilation.getDiagnostics(), compilation.succeeded());
+		return stats;
+	}
+
+	private static long[] min(long[] a, long[] b) {
+		long[] min = new long[a.length];
+		for (int i = 0; i < a.length; i++) {
+			min[i] = Math.min(a[i], b[i]);
+		}
+		return min;
+	}
+
+	/**
+	* BPLProgramGenerator gives every var a value before it's read, so its
+	* programs have to print the same with any options and on any backend
+	*/
+	@Test
+	public void generatedProgramsPrintTheSameWithAnyOptionsOrBackend() throws Exception {
+		BPLProgramGenerator generator = new BPLProgramGenerator().set("lines", 300).set("functions", 8).set("locals", 6);
+		StringBuilder input = new StringBuilder();
+		for (int i = 1; i <= 100; i++) {
+			input.append(i * 7919 % 2003 - 1000).append((i % 10 == 0) ? "\n" : " ");
+		}
+		for (int seed = 1; seed <= SEEDS; seed++) {
+			String source = generator.set("seed", seed).generate();
+			File file = this.folder.newFile("generated" + seed + ".bpl");
+			Files.write(file.toPath(), source.getBytes("UTF-8"));
+			String expected = BPLBackendsTest.runNative(this.folder, source, input.toString());
+			for (String[] options : OPTIONS) {
+				assertEquals("seed " + seed + " with " + Arrays.toString(options), expected, BPLBackendsTest.runNative(this.folder, source, input.toString(), options));
+			}
+			assertEquals("seed " + seed + " in C", expected, BPLBackendsTest.runC(this.folder, file, input.toString()));
+			assertEquals("seed " + seed + " on the JVM", expected, BPLBackendsTest.runJVM(file, input.toString()));
+			assertEquals("seed " + seed + " on the VM", expected, BPLBackendsTest.runVM(file, input.toString()));
+		}
+	}
+}
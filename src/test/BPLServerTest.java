@@ -0,0 +1,54 @@
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import Compiler.*;
+
+public class BPLServerTest {
+	private static final String SOURCE = "void main(void) {\n\twrite(1);\n}\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File root;
+
+	@Before
+	public void makeRoot() throws Exception {
+		this.root = this.folder.newFolder("root");
+		write(new File(this.root, "program.bpl"), SOURCE);
+	}
+
+	private static void write(File file, String text) throws IOException {
+		FileWriter writer = new FileWriter(file);
+		try {
+			writer.write(text);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private void typecheck(String directory, String fileName) throws BPLException {
+		BPLServer.compile("typecheck", directory, new String[] {fileName}, this.root, new PrintStream(new ByteArrayOutputStream()));
+	}
+
+	@Test
+	public void compilesBplFilesUnderTheRoot() throws Exception {
+		typecheck(this.root.getPath(), "program.bpl");
+	}
+
+	@Test(expected = BPLException.class)
+	public void refusesFilesOutsideTheRoot() throws Exception {
+		File outside = this.folder.newFile("outside.bpl");
+		write(outside, SOURCE);
+		typecheck(this.root.getPath(), "../outside.bpl");
+	}
+
+	@Test(expected = BPLException.class)
+	public void refusesFilesThatArentBpl() throws Exception {
+		write(new File(this.root, "secret.txt"), SOURCE);
+		typecheck(this.root.getPath(), "secret.txt");
+	}
+}
@@ -0,0 +1,54 @@
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.CharBuffer;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import Compiler.*;
+
+public class BPLTreeReaderTest {
+	private static final byte[] SOURCE = "int x;\n\nvoid main(void) {\n\tx = 1;\n\twrite(\"x is \");\n\twrite(x);\n}\n".getBytes();
+	// after the magic number, the version and the hash
+	private static final int STRING_COUNT = 8 + BPLTreeWriter.HASH_SIZE;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File tree;
+
+	@Before
+	public void writeTree() throws Exception {
+		this.tree = this.folder.newFile("program.bpl.tree");
+		BPLNode head = new BPLParser(new BPLScanner(CharBuffer.wrap(new String(SOURCE, "UTF-8")))).getBPLHead();
+		BPLTreeWriter.write(head, BPLTreeWriter.hash(SOURCE), this.tree);
+	}
+
+	private void overwriteInt(int offset, int value) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(this.tree, "rw");
+		try {
+			file.seek(offset);
+			file.writeInt(value);
+		} finally {
+			file.close();
+		}
+	}
+
+	@Test
+	public void readsWhatWasWritten() throws Exception {
+		assertNotNull(BPLTreeReader.read(this.tree, BPLTreeWriter.hash(SOURCE)));
+	}
+
+	@Test
+	public void hugeStringCountIsIgnored() throws Exception {
+		this.overwriteInt(STRING_COUNT, Integer.MAX_VALUE);
+		assertNull(BPLTreeReader.read(this.tree, BPLTreeWriter.hash(SOURCE)));
+	}
+
+	@Test
+	public void hugeStringLengthIsIgnored() throws Exception {
+		this.overwriteInt(STRING_COUNT + 8, Integer.MAX_VALUE);
+		assertNull(BPLTreeReader.read(this.tree, BPLTreeWriter.hash(SOURCE)));
+	}
+}